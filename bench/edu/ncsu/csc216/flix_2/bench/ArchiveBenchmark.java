@@ -0,0 +1,165 @@
+package edu.ncsu.csc216.flix_2.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Random;
+
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.persistence.CustomerArchive;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+
+/**
+ * Measures bringing 10k, 100k and 1M customers into an empty store: signing
+ * them up one at a time with addNewCustomer, in the order of a legacy export,
+ * against importing the same rows with {@link CustomerArchive}, with and
+ * without reserves, and exporting them again. The rows are in random order,
+ * so the import has to sort them. Other sizes can be given as program
+ * arguments.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class ArchiveBenchmark {
+
+	/**
+	 * Customer counts measured when no arguments are given.
+	 */
+	private static final int[] DEFAULT_SIZES = { 10000, 100000, 1000000 };
+
+	/**
+	 * Number of titles in the synthetic catalog.
+	 */
+	private static final int CATALOG_SIZE = 10000;
+
+	/**
+	 * Largest number of reserves written for each customer.
+	 */
+	private static final int MAX_RESERVES = 3;
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            customer counts to measure; defaults to 10k, 100k and 1M.
+	 * @throws IOException
+	 *             if a temporary file cannot be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		int[] sizes = DEFAULT_SIZES;
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		File catalog = SyntheticCatalog.createTempCatalog(CATALOG_SIZE);
+		DVDRentalSystem titles = new DVDRentalSystem(catalog.getPath());
+		for (int size : sizes) {
+			File plain = File.createTempFile("customers", ".tsv");
+			File reserving = File.createTempFile("customers", ".tsv");
+			File exported = File.createTempFile("customers", ".tsv");
+			write(plain, size, titles, 0);
+			write(reserving, size, titles, MAX_RESERVES);
+
+			MovieCustomerAccountSystem accounts = newAccounts(catalog);
+			long start = System.nanoTime();
+			for (String line : Files.readAllLines(plain.toPath(), Charset.forName("UTF-8"))) {
+				String[] fields = line.split("\t");
+				accounts.addNewCustomer(fields[0], fields[1], Integer.parseInt(fields[2]));
+			}
+			report(size, "addNewCustomer", System.nanoTime() - start);
+
+			DVDRentalSystem rentals = new DVDRentalSystem(catalog.getPath());
+			accounts = new MovieCustomerAccountSystem(rentals);
+			start = System.nanoTime();
+			CustomerArchive.importFrom(plain.getPath(), rentals, accounts);
+			report(size, "import", System.nanoTime() - start);
+
+			rentals = new DVDRentalSystem(catalog.getPath());
+			accounts = new MovieCustomerAccountSystem(rentals);
+			start = System.nanoTime();
+			CustomerArchive.importFrom(reserving.getPath(), rentals, accounts);
+			report(size, "import, reserves", System.nanoTime() - start);
+
+			start = System.nanoTime();
+			CustomerArchive.exportTo(exported.getPath(), accounts);
+			report(size, "export, reserves", System.nanoTime() - start);
+
+			plain.delete();
+			reserving.delete();
+			exported.delete();
+		}
+		catalog.delete();
+	}
+
+	/**
+	 * Creates an account system over the catalog with the administrator
+	 * logged in.
+	 * 
+	 * @param catalog
+	 *            inventory file.
+	 * @return the account system.
+	 */
+	private static MovieCustomerAccountSystem newAccounts(File catalog) {
+		MovieCustomerAccountSystem accounts = new MovieCustomerAccountSystem(new DVDRentalSystem(catalog.getPath()));
+		accounts.login(MovieCustomerAccountSystem.ADMIN, "admin");
+		return accounts;
+	}
+
+	/**
+	 * Writes an archive of customers in random order, with nothing at home.
+	 * 
+	 * @param file
+	 *            file to write.
+	 * @param customers
+	 *            number of customers.
+	 * @param titles
+	 *            rental system holding the catalog the reserves come from.
+	 * @param maxReserves
+	 *            largest number of reserves for each customer.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	private static void write(File file, int customers, DVDRentalSystem titles, int maxReserves) throws IOException {
+		Random random = new Random(SyntheticCatalog.DEFAULT_SEED);
+		int[] order = new int[customers];
+		for (int i = 0; i < customers; i++) {
+			order[i] = i;
+		}
+		for (int i = customers - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+		Writer out = new OutputStreamWriter(Files.newOutputStream(file.toPath()), Charset.forName("UTF-8"));
+		try {
+			for (int number : order) {
+				out.write("customer" + number + "@example.com\tpw" + number + "\t" + (number % 5) + "\t0");
+				for (int i = random.nextInt(maxReserves + 1); i > 0; i--) {
+					out.write("\t" + titles.getMovieAt(random.nextInt(titles.inventorySize())).getName());
+				}
+				out.write("\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Prints one result line.
+	 * 
+	 * @param size
+	 *            number of customers.
+	 * @param mode
+	 *            what was measured.
+	 * @param nanos
+	 *            time it took.
+	 */
+	private static void report(int size, String mode, long nanos) {
+		System.out.printf("%,10d customers, %-18s %9.1f ms%n", size, mode, nanos / 1e6);
+	}
+}
@@ -0,0 +1,325 @@
+package edu.ncsu.csc216.flix_2.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.metrics.LatencyHistogram;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+import edu.ncsu.csc216.flix_2.server.RentalHttpServer;
+
+/**
+ * Measures the throughput of the HTTP/JSON rental API on loopback. It starts a
+ * {@link RentalHttpServer} in this JVM over a synthetic catalog, then has
+ * every client thread log in as its own customer and send a mix of inventory
+ * pages, reserves, queue listings, unreserves and returns over keep-alive
+ * connections, one request at a time. At the end it prints the requests per
+ * second and the p50, p99 and p99.9 latency of every request type.
+ * 
+ * Options, all optional: {@code -threads N} (client threads),
+ * {@code -requests N} (requests per thread), {@code -titles N} and
+ * {@code -warmup N} (untimed requests per thread).
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class HttpLoadBenchmark {
+
+	/**
+	 * Names of the request types, in the order they are sent.
+	 */
+	private static final String[] REQUESTS = { "browse", "reserve", "queue", "unreserve", "return" };
+
+	private int threads = 16;
+	private int requests = 20000;
+	private int titles = 10000;
+	private int warmup = 2000;
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            options, see the class description.
+	 * @throws Exception
+	 *             if the catalog cannot be written, the server cannot start,
+	 *             or a client fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		HttpLoadBenchmark bench = new HttpLoadBenchmark();
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + args[i]);
+			}
+			int value = Integer.parseInt(args[i + 1]);
+			if (args[i].equals("-threads")) {
+				bench.threads = value;
+			} else if (args[i].equals("-requests")) {
+				bench.requests = value;
+			} else if (args[i].equals("-titles")) {
+				bench.titles = value;
+			} else if (args[i].equals("-warmup")) {
+				bench.warmup = value;
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		bench.run();
+	}
+
+	/**
+	 * Starts the server, runs the clients, and prints the report.
+	 * 
+	 * @throws Exception
+	 *             if the server cannot start or a client fails.
+	 */
+	private void run() throws Exception {
+		File catalog = SyntheticCatalog.createTempCatalog(titles);
+		DVDRentalSystem store = new DVDRentalSystem(catalog.getPath());
+		catalog.delete();
+		MovieCustomerAccountSystem system = new MovieCustomerAccountSystem(store);
+		String admin = system.openSession(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN);
+		for (int i = 0; i < threads; i++) {
+			system.addNewCustomer(admin, "client" + i, "pw", 3);
+		}
+		system.closeSession(admin);
+		RentalHttpServer server = new RentalHttpServer(system, store);
+		server.start(new InetSocketAddress("127.0.0.1", 0));
+		try {
+			String base = "http://127.0.0.1:" + server.getPort();
+			Client[] clients = new Client[threads];
+			CountDownLatch start = new CountDownLatch(1);
+			CountDownLatch done = new CountDownLatch(threads);
+			for (int t = 0; t < threads; t++) {
+				clients[t] = new Client(base, t, start, done);
+				new Thread(clients[t], "http-client-" + t).start();
+			}
+			long begin = System.nanoTime();
+			start.countDown();
+			done.await();
+			long elapsed = System.nanoTime() - begin;
+			LatencyHistogram[] merged = new LatencyHistogram[REQUESTS.length];
+			for (int r = 0; r < REQUESTS.length; r++) {
+				merged[r] = new LatencyHistogram();
+			}
+			for (Client client : clients) {
+				if (client.failure != null) {
+					throw new IllegalStateException("Client failed", client.failure);
+				}
+				for (int r = 0; r < REQUESTS.length; r++) {
+					merged[r].add(client.latencies[r]);
+				}
+			}
+			report(merged, elapsed);
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Prints the throughput and latency of every request type.
+	 * 
+	 * @param latencies
+	 *            latency of each request type, across all clients.
+	 * @param elapsed
+	 *            wall clock time of the timed requests, in nanoseconds.
+	 */
+	private void report(LatencyHistogram[] latencies, long elapsed) {
+		double seconds = elapsed / 1e9;
+		System.out.printf(Locale.ROOT, "%d titles, %d client threads, %d requests per thread%n", titles, threads, requests);
+		System.out.printf(Locale.ROOT, "%-10s %12s %12s %10s %10s %10s%n", "request", "count", "req/s", "p50 us", "p99 us", "p99.9 us");
+		long total = 0;
+		for (int r = 0; r < REQUESTS.length; r++) {
+			LatencyHistogram h = latencies[r];
+			total += h.getCount();
+			System.out.printf(Locale.ROOT, "%-10s %12d %12.0f %10.1f %10.1f %10.1f%n", REQUESTS[r], h.getCount(), h.getCount() / seconds,
+					h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3, h.getPercentile(99.9) / 1e3);
+		}
+		System.out.printf(Locale.ROOT, "%-10s %12d %12.0f   in %.2f s%n", "total", total, total / seconds, seconds);
+	}
+
+	/**
+	 * One client thread, logged in as its own customer.
+	 */
+	private class Client implements Runnable {
+
+		private final String base;
+		private final int number;
+		private final CountDownLatch start;
+		private final CountDownLatch done;
+		private final LatencyHistogram[] latencies = new LatencyHistogram[REQUESTS.length];
+		private final byte[] buffer = new byte[8192];
+		private String token;
+		private volatile Throwable failure;
+
+		/**
+		 * Constructor, creates a client.
+		 * 
+		 * @param base
+		 *            URL of the server.
+		 * @param number
+		 *            number of the client and its customer.
+		 * @param start
+		 *            released when the timed requests start.
+		 * @param done
+		 *            counted down when the client finishes.
+		 */
+		Client(String base, int number, CountDownLatch start, CountDownLatch done) {
+			this.base = base;
+			this.number = number;
+			this.start = start;
+			this.done = done;
+			for (int r = 0; r < REQUESTS.length; r++) {
+				latencies[r] = new LatencyHistogram();
+			}
+		}
+
+		/**
+		 * Logs in, warms up, then sends the timed requests.
+		 */
+		public void run() {
+			try {
+				String login = send("POST", "/login", "id=client" + number + "&password=pw");
+				int quote = login.indexOf('"', login.indexOf(':') + 2);
+				token = login.substring(login.indexOf(':') + 2, quote);
+				Random random = new Random(number);
+				for (int i = 0; i < warmup; i++) {
+					request(i % REQUESTS.length, random);
+				}
+				start.await();
+				for (int i = 0; i < requests; i++) {
+					int type = i % REQUESTS.length;
+					long begin = System.nanoTime();
+					request(type, random);
+					latencies[type].record(System.nanoTime() - begin);
+				}
+			} catch (Throwable t) {
+				failure = t;
+			} finally {
+				done.countDown();
+			}
+		}
+
+		/**
+		 * Sends one request of the given type.
+		 * 
+		 * @param type
+		 *            position of the request type in REQUESTS.
+		 * @param random
+		 *            picks the page and title.
+		 * @throws IOException
+		 *             if the request fails.
+		 */
+		private void request(int type, Random random) throws IOException {
+			switch (type) {
+			case 0:
+				send("GET", "/inventory?offset=" + random.nextInt(titles) + "&limit=20", null);
+				break;
+			case 1:
+				send("POST", "/reserve?position=" + random.nextInt(titles), null);
+				break;
+			case 2:
+				send("GET", "/queue", null);
+				break;
+			case 3:
+				sendAllowingConflict("POST", "/unreserve?position=0", null);
+				break;
+			default:
+				sendAllowingConflict("POST", "/return?position=0", null);
+			}
+		}
+
+		/**
+		 * Sends a request that may find nothing to act on.
+		 * 
+		 * @param method
+		 *            HTTP method.
+		 * @param path
+		 *            path and query.
+		 * @param form
+		 *            form body, or null for none.
+		 * @throws IOException
+		 *             if the request fails for another reason.
+		 */
+		private void sendAllowingConflict(String method, String path, String form) throws IOException {
+			try {
+				send(method, path, form);
+			} catch (RequestFailed e) {
+				if (e.status != 400 && e.status != 409) {
+					throw e;
+				}
+			}
+		}
+
+		/**
+		 * Sends a request over the keep-alive connection and reads the whole
+		 * response.
+		 * 
+		 * @param method
+		 *            HTTP method.
+		 * @param path
+		 *            path and query.
+		 * @param form
+		 *            form body, or null for none.
+		 * @return response body.
+		 * @throws IOException
+		 *             if the request fails.
+		 */
+		private String send(String method, String path, String form) throws IOException {
+			HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+			connection.setRequestMethod(method);
+			if (token != null) {
+				connection.setRequestProperty("Authorization", "Bearer " + token);
+			}
+			if (form != null) {
+				byte[] bytes = form.getBytes("UTF-8");
+				connection.setDoOutput(true);
+				connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+				connection.setFixedLengthStreamingMode(bytes.length);
+				OutputStream out = connection.getOutputStream();
+				out.write(bytes);
+				out.close();
+			}
+			int status = connection.getResponseCode();
+			InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				body.write(buffer, 0, read);
+			}
+			in.close();
+			if (status >= 400) {
+				throw new RequestFailed(status, body.toString("UTF-8"));
+			}
+			return body.toString("UTF-8");
+		}
+	}
+
+	/**
+	 * A request answered with an error status.
+	 */
+	private static class RequestFailed extends IOException {
+
+		private static final long serialVersionUID = 1L;
+		private final int status;
+
+		/**
+		 * Constructor, creates a failure.
+		 * 
+		 * @param status
+		 *            HTTP status of the response.
+		 * @param body
+		 *            body of the response.
+		 */
+		RequestFailed(int status, String body) {
+			super(status + " " + body);
+			this.status = status;
+		}
+	}
+}
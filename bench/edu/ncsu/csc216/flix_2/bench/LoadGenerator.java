@@ -0,0 +1,443 @@
+package edu.ncsu.csc216.flix_2.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import edu.ncsu.csc216.flix_2.customer.CustomerAccountManager;
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.metrics.InstrumentedCustomerAccountManager;
+import edu.ncsu.csc216.flix_2.metrics.InstrumentedRentalManager;
+import edu.ncsu.csc216.flix_2.metrics.LatencyHistogram;
+import edu.ncsu.csc216.flix_2.metrics.MetricsRegistry;
+import edu.ncsu.csc216.flix_2.metrics.StoreGauges;
+import edu.ncsu.csc216.flix_2.persistence.Journal;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+
+/**
+ * Headless workload driver simulating a busy rental store. It creates a
+ * synthetic catalog and a number of customers, then has many threads replay a
+ * weighted mix of logins, inventory browsing, reserves, reorders, unreserves
+ * and returns against one {@link DVDRentalSystem} and
+ * {@link MovieCustomerAccountSystem} through customer sessions. Each thread
+ * works for its own share of the customers and draws its operations from its
+ * own random generator seeded from the run's seed, so a run is repeatable up
+ * to the order in which threads meet in the shared inventory. At the end it
+ * prints the throughput and the p50, p99 and p99.9 latency of every operation.
+ * 
+ * Options, all optional: {@code -customers N}, {@code -titles N},
+ * {@code -threads N}, {@code -ops N} (operations per thread), {@code -seed N},
+ * {@code -maxAtHome N}, {@code -mix login=5,browse=30,...} to weight the
+ * operations, {@code -metrics true} to run through the instrumented
+ * decorators and print their metrics too, {@code -journal DIR} to record
+ * every change in a journal kept in a new or empty directory, and
+ * {@code -snapshotEvery N} to snapshot the journal every N records. With a
+ * journal, the store is restarted from it at the end of the run and the time
+ * the restart took is printed.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class LoadGenerator {
+
+	/**
+	 * Names of the operations, in the order of their weights.
+	 */
+	static final String[] OPERATIONS = { "login", "browse", "reserve", "reorder", "unreserve", "return" };
+
+	/**
+	 * Weights of the operations when no mix is given.
+	 */
+	private static final int[] DEFAULT_MIX = { 5, 30, 25, 10, 10, 20 };
+
+	/**
+	 * Number of titles on a page of the inventory.
+	 */
+	private static final int PAGE_SIZE = 20;
+
+	/**
+	 * Positions in the reserve and at home queues that reorders, unreserves
+	 * and returns pick from. A position past the end of the queue is a miss.
+	 */
+	private static final int QUEUE_POSITIONS = 4;
+
+	private int customers = 1000;
+	private int titles = 10000;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int opsPerThread = 100000;
+	private long seed = SyntheticCatalog.DEFAULT_SEED;
+	private int maxAtHome = 3;
+	private int[] mix = DEFAULT_MIX.clone();
+	private boolean metrics;
+	private String journalDirectory;
+	private long snapshotEvery;
+
+	/**
+	 * Runs the workload.
+	 * 
+	 * @param args
+	 *            options, see the class description.
+	 * @throws Exception
+	 *             if the catalog cannot be written or a worker fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		LoadGenerator load = new LoadGenerator();
+		load.parse(args);
+		load.run();
+	}
+
+	/**
+	 * Reads the options.
+	 * 
+	 * @param args
+	 *            options, see the class description.
+	 * @throws IllegalArgumentException
+	 *             if an option is not recognized or has no value.
+	 */
+	private void parse(String[] args) {
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + args[i]);
+			}
+			String value = args[i + 1];
+			if (args[i].equals("-customers")) {
+				customers = Integer.parseInt(value);
+			} else if (args[i].equals("-titles")) {
+				titles = Integer.parseInt(value);
+			} else if (args[i].equals("-threads")) {
+				threads = Integer.parseInt(value);
+			} else if (args[i].equals("-ops")) {
+				opsPerThread = Integer.parseInt(value);
+			} else if (args[i].equals("-seed")) {
+				seed = Long.parseLong(value);
+			} else if (args[i].equals("-maxAtHome")) {
+				maxAtHome = Integer.parseInt(value);
+			} else if (args[i].equals("-metrics")) {
+				metrics = Boolean.parseBoolean(value);
+			} else if (args[i].equals("-journal")) {
+				journalDirectory = value;
+			} else if (args[i].equals("-snapshotEvery")) {
+				snapshotEvery = Long.parseLong(value);
+			} else if (args[i].equals("-mix")) {
+				mix = parseMix(value);
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		if (customers < threads || threads <= 0 || titles <= 0) {
+			throw new IllegalArgumentException("Need at least one title, one thread, and a customer for every thread.");
+		}
+	}
+
+	/**
+	 * Reads operation weights such as "login=5,browse=30". Operations that
+	 * are not named get a weight of zero.
+	 * 
+	 * @param value
+	 *            comma separated name=weight pairs.
+	 * @return weights in the order of OPERATIONS.
+	 * @throws IllegalArgumentException
+	 *             if an operation is unknown or every weight is zero.
+	 */
+	static int[] parseMix(String value) {
+		int[] weights = new int[OPERATIONS.length];
+		int sum = 0;
+		for (String pair : value.split(",")) {
+			String[] parts = pair.split("=");
+			int op = indexOf(parts[0].trim());
+			if (op < 0 || parts.length != 2) {
+				throw new IllegalArgumentException("Bad mix entry " + pair);
+			}
+			weights[op] = Integer.parseInt(parts[1].trim());
+			sum += weights[op];
+		}
+		if (sum <= 0) {
+			throw new IllegalArgumentException("The mix needs a positive weight.");
+		}
+		return weights;
+	}
+
+	/**
+	 * Sets up the store, runs the workers, and prints the report.
+	 * 
+	 * @throws Exception
+	 *             if the catalog cannot be written or a worker fails.
+	 */
+	private void run() throws Exception {
+		File catalog = SyntheticCatalog.createTempCatalog(titles);
+		DVDRentalSystem store = new DVDRentalSystem(catalog.getPath());
+		MetricsRegistry registry = new MetricsRegistry();
+		RentalManager rentals = metrics ? new InstrumentedRentalManager(store, registry) : store;
+		MovieCustomerAccountSystem system = new MovieCustomerAccountSystem(rentals);
+		CustomerAccountManager accounts = metrics ? new InstrumentedCustomerAccountManager(system, registry) : system;
+		registry.setGauges(new StoreGauges(store, system));
+		Journal journal = null;
+		if (journalDirectory != null) {
+			checkEmpty(Paths.get(journalDirectory));
+			journal = Journal.open(journalDirectory, store, system);
+			journal.setSnapshotInterval(snapshotEvery);
+		}
+		String admin = accounts.openSession(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN);
+		for (int i = 0; i < customers; i++) {
+			accounts.addNewCustomer(admin, customerId(i), "pw", maxAtHome);
+		}
+		accounts.closeSession(admin);
+
+		final Worker[] workers = new Worker[threads];
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		Thread[] started = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Worker(t, rentals, accounts, start, done);
+			started[t] = new Thread(workers[t], "load-" + t);
+			started[t].start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsed = System.nanoTime() - begin;
+
+		LatencyHistogram[] merged = new LatencyHistogram[OPERATIONS.length];
+		long misses = 0;
+		for (int op = 0; op < OPERATIONS.length; op++) {
+			merged[op] = new LatencyHistogram();
+		}
+		for (Worker worker : workers) {
+			if (worker.failure != null) {
+				throw new IllegalStateException("Worker failed", worker.failure);
+			}
+			for (int op = 0; op < OPERATIONS.length; op++) {
+				merged[op].add(worker.latencies[op]);
+			}
+			misses += worker.misses;
+		}
+		report(merged, misses, elapsed);
+		if (journal != null) {
+			journal.close();
+			System.out.printf(Locale.ROOT, "journal: %d records in %d forces, %d snapshots%n", journal.getRecordCount(),
+					journal.getCommitCount(), journal.getSnapshotCount());
+			long restart = System.nanoTime();
+			DVDRentalSystem restored = new DVDRentalSystem(catalog.getPath());
+			Journal.open(journalDirectory, restored, new MovieCustomerAccountSystem(restored)).close();
+			System.out.printf(Locale.ROOT, "restart: %.1f ms%n", (System.nanoTime() - restart) / 1e6);
+		}
+		catalog.delete();
+		if (metrics) {
+			System.out.println();
+			registry.dump(System.out);
+		}
+	}
+
+	/**
+	 * Checks that a journal directory is new or empty, so the run starts from
+	 * an empty store.
+	 * 
+	 * @param directory
+	 *            journal directory.
+	 * @throws IOException
+	 *             if the directory cannot be listed.
+	 * @throws IllegalArgumentException
+	 *             if the directory holds any files.
+	 */
+	private static void checkEmpty(Path directory) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+		DirectoryStream<Path> files = Files.newDirectoryStream(directory);
+		try {
+			if (files.iterator().hasNext()) {
+				throw new IllegalArgumentException("Journal directory " + directory + " is not empty.");
+			}
+		} finally {
+			files.close();
+		}
+	}
+
+	/**
+	 * Prints the throughput and latency of every operation.
+	 * 
+	 * @param latencies
+	 *            latency of each operation, across all threads.
+	 * @param misses
+	 *            number of operations that named a queue position past the
+	 *            end of the queue.
+	 * @param elapsed
+	 *            wall clock time of the run, in nanoseconds.
+	 */
+	private void report(LatencyHistogram[] latencies, long misses, long elapsed) {
+		double seconds = elapsed / 1e9;
+		System.out.printf(Locale.ROOT, "%d customers, %d titles, %d threads, %d ops per thread, seed %d%n", customers, titles, threads,
+				opsPerThread, seed);
+		System.out.printf(Locale.ROOT, "%-10s %12s %12s %10s %10s %10s %10s%n", "operation", "count", "ops/s", "p50 us", "p99 us",
+				"p99.9 us", "max us");
+		long total = 0;
+		for (int op = 0; op < OPERATIONS.length; op++) {
+			LatencyHistogram h = latencies[op];
+			total += h.getCount();
+			if (h.getCount() > 0) {
+				System.out.printf(Locale.ROOT, "%-10s %12d %12.0f %10.1f %10.1f %10.1f %10.1f%n", OPERATIONS[op], h.getCount(),
+						h.getCount() / seconds, h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3, h.getPercentile(99.9) / 1e3,
+						h.getMax() / 1e3);
+			}
+		}
+		System.out.printf(Locale.ROOT, "%-10s %12d %12.0f   in %.2f s, %d queue misses%n", "total", total, total / seconds, seconds,
+				misses);
+	}
+
+	/**
+	 * Returns the position of an operation name in OPERATIONS.
+	 * 
+	 * @param name
+	 *            name of the operation.
+	 * @return position of the operation, or -1 if it is unknown.
+	 */
+	private static int indexOf(String name) {
+		for (int i = 0; i < OPERATIONS.length; i++) {
+			if (OPERATIONS[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the username of the customer with the given number.
+	 * 
+	 * @param number
+	 *            number of the customer.
+	 * @return username of the customer.
+	 */
+	private static String customerId(int number) {
+		return "customer" + number + "@ncsu.edu";
+	}
+
+	/**
+	 * One load thread. It works for every customer whose number leaves the
+	 * thread's number as remainder, keeping an open session for each.
+	 */
+	private class Worker implements Runnable {
+
+		private final int number;
+		private final RentalManager rentals;
+		private final CustomerAccountManager accounts;
+		private final CountDownLatch start;
+		private final CountDownLatch done;
+		private final Random random;
+		private final String[] tokens;
+		private final int[] cumulative;
+		private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+		private long misses;
+		private volatile Throwable failure;
+
+		/**
+		 * Constructor, creates a worker.
+		 * 
+		 * @param number
+		 *            number of the worker, from 0.
+		 * @param rentals
+		 *            shared rental system.
+		 * @param accounts
+		 *            shared account system.
+		 * @param start
+		 *            released when every worker should start.
+		 * @param done
+		 *            counted down when the worker is finished.
+		 */
+		Worker(int number, RentalManager rentals, CustomerAccountManager accounts, CountDownLatch start, CountDownLatch done) {
+			this.number = number;
+			this.rentals = rentals;
+			this.accounts = accounts;
+			this.start = start;
+			this.done = done;
+			this.random = new Random(seed * 31 + number);
+			this.tokens = new String[(customers - number + threads - 1) / threads];
+			this.cumulative = new int[OPERATIONS.length];
+			int sum = 0;
+			for (int op = 0; op < OPERATIONS.length; op++) {
+				sum += mix[op];
+				cumulative[op] = sum;
+				latencies[op] = new LatencyHistogram();
+			}
+		}
+
+		/**
+		 * Replays the operations.
+		 */
+		public void run() {
+			try {
+				start.await();
+				for (int i = 0; i < opsPerThread; i++) {
+					int op = pick();
+					int slot = random.nextInt(tokens.length);
+					int argument = random.nextInt(op == 1 || op == 2 ? titles : QUEUE_POSITIONS);
+					if (op != 0 && op != 1 && tokens[slot] == null) {
+						tokens[slot] = accounts.openSession(customerId(slot * threads + number), "pw");
+					}
+					long begin = System.nanoTime();
+					perform(op, slot, argument);
+					latencies[op].record(System.nanoTime() - begin);
+				}
+			} catch (Throwable t) {
+				failure = t;
+			} finally {
+				done.countDown();
+			}
+		}
+
+		/**
+		 * Performs one operation.
+		 * 
+		 * @param op
+		 *            position of the operation in OPERATIONS.
+		 * @param slot
+		 *            which of this worker's customers it is for.
+		 * @param argument
+		 *            inventory offset or position, or queue position.
+		 */
+		private void perform(int op, int slot, int argument) {
+			if (op == 0) {
+				accounts.closeSession(tokens[slot]);
+				tokens[slot] = accounts.openSession(customerId(slot * threads + number), "pw");
+				return;
+			}
+			if (op == 1) {
+				rentals.showInventory(argument, PAGE_SIZE);
+				return;
+			}
+			RentalManager session = accounts.getRentalManager(tokens[slot]);
+			try {
+				if (op == 2) {
+					session.addToCustomerQueue(argument);
+				} else if (op == 3) {
+					session.reserveMoveAheadOne(argument);
+				} else if (op == 4) {
+					session.removeSelectedFromReserves(argument);
+				} else {
+					session.returnItemToInventory(argument);
+				}
+			} catch (IllegalArgumentException e) {
+				misses++;
+			}
+		}
+
+		/**
+		 * Draws an operation according to the mix.
+		 * 
+		 * @return position of the operation in OPERATIONS.
+		 */
+		private int pick() {
+			int r = random.nextInt(cumulative[OPERATIONS.length - 1]);
+			int op = 0;
+			while (r >= cumulative[op]) {
+				op++;
+			}
+			return op;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package edu.ncsu.csc216.flix_2.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import edu.ncsu.csc216.flix_2.inventory.BinaryCatalog;
+import edu.ncsu.csc216.flix_2.inventory.MovieDB;
+
+/**
+ * Measures how long it takes to build a MovieDB from synthetic inventory files
+ * of 10k, 100k and 1M titles, with the single-threaded reader, with the
+ * memory-mapped parallel loader, and from the same titles converted to a
+ * {@link BinaryCatalog}, along with the heap each database keeps. Other sizes
+ * can be given as program arguments.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class MovieDBLoadBenchmark {
+
+	/**
+	 * Catalog sizes measured when no arguments are given.
+	 */
+	private static final int[] DEFAULT_SIZES = { 10000, 100000, 1000000 };
+
+	/**
+	 * Number of untimed loads run before measuring each size.
+	 */
+	private static final int WARMUP_LOADS = 2;
+
+	/**
+	 * Number of timed loads for each size.
+	 */
+	private static final int MEASURED_LOADS = 5;
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            catalog sizes to load; defaults to 10k, 100k and 1M.
+	 * @throws IOException
+	 *             if a synthetic catalog cannot be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		int[] sizes = DEFAULT_SIZES;
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		for (int size : sizes) {
+			File file = SyntheticCatalog.createTempCatalog(size);
+			File binary = File.createTempFile("catalog", ".bin");
+			BinaryCatalog.convert(file.getPath(), binary.getPath());
+			for (int i = 0; i < WARMUP_LOADS; i++) {
+				new MovieDB(file.getPath());
+				new MovieDB(file.getPath(), pool);
+				new MovieDB(binary.getPath());
+			}
+			report(size, "reader", measure(file, null), retained(file, null));
+			report(size, "mapped, " + pool.getParallelism() + " threads", measure(file, pool), retained(file, pool));
+			report(size, "binary", measure(binary, null), retained(binary, null));
+			file.delete();
+			binary.delete();
+		}
+	}
+
+	/**
+	 * Times MEASURED_LOADS loads of the file.
+	 * 
+	 * @param file
+	 *            inventory file to load.
+	 * @param pool
+	 *            pool for the mapped parallel loader, or null to use the
+	 *            single-threaded reader.
+	 * @return best and total time of the loads, in nanoseconds.
+	 */
+	private static long[] measure(File file, ForkJoinPool pool) {
+		long best = Long.MAX_VALUE;
+		long total = 0;
+		for (int i = 0; i < MEASURED_LOADS; i++) {
+			long start = System.nanoTime();
+			if (pool == null) {
+				new MovieDB(file.getPath());
+			} else {
+				new MovieDB(file.getPath(), pool);
+			}
+			long elapsed = System.nanoTime() - start;
+			best = Math.min(best, elapsed);
+			total += elapsed;
+		}
+		return new long[] { best, total };
+	}
+
+	/**
+	 * Measures the heap a loaded database keeps, as the growth of the used
+	 * heap after a collection.
+	 * 
+	 * @param file
+	 *            inventory file to load.
+	 * @param pool
+	 *            pool for the mapped parallel loader, or null to use the
+	 *            single-threaded reader.
+	 * @return bytes of heap kept by the database.
+	 */
+	private static long retained(File file, ForkJoinPool pool) {
+		long before = usedHeap();
+		MovieDB inventory = pool == null ? new MovieDB(file.getPath()) : new MovieDB(file.getPath(), pool);
+		long after = usedHeap();
+		if (inventory.size() == 0) {
+			throw new IllegalStateException();
+		}
+		return after - before;
+	}
+
+	/**
+	 * Returns the heap in use after asking for a few collections.
+	 * 
+	 * @return bytes of heap in use.
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Prints one result line.
+	 * 
+	 * @param size
+	 *            number of titles loaded.
+	 * @param mode
+	 *            loading mode that was measured.
+	 * @param times
+	 *            best and total time of the loads, in nanoseconds.
+	 * @param heap
+	 *            bytes of heap kept by the database.
+	 */
+	private static void report(int size, String mode, long[] times, long heap) {
+		System.out.printf("%,10d titles, %-20s best %8.1f ms, mean %8.1f ms, heap %7.1f MB%n", size, mode, times[0] / 1e6,
+				times[1] / 1e6 / MEASURED_LOADS, heap / 1e6);
+	}
+}
@@ -0,0 +1,233 @@
+package edu.ncsu.csc216.flix_2.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.Scanner;
+
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+import edu.ncsu.csc216.flix_2.inventory.MovieLineParser;
+
+/**
+ * Compares the hand-written inventory line parser against the Scanner-based
+ * parsing that Movie(String) used to do. Both parsers are first checked to
+ * agree on every generated line.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class MovieParseBenchmark {
+
+	/**
+	 * Number of synthetic lines parsed per round.
+	 */
+	private static final int LINES = 200000;
+
+	/**
+	 * Number of untimed rounds run before measuring.
+	 */
+	private static final int WARMUP_ROUNDS = 3;
+
+	/**
+	 * Number of timed rounds.
+	 */
+	private static final int MEASURED_ROUNDS = 5;
+
+	/**
+	 * Keeps results reachable so the parsing cannot be optimized away.
+	 */
+	private static int sink;
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            not used.
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(SyntheticCatalog.DEFAULT_SEED);
+		String[] lines = new String[LINES];
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < LINES; i++) {
+			builder.setLength(0);
+			SyntheticCatalog.appendLine(builder, random, i);
+			lines[i] = builder.toString();
+		}
+		ByteBuffer bytes = ByteBuffer.wrap(join(lines).getBytes(Charset.forName("UTF-8")));
+
+		for (String line : lines) {
+			String expected = scannerParse(line);
+			Movie parsed = MovieLineParser.parse(line);
+			if (!expected.equals(parsed.getName())) {
+				throw new IllegalStateException("Parsers disagree on: " + line);
+			}
+		}
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			runScanner(lines);
+			runCharSequence(lines);
+			runBytes(bytes);
+		}
+		report("Scanner (original Movie(String))", measureScanner(lines));
+		report("MovieLineParser, CharSequence", measureCharSequence(lines));
+		report("MovieLineParser, byte range", measureBytes(bytes));
+		System.out.println("(checksum " + sink + ")");
+	}
+
+	/**
+	 * Joins the lines with newlines into one string.
+	 * 
+	 * @param lines
+	 *            lines to join.
+	 * @return the joined lines.
+	 */
+	private static String join(String[] lines) {
+		StringBuilder joined = new StringBuilder();
+		for (String line : lines) {
+			joined.append(line).append('\n');
+		}
+		return joined.toString();
+	}
+
+	/**
+	 * Times the Scanner-based parser.
+	 * 
+	 * @param lines
+	 *            lines to parse.
+	 * @return best time of the measured rounds, in nanoseconds.
+	 */
+	private static long measureScanner(String[] lines) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			long start = System.nanoTime();
+			runScanner(lines);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	/**
+	 * Times the CharSequence parser.
+	 * 
+	 * @param lines
+	 *            lines to parse.
+	 * @return best time of the measured rounds, in nanoseconds.
+	 */
+	private static long measureCharSequence(String[] lines) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			long start = System.nanoTime();
+			runCharSequence(lines);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	/**
+	 * Times the byte range parser.
+	 * 
+	 * @param bytes
+	 *            newline separated lines to parse.
+	 * @return best time of the measured rounds, in nanoseconds.
+	 */
+	private static long measureBytes(ByteBuffer bytes) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			long start = System.nanoTime();
+			runBytes(bytes);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	/**
+	 * Parses every line with the Scanner-based parser.
+	 * 
+	 * @param lines
+	 *            lines to parse.
+	 */
+	private static void runScanner(String[] lines) {
+		for (String line : lines) {
+			sink += scannerParse(line).length();
+		}
+	}
+
+	/**
+	 * Parses every line with the CharSequence parser.
+	 * 
+	 * @param lines
+	 *            lines to parse.
+	 */
+	private static void runCharSequence(String[] lines) {
+		for (String line : lines) {
+			sink += MovieLineParser.parse(line).getName().length();
+		}
+	}
+
+	/**
+	 * Parses every line of the buffer with the byte range parser.
+	 * 
+	 * @param bytes
+	 *            newline separated lines to parse.
+	 */
+	private static void runBytes(ByteBuffer bytes) {
+		int start = 0;
+		int limit = bytes.limit();
+		for (int i = 0; i < limit; i++) {
+			if (bytes.get(i) == '\n') {
+				sink += MovieLineParser.parse(bytes, start, i).getName().length();
+				start = i + 1;
+			}
+		}
+	}
+
+	/**
+	 * Prints one result line.
+	 * 
+	 * @param name
+	 *            name of the parser.
+	 * @param nanos
+	 *            best time in nanoseconds.
+	 */
+	private static void report(String name, long nanos) {
+		System.out.printf("%-34s %8.1f ms  %6.0f ns/line%n", name, nanos / 1e6, (double) nanos / LINES);
+	}
+
+	/**
+	 * The title parsing Movie(String) did before MovieLineParser, kept here as
+	 * the baseline.
+	 * 
+	 * @param line
+	 *            line to parse.
+	 * @return title of the movie.
+	 */
+	private static String scannerParse(String line) {
+		String movieTitle;
+		Scanner console = new Scanner(line);
+		if (!console.hasNextInt()) {
+			console.close();
+			throw new IllegalArgumentException();
+		}
+		sink += console.nextInt();
+		if (!console.hasNext()) {
+			console.close();
+			throw new IllegalArgumentException();
+		}
+		movieTitle = console.next();
+		if (console.hasNextLine()) {
+			movieTitle += console.nextLine();
+			if (movieTitle.startsWith("A ") || movieTitle.startsWith("a ")) {
+				movieTitle = movieTitle.substring(2);
+			} else if (movieTitle.startsWith("An ") || movieTitle.startsWith("an ")) {
+				movieTitle = movieTitle.substring(3);
+			} else if (movieTitle.startsWith("The ") || movieTitle.startsWith("the ")) {
+				movieTitle = movieTitle.substring(4);
+			}
+		}
+		if (console.hasNext()) {
+			console.close();
+			throw new IllegalArgumentException();
+		}
+		console.close();
+		return movieTitle;
+	}
+}
@@ -0,0 +1,262 @@
+package edu.ncsu.csc216.flix_2.bench;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+import edu.ncsu.csc216.flix_2.server.RentalClient;
+import edu.ncsu.csc216.flix_2.server.RentalProtocolServer;
+
+/**
+ * Measures the binary rental protocol on loopback against the same work done
+ * in process. It starts a {@link RentalProtocolServer} in this JVM over a
+ * synthetic catalog, has every client thread log in as its own customer, and
+ * sends a mix of inventory pages, reserves, queue listings and returns three
+ * ways: as direct calls on the rental system, as blocking remote calls that
+ * wait for each reply, and as pipelined remote calls that queue a batch of
+ * requests before reading any reply. At the end it prints the operations per
+ * second of each.
+ * 
+ * Options, all optional: {@code -threads N} (client threads),
+ * {@code -operations N} (operations per thread and way), {@code -depth N}
+ * (requests per pipelined batch), {@code -titles N} and {@code -loops N}
+ * (server event loops).
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class ProtocolBenchmark {
+
+	/**
+	 * Names of the ways of calling, in the order they are run.
+	 */
+	private static final String[] MODES = { "in-process", "blocking", "pipelined" };
+
+	private int threads = 4;
+	private int operations = 200000;
+	private int depth = 64;
+	private int titles = 10000;
+	private int loops = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            options, see the class description.
+	 * @throws Exception
+	 *             if the catalog cannot be written, the server cannot start,
+	 *             or a client fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		ProtocolBenchmark bench = new ProtocolBenchmark();
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + args[i]);
+			}
+			int value = Integer.parseInt(args[i + 1]);
+			if (args[i].equals("-threads")) {
+				bench.threads = value;
+			} else if (args[i].equals("-operations")) {
+				bench.operations = value;
+			} else if (args[i].equals("-depth")) {
+				bench.depth = value;
+			} else if (args[i].equals("-titles")) {
+				bench.titles = value;
+			} else if (args[i].equals("-loops")) {
+				bench.loops = value;
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		bench.run();
+	}
+
+	/**
+	 * Starts the server, runs the clients each way, and prints the report.
+	 * 
+	 * @throws Exception
+	 *             if the server cannot start or a client fails.
+	 */
+	private void run() throws Exception {
+		File catalog = SyntheticCatalog.createTempCatalog(titles);
+		DVDRentalSystem store = new DVDRentalSystem(catalog.getPath());
+		catalog.delete();
+		MovieCustomerAccountSystem system = new MovieCustomerAccountSystem(store);
+		String admin = system.openSession(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN);
+		for (int i = 0; i < threads; i++) {
+			system.addNewCustomer(admin, "client" + i, "pw", 3);
+		}
+		system.closeSession(admin);
+		RentalProtocolServer server = new RentalProtocolServer(system, store);
+		server.start(new InetSocketAddress("127.0.0.1", 0), loops);
+		try {
+			InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+			System.out.printf(Locale.ROOT, "%d titles, %d client threads, %d operations per thread, pipeline depth %d, %d event loops%n",
+					titles, threads, operations, depth, loops);
+			System.out.printf(Locale.ROOT, "%-12s %12s %10s%n", "mode", "ops/s", "seconds");
+			for (int mode = 0; mode < MODES.length; mode++) {
+				Client[] clients = new Client[threads];
+				CountDownLatch start = new CountDownLatch(1);
+				CountDownLatch done = new CountDownLatch(threads);
+				for (int t = 0; t < threads; t++) {
+					clients[t] = new Client(system, address, t, mode, start, done);
+					new Thread(clients[t], "protocol-client-" + t).start();
+				}
+				long begin = System.nanoTime();
+				start.countDown();
+				done.await();
+				double seconds = (System.nanoTime() - begin) / 1e9;
+				for (Client client : clients) {
+					if (client.failure != null) {
+						throw new IllegalStateException("Client failed", client.failure);
+					}
+				}
+				System.out.printf(Locale.ROOT, "%-12s %12.0f %10.2f%n", MODES[mode], (double) threads * operations / seconds, seconds);
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * One client thread, logged in as its own customer.
+	 */
+	private class Client implements Runnable {
+
+		private final MovieCustomerAccountSystem system;
+		private final InetSocketAddress address;
+		private final int number;
+		private final int mode;
+		private final CountDownLatch start;
+		private final CountDownLatch done;
+		private volatile Throwable failure;
+
+		/**
+		 * Constructor, creates a client.
+		 * 
+		 * @param system
+		 *            account system, for the in-process calls.
+		 * @param address
+		 *            address of the server.
+		 * @param number
+		 *            number of the client and its customer.
+		 * @param mode
+		 *            position of the way of calling in MODES.
+		 * @param start
+		 *            released when the timed operations start.
+		 * @param done
+		 *            counted down when the client finishes.
+		 */
+		Client(MovieCustomerAccountSystem system, InetSocketAddress address, int number, int mode, CountDownLatch start,
+				CountDownLatch done) {
+			this.system = system;
+			this.address = address;
+			this.number = number;
+			this.mode = mode;
+			this.start = start;
+			this.done = done;
+		}
+
+		/**
+		 * Logs in, then runs the timed operations the client's way.
+		 */
+		public void run() {
+			try {
+				if (mode == 0) {
+					runInProcess();
+				} else {
+					RentalClient client = RentalClient.connect(address);
+					try {
+						runRemote(client);
+					} finally {
+						client.close();
+					}
+				}
+			} catch (Throwable t) {
+				failure = t;
+			} finally {
+				done.countDown();
+			}
+		}
+
+		/**
+		 * Runs the operations as direct calls on the rental system.
+		 * 
+		 * @throws InterruptedException
+		 *             if interrupted while waiting to start.
+		 */
+		private void runInProcess() throws InterruptedException {
+			String token = system.openSession("client" + number, "pw");
+			RentalManager rentals = system.getRentalManager(token);
+			Random random = new Random(number);
+			start.await();
+			for (int i = 0; i < operations; i++) {
+				try {
+					switch (i % 4) {
+					case 0:
+						rentals.showInventory(random.nextInt(titles), 20);
+						break;
+					case 1:
+						rentals.addToCustomerQueue(random.nextInt(titles));
+						break;
+					case 2:
+						rentals.traverseAtHomeQueue();
+						break;
+					default:
+						rentals.returnItemToInventory(0);
+					}
+				} catch (IllegalArgumentException e) {
+					// Nothing at home to return.
+				}
+			}
+			system.closeSession(token);
+		}
+
+		/**
+		 * Runs the operations over the protocol, waiting for each reply in
+		 * blocking mode or for each batch in pipelined mode.
+		 * 
+		 * @param client
+		 *            connection to the server.
+		 * @throws InterruptedException
+		 *             if interrupted while waiting to start.
+		 */
+		private void runRemote(RentalClient client) throws InterruptedException {
+			String token = client.openSession("client" + number, "pw").get();
+			Random random = new Random(number);
+			int batch = mode == 1 ? 1 : depth;
+			RentalClient.Reply<?>[] replies = new RentalClient.Reply<?>[batch];
+			start.await();
+			for (int i = 0; i < operations; i += batch) {
+				int count = Math.min(batch, operations - i);
+				for (int j = 0; j < count; j++) {
+					switch ((i + j) % 4) {
+					case 0:
+						replies[j] = client.showInventory(random.nextInt(titles), 20);
+						break;
+					case 1:
+						replies[j] = client.addToCustomerQueue(token, random.nextInt(titles));
+						break;
+					case 2:
+						replies[j] = client.traverseAtHomeQueue(token);
+						break;
+					default:
+						replies[j] = client.returnItemToInventory(token, 0);
+					}
+				}
+				for (int j = 0; j < count; j++) {
+					try {
+						replies[j].get();
+					} catch (IllegalArgumentException e) {
+						// Nothing at home to return.
+					}
+				}
+			}
+			client.closeSession(token).get();
+		}
+	}
+}
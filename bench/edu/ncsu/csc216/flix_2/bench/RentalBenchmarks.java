@@ -0,0 +1,459 @@
+package edu.ncsu.csc216.flix_2.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+import edu.ncsu.csc216.flix_2.customer.CustomerDB;
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+import edu.ncsu.csc216.flix_2.inventory.MovieDB;
+import edu.ncsu.csc216.flix_2.list_util.ArrayMultiPurposeList;
+import edu.ncsu.csc216.flix_2.list_util.GenericList;
+import edu.ncsu.csc216.flix_2.list_util.MultiPurposeList;
+
+/**
+ * JMH benchmarks of the hot paths of the list, catalog and rental code:
+ * <ul>
+ * <li>addToRear, lookAtItemN, remove and moveAheadOne on both list
+ * implementations at several sizes,</li>
+ * <li>building a MovieDB from synthetic inventory files,</li>
+ * <li>verifyCustomer and addNewCustomer on CustomerDB,</li>
+ * <li>a full reserve and returnDVD cycle on a Customer, with and without a
+ * backlog of unavailable movies in the reserve queue.</li>
+ * </ul>
+ * 
+ * Build with {@code mvn package} and run with
+ * {@code java -jar benchmarks/target/benchmarks.jar RentalBenchmarks -rf json}.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RentalBenchmarks {
+
+	/**
+	 * Number of precomputed random positions; a power of two.
+	 */
+	private static final int POSITIONS = 1024;
+
+	/**
+	 * Lists of both kinds at several sizes.
+	 */
+	@State(Scope.Thread)
+	public static class Lists {
+
+		/**
+		 * "linked" or "array".
+		 */
+		@Param({ "linked", "array" })
+		public String kind;
+
+		/**
+		 * Size of the full list.
+		 */
+		@Param({ "100", "1000", "10000" })
+		public int size;
+
+		/**
+		 * List holding the numbers from 0 up to the size.
+		 */
+		private GenericList<Integer> full;
+
+		/**
+		 * List that addToRear grows up to the size.
+		 */
+		private GenericList<Integer> growing;
+
+		/**
+		 * Random positions of the full list.
+		 */
+		private int[] positions;
+
+		/**
+		 * Random positions of the full list after the front.
+		 */
+		private int[] behindFront;
+
+		/**
+		 * Number of positions handed out.
+		 */
+		private int next;
+
+		/**
+		 * Creates the lists and positions.
+		 */
+		@Setup
+		public void setUp() {
+			full = newList(kind, size);
+			growing = newList(kind, 0);
+			positions = positions(0, size);
+			behindFront = positions(1, size);
+		}
+
+		/**
+		 * Returns the next random position of the full list.
+		 * 
+		 * @return the position.
+		 */
+		private int nextPosition() {
+			return positions[next++ & (POSITIONS - 1)];
+		}
+
+		/**
+		 * Returns the next random position of the full list after the front.
+		 * 
+		 * @return the position.
+		 */
+		private int nextBehindFront() {
+			return behindFront[next++ & (POSITIONS - 1)];
+		}
+	}
+
+	/**
+	 * A synthetic inventory file.
+	 */
+	@State(Scope.Benchmark)
+	public static class Catalog {
+
+		/**
+		 * Number of titles in the file.
+		 */
+		@Param({ "10000", "100000" })
+		public int titles;
+
+		/**
+		 * The inventory file.
+		 */
+		private File file;
+
+		/**
+		 * Writes the file.
+		 * 
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		@Setup
+		public void setUp() throws IOException {
+			file = SyntheticCatalog.createTempCatalog(titles);
+		}
+
+		/**
+		 * Deletes the file.
+		 */
+		@TearDown
+		public void tearDown() {
+			file.delete();
+		}
+	}
+
+	/**
+	 * A full customer database, and the usernames to fill another one with.
+	 */
+	@State(Scope.Thread)
+	public static class Customers {
+
+		/**
+		 * Number of customers in the full database.
+		 */
+		@Param({ "1000", "100000" })
+		public int customers;
+
+		/**
+		 * Database holding every customer.
+		 */
+		private CustomerDB full;
+
+		/**
+		 * Usernames of random customers in the full database.
+		 */
+		private String[] picks;
+
+		/**
+		 * Number of picks handed out.
+		 */
+		private int nextPick;
+
+		/**
+		 * Database that addNewCustomer grows up to the full size.
+		 */
+		private CustomerDB growing;
+
+		/**
+		 * Every username, in random order.
+		 */
+		private String[] ids;
+
+		/**
+		 * Number of usernames added to the growing database.
+		 */
+		private int nextId;
+
+		/**
+		 * Fills the full database and shuffles the usernames.
+		 */
+		@Setup
+		public void setUp() {
+			full = new CustomerDB();
+			ids = new String[customers];
+			for (int i = 0; i < customers; i++) {
+				ids[i] = customerId(i);
+				full.addNewCustomer(ids[i], "pw", 2);
+			}
+			picks = new String[POSITIONS];
+			int[] numbers = positions(0, customers);
+			for (int i = 0; i < POSITIONS; i++) {
+				picks[i] = ids[numbers[i]];
+			}
+			Random random = new Random(SyntheticCatalog.DEFAULT_SEED);
+			for (int i = customers - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				String swap = ids[i];
+				ids[i] = ids[j];
+				ids[j] = swap;
+			}
+			growing = new CustomerDB();
+		}
+	}
+
+	/**
+	 * A customer with a backlog of unavailable movies in the reserve queue,
+	 * and available movies to reserve.
+	 */
+	@State(Scope.Thread)
+	public static class Rentals {
+
+		/**
+		 * Number of unavailable movies in the reserve queue.
+		 */
+		@Param({ "0", "100" })
+		public int backlog;
+
+		/**
+		 * The customer.
+		 */
+		private Customer customer;
+
+		/**
+		 * Movies with a copy in stock.
+		 */
+		private Movie[] available;
+
+		/**
+		 * Number of movies handed out.
+		 */
+		private int next;
+
+		/**
+		 * Builds the catalog and fills the reserve queue.
+		 * 
+		 * @throws IOException
+		 *             if the catalog cannot be written.
+		 */
+		@Setup
+		public void setUp() throws IOException {
+			File file = SyntheticCatalog.createTempCatalog(2 * (backlog + POSITIONS));
+			MovieDB db = new MovieDB(file.getPath());
+			file.delete();
+			customer = new Customer("bench", "pw", 1);
+			available = new Movie[POSITIONS];
+			int found = 0;
+			int queued = 0;
+			for (int i = 0; i < db.size() && (found < POSITIONS || queued < backlog); i++) {
+				Movie movie = db.findItemAt(i);
+				if (queued < backlog) {
+					while (movie.tryRemoveOneCopy()) {
+						// Take every copy so the movie stays unavailable
+					}
+					customer.reserve(movie);
+					queued++;
+				} else if (movie.isAvailable()) {
+					available[found++] = movie;
+				}
+			}
+			if (found < POSITIONS) {
+				throw new IllegalStateException("Catalog has too few available movies.");
+			}
+		}
+	}
+
+	/**
+	 * Appends to a list until it reaches the size, then starts over with a
+	 * new list.
+	 * 
+	 * @param lists
+	 *            the lists.
+	 * @return size of the list.
+	 */
+	@Benchmark
+	public int addToRear(Lists lists) {
+		if (lists.growing.size() == lists.size) {
+			lists.growing = newList(lists.kind, 0);
+		}
+		lists.growing.addToRear(Integer.valueOf(216));
+		return lists.growing.size();
+	}
+
+	/**
+	 * Looks at the element at a random position of a full list.
+	 * 
+	 * @param lists
+	 *            the lists.
+	 * @return the element.
+	 */
+	@Benchmark
+	public Integer lookAtItemN(Lists lists) {
+		return lists.full.lookAtItemN(lists.nextPosition());
+	}
+
+	/**
+	 * Removes the element at a random position of a full list and puts it
+	 * back, so the size stays the same.
+	 * 
+	 * @param lists
+	 *            the lists.
+	 * @return the element removed.
+	 */
+	@Benchmark
+	public Integer removeAndAddItem(Lists lists) {
+		int position = lists.nextPosition();
+		Integer removed = lists.full.remove(position);
+		lists.full.addItem(position, removed);
+		return removed;
+	}
+
+	/**
+	 * Moves the element at a random position of a full list ahead one.
+	 * 
+	 * @param lists
+	 *            the lists.
+	 * @return size of the list.
+	 */
+	@Benchmark
+	public int moveAheadOne(Lists lists) {
+		lists.full.moveAheadOne(lists.nextBehindFront());
+		return lists.full.size();
+	}
+
+	/**
+	 * Builds a MovieDB from a synthetic inventory file.
+	 * 
+	 * @param catalog
+	 *            the inventory file.
+	 * @return the MovieDB.
+	 */
+	@Benchmark
+	public MovieDB loadCatalog(Catalog catalog) {
+		return new MovieDB(catalog.file.getPath());
+	}
+
+	/**
+	 * Logs in a random customer of a full customer database.
+	 * 
+	 * @param customers
+	 *            the databases.
+	 * @return the customer.
+	 */
+	@Benchmark
+	public Customer verifyCustomer(Customers customers) {
+		return customers.full.verifyCustomer(customers.picks[customers.nextPick++ & (POSITIONS - 1)], "pw");
+	}
+
+	/**
+	 * Adds a customer to a database until it holds every username, then
+	 * starts over with a new database.
+	 * 
+	 * @param customers
+	 *            the databases.
+	 * @return number of customers added to the database.
+	 */
+	@Benchmark
+	public int addNewCustomer(Customers customers) {
+		if (customers.nextId == customers.customers) {
+			customers.growing = new CustomerDB();
+			customers.nextId = 0;
+		}
+		customers.growing.addNewCustomer(customers.ids[customers.nextId++], "pw", 2);
+		return customers.nextId;
+	}
+
+	/**
+	 * Reserves an available movie, which the customer checks out at once, and
+	 * returns it. The reserve queue can hold unavailable movies ahead of it,
+	 * which every checkout has to skip.
+	 * 
+	 * @param rentals
+	 *            the customer and movies.
+	 * @return number of movies reserved.
+	 */
+	@Benchmark
+	public int reserveAndReturn(Rentals rentals) {
+		rentals.customer.reserve(rentals.available[rentals.next++ & (POSITIONS - 1)]);
+		rentals.customer.returnDVD(0);
+		return rentals.next;
+	}
+
+	/**
+	 * Creates a list of the given kind holding the numbers from 0 up to the
+	 * given size.
+	 * 
+	 * @param kind
+	 *            "linked" or "array".
+	 * @param size
+	 *            number of elements.
+	 * @return the new list.
+	 */
+	private static GenericList<Integer> newList(String kind, int size) {
+		GenericList<Integer> list = kind.equals("linked") ? new MultiPurposeList<Integer>() : new ArrayMultiPurposeList<Integer>();
+		for (int i = 0; i < size; i++) {
+			list.addToRear(Integer.valueOf(i));
+		}
+		return list;
+	}
+
+	/**
+	 * Creates a fixed sequence of random positions.
+	 * 
+	 * @param from
+	 *            lowest position, inclusive.
+	 * @param to
+	 *            highest position, exclusive.
+	 * @return POSITIONS random positions in the range.
+	 */
+	private static int[] positions(int from, int to) {
+		Random random = new Random(SyntheticCatalog.DEFAULT_SEED);
+		int[] positions = new int[POSITIONS];
+		for (int i = 0; i < POSITIONS; i++) {
+			positions[i] = from + random.nextInt(to - from);
+		}
+		return positions;
+	}
+
+	/**
+	 * Returns the username of the customer with the given number.
+	 * 
+	 * @param number
+	 *            number of the customer.
+	 * @return username of the customer.
+	 */
+	private static String customerId(int number) {
+		return "customer" + number + "@ncsu.edu";
+	}
+}
@@ -0,0 +1,110 @@
+package edu.ncsu.csc216.flix_2.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generates synthetic inventory files in the same format as movies-alt.txt:
+ * one movie per line, a stock count followed by one or more spaces and the
+ * title, with an optional leading article and Windows line endings.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class SyntheticCatalog {
+
+	/**
+	 * Words titles are built from.
+	 */
+	private static final String[] WORDS = { "Beasts", "Southern", "Wild", "Promised", "Land", "Impossible", "Jack", "Reacher", "Amour",
+			"Side", "Effects", "Safe", "Haven", "Murder", "Last", "Stand", "Lincoln", "Hurt", "Locker", "Amazing", "Spider-Man", "Life",
+			"Know", "Despicable", "Hansel", "Gretel", "Witch", "Hunters", "Waiting", "Superman", "Country", "Old", "Men", "North", "Northwest",
+			"Notebook", "Beauty", "Gangster", "President's", "Night", "Day", "King", "Queen", "River", "Mountain", "City", "Dark", "Light",
+			"Return", "Rise", "Fall", "Silent", "Lost", "Found", "Secret", "Garden", "Star", "Moon", "Sun", "Ocean", "Storm", "Fire", "Ice" };
+
+	/**
+	 * Articles that the inventory parser strips from the front of titles.
+	 */
+	private static final String[] ARTICLES = { "The ", "A ", "An " };
+
+	/**
+	 * Seed used when none is given, so runs are repeatable.
+	 */
+	public static final long DEFAULT_SEED = 216L;
+
+	/**
+	 * Writes a synthetic inventory file with the given number of titles.
+	 * 
+	 * @param file
+	 *            file to write.
+	 * @param titles
+	 *            number of titles to write.
+	 * @param seed
+	 *            seed for the random generator.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public static void write(File file, int titles, long seed) throws IOException {
+		Random random = new Random(seed);
+		BufferedWriter out = new BufferedWriter(new FileWriter(file), 1 << 16);
+		try {
+			StringBuilder line = new StringBuilder();
+			for (int i = 0; i < titles; i++) {
+				line.setLength(0);
+				appendLine(line, random, i);
+				out.write(line.toString());
+				out.write("\r\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Creates a temporary inventory file with the given number of titles. The
+	 * file is deleted when the virtual machine exits.
+	 * 
+	 * @param titles
+	 *            number of titles to write.
+	 * @return the temporary file.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public static File createTempCatalog(int titles) throws IOException {
+		File file = File.createTempFile("movies-" + titles + "-", ".txt");
+		file.deleteOnExit();
+		write(file, titles, DEFAULT_SEED);
+		return file;
+	}
+
+	/**
+	 * Appends one inventory line, without a line ending, to the builder.
+	 * 
+	 * @param line
+	 *            builder to append to.
+	 * @param random
+	 *            random generator used to pick the stock and title.
+	 * @param number
+	 *            position of the line in the file, used to keep titles varied.
+	 */
+	static void appendLine(StringBuilder line, Random random, int number) {
+		line.append(random.nextInt(7));
+		int spaces = 1 + random.nextInt(3);
+		for (int i = 0; i < spaces; i++) {
+			line.append(' ');
+		}
+		if (random.nextInt(5) == 0) {
+			line.append(ARTICLES[random.nextInt(ARTICLES.length)]);
+		}
+		int words = 1 + random.nextInt(4);
+		for (int i = 0; i < words; i++) {
+			if (i > 0) {
+				line.append(' ');
+			}
+			line.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		line.append(' ').append(Integer.toString(number, 36));
+	}
+}
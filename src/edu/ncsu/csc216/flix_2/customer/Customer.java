@@ -1,13 +1,23 @@
 package edu.ncsu.csc216.flix_2.customer;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import edu.ncsu.csc216.flix_2.inventory.Movie;
-import edu.ncsu.csc216.flix_2.list_util.MultiPurposeList;
+import edu.ncsu.csc216.flix_2.list_util.ArrayMultiPurposeList;
+import edu.ncsu.csc216.flix_2.list_util.GenericList;
 
 /**
  * This class is the customer object. It holds the current state of any given
  * customer including username, password, max number of movies at home, number
  * of movies currently at home, movies in this customer's reserve queue, and the
- * movies in this customer's queue at home.
+ * movies in this customer's queue at home. Operations on the queues are
+ * synchronized, so one customer can be used from more than one session.
+ * Every change to the queues is reported to the customer's listener, if it
+ * has one, while the customer is still locked, and made only once the
+ * listener has synced it; if the listener throws, the queues and the
+ * inventory are left as they were. A closed account takes no more reserves
+ * or copies.
  * 
  * @author Eric Matysek, Nick Brust
  * 
@@ -37,12 +47,28 @@ public class Customer {
 	/**
 	 * A list of movie objects the customer currently has at home.
 	 */
-	private MultiPurposeList<Movie> atHomeQueue;
+	private GenericList<Movie> atHomeQueue;
+
+	/**
+	 * The movie objects the customer currently has on reserve.
+	 */
+	private ReserveQueue reserveQueue;
 
 	/**
-	 * A list of movie objects the customer currently has on reserve.
+	 * Told about every change to the queues, or null if nobody is listening.
 	 */
-	private MultiPurposeList<Movie> reserveQueue;
+	private volatile CustomerListener listener;
+
+	/**
+	 * True once the account is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Copies taken out of the inventory for checkouts the listener refused,
+	 * put back once the customer is unlocked, or null if there are none.
+	 */
+	private List<Movie> refused;
 
 	/**
 	 * Constructs a new Customer object given the username, passworde, and max
@@ -60,10 +86,37 @@ public class Customer {
 	 *            any given time.
 	 */
 	public Customer(String id, String password, int maxAtHome) {
+		this(id, password, maxAtHome, new ArrayMultiPurposeList<Movie>(), new ArrayMultiPurposeList<Movie>());
+	}
+
+	/**
+	 * Constructs a new Customer object the same way as
+	 * {@link #Customer(String, String, int)}, but holds the at home and reserve
+	 * queues in the given lists.
+	 * 
+	 * @param id
+	 *            The username for the customer.
+	 * @param password
+	 *            The password for the customer.
+	 * @param maxAtHome
+	 *            The maximum allowed movies this customer can have at home at
+	 *            any given time.
+	 * @param atHomeQueue
+	 *            Empty list used to hold the movies the customer has at home.
+	 * @param reserveQueue
+	 *            Empty list used to hold the movies the customer has on
+	 *            reserve.
+	 * @throws IllegalArgumentException
+	 *             if either list is null or not empty.
+	 */
+	public Customer(String id, String password, int maxAtHome, GenericList<Movie> atHomeQueue, GenericList<Movie> reserveQueue) {
 
 		if (id == null || password == null) {
 			throw new IllegalArgumentException();
 		}
+		if (atHomeQueue == null || !atHomeQueue.isEmpty() || reserveQueue == null || !reserveQueue.isEmpty()) {
+			throw new IllegalArgumentException();
+		}
 
 		String trimmedId = id.trim();
 		String trimmedPassword = password.trim();
@@ -81,8 +134,8 @@ public class Customer {
 		this.password = trimmedPassword;
 		this.maxAtHome = checkedMax;
 		this.nowAtHome = 0;
-		this.atHomeQueue = new MultiPurposeList<Movie>();
-		this.reserveQueue = new MultiPurposeList<Movie>();
+		this.atHomeQueue = atHomeQueue;
+		this.reserveQueue = new ReserveQueue(reserveQueue);
 	}
 
 	/**
@@ -105,6 +158,78 @@ public class Customer {
 		return this.id;
 	}
 
+	/**
+	 * Returns the number of movies in this customer's reserve queue.
+	 * 
+	 * @return Number of movies on reserve.
+	 */
+	public synchronized int getReserveCount() {
+		return this.reserveQueue.size();
+	}
+
+	/**
+	 * Returns the number of movies this customer currently has at home.
+	 * 
+	 * @return Number of movies at home.
+	 */
+	public synchronized int getAtHomeCount() {
+		return this.nowAtHome;
+	}
+
+	/**
+	 * Returns the movies in this customer's reserve queue, front first.
+	 * 
+	 * @return Copy of the reserve queue.
+	 */
+	public synchronized List<Movie> getReservedMovies() {
+		List<Movie> reserved = new ArrayList<Movie>(this.reserveQueue.size());
+		for (Movie movie : this.reserveQueue) {
+			reserved.add(movie);
+		}
+		return reserved;
+	}
+
+	/**
+	 * Returns the movies this customer currently has at home, in the order
+	 * they were checked out.
+	 * 
+	 * @return Copy of the at home queue.
+	 */
+	public synchronized List<Movie> getAtHomeMovies() {
+		List<Movie> atHome = new ArrayList<Movie>(this.atHomeQueue.size());
+		for (Movie movie : this.atHomeQueue) {
+			atHome.add(movie);
+		}
+		return atHome;
+	}
+
+	/**
+	 * Describes this customer as the listener calls that would create
+	 * it from nothing: the new account, then a reserve and a checkout for
+	 * every movie at home, in order, then a reserve for every movie in the
+	 * reserve queue. The customer stays locked for all of the calls, so they
+	 * describe one moment in the customer's life.
+	 * 
+	 * @param target
+	 *            Where the customer is described, often a listener.
+	 * @return True if the customer was described, false if the account is
+	 *         closed.
+	 */
+	public synchronized boolean describeTo(CustomerDescriber target) {
+		if (this.closed) {
+			return false;
+		}
+		target.accountAdded(this.id, this.password, this.maxAtHome);
+		for (Movie movie : this.atHomeQueue) {
+			target.reserved(this.id, movie);
+			target.checkedOut(this.id, movie);
+		}
+		for (Movie movie : this.reserveQueue) {
+			target.reserved(this.id, movie);
+		}
+		return true;
+	}
+
 	/**
 	 * Compares the given customer's username to this customer's username. If
 	 * the two usernames are the same, 0 is returned; a value less than 0 if
@@ -130,7 +255,7 @@ public class Customer {
 	 * 
 	 * @return list of movie names in this customer's reserve queue.
 	 */
-	public String traverseReserveQueue() {
+	public synchronized String traverseReserveQueue() {
 		return this.traverseQueue(this.reserveQueue);
 	}
 
@@ -140,24 +265,42 @@ public class Customer {
 	 * 
 	 * @return list of movie names that this customer currently has at home.
 	 */
-	public String traverseAtHomeQueue() {
+	public synchronized String traverseAtHomeQueue() {
 		return this.traverseQueue(this.atHomeQueue);
 	}
 
 	/**
-	 * Unreserves all movies in the reserve queue and returns all movies at
-	 * home.
+	 * Unreserves all movies in the reserve queue and takes all movies out of
+	 * the at home queue. The listener is told the account is cancelled before
+	 * anything changes, and later changes are no longer reported to it. The
+	 * caller syncs the listener and returns the copies of the movies that were
+	 * at home to the inventory, once this customer is no longer locked.
+	 * 
+	 * @return The movies that were at home.
 	 */
-	public void closeAccount() {
-		/*
-		while (this.reserveQueue.size() > 0) {
-			this.unReserve(0);
+	public synchronized List<Movie> closeAccount() {
+		CustomerListener l = this.listener;
+		if (l != null) {
+			l.accountCancelled(this.id);
 		}
-		*/
+		this.listener = null;
+		this.closed = true;
+		this.reserveQueue.clear();
+		List<Movie> atHome = new ArrayList<Movie>(this.atHomeQueue.size());
 		while (this.atHomeQueue.size() > 0) {
-			this.atHomeQueue.remove(0);
+			atHome.add(this.atHomeQueue.remove(0));
 		}
+		this.nowAtHome = 0;
+		return atHome;
+	}
 
+	/**
+	 * Tells whether the account is closed.
+	 * 
+	 * @return True if the account is closed.
+	 */
+	public synchronized boolean isClosed() {
+		return this.closed;
 	}
 
 	/**
@@ -168,16 +311,84 @@ public class Customer {
 	 *            index of the DVD to return.
 	 * @throws IllegalArgumentException
 	 *             if the index given is out of bounds.
+	 * @return The movie checked out from the reserve queue, or null if none
+	 *         was.
 	 */
-	public void returnDVD(int index) {
-		if (index < 0 || index > (this.atHomeQueue.size() - 1)) {
-			throw new IllegalArgumentException("Index given is out of bounds.");
+	public Movie returnDVD(int index) {
+		Movie returnMovie;
+		synchronized (this) {
+			if (index < 0 || index > (this.atHomeQueue.size() - 1)) {
+				throw new IllegalArgumentException("Index given is out of bounds.");
+			}
+			CustomerListener l = this.listener;
+			if (l != null) {
+				l.returned(this.id, index);
+				l.sync();
+			}
+			returnMovie = this.atHomeQueue.remove(index);
+			this.nowAtHome--;
 		}
-		Movie returnMovie = this.atHomeQueue.lookAtItemN(index);
-		this.atHomeQueue.remove(index);
+		// Not locked, as the copy may be handed to another waiting customer
 		returnMovie.backToInventory();
-		this.nowAtHome--;
-		this.checkOut();
+		try {
+			synchronized (this) {
+				return this.checkOut();
+			}
+		} catch (RuntimeException e) {
+			this.putBackRefused();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the DVDs at the specified indexes to the movie inventory in one
+	 * pass over the at home queue, then checks out up to one movie from the
+	 * reserve for each DVD returned. The checkouts come after all the copies
+	 * are back, so they may pick different movies than returning the DVDs one
+	 * at a time would, but never more of them.
+	 * 
+	 * @param indexes
+	 *            indexes of the DVDs to return, in strictly ascending order.
+	 * @throws IllegalArgumentException
+	 *             if the indexes are not strictly ascending or any is out of
+	 *             bounds, in which case nothing is returned.
+	 * @return The movies checked out from the reserve queue.
+	 */
+	public List<Movie> returnDVDs(int[] indexes) {
+		List<Movie> returned;
+		synchronized (this) {
+			checkIndexes(indexes, this.atHomeQueue.size(), "Index given is out of bounds.");
+			CustomerListener l = this.listener;
+			if (l != null) {
+				for (int i = 0; i < indexes.length; i++) {
+					// Each index as it is once the earlier DVDs are gone
+					l.returned(this.id, indexes[i] - i);
+				}
+				l.sync();
+			}
+			returned = this.atHomeQueue.removeAll(indexes);
+			this.nowAtHome -= returned.size();
+		}
+		// Not locked, as the copies may be handed to other waiting customers
+		for (Movie movie : returned) {
+			movie.backToInventory();
+		}
+		List<Movie> checkedOut = new ArrayList<Movie>();
+		try {
+			synchronized (this) {
+				for (int i = 0; i < returned.size(); i++) {
+					Movie movie = this.checkOut();
+					if (movie == null) {
+						break;
+					}
+					checkedOut.add(movie);
+				}
+			}
+		} catch (RuntimeException e) {
+			this.putBackRefused();
+			throw e;
+		}
+		return checkedOut;
 	}
 
 	/**
@@ -189,15 +400,19 @@ public class Customer {
 	 * @throws IllegalArgumentException
 	 *             if the index given is out of bounds.
 	 */
-	public void moveAheadOneInReserves(int index) {
+	public synchronized void moveAheadOneInReserves(int index) {
 		if (index < 0 || index > (this.reserveQueue.size() - 1)) {
 			throw new IllegalArgumentException("Index given is out of bounds.");
 		}
 		if (index == 0) {
 			return;
 		}
+		CustomerListener l = this.listener;
+		if (l != null) {
+			l.movedAheadOne(this.id, index);
+			l.sync();
+		}
 		this.reserveQueue.moveAheadOne(index);
-
 	}
 
 	/**
@@ -208,12 +423,41 @@ public class Customer {
 	 *            Index of the movie to be removed from the reserve queue.
 	 * @throws IllegalArgumentException
 	 *             if the index given is out of bounds.
+	 * @return The movie that was removed.
 	 */
-	public void unReserve(int index) {
+	public synchronized Movie unReserve(int index) {
 		if (index < 0 || index > (this.reserveQueue.size() - 1)) {
 			throw new IllegalArgumentException("No movie selected.");
 		}
-		this.reserveQueue.remove(index);
+		CustomerListener l = this.listener;
+		if (l != null) {
+			l.unreserved(this.id, index);
+			l.sync();
+		}
+		return this.reserveQueue.remove(index);
+	}
+
+	/**
+	 * Removes the movies at the given indexes from the reserve queue in one
+	 * pass.
+	 * 
+	 * @param indexes
+	 *            Indexes of the movies, in strictly ascending order.
+	 * @throws IllegalArgumentException
+	 *             if the indexes are not strictly ascending or any is out of
+	 *             bounds, in which case nothing is removed.
+	 * @return The movies that were removed, in queue order.
+	 */
+	public synchronized List<Movie> unReserveAll(int[] indexes) {
+		checkIndexes(indexes, this.reserveQueue.size(), "No movie selected.");
+		CustomerListener l = this.listener;
+		if (l != null) {
+			for (int i = 0; i < indexes.length; i++) {
+				l.unreserved(this.id, indexes[i] - i);
+			}
+			l.sync();
+		}
+		return this.reserveQueue.removeAll(indexes);
 	}
 
 	/**
@@ -225,13 +469,115 @@ public class Customer {
 	 *            Movie to be reserved.
 	 * @throws IllegalArgumentException
 	 *             if the Movie object given is null.
+	 * @throws IllegalStateException
+	 *             if the account is closed.
 	 */
 	public void reserve(Movie movie) {
-		if (movie == null) {
-			throw new IllegalArgumentException("Movie not specified.");
+		try {
+			synchronized (this) {
+				if (movie == null) {
+					throw new IllegalArgumentException("Movie not specified.");
+				}
+				if (this.closed) {
+					throw new IllegalStateException("The account is closed.");
+				}
+				CustomerListener l = this.listener;
+				if (l != null) {
+					l.reserved(this.id, movie);
+					l.sync();
+				}
+				this.reserveQueue.addToRear(movie);
+				this.checkOut();
+			}
+		} catch (RuntimeException e) {
+			this.putBackRefused();
+			throw e;
+		}
+	}
+
+	/**
+	 * Places the movies at the end of this customer's reserve queue, in order,
+	 * then checks out up to one movie for each movie reserved, the same as
+	 * reserving them one at a time.
+	 * 
+	 * @param movies
+	 *            Movies to be reserved.
+	 * @throws IllegalArgumentException
+	 *             if any movie is null, in which case nothing is reserved.
+	 * @throws IllegalStateException
+	 *             if the account is closed.
+	 */
+	public void reserveAll(List<Movie> movies) {
+		try {
+			synchronized (this) {
+				for (Movie movie : movies) {
+					if (movie == null) {
+						throw new IllegalArgumentException("Movie not specified.");
+					}
+				}
+				if (this.closed) {
+					throw new IllegalStateException("The account is closed.");
+				}
+				CustomerListener l = this.listener;
+				if (l != null) {
+					for (Movie movie : movies) {
+						l.reserved(this.id, movie);
+					}
+					l.sync();
+				}
+				for (Movie movie : movies) {
+					this.reserveQueue.addToRear(movie);
+				}
+				for (int i = 0; i < movies.size(); i++) {
+					if (this.checkOut() == null) {
+						break;
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			this.putBackRefused();
+			throw e;
 		}
-		this.reserveQueue.addToRear(movie);
-		this.checkOut();
+	}
+
+	/**
+	 * Checks out a copy of the given movie if it is in this customer's reserve
+	 * queue, a copy is in the inventory, the customer has room for another
+	 * movie at home, and the account is open.
+	 * 
+	 * @param movie
+	 *            Movie to check out.
+	 * @return True if the movie was moved from the reserve queue to the at
+	 *         home queue, false otherwise.
+	 */
+	public boolean claim(Movie movie) {
+		try {
+			synchronized (this) {
+				if (this.closed || this.nowAtHome >= this.maxAtHome) {
+					return false;
+				}
+				int index = this.reserveQueue.take(movie);
+				if (index < 0) {
+					return false;
+				}
+				this.checkOut(index);
+				return true;
+			}
+		} catch (RuntimeException e) {
+			this.putBackRefused();
+			throw e;
+		}
+	}
+
+	/**
+	 * Checks if the given movie is in this customer's reserve queue.
+	 * 
+	 * @param movie
+	 *            Movie to look for.
+	 * @return True if the movie is in the reserve queue.
+	 */
+	public synchronized boolean isWaitingFor(Movie movie) {
+		return this.reserveQueue.contains(movie);
 	}
 
 	/**
@@ -242,50 +588,160 @@ public class Customer {
 	 *            The list to be traversed.
 	 * @return String of all movie names, each on its own line.
 	 */
-	private String traverseQueue(MultiPurposeList<Movie> list) {
-		String movieList = "";
-		list.resetIterator();
-		while (list.hasNext()) {
-			movieList += list.next().getName() + "\n";
+	private String traverseQueue(Iterable<Movie> list) {
+		StringBuilder movieList = new StringBuilder();
+		for (Movie movie : list) {
+			movieList.append(movie.getName()).append('\n');
 		}
 
-		return movieList;
+		return movieList.toString();
 	}
 
 	/**
 	 * Removes the first available movie from the reserve queue and adds it to
 	 * the back of the at home queue. If the reserve queue is empty or no movies
 	 * are available, nothing happens. If the number of movies at home is equal
-	 * to the max at home, then nothing happens.
+	 * to the max at home, or the account is closed, then nothing happens.
+	 * 
+	 * @return The movie checked out, or null if nothing happened.
 	 */
-	private void checkOut() {
-		if (this.nowAtHome == this.maxAtHome) {
-			return;
+	private Movie checkOut() {
+		if (this.closed || this.nowAtHome >= this.maxAtHome) {
+			return null;
 		}
-		Movie nextAvailable = this.removeFirstAvailable();
-		if (nextAvailable == null) {
-			return;
+		int index = this.reserveQueue.takeFirstAvailable();
+		if (index < 0) {
+			return null;
+		}
+		return this.checkOut(index);
+	}
+
+	/**
+	 * Checks that indexes are strictly ascending and within a queue.
+	 * 
+	 * @param indexes
+	 *            The indexes to check.
+	 * @param size
+	 *            Number of movies in the queue.
+	 * @param message
+	 *            Message of the exception if they are not.
+	 * @throws IllegalArgumentException
+	 *             if the indexes are not strictly ascending or any is out of
+	 *             bounds.
+	 */
+	private static void checkIndexes(int[] indexes, int size, String message) {
+		for (int i = 0; i < indexes.length; i++) {
+			if (indexes[i] < (i == 0 ? 0 : indexes[i - 1] + 1) || indexes[i] >= size) {
+				throw new IllegalArgumentException(message);
+			}
 		}
-		this.atHomeQueue.addToRear(nextAvailable);
-		nextAvailable.removeOneCopyFromInventory();
-		this.nowAtHome++;
 	}
 
 	/**
-	 * Removes the first available movie from the reserve queue and returns it.
-	 * If none are available or the queue is empty, null is returned.
+	 * Moves the movie at the given position in the reserve queue, whose copy
+	 * was already taken out of the inventory, to the back of the at home
+	 * queue once the listener has synced the checkout. If the listener throws,
+	 * nothing changes, and the copy is kept aside for
+	 * {@link #putBackRefused()} to put back once the customer is unlocked.
 	 * 
-	 * @return The first available movie or null if none are available or if the
-	 *         queue is empty.
-	 */
-	private Movie removeFirstAvailable() {
-		Movie firstAvailableMovie = null;
-		for (int i = 0; i < this.reserveQueue.size(); i++) {
-			firstAvailableMovie = this.reserveQueue.lookAtItemN(i);
-			if (firstAvailableMovie.isAvailable()) {
-				return this.reserveQueue.remove(i);
+	 * @param index
+	 *            Position of the movie in the reserve queue.
+	 * @return The movie checked out.
+	 */
+	private Movie checkOut(int index) {
+		Movie movie = this.reserveQueue.get(index);
+		CustomerListener l = this.listener;
+		if (l != null) {
+			try {
+				l.checkedOut(this.id, movie);
+				l.sync();
+			} catch (RuntimeException e) {
+				if (this.refused == null) {
+					this.refused = new ArrayList<Movie>(1);
+				}
+				this.refused.add(movie);
+				throw e;
 			}
 		}
-		return null;
+		this.reserveQueue.remove(index);
+		this.atHomeQueue.addToRear(movie);
+		this.nowAtHome++;
+		return movie;
+	}
+
+	/**
+	 * Puts back the copies of refused checkouts. Called with the customer
+	 * unlocked, as a copy back in stock may be handed to another waiting
+	 * customer.
+	 */
+	private void putBackRefused() {
+		List<Movie> copies;
+		synchronized (this) {
+			copies = this.refused;
+			this.refused = null;
+		}
+		if (copies != null) {
+			for (Movie movie : copies) {
+				movie.undoRemoveOneCopy();
+			}
+		}
+	}
+
+	/**
+	 * Sets the listener told about every change to the queues.
+	 * 
+	 * @param listener
+	 *            listener to tell, or null to stop telling anyone.
+	 */
+	synchronized void setListener(CustomerListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Places the movie at the end of the reserve queue without checking
+	 * anything out. Used to restore a reserve that was reported to a
+	 * listener.
+	 * 
+	 * @param movie
+	 *            Movie that was reserved.
+	 */
+	synchronized void restoreReserve(Movie movie) {
+		this.reserveQueue.addToRear(movie);
+	}
+
+	/**
+	 * Moves the first reserve of the movie to the at home queue, whatever the
+	 * limit on movies at home. The inventory is not changed. Used to restore a
+	 * checkout that was reported to a listener.
+	 * 
+	 * @param movie
+	 *            Movie that was checked out.
+	 * @throws IllegalStateException
+	 *             if the movie is not reserved.
+	 */
+	synchronized void restoreCheckOut(Movie movie) {
+		if (!this.reserveQueue.remove(movie)) {
+			throw new IllegalStateException("Movie is not reserved.");
+		}
+		this.atHomeQueue.addToRear(movie);
+		this.nowAtHome++;
+	}
+
+	/**
+	 * Removes the movie at the given position from the at home queue, without
+	 * checking anything out. The inventory is not changed. Used to restore a
+	 * return that was reported to a listener.
+	 * 
+	 * @param index
+	 *            Position of the movie in the at home queue.
+	 * @throws IllegalArgumentException
+	 *             if the index given is out of bounds.
+	 */
+	synchronized void restoreReturn(int index) {
+		if (index < 0 || index > (this.atHomeQueue.size() - 1)) {
+			throw new IllegalArgumentException("Index given is out of bounds.");
+		}
+		this.atHomeQueue.remove(index);
+		this.nowAtHome--;
 	}
 }
@@ -1,8 +1,11 @@
 package edu.ncsu.csc216.flix_2.customer;
 
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+
 /**
  * Describes behaviors of a customer management systems that permits user login.
- * The management system has an administrator.
+ * The management system has an administrator. Besides the single login, many
+ * users can be logged in at once through sessions, each named by a token.
  * 
  * @author Jo Perry
  */
@@ -41,6 +44,102 @@ public interface CustomerAccountManager {
 	 */
 	public boolean isCustomerLoggedIn();
 
+	/**
+	 * Opens a session for a user, without changing who is logged in.
+	 * 
+	 * @param username
+	 *            id/username of the user
+	 * @param password
+	 *            user's password
+	 * @return token naming the new session
+	 * @throws IllegalArgumentException
+	 *             if the customer account does not exist
+	 */
+	public String openSession(String username, String password);
+
+	/**
+	 * Closes a session. Closing a session that is not open does nothing.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 */
+	public void closeSession(String token);
+
+	/**
+	 * Is the session open for the administrator?
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @return true if yes, false if no
+	 */
+	public boolean isAdminSession(String token);
+
+	/**
+	 * Get the rental context of a customer session.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @return the rental context of the session's customer
+	 * @throws IllegalStateException
+	 *             if the token does not name an open customer session
+	 */
+	public RentalManager getRentalManager(String token);
+
+	/**
+	 * Add a new customer to the customer database from an administrator
+	 * session.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @param id
+	 *            id/email for new customer
+	 * @param password
+	 *            new customer's password
+	 * @param num
+	 *            number associated with this customer
+	 * @throws IllegalStateException
+	 *             if the token does not name an open administrator session
+	 * @throws IllegalArgumentException
+	 *             if customer with given id is already in the database
+	 */
+	public void addNewCustomer(String token, String id, String password, int num);
+
+	/**
+	 * Add many new customers to the customer database from an administrator
+	 * session. The whole batch is checked before any customer is added, so
+	 * either every customer is added or none is.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @param ids
+	 *            id/email for each new customer
+	 * @param passwords
+	 *            password of each new customer
+	 * @param nums
+	 *            number associated with each new customer
+	 * @throws IllegalStateException
+	 *             if the token does not name an open administrator session
+	 * @throws IllegalArgumentException
+	 *             if the arrays differ in length, an id or password is
+	 *             invalid, or an id is already in the database or repeated
+	 */
+	public void addNewCustomers(String token, String[] ids, String[] passwords, int[] nums);
+
+	/**
+	 * Cancel a customer account from an administrator session. Any sessions
+	 * of the customer are closed.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @param id
+	 *            id/username of the customer to cancel
+	 * @throws IllegalStateException
+	 *             if the token does not name an open administrator session
+	 * @throws IllegalArgumentException
+	 *             if no matching account is found
+	 */
+	public void cancelAccount(String token, String id);
+
 	/**
 	 * Add a new customer to the customer database. The administrator must be
 	 * logged in.
@@ -52,12 +151,30 @@ public interface CustomerAccountManager {
 	 * @param num
 	 *            number associated with this customer
 	 * @throws IllegalStateException
-	 *             if the database is full or the administrator is not logged in
+	 *             if the administrator is not logged in
 	 * @throws IllegalArgumentException
 	 *             if customer with given id is already in the database
 	 */
 	public void addNewCustomer(String id, String password, int num);
 
+	/**
+	 * Add many new customers to the customer database. The administrator must
+	 * be logged in. Either every customer is added or none is.
+	 * 
+	 * @param ids
+	 *            id/email for each new customer
+	 * @param passwords
+	 *            password of each new customer
+	 * @param nums
+	 *            number associated with each new customer
+	 * @throws IllegalStateException
+	 *             if the administrator is not logged in
+	 * @throws IllegalArgumentException
+	 *             if the arrays differ in length, an id or password is
+	 *             invalid, or an id is already in the database or repeated
+	 */
+	public void addNewCustomers(String[] ids, String[] passwords, int[] nums);
+
 	/**
 	 * Cancel a customer account.
 	 * 
@@ -77,4 +194,52 @@ public interface CustomerAccountManager {
 	 */
 	public String listAcounts();
 
+	/**
+	 * List one page of the customer accounts, in sorted order.
+	 * 
+	 * @param offset
+	 *            number of accounts to skip
+	 * @param limit
+	 *            largest number of accounts to list
+	 * @return string of customer usernames separated by newlines
+	 * @throws IllegalArgumentException
+	 *             if the offset or limit is negative
+	 */
+	public String listAccounts(int offset, int limit);
+
+	/**
+	 * List one page of the customer accounts whose usernames start with the
+	 * given prefix, ignoring case, in sorted order.
+	 * 
+	 * @param prefix
+	 *            prefix of the usernames to list
+	 * @param offset
+	 *            number of matching accounts to skip
+	 * @param limit
+	 *            largest number of accounts to list
+	 * @return string of customer usernames separated by newlines
+	 * @throws IllegalArgumentException
+	 *             if the prefix is null, or the offset or limit is negative
+	 */
+	public String listAccountsWithPrefix(String prefix, int offset, int limit);
+
+	/**
+	 * List one page of the customer accounts whose usernames are from the
+	 * lower bound, inclusive, to the upper bound, exclusive, ignoring case, in
+	 * sorted order.
+	 * 
+	 * @param from
+	 *            lowest username to list
+	 * @param to
+	 *            username just past the last one to list
+	 * @param offset
+	 *            number of matching accounts to skip
+	 * @param limit
+	 *            largest number of accounts to list
+	 * @return string of customer usernames separated by newlines
+	 * @throws IllegalArgumentException
+	 *             if either bound is null, or the offset or limit is negative
+	 */
+	public String listAccountsInRange(String from, String to, int offset, int limit);
+
 }
@@ -1,11 +1,36 @@
 package edu.ncsu.csc216.flix_2.customer;
 
-import edu.ncsu.csc216.flix_2.list_util.MultiPurposeList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+import edu.ncsu.csc216.flix_2.list_util.SortedSkipList;
 
 /**
  * This class keeps a running list of customers in the system. Allows for
  * functionalities including adding new customers, canceling accounts, and
- * verifying customer accounts.
+ * verifying customer accounts. Customers are kept in a directory sorted by
+ * username, which supports paged, prefix and range listing. Alongside it, the
+ * database keeps a hash index from the case folded username to the customer, so
+ * logins and duplicate checks do not have to search the directory.
+ * 
+ * The database can be shared by many sessions. Logins read the concurrent
+ * index without locking, while changes and listings of the directory are
+ * synchronized on the database.
+ * 
+ * A listener can be told about every new and cancelled account and every
+ * change to the customers' queues, and {@link #getRestorer()} applies those
+ * changes back, so a database can be rebuilt from a record of them. New and
+ * cancelled accounts are reported while the database is locked, but the
+ * database waits for the listener to sync them only once it is unlocked, so
+ * a slow listener does not hold up logins and listings; a new account whose
+ * sync fails is taken back out.
  * 
  * @author Eric Matysek, Nick Brust
  * 
@@ -13,27 +38,34 @@ import edu.ncsu.csc216.flix_2.list_util.MultiPurposeList;
 public class CustomerDB {
 
 	/**
-	 * Max number of customers allowed in the database
+	 * The database of customer objects, sorted by username the same way as
+	 * {@link Customer#compareToByName(Customer)}.
+	 */
+	private SortedSkipList<String, Customer> directory;
+
+	/**
+	 * Longest username or password, in characters. Keeps every account well
+	 * within what a listener such as the journal can record.
 	 */
-	public static final int MAX_SIZE = 20;
+	public static final int MAX_LENGTH = 4096;
 
 	/**
-	 * The number of customers currently in the system.
+	 * Customers in the database, keyed by their username folded to one case.
 	 */
-	private int size;
+	private ConcurrentHashMap<String, Customer> index;
 
 	/**
-	 * The database of customer objects.
+	 * Told about every change to the accounts and queues, or null if nobody
+	 * is listening.
 	 */
-	private MultiPurposeList<Customer> list;
+	private CustomerListener listener;
 
 	/**
-	 * Constructs a new CustomerDB, initializing the list and setting the inital
-	 * size to 0.
+	 * Constructs a new, empty CustomerDB.
 	 */
 	public CustomerDB() {
-		this.list = new MultiPurposeList<Customer>();
-		this.size = 0;
+		this.directory = new SortedSkipList<String, Customer>(String.CASE_INSENSITIVE_ORDER);
+		this.index = new ConcurrentHashMap<String, Customer>();
 	}
 
 	/**
@@ -55,17 +87,9 @@ public class CustomerDB {
 		if (id == null || password == null || id.equals("") || password.equals("")) {
 			throw new IllegalArgumentException("The account doesn't exist.");
 		}
-		this.list.resetIterator();
-		Customer c;
-		while (this.list.hasNext()) {
-			c = this.list.next();
-			if (c.getId().equals(id) && c.verifyPassword(password)) {
-				if (c.verifyPassword(password)) {
-					return c;
-				} else {
-					throw new IllegalArgumentException("Incorrect Password");
-				}
-			}
+		Customer c = this.index.get(key(id));
+		if (c != null && c.getId().equals(id) && c.verifyPassword(password)) {
+			return c;
 		}
 		throw new IllegalArgumentException("The account doesn't exist.");
 	}
@@ -75,23 +99,173 @@ public class CustomerDB {
 	 * 
 	 * @return A list of all customer usernames.
 	 */
-	public String listAccounts() {
-		this.list.resetIterator();
-		String s = "";
-		while (this.list.hasNext()) {
-			Customer c = this.list.next();
-			s += c.getId();
-			s += "\n";
+	public synchronized String listAccounts() {
+		return this.listAccounts(0, this.directory.size());
+	}
+
+	/**
+	 * Lists one page of the usernames in the database, in sorted order.
+	 * 
+	 * @param offset
+	 *            number of usernames to skip.
+	 * @param limit
+	 *            largest number of usernames to list.
+	 * @throws IllegalArgumentException
+	 *             if the offset or limit is negative.
+	 * @return Usernames on the page, each followed by a new line.
+	 */
+	public synchronized String listAccounts(int offset, int limit) {
+		checkPage(offset, limit);
+		return page(this.directory.iterator(offset), limit);
+	}
+
+	/**
+	 * Lists one page of the usernames that start with the given prefix,
+	 * ignoring case, in sorted order.
+	 * 
+	 * @param prefix
+	 *            prefix the usernames start with.
+	 * @param offset
+	 *            number of matching usernames to skip.
+	 * @param limit
+	 *            largest number of usernames to list.
+	 * @throws IllegalArgumentException
+	 *             if the prefix is null, or the offset or limit is negative.
+	 * @return Matching usernames on the page, each followed by a new line.
+	 */
+	public synchronized String listAccountsWithPrefix(String prefix, int offset, int limit) {
+		if (prefix == null) {
+			throw new IllegalArgumentException();
+		}
+		checkPage(offset, limit);
+		int first = this.directory.rankOf(prefix);
+		Iterator<Customer> customers = this.directory.iterator(first + offset);
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < limit && customers.hasNext(); i++) {
+			String id = customers.next().getId();
+			if (!id.regionMatches(true, 0, prefix, 0, prefix.length())) {
+				break;
+			}
+			s.append(id).append("\n");
 		}
-		return s;
+		return s.toString();
+	}
+
+	/**
+	 * Lists one page of the usernames from the given lower bound, inclusive,
+	 * to the given upper bound, exclusive, ignoring case, in sorted order.
+	 * 
+	 * @param from
+	 *            lowest username listed.
+	 * @param to
+	 *            username just past the last one listed.
+	 * @param offset
+	 *            number of matching usernames to skip.
+	 * @param limit
+	 *            largest number of usernames to list.
+	 * @throws IllegalArgumentException
+	 *             if either bound is null, or the offset or limit is negative.
+	 * @return Matching usernames on the page, each followed by a new line.
+	 */
+	public synchronized String listAccountsInRange(String from, String to, int offset, int limit) {
+		if (from == null || to == null) {
+			throw new IllegalArgumentException();
+		}
+		checkPage(offset, limit);
+		int first = this.directory.rankOf(from) + offset;
+		int count = Math.min(limit, this.directory.rankOf(to) - first);
+		return page(this.directory.iterator(first), count);
+	}
+
+	/**
+	 * Returns the number of customers in the database.
+	 * 
+	 * @return Number of customers.
+	 */
+	public int size() {
+		return this.index.size();
+	}
+
+	/**
+	 * Returns true if a customer in the database has the given username,
+	 * ignoring case and surrounding whitespace.
+	 * 
+	 * @param id
+	 *            username to look for.
+	 * @return True if the username already has an account.
+	 */
+	public boolean hasCustomer(String id) {
+		return !this.isNewCustomer(id.trim());
+	}
+
+	/**
+	 * Returns the customers in the database, sorted by username.
+	 * 
+	 * @return Copy of the list of customers.
+	 */
+	public synchronized List<Customer> getCustomers() {
+		List<Customer> customers = new ArrayList<Customer>(this.directory.size());
+		for (Customer c : this.directory) {
+			customers.add(c);
+		}
+		return customers;
+	}
+
+	/**
+	 * Sets the listener told about every new and cancelled account and every
+	 * change to the queues of the customers in the database.
+	 * 
+	 * @param listener
+	 *            listener to tell, or null to stop telling anyone.
+	 */
+	public synchronized void setListener(CustomerListener listener) {
+		this.listener = listener;
+		for (Customer c : this.directory) {
+			c.setListener(listener);
+		}
+	}
+
+	/**
+	 * Returns a listener that applies the changes it is told about to this
+	 * database. Reserves, checkouts and returns are applied exactly as they
+	 * are described, without checking out anything else, and without
+	 * changing the inventory: once every change is applied, the copies of the
+	 * movies the customers have at home are taken out of the inventory in
+	 * one pass. Changes it applies are not reported, and the customers it
+	 * adds report to the database's listener only from the next call to
+	 * {@link #setListener(CustomerListener)}, so it is meant to be used
+	 * before a listener is set.
+	 * 
+	 * @return Listener that applies changes to this database. Its methods
+	 *         throw IllegalArgumentException for a change that names an
+	 *         account or position that does not exist, and
+	 *         IllegalStateException for a checkout of a movie that is not
+	 *         reserved.
+	 */
+	public CustomerListener getRestorer() {
+		return new Restorer();
+	}
+
+	/**
+	 * Adds up the queues of every customer in the database.
+	 * 
+	 * @return Total number of movies on reserve, followed by the total number
+	 *         of movies at home.
+	 */
+	public synchronized long[] queueTotals() {
+		long[] totals = new long[2];
+		for (Customer c : this.directory) {
+			totals[0] += c.getReserveCount();
+			totals[1] += c.getAtHomeCount();
+		}
+		return totals;
 	}
 
 	/**
 	 * Adds a new customer to the database given an username, password, and max
-	 * movies at home. throws an IllegalStateException if the database is full.
-	 * Throws and IllegalArgumentException if there is whitespace in either
-	 * strings, if either strings are empty, or if another customer with that
-	 * username already exists.
+	 * movies at home. Throws and IllegalArgumentException if there is
+	 * whitespace in either strings, if either strings are empty, or if another
+	 * customer with that username already exists.
 	 * 
 	 * @param id
 	 *            Username for the new customer.
@@ -99,41 +273,280 @@ public class CustomerDB {
 	 *            Password for the new customer.
 	 * @param maxAtHome
 	 *            maximum number of movies the new customer is allowed at home.
-	 * @throws IllegalStateException
-	 *             if the max number of customers has already been reached.
 	 * @throws IllegalArgumentException
 	 *             if the customer already exists or the username/password is
 	 *             invalid.
 	 */
 	public void addNewCustomer(String id, String password, int maxAtHome) {
-		if (this.size >= MAX_SIZE) {
-			throw new IllegalStateException("There is no room for additional customers.");
+		Customer customer;
+		CustomerListener l;
+		synchronized (this) {
+			customer = this.newCustomer(id, password, maxAtHome);
+			if (!this.directory.add(customer.getId(), customer)) {
+				throw new IllegalArgumentException("Customer already has an account.");
+			}
+			l = this.listener;
+			if (l != null) {
+				try {
+					l.accountAdded(customer.getId(), password, maxAtHome);
+				} catch (RuntimeException e) {
+					this.directory.remove(customer.getId());
+					throw e;
+				}
+				customer.setListener(l);
+			}
+			this.index.put(key(customer.getId()), customer);
 		}
-		if (id.contains(" ") || password.contains(" ") || id.equals("") || password.equals("")) {
-			throw new IllegalArgumentException("Username and password must have non-whitespace characters.");
+		if (l != null) {
+			this.sync(l, Collections.singletonList(customer));
 		}
-		if (!this.isNewCustomer(id)) {
-			throw new IllegalArgumentException("Customer already has an account.");
+	}
+
+	/**
+	 * Adds many new customers to the database. Every row is checked the same
+	 * way as {@link #addNewCustomer(String, String, int)} before anything is
+	 * added, so either every customer is added or none is. The new customers
+	 * are then sorted by username and merged into the directory in a single
+	 * pass.
+	 * 
+	 * @param ids
+	 *            Username of each new customer.
+	 * @param passwords
+	 *            Password of each new customer.
+	 * @param maxAtHome
+	 *            Maximum number of movies each new customer is allowed at
+	 *            home.
+	 * @throws IllegalArgumentException
+	 *             if the arrays differ in length, a username or password is
+	 *             invalid, or a username is already in the database or
+	 *             repeated in the batch.
+	 */
+	public void addNewCustomers(String[] ids, String[] passwords, int[] maxAtHome) {
+		if (ids.length != passwords.length || ids.length != maxAtHome.length) {
+			throw new IllegalArgumentException("Every customer needs a username, password and maximum.");
+		}
+		Customer[] created = new Customer[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			created[i] = this.newCustomer(ids[i], passwords[i], maxAtHome[i]);
 		}
-		this.insert(new Customer(id, password, maxAtHome));
-		size++;
+		this.addAll(created);
+	}
+
+	/**
+	 * Adds many customers brought over from elsewhere, each with the movies it
+	 * already has at home and on reserve. The customers are checked and
+	 * merged into the directory the same way as
+	 * {@link #addNewCustomers(String[], String[], int[])}, so either every
+	 * customer is added or none is, and a batch already sorted by username is
+	 * merged without sorting work. The queues are filled as they are given,
+	 * whatever the limit on movies at home, without checking anything out or
+	 * changing the inventory, so the caller takes the copies at home out of
+	 * the inventory and puts the customers on the waitlists. The listener is
+	 * told about each customer as {@link Customer#describeTo(CustomerDescriber)}
+	 * describes it.
+	 * 
+	 * @param ids
+	 *            Username of each customer.
+	 * @param passwords
+	 *            Password of each customer.
+	 * @param maxAtHome
+	 *            Maximum number of movies each customer is allowed at home.
+	 * @param atHome
+	 *            Movies each customer has at home, in order.
+	 * @param reserves
+	 *            Movies each customer has on reserve, in order.
+	 * @return The customers added, sorted by username.
+	 * @throws IllegalArgumentException
+	 *             if the arrays differ in length, a username or password is
+	 *             invalid, or a username is already in the database or
+	 *             repeated in the batch.
+	 */
+	public List<Customer> addRestoredCustomers(String[] ids, String[] passwords, int[] maxAtHome, Movie[][] atHome,
+			Movie[][] reserves) {
+		if (ids.length != passwords.length || ids.length != maxAtHome.length || ids.length != atHome.length
+				|| ids.length != reserves.length) {
+			throw new IllegalArgumentException("Every customer needs a username, password, maximum and queues.");
+		}
+		Customer[] created = new Customer[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			created[i] = this.newCustomer(ids[i], passwords[i], maxAtHome[i]);
+			for (Movie movie : atHome[i]) {
+				created[i].restoreReserve(movie);
+				created[i].restoreCheckOut(movie);
+			}
+			for (Movie movie : reserves[i]) {
+				created[i].restoreReserve(movie);
+			}
+		}
+		return this.addAll(created);
 	}
 
 	/**
 	 * Removes the customer with the given username from the database and
-	 * returns all movies the customer has at home. Throws an
-	 * IllegalArgumentException if the account does not exist.
+	 * returns all movies the customer has at home to the inventory. Throws an
+	 * IllegalArgumentException if the account does not exist. The listener is
+	 * synced and the copies returned once the database is unlocked; if the
+	 * sync fails, the account stays cancelled and the copies are still
+	 * returned.
 	 * 
 	 * @param id
 	 *            Username of the customer to be cancelled.
 	 * @throws IllegalArgumentException
 	 *             if the customer is not found.
+	 * @return The customer whose account was cancelled.
 	 */
-	public void cancelAccount(String id) {
-		if (this.isNewCustomer(id)) {
-			throw new IllegalArgumentException("No matching customer account found.");
+	public Customer cancelAccount(String id) {
+		Customer customer;
+		List<Movie> atHome;
+		CustomerListener l;
+		synchronized (this) {
+			customer = this.find(id);
+			l = this.listener;
+			atHome = customer.closeAccount();
+			this.index.remove(key(id));
+			this.directory.remove(customer.getId());
+		}
+		try {
+			if (l != null) {
+				l.sync();
+			}
+		} finally {
+			// Not locked, as the copies may be handed to waiting customers
+			for (Movie movie : atHome) {
+				movie.backToInventory();
+			}
+		}
+		return customer;
+	}
+
+	/**
+	 * Checks the username and password of a new customer and creates it.
+	 * 
+	 * @param id
+	 *            Username for the new customer.
+	 * @param password
+	 *            Password for the new customer.
+	 * @param maxAtHome
+	 *            maximum number of movies the new customer is allowed at home.
+	 * @return The new customer, not yet in the database.
+	 * @throws IllegalArgumentException
+	 *             if the customer already exists or the username/password is
+	 *             invalid.
+	 */
+	private Customer newCustomer(String id, String password, int maxAtHome) {
+		if (id == null || password == null) {
+			throw new IllegalArgumentException();
+		}
+		if (id.contains(" ") || password.contains(" ") || id.equals("") || password.equals("")) {
+			throw new IllegalArgumentException("Username and password must have non-whitespace characters.");
+		}
+		if (id.length() > MAX_LENGTH || password.length() > MAX_LENGTH) {
+			throw new IllegalArgumentException("Username and password must be at most " + MAX_LENGTH + " characters.");
+		}
+		if (!this.isNewCustomer(id)) {
+			throw new IllegalArgumentException("Customer already has an account.");
+		}
+		Customer customer = new Customer(id, password, maxAtHome);
+		if (!this.isNewCustomer(customer.getId())) {
+			throw new IllegalArgumentException("Customer already has an account.");
+		}
+		return customer;
+	}
+
+	/**
+	 * Adds customers that were each checked by
+	 * {@link #newCustomer(String, String, int)}. The batch is checked for
+	 * repeated usernames, sorted by username and merged into the directory in
+	 * a single pass. The listener is told about each customer once it is in
+	 * the directory, and synced once the database is unlocked; if either
+	 * fails, the whole batch is taken back out.
+	 * 
+	 * @param created
+	 *            The customers to add.
+	 * @return The customers added, sorted by username.
+	 * @throws IllegalArgumentException
+	 *             if a username is repeated in the batch or already in the
+	 *             database.
+	 */
+	private List<Customer> addAll(final Customer[] created) {
+		HashSet<String> batch = new HashSet<String>();
+		Integer[] order = new Integer[created.length];
+		for (int i = 0; i < created.length; i++) {
+			if (!batch.add(key(created[i].getId()))) {
+				throw new IllegalArgumentException("Customer already has an account.");
+			}
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer first, Integer second) {
+				return created[first].compareToByName(created[second]);
+			}
+		});
+		List<String> names = new ArrayList<String>(created.length);
+		List<Customer> customers = new ArrayList<Customer>(created.length);
+		for (int i : order) {
+			names.add(created[i].getId());
+			customers.add(created[i]);
+		}
+		CustomerListener l;
+		synchronized (this) {
+			int added = this.directory.addAll(names, customers);
+			if (added != customers.size()) {
+				for (String name : names.subList(0, added)) {
+					this.directory.remove(name);
+				}
+				throw new IllegalArgumentException("Customer already has an account.");
+			}
+			l = this.listener;
+			if (l != null) {
+				try {
+					for (Customer customer : customers) {
+						customer.describeTo(l);
+					}
+				} catch (RuntimeException e) {
+					for (String name : names) {
+						this.directory.remove(name);
+					}
+					throw e;
+				}
+			}
+			for (Customer customer : customers) {
+				customer.setListener(l);
+				this.index.put(key(customer.getId()), customer);
+			}
+		}
+		if (l != null) {
+			this.sync(l, customers);
+		}
+		return customers;
+	}
+
+	/**
+	 * Waits for the listener to sync new accounts. If it fails, the accounts
+	 * are taken back out of the database and closed without telling the
+	 * listener. The copies of the movies they have at home are left to the
+	 * caller, which took them out of the inventory.
+	 * 
+	 * @param l
+	 *            the listener the accounts were reported to.
+	 * @param customers
+	 *            the new customers.
+	 */
+	private void sync(CustomerListener l, List<Customer> customers) {
+		try {
+			l.sync();
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				for (Customer customer : customers) {
+					if (this.index.remove(key(customer.getId()), customer)) {
+						this.directory.remove(customer.getId());
+					}
+					customer.setListener(null);
+					customer.closeAccount();
+				}
+			}
+			throw e;
 		}
-		this.list.remove(findMatchingAccount(id)).closeAccount();
 	}
 
 	/**
@@ -146,62 +559,183 @@ public class CustomerDB {
 	 *         database.
 	 */
 	private boolean isNewCustomer(String id) {
-		if (findMatchingAccount(id) > -1) {
-			return false;
+		return !this.index.containsKey(key(id));
+	}
+
+	/**
+	 * Builds a page of usernames from the customers returned by an iterator.
+	 * 
+	 * @param customers
+	 *            iterator positioned at the first customer on the page.
+	 * @param limit
+	 *            largest number of usernames on the page.
+	 * @return Usernames on the page, each followed by a new line.
+	 */
+	private static String page(Iterator<Customer> customers, int limit) {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < limit && customers.hasNext(); i++) {
+			s.append(customers.next().getId()).append("\n");
 		}
-		return true;
+		return s.toString();
 	}
 
 	/**
-	 * Adds the given customer to the end of the database.
+	 * Checks the offset and limit of a page.
 	 * 
-	 * @param customer
-	 *            Customer to be added.
+	 * @param offset
+	 *            number of usernames to skip.
+	 * @param limit
+	 *            largest number of usernames to list.
 	 * @throws IllegalArgumentException
-	 *             if the customer already has an account.
+	 *             if the offset or limit is negative.
 	 */
-	private void insert(Customer customer) {
-		if (this.size >= MAX_SIZE) {
-			throw new IllegalStateException("There is no room for additional customers.");
-		}
-		if (list.isEmpty()) {
-			list.addItem(0, customer);
-			return;
+	private static void checkPage(int offset, int limit) {
+		if (offset < 0 || limit < 0) {
+			throw new IllegalArgumentException("Offset and limit cannot be negative.");
 		}
-		for (int i = 0; i < list.size(); i++) {
-			Customer c = list.lookAtItemN(i);
-			int comparator = c.compareToByName(customer);
-			if (comparator == 0) {
-				throw new IllegalArgumentException("Customer already has an account.");
-			}
-			if (comparator > 0) {
-				list.addItem(i, customer);
-				return;
-			}
+	}
+
+	/**
+	 * Returns the customer with the given username.
+	 * 
+	 * @param id
+	 *            username of the customer.
+	 * @throws IllegalArgumentException
+	 *             if the customer is not found.
+	 * @return The customer with the username.
+	 */
+	private Customer find(String id) {
+		Customer customer = this.index.get(key(id));
+		if (customer == null) {
+			throw new IllegalArgumentException("No matching customer account found.");
 		}
-		list.addToRear(customer);
+		return customer;
 	}
 
 	/**
-	 * Sees if there is a customer within the database whose username matches
-	 * the id given. if there is, the index of the matching customer is given.
+	 * Returns the key a username is stored under in the index. Each character
+	 * is folded the way {@link String#CASE_INSENSITIVE_ORDER} compares it, so
+	 * two usernames share a key exactly when the directory holds them as the
+	 * same name.
 	 * 
 	 * @param id
-	 *            Username of the customer to find within the database.
-	 * @return Index of the matching customer, or -1 if the customer does not
-	 *         exis within the database.
-	 */
-	private int findMatchingAccount(String id) {
-		this.list.resetIterator();
-		Customer c;
-		int index = 0;
-		while (this.list.hasNext()) {
-			c = this.list.next();
-			if (c.getId().equalsIgnoreCase(id)) {
-				return index;
+	 *            username of a customer.
+	 * @return folded form of the username.
+	 */
+	private static String key(String id) {
+		char[] folded = new char[id.length()];
+		for (int i = 0; i < folded.length; i++) {
+			folded[i] = Character.toLowerCase(Character.toUpperCase(id.charAt(i)));
+		}
+		return new String(folded);
+	}
+
+	/**
+	 * Applies changes reported by a listener to the database.
+	 */
+	private class Restorer implements CustomerListener {
+
+		/**
+		 * Adds the account, without telling the database's listener.
+		 * 
+		 * @param id
+		 *            username of the new customer.
+		 * @param password
+		 *            password of the new customer.
+		 * @param maxAtHome
+		 *            maximum number of movies the customer is allowed at home.
+		 */
+		public void accountAdded(String id, String password, int maxAtHome) {
+			synchronized (CustomerDB.this) {
+				Customer customer = new Customer(id, password, maxAtHome);
+				if (!isNewCustomer(customer.getId()) || !directory.add(customer.getId(), customer)) {
+					throw new IllegalArgumentException("Customer already has an account.");
+				}
+				index.put(key(customer.getId()), customer);
+			}
+		}
+
+		/**
+		 * Cancels the account, without telling the database's listener.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 */
+		public void accountCancelled(String id) {
+			synchronized (CustomerDB.this) {
+				Customer customer = find(id);
+				index.remove(key(id));
+				directory.remove(customer.getId());
+				customer.setListener(null);
+				customer.closeAccount();
 			}
-			index++;
 		}
-		return -1;
+
+		/**
+		 * Places the movie at the end of the reserve queue.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie reserved.
+		 */
+		public void reserved(String id, Movie movie) {
+			find(id).restoreReserve(movie);
+		}
+
+		/**
+		 * Removes the movie from the reserve queue.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position of the movie in the reserve queue.
+		 */
+		public void unreserved(String id, int index) {
+			find(id).unReserve(index);
+		}
+
+		/**
+		 * Moves the movie ahead one in the reserve queue.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position of the movie in the reserve queue.
+		 */
+		public void movedAheadOne(String id, int index) {
+			find(id).moveAheadOneInReserves(index);
+		}
+
+		/**
+		 * Checks out the first reserve of the movie.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie checked out.
+		 */
+		public void checkedOut(String id, Movie movie) {
+			find(id).restoreCheckOut(movie);
+		}
+
+		/**
+		 * Returns the movie at the position in the at home queue.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position of the movie in the at home queue.
+		 */
+		public void returned(String id, int index) {
+			find(id).restoreReturn(index);
+		}
+
+		/**
+		 * Does nothing, as every change is applied when it is told.
+		 */
+		public void sync() {
+			// Nothing is kept to make durable
+		}
 	}
 }
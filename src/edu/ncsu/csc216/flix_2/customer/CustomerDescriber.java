@@ -0,0 +1,47 @@
+package edu.ncsu.csc216.flix_2.customer;
+
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+
+/**
+ * Receives a description of a customer from
+ * {@link Customer#describeTo(CustomerDescriber)}: the account, then each
+ * movie at home as a reserve followed by a check out, then each movie on
+ * reserve. Every listener can be described to, so a description applied to
+ * a listener recreates the customer.
+ * 
+ * @author Eric Matysek, Nick Brust
+ */
+public interface CustomerDescriber {
+
+	/**
+	 * Called for the account being described.
+	 * 
+	 * @param id
+	 *            username of the customer.
+	 * @param password
+	 *            password of the customer.
+	 * @param maxAtHome
+	 *            maximum number of movies the customer is allowed at home.
+	 */
+	void accountAdded(String id, String password, int maxAtHome);
+
+	/**
+	 * Called for each movie at home or on reserve, in queue order.
+	 * 
+	 * @param id
+	 *            username of the customer.
+	 * @param movie
+	 *            movie reserved.
+	 */
+	void reserved(String id, Movie movie);
+
+	/**
+	 * Called for each movie at home, right after it is reserved.
+	 * 
+	 * @param id
+	 *            username of the customer.
+	 * @param movie
+	 *            movie checked out.
+	 */
+	void checkedOut(String id, Movie movie);
+}
@@ -0,0 +1,106 @@
+package edu.ncsu.csc216.flix_2.customer;
+
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+
+/**
+ * Listens for changes to customer accounts and their queues. Each call
+ * describes the outcome of an operation rather than the request, so applying
+ * the same calls in the same order to an empty database gives the same
+ * accounts, queues and inventory. Calls about one customer are made while the
+ * customer is locked, so they arrive in the order the changes were made.
+ * Calls about new and cancelled accounts are made while the database is
+ * locked; an account is reported before it can be used, and a cancelled
+ * account reports nothing more.
+ * 
+ * Each change is reported before it is made, and a call that throws stops
+ * the change, so a listener that keeps a record never holds a change that was
+ * not made. A listener may only take note of a change and make it durable in
+ * {@link #sync()}. A customer calls it before it makes the changes it
+ * reported, while it is still locked. The database calls it for new and
+ * cancelled accounts once it is no longer locked, and takes a new account
+ * back out if it throws. Being a {@link CustomerDescriber}, a listener can
+ * also be told about customers that already exist.
+ * 
+ * @author Eric Matysek, Nick Brust
+ */
+public interface CustomerListener extends CustomerDescriber {
+
+	/**
+	 * Called when an account is created.
+	 * 
+	 * @param id
+	 *            username of the new customer.
+	 * @param password
+	 *            password of the new customer.
+	 * @param maxAtHome
+	 *            maximum number of movies the customer is allowed at home.
+	 */
+	void accountAdded(String id, String password, int maxAtHome);
+
+	/**
+	 * Called when an account is cancelled, before its queues are emptied and
+	 * the copies it had at home go back to the inventory.
+	 * 
+	 * @param id
+	 *            username of the customer.
+	 */
+	void accountCancelled(String id);
+
+	/**
+	 * Called when a movie is placed at the end of a reserve queue.
+	 * 
+	 * @param id
+	 *            username of the customer.
+	 * @param movie
+	 *            movie reserved.
+	 */
+	void reserved(String id, Movie movie);
+
+	/**
+	 * Called when a movie is removed from a reserve queue.
+	 * 
+	 * @param id
+	 *            username of the customer.
+	 * @param index
+	 *            position the movie had in the reserve queue.
+	 */
+	void unreserved(String id, int index);
+
+	/**
+	 * Called when a movie is moved ahead one in a reserve queue.
+	 * 
+	 * @param id
+	 *            username of the customer.
+	 * @param index
+	 *            position the movie had in the reserve queue.
+	 */
+	void movedAheadOne(String id, int index);
+
+	/**
+	 * Called when the first reserved copy of a movie is taken out of the
+	 * inventory and placed at the end of the at home queue.
+	 * 
+	 * @param id
+	 *            username of the customer.
+	 * @param movie
+	 *            movie checked out.
+	 */
+	void checkedOut(String id, Movie movie);
+
+	/**
+	 * Called when a movie is removed from an at home queue, before its copy
+	 * goes back to the inventory.
+	 * 
+	 * @param id
+	 *            username of the customer.
+	 * @param index
+	 *            position the movie had in the at home queue.
+	 */
+	void returned(String id, int index);
+
+	/**
+	 * Waits until every change reported so far is durable. A listener that
+	 * keeps nothing returns at once.
+	 */
+	void sync();
+}
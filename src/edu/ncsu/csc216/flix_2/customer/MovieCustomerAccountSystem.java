@@ -1,12 +1,24 @@
 package edu.ncsu.csc216.flix_2.customer;
 
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.ncsu.csc216.flix_2.inventory.Movie;
 import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
 
 /**
  * This class controlls the flow of the system and delegates tasks to their
  * appropriate places. Keeps track of the state of the currently logged in
  * customer or admin and holds the movie inventory system along with a running
- * list of customers.
+ * list of customers. Besides the single login, any number of sessions can be
+ * open at once. Each customer session has its own rental context over the
+ * shared inventory, so sessions can be used from different threads. A
+ * session left unused for longer than the session timeout closes, and closed
+ * sessions are swept out of the table as new ones open.
  * 
  * @author Eric Matysek, Nick Brust
  * 
@@ -28,6 +40,12 @@ public class MovieCustomerAccountSystem implements CustomerAccountManager {
 	 */
 	public static final String ADMIN = "admin";
 
+	/**
+	 * Milliseconds a session may go unused before it closes, unless set
+	 * otherwise.
+	 */
+	public static final long DEFAULT_SESSION_TIMEOUT = 30 * 60 * 1000L;
+
 	/**
 	 * The rental inventory of the system.
 	 */
@@ -38,6 +56,27 @@ public class MovieCustomerAccountSystem implements CustomerAccountManager {
 	 */
 	private CustomerDB customerList;
 
+	/**
+	 * Open sessions, keyed by their token.
+	 */
+	private ConcurrentHashMap<String, Session> sessions;
+
+	/**
+	 * Source of session tokens.
+	 */
+	private SecureRandom tokens;
+
+	/**
+	 * Nanoseconds a session may go unused before it closes.
+	 */
+	private volatile long sessionTimeout;
+
+	/**
+	 * System.nanoTime() at which the sessions are next swept for ones that
+	 * have timed out.
+	 */
+	private AtomicLong nextSweep;
+
 	/**
 	 * Constructs a new MovieCustomerAccountSystem given the inventory system.
 	 * 
@@ -49,6 +88,10 @@ public class MovieCustomerAccountSystem implements CustomerAccountManager {
 		this.adminLoggedIn = false;
 		this.customerLoggedIn = false;
 		this.customerList = new CustomerDB();
+		this.sessions = new ConcurrentHashMap<String, Session>();
+		this.tokens = new SecureRandom();
+		this.sessionTimeout = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SESSION_TIMEOUT);
+		this.nextSweep = new AtomicLong(System.nanoTime() + this.sessionTimeout);
 	}
 
 	/**
@@ -103,6 +146,243 @@ public class MovieCustomerAccountSystem implements CustomerAccountManager {
 		return this.customerLoggedIn;
 	}
 
+	/**
+	 * Opens a session for a user, without changing who is logged in. Every
+	 * so often, sessions that have timed out are swept out first.
+	 * 
+	 * @param id
+	 *            id/username of the user
+	 * @param password
+	 *            user's password
+	 * @return token naming the new session
+	 * @throws IllegalArgumentException
+	 *             if the customer account does not exist
+	 */
+	public String openSession(String id, String password) {
+		long now = System.nanoTime();
+		long sweep = this.nextSweep.get();
+		if (now - sweep >= 0 && this.nextSweep.compareAndSet(sweep, now + this.sessionTimeout)) {
+			this.sweepSessions(now);
+		}
+		Session session;
+		if (ADMIN.equals(id) && ADMIN.equals(password)) {
+			session = new Session(null, null, now);
+		} else {
+			Customer c = this.customerList.verifyCustomer(id, password);
+			session = new Session(c, this.inventorySystem.openContext(c), now);
+		}
+		String token = this.newToken();
+		while (this.sessions.putIfAbsent(token, session) != null) {
+			token = this.newToken();
+		}
+		if (session.customer != null && session.customer.isClosed()) {
+			this.sessions.remove(token);
+			throw new IllegalArgumentException("The account doesn't exist.");
+		}
+		return token;
+	}
+
+	/**
+	 * Set how long a session may go unused before it closes. Sessions already
+	 * open are held to the new timeout.
+	 * 
+	 * @param millis
+	 *            milliseconds a session may go unused
+	 * @throws IllegalArgumentException
+	 *             if the timeout is not positive
+	 */
+	public void setSessionTimeout(long millis) {
+		if (millis <= 0) {
+			throw new IllegalArgumentException("Session timeout must be positive.");
+		}
+		this.sessionTimeout = TimeUnit.MILLISECONDS.toNanos(millis);
+		this.nextSweep.set(System.nanoTime() + this.sessionTimeout);
+	}
+
+	/**
+	 * Closes a session. Closing a session that is not open does nothing.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 */
+	public void closeSession(String token) {
+		if (token != null) {
+			this.sessions.remove(token);
+		}
+	}
+
+	/**
+	 * Is the session open for the administrator?
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @return true if yes, false if no
+	 */
+	public boolean isAdminSession(String token) {
+		Session session = this.session(token);
+		return session != null && session.customer == null;
+	}
+
+	/**
+	 * Get the rental context of a customer session.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @return the rental context of the session's customer
+	 * @throws IllegalStateException
+	 *             if the token does not name an open customer session
+	 */
+	public RentalManager getRentalManager(String token) {
+		Session session = this.session(token);
+		if (session == null || session.customer == null) {
+			throw new IllegalStateException("No customer is logged in.");
+		}
+		return session.rentals;
+	}
+
+	/**
+	 * Add a new customer to the customer database from an administrator
+	 * session.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @param id
+	 *            id/email for new customer
+	 * @param password
+	 *            new customer's password
+	 * @param maxAtHome
+	 *            number associated with this customer
+	 * @throws IllegalStateException
+	 *             if the token does not name an open administrator session
+	 * @throws IllegalArgumentException
+	 *             if customer with given id is already in the database
+	 */
+	public void addNewCustomer(String token, String id, String password, int maxAtHome) {
+		if (!this.isAdminSession(token)) {
+			throw new IllegalStateException("Access denied.");
+		}
+		this.customerList.addNewCustomer(id, password, maxAtHome);
+	}
+
+	/**
+	 * Add many new customers to the customer database from an administrator
+	 * session. Either every customer is added or none is.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @param ids
+	 *            id/email for each new customer
+	 * @param passwords
+	 *            password of each new customer
+	 * @param maxAtHome
+	 *            number associated with each new customer
+	 * @throws IllegalStateException
+	 *             if the token does not name an open administrator session
+	 * @throws IllegalArgumentException
+	 *             if the arrays differ in length, an id or password is
+	 *             invalid, or an id is already in the database or repeated
+	 */
+	public void addNewCustomers(String token, String[] ids, String[] passwords, int[] maxAtHome) {
+		if (!this.isAdminSession(token)) {
+			throw new IllegalStateException("Access denied.");
+		}
+		this.customerList.addNewCustomers(ids, passwords, maxAtHome);
+	}
+
+	/**
+	 * Cancel a customer account from an administrator session. Any sessions
+	 * of the customer are closed.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @param id
+	 *            id/username of the customer to cancel
+	 * @throws IllegalStateException
+	 *             if the token does not name an open administrator session
+	 * @throws IllegalArgumentException
+	 *             if no matching account is found
+	 */
+	public void cancelAccount(String token, String id) {
+		if (!this.isAdminSession(token)) {
+			throw new IllegalStateException("Access denied.");
+		}
+		this.cancelAccount(id);
+	}
+
+	/**
+	 * Get the number of customer accounts.
+	 * 
+	 * @return number of customers in the database
+	 */
+	public int getCustomerCount() {
+		return this.customerList.size();
+	}
+
+	/**
+	 * Check whether a username already has an account.
+	 * 
+	 * @param id
+	 *            username to look for
+	 * @return true if a customer has the username, ignoring case and
+	 *         surrounding whitespace
+	 */
+	public boolean hasCustomer(String id) {
+		return this.customerList.hasCustomer(id);
+	}
+
+	/**
+	 * Get the number of open sessions. Sessions that have timed out count
+	 * until they are swept out.
+	 * 
+	 * @return number of open sessions, customer and administrator
+	 */
+	public int getSessionCount() {
+		return this.sessions.size();
+	}
+
+	/**
+	 * Get the number of movies on reserve and at home across all customers.
+	 * The totals walk every customer, so they are meant for occasional
+	 * monitoring rather than for the rental path.
+	 * 
+	 * @return total number of movies on reserve, followed by the total
+	 *         number of movies at home
+	 */
+	public long[] getQueueTotals() {
+		return this.customerList.queueTotals();
+	}
+
+	/**
+	 * Get every customer account, sorted by username.
+	 * 
+	 * @return copy of the list of customers
+	 */
+	public List<Customer> getCustomers() {
+		return this.customerList.getCustomers();
+	}
+
+	/**
+	 * Set the listener told about every new and cancelled account and every
+	 * change to the customers' queues.
+	 * 
+	 * @param listener
+	 *            listener to tell, or null to stop telling anyone
+	 */
+	public void setCustomerListener(CustomerListener listener) {
+		this.customerList.setListener(listener);
+	}
+
+	/**
+	 * Get a listener that applies the changes it is told about to the
+	 * customer accounts, used to rebuild them from a record of the changes.
+	 * 
+	 * @return listener that applies changes to the customer database
+	 * @see CustomerDB#getRestorer()
+	 */
+	public CustomerListener getRestorer() {
+		return this.customerList.getRestorer();
+	}
+
 	/**
 	 * Add a new customer to the customer database. The administrator must be
 	 * logged in.
@@ -114,7 +394,7 @@ public class MovieCustomerAccountSystem implements CustomerAccountManager {
 	 * @param maxAtHome
 	 *            number associated with this customer
 	 * @throws IllegalStateException
-	 *             if the database is full or the administrator is not logged in
+	 *             if the administrator is not logged in
 	 * @throws IllegalArgumentException
 	 *             if customer with given id is already in the database
 	 */
@@ -127,7 +407,58 @@ public class MovieCustomerAccountSystem implements CustomerAccountManager {
 	}
 
 	/**
-	 * Cancel a customer account.
+	 * Add many new customers to the customer database. The administrator must
+	 * be logged in. Either every customer is added or none is.
+	 * 
+	 * @param ids
+	 *            id/email for each new customer
+	 * @param passwords
+	 *            password of each new customer
+	 * @param maxAtHome
+	 *            number associated with each new customer
+	 * @throws IllegalStateException
+	 *             if the administrator is not logged in
+	 * @throws IllegalArgumentException
+	 *             if the arrays differ in length, an id or password is
+	 *             invalid, or an id is already in the database or repeated
+	 */
+	public void addNewCustomers(String[] ids, String[] passwords, int[] maxAtHome) {
+		if (!this.adminLoggedIn) {
+			throw new IllegalStateException("Access denied.");
+		}
+		this.customerList.addNewCustomers(ids, passwords, maxAtHome);
+	}
+
+	/**
+	 * Add many customers brought over from elsewhere, with the movies they
+	 * already have at home and on reserve. Either every customer is added or
+	 * none is. The inventory is not changed and no waitlist is joined.
+	 * 
+	 * @param ids
+	 *            id/email of each customer
+	 * @param passwords
+	 *            password of each customer
+	 * @param maxAtHome
+	 *            number associated with each customer
+	 * @param atHome
+	 *            movies each customer has at home
+	 * @param reserves
+	 *            movies each customer has on reserve
+	 * @return the customers added, sorted by id
+	 * @throws IllegalArgumentException
+	 *             if the arrays differ in length, an id or password is
+	 *             invalid, or an id is already in the database or repeated
+	 * @see CustomerDB#addRestoredCustomers(String[], String[], int[], Movie[][],
+	 *      Movie[][])
+	 */
+	public List<Customer> addRestoredCustomers(String[] ids, String[] passwords, int[] maxAtHome, Movie[][] atHome,
+			Movie[][] reserves) {
+		return this.customerList.addRestoredCustomers(ids, passwords, maxAtHome, atHome, reserves);
+	}
+
+	/**
+	 * Cancel a customer account. Any sessions of the customer are closed,
+	 * including one opening while the account is cancelled.
 	 * 
 	 * @param id
 	 *            id/username of the customer to cancel
@@ -137,7 +468,13 @@ public class MovieCustomerAccountSystem implements CustomerAccountManager {
 	 *             if no matching account is found
 	 */
 	public void cancelAccount(String id) {
-		this.customerList.cancelAccount(id);
+		Customer c = this.customerList.cancelAccount(id);
+		Iterator<Session> open = this.sessions.values().iterator();
+		while (open.hasNext()) {
+			if (open.next().customer == c) {
+				open.remove();
+			}
+		}
 	}
 
 	/**
@@ -149,4 +486,148 @@ public class MovieCustomerAccountSystem implements CustomerAccountManager {
 		return this.customerList.listAccounts();
 	}
 
+	/**
+	 * List one page of the customer accounts, in sorted order.
+	 * 
+	 * @param offset
+	 *            number of accounts to skip
+	 * @param limit
+	 *            largest number of accounts to list
+	 * @return string of customer usernames separated by newlines
+	 * @throws IllegalArgumentException
+	 *             if the offset or limit is negative
+	 */
+	public String listAccounts(int offset, int limit) {
+		return this.customerList.listAccounts(offset, limit);
+	}
+
+	/**
+	 * List one page of the customer accounts whose usernames start with the
+	 * given prefix, ignoring case, in sorted order.
+	 * 
+	 * @param prefix
+	 *            prefix of the usernames to list
+	 * @param offset
+	 *            number of matching accounts to skip
+	 * @param limit
+	 *            largest number of accounts to list
+	 * @return string of customer usernames separated by newlines
+	 * @throws IllegalArgumentException
+	 *             if the prefix is null, or the offset or limit is negative
+	 */
+	public String listAccountsWithPrefix(String prefix, int offset, int limit) {
+		return this.customerList.listAccountsWithPrefix(prefix, offset, limit);
+	}
+
+	/**
+	 * List one page of the customer accounts whose usernames are from the
+	 * lower bound, inclusive, to the upper bound, exclusive, ignoring case, in
+	 * sorted order.
+	 * 
+	 * @param from
+	 *            lowest username to list
+	 * @param to
+	 *            username just past the last one to list
+	 * @param offset
+	 *            number of matching accounts to skip
+	 * @param limit
+	 *            largest number of accounts to list
+	 * @return string of customer usernames separated by newlines
+	 * @throws IllegalArgumentException
+	 *             if either bound is null, or the offset or limit is negative
+	 */
+	public String listAccountsInRange(String from, String to, int offset, int limit) {
+		return this.customerList.listAccountsInRange(from, to, offset, limit);
+	}
+
+	/**
+	 * Finds an open session and marks it used. A session that has timed out
+	 * is closed instead.
+	 * 
+	 * @param token
+	 *            token naming the session, or null
+	 * @return the session, or null if the token does not name an open session
+	 */
+	private Session session(String token) {
+		Session session = token == null ? null : this.sessions.get(token);
+		if (session == null) {
+			return null;
+		}
+		long now = System.nanoTime();
+		if (now - session.lastUsed > this.sessionTimeout) {
+			this.sessions.remove(token, session);
+			return null;
+		}
+		session.lastUsed = now;
+		return session;
+	}
+
+	/**
+	 * Closes every session that has timed out.
+	 * 
+	 * @param now
+	 *            current System.nanoTime()
+	 */
+	private void sweepSessions(long now) {
+		long timeout = this.sessionTimeout;
+		Iterator<Session> open = this.sessions.values().iterator();
+		while (open.hasNext()) {
+			if (now - open.next().lastUsed > timeout) {
+				open.remove();
+			}
+		}
+	}
+
+	/**
+	 * Creates a new random session token.
+	 * 
+	 * @return 128 bit token in hexadecimal
+	 */
+	private String newToken() {
+		byte[] bytes = new byte[16];
+		this.tokens.nextBytes(bytes);
+		StringBuilder token = new StringBuilder(32);
+		for (byte b : bytes) {
+			token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return token.toString();
+	}
+
+	/**
+	 * An open session. The customer and rental context are null for an
+	 * administrator session.
+	 */
+	private static class Session {
+
+		/**
+		 * Customer of the session.
+		 */
+		private final Customer customer;
+
+		/**
+		 * Rental context of the customer.
+		 */
+		private final RentalManager rentals;
+
+		/**
+		 * System.nanoTime() when the session was last used.
+		 */
+		private volatile long lastUsed;
+
+		/**
+		 * Constructs a new session.
+		 * 
+		 * @param customer
+		 *            customer of the session
+		 * @param rentals
+		 *            rental context of the customer
+		 * @param now
+		 *            System.nanoTime() when the session opens
+		 */
+		Session(Customer customer, RentalManager rentals, long now) {
+			this.customer = customer;
+			this.rentals = rentals;
+			this.lastUsed = now;
+		}
+	}
 }
@@ -0,0 +1,237 @@
+package edu.ncsu.csc216.flix_2.customer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+import edu.ncsu.csc216.flix_2.list_util.GenericList;
+
+/**
+ * A customer's reserve queue. The reserved movies are kept in order in a
+ * generic list, next to a count of how many times each movie is reserved.
+ * Finding the first reserved movie with a copy in the inventory walks the
+ * list with an iterator and takes the copy as soon as one is found, so it
+ * only costs as much as the unavailable movies it skips. A movie that comes
+ * back into stock is taken with {@link #take(Movie)}, which never looks at
+ * the movies behind it. Both leave the movie in the queue, so the customer
+ * can report the checkout before it removes it, and put the copy back if the
+ * report fails.
+ * 
+ * @author Eric Matysek, Nick Brust
+ */
+class ReserveQueue implements Iterable<Movie> {
+
+	/**
+	 * Reserved movies, front of the queue first.
+	 */
+	private final GenericList<Movie> movies;
+
+	/**
+	 * Number of times each movie is in the queue. Movies that are not in the
+	 * queue have no entry.
+	 */
+	private final HashMap<Movie, int[]> counts;
+
+	/**
+	 * Constructs a new reserve queue held in the given list.
+	 * 
+	 * @param movies
+	 *            Empty list used to hold the reserved movies.
+	 */
+	ReserveQueue(GenericList<Movie> movies) {
+		this.movies = movies;
+		this.counts = new HashMap<Movie, int[]>();
+	}
+
+	/**
+	 * Returns the number of movies in the queue.
+	 * 
+	 * @return Number of movies in the queue.
+	 */
+	int size() {
+		return this.movies.size();
+	}
+
+	/**
+	 * Adds a movie to the back of the queue.
+	 * 
+	 * @param movie
+	 *            Movie to add.
+	 */
+	void addToRear(Movie movie) {
+		this.movies.addToRear(movie);
+		int[] count = this.counts.get(movie);
+		if (count == null) {
+			this.counts.put(movie, new int[] { 1 });
+		} else {
+			count[0]++;
+		}
+	}
+
+	/**
+	 * Removes the movie at the given position.
+	 * 
+	 * @param index
+	 *            Position of the movie.
+	 * @return The removed movie.
+	 */
+	Movie remove(int index) {
+		Movie movie = this.movies.remove(index);
+		this.uncount(movie);
+		return movie;
+	}
+
+	/**
+	 * Removes the movies at the given positions in one pass.
+	 * 
+	 * @param positions
+	 *            Positions of the movies, in strictly ascending order.
+	 * @return The removed movies, in the order of their positions.
+	 */
+	List<Movie> removeAll(int[] positions) {
+		List<Movie> removed = this.movies.removeAll(positions);
+		for (Movie movie : removed) {
+			this.uncount(movie);
+		}
+		return removed;
+	}
+
+	/**
+	 * Moves the movie at the given position ahead one position.
+	 * 
+	 * @param index
+	 *            Position of the movie.
+	 */
+	void moveAheadOne(int index) {
+		this.movies.moveAheadOne(index);
+	}
+
+	/**
+	 * Removes every movie from the queue.
+	 */
+	void clear() {
+		while (this.movies.size() > 0) {
+			this.movies.remove(this.movies.size() - 1);
+		}
+		this.counts.clear();
+	}
+
+	/**
+	 * Checks if the given movie is in the queue.
+	 * 
+	 * @param movie
+	 *            Movie to look for.
+	 * @return True if the movie is in the queue.
+	 */
+	boolean contains(Movie movie) {
+		return this.counts.containsKey(movie);
+	}
+
+	/**
+	 * Returns the movie at the given position.
+	 * 
+	 * @param index
+	 *            Position of the movie.
+	 * @return The movie at that position.
+	 */
+	Movie get(int index) {
+		return this.movies.lookAtItemN(index);
+	}
+
+	/**
+	 * Takes a copy of the first movie in the queue that has one out of the
+	 * inventory. The movie stays in the queue.
+	 * 
+	 * @return Position of the movie whose copy was taken, or -1 if no movie in
+	 *         the queue has a copy.
+	 */
+	int takeFirstAvailable() {
+		int index = 0;
+		for (Movie movie : this.movies) {
+			if (movie.tryRemoveOneCopy()) {
+				return index;
+			}
+			index++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Takes a copy of the given movie out of the inventory if the movie is in
+	 * the queue. The movie stays in the queue.
+	 * 
+	 * @param movie
+	 *            Movie to take.
+	 * @return Position of the first occurrence of the movie if a copy was
+	 *         taken, or -1 otherwise.
+	 */
+	int take(Movie movie) {
+		if (!this.contains(movie)) {
+			return -1;
+		}
+		int index = 0;
+		Iterator<Movie> it = this.movies.iterator();
+		while (it.next() != movie) {
+			// Skip to the first occurrence, which the count says is there
+			index++;
+		}
+		return movie.tryRemoveOneCopy() ? index : -1;
+	}
+
+	/**
+	 * Removes the first occurrence of the given movie from the queue, without
+	 * taking a copy out of the inventory.
+	 * 
+	 * @param movie
+	 *            Movie to remove.
+	 * @return True if the movie was in the queue.
+	 */
+	boolean remove(Movie movie) {
+		if (!this.contains(movie)) {
+			return false;
+		}
+		Iterator<Movie> it = this.movies.iterator();
+		while (it.next() != movie) {
+			// Skip to the first occurrence, which the count says is there
+		}
+		it.remove();
+		this.uncount(movie);
+		return true;
+	}
+
+	/**
+	 * Returns a read-only iterator over the queue, front first.
+	 * 
+	 * @return Iterator over the reserved movies.
+	 */
+	public Iterator<Movie> iterator() {
+		final Iterator<Movie> it = this.movies.iterator();
+		return new Iterator<Movie>() {
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			public Movie next() {
+				return it.next();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Lowers the count of a movie that left the queue.
+	 * 
+	 * @param movie
+	 *            Movie that was removed.
+	 */
+	private void uncount(Movie movie) {
+		int[] count = this.counts.get(movie);
+		if (--count[0] == 0) {
+			this.counts.remove(movie);
+		}
+	}
+}
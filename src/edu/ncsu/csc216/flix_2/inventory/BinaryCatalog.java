@@ -0,0 +1,349 @@
+package edu.ncsu.csc216.flix_2.inventory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Binary inventory file that loads without parsing. The titles are kept as
+ * UTF-8 in a single block and found through a table of offsets into it, next
+ * to a table of the number of copies of each movie, and the movies are stored
+ * already sorted by title. Loading maps the file and creates one small movie
+ * per entry that decodes its title from the mapped block when asked, so the
+ * titles take no heap at all. Each movie knows its own position, and exact
+ * titles are found by binary search over the block, so neither decodes more
+ * than a few titles. Case-insensitive, prefix and word searches on the
+ * {@link MovieDB} build its search index the first time, which does copy
+ * every title onto the heap.
+ * 
+ * The file holds, in order: {@link #MAGIC}, {@link #VERSION}, the number of
+ * movies and the size of the title block; one more offset than there are
+ * movies, the last being the size of the block; the number of copies of each
+ * movie; and the title block. The first byte of the magic number never starts
+ * a UTF-8 text, so {@link MovieDB} tells a binary catalog from a text
+ * inventory file by it. Use {@link #main(String[])} to convert a text
+ * inventory file.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class BinaryCatalog {
+
+	/**
+	 * First four bytes of a binary catalog, 0x89 followed by "FLC".
+	 */
+	public static final int MAGIC = 0x89464C43;
+
+	/**
+	 * Version of the catalog format.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Size of the header: magic, version, number of movies and size of the
+	 * title block.
+	 */
+	private static final int HEADER_SIZE = 16;
+
+	/**
+	 * Encoding of the titles.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Mapped block of titles.
+	 */
+	private final ByteBuffer titles;
+
+	/**
+	 * Offset of each title in the block, and the size of the block.
+	 */
+	private final IntBuffer offsets;
+
+	/**
+	 * Constructor, creates a catalog over the mapped tables.
+	 * 
+	 * @param titles
+	 *            mapped block of titles.
+	 * @param offsets
+	 *            offset of each title in the block, and the size of the block.
+	 */
+	private BinaryCatalog(ByteBuffer titles, IntBuffer offsets) {
+		this.titles = titles;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Converts a text inventory file to a binary catalog.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if there are not two arguments, or the text file cannot be
+	 *             read.
+	 * @param args
+	 *            name of the text inventory file, then name of the binary
+	 *            catalog to write.
+	 * @throws IOException
+	 *             if the catalog cannot be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			throw new IllegalArgumentException("Usage: BinaryCatalog <text inventory file> <binary catalog file>");
+		}
+		long start = System.nanoTime();
+		int size = convert(args[0], args[1]);
+		System.out.printf("Wrote %d movies to %s in %.1f ms%n", size, args[1], (System.nanoTime() - start) / 1e6);
+	}
+
+	/**
+	 * Converts a text inventory file to a binary catalog, replacing any file
+	 * of that name.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the text file cannot be read or has an invalid line.
+	 * @param textFile
+	 *            name of the text inventory file.
+	 * @param catalogFile
+	 *            name of the binary catalog to write.
+	 * @return number of movies written.
+	 * @throws IOException
+	 *             if the catalog cannot be written.
+	 */
+	public static int convert(String textFile, String catalogFile) throws IOException {
+		MovieDB inventory = new MovieDB(textFile, ForkJoinPool.commonPool());
+		write(inventory, catalogFile);
+		return inventory.size();
+	}
+
+	/**
+	 * Writes the movies of an inventory to a binary catalog, replacing any
+	 * file of that name. Each movie is written with the number of copies it
+	 * was created with, wherever they are now.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the inventory is null.
+	 * @param inventory
+	 *            inventory to write.
+	 * @param catalogFile
+	 *            name of the binary catalog to write.
+	 * @throws IOException
+	 *             if the catalog cannot be written.
+	 */
+	public static void write(MovieDB inventory, String catalogFile) throws IOException {
+		if (inventory == null) {
+			throw new IllegalArgumentException();
+		}
+		int size = inventory.size();
+		byte[][] encoded = new byte[size][];
+		ByteBuffer tables = ByteBuffer.allocate(HEADER_SIZE + 4 * (size + 1) + 4 * size);
+		tables.position(HEADER_SIZE);
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			encoded[i] = inventory.findItemAt(i).getName().getBytes(UTF_8);
+			tables.putInt(offset);
+			offset += encoded[i].length;
+		}
+		tables.putInt(offset);
+		for (int i = 0; i < size; i++) {
+			tables.putInt(inventory.findItemAt(i).getCopies());
+		}
+		tables.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, size).putInt(12, offset);
+		tables.flip();
+		FileChannel channel = FileChannel.open(Paths.get(catalogFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			while (tables.hasRemaining()) {
+				channel.write(tables);
+			}
+			ByteBuffer block = ByteBuffer.allocate(1 << 16);
+			for (byte[] title : encoded) {
+				if (block.remaining() < title.length) {
+					drain(channel, block);
+				}
+				if (title.length > block.capacity()) {
+					ByteBuffer large = ByteBuffer.wrap(title);
+					while (large.hasRemaining()) {
+						channel.write(large);
+					}
+				} else {
+					block.put(title);
+				}
+			}
+			drain(channel, block);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Tells whether a file starts like a binary catalog. A file that cannot
+	 * be read is not one.
+	 * 
+	 * @param fileName
+	 *            name of the file.
+	 * @return true if the file starts with the magic number.
+	 */
+	public static boolean isBinaryCatalog(String fileName) {
+		try {
+			FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+			try {
+				ByteBuffer magic = ByteBuffer.allocate(4);
+				while (magic.hasRemaining() && channel.read(magic) >= 0) {
+					// Keep reading until the magic number is in or the file ends.
+				}
+				return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Loads the movies in a binary catalog by mapping it. The movies are
+	 * returned in the order they are stored, which is sorted by title.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the file cannot be read or is not a valid catalog.
+	 * @param fileName
+	 *            name of the binary catalog.
+	 * @return the movies in the catalog.
+	 */
+	static List<Movie> load(String fileName) {
+		MappedByteBuffer file;
+		try {
+			FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+			try {
+				long length = channel.size();
+				if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException();
+				}
+				file = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException();
+		}
+		int size = file.getInt(8);
+		int blockSize = file.getInt(12);
+		if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION || size < 0 || blockSize < 0
+				|| file.limit() != HEADER_SIZE + 8L * size + 4 + blockSize) {
+			throw new IllegalArgumentException();
+		}
+		file.position(HEADER_SIZE);
+		IntBuffer offsets = file.slice().asIntBuffer();
+		offsets.limit(size + 1);
+		file.position(HEADER_SIZE + 4 * (size + 1));
+		IntBuffer copies = file.slice().asIntBuffer();
+		copies.limit(size);
+		file.position(HEADER_SIZE + 8 * size + 4);
+		BinaryCatalog catalog = new BinaryCatalog(file.slice(), offsets);
+		Movie[] movies = new Movie[size];
+		int previous = 0;
+		for (int i = 0; i < size; i++) {
+			int offset = offsets.get(i + 1);
+			if (offset < previous || copies.get(i) < 0 || (i == 0 && offsets.get(0) != 0)) {
+				throw new IllegalArgumentException();
+			}
+			movies[i] = new CatalogMovie(catalog, i, copies.get(i));
+			previous = offset;
+		}
+		if (previous != blockSize) {
+			throw new IllegalArgumentException();
+		}
+		return Arrays.asList(movies);
+	}
+
+	/**
+	 * Decodes the title at the given position.
+	 * 
+	 * @param index
+	 *            position of the movie in the catalog.
+	 * @return title of the movie.
+	 */
+	private String title(int index) {
+		int start = offsets.get(index);
+		byte[] bytes = new byte[offsets.get(index + 1) - start];
+		ByteBuffer block = titles.duplicate();
+		block.position(start);
+		block.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * Writes out everything in a buffer and clears it.
+	 * 
+	 * @param channel
+	 *            file written to.
+	 * @param buffer
+	 *            bytes to write, from the start of the buffer to its position.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Movie whose title stays in the mapped title block of a catalog.
+	 */
+	private static class CatalogMovie extends Movie {
+
+		/**
+		 * Catalog holding the title.
+		 */
+		private final BinaryCatalog catalog;
+
+		/**
+		 * Position of the movie in the catalog.
+		 */
+		private final int index;
+
+		/**
+		 * Constructor, creates a movie stored in a catalog.
+		 * 
+		 * @param catalog
+		 *            catalog holding the title.
+		 * @param index
+		 *            position of the movie in the catalog.
+		 * @param copies
+		 *            number of copies in the inventory.
+		 */
+		CatalogMovie(BinaryCatalog catalog, int index, int copies) {
+			super(null, copies);
+			this.catalog = catalog;
+			this.index = index;
+		}
+
+		/**
+		 * Returns the movie title, decoded from the catalog.
+		 * 
+		 * @return movie title.
+		 */
+		public String getName() {
+			return catalog.title(index);
+		}
+
+		/**
+		 * Returns the position of the movie in the catalog, so finding the
+		 * movie in the inventory decodes no titles.
+		 * 
+		 * @return position of the movie in the catalog.
+		 */
+		int catalogPosition() {
+			return index;
+		}
+	}
+}
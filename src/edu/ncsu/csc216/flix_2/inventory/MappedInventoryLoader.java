@@ -0,0 +1,272 @@
+package edu.ncsu.csc216.flix_2.inventory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads an inventory file by memory-mapping it and parsing line-aligned chunks
+ * of it in parallel on a fork-join pool. Each chunk is parsed and sorted on its
+ * own, and the sorted runs are merged back together in file order, so movies
+ * with the same title keep the order they appear in the file.
+ * 
+ * Lines end with a newline, optionally preceded by a carriage return, and
+ * titles are decoded as UTF-8.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+class MappedInventoryLoader {
+
+	/**
+	 * Largest number of bytes mapped by a single buffer.
+	 */
+	static final int MAX_SEGMENT = 1 << 30;
+
+	/**
+	 * Chunks of at most this many bytes are parsed without being split further.
+	 */
+	static final int CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * Orders movies the same way as {@link Movie#compareToByName(Movie)}.
+	 */
+	private final Comparator<Movie> byName;
+
+	/**
+	 * Pool the chunks are parsed on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor, creates a loader that parses on the given pool.
+	 * 
+	 * @param pool
+	 *            pool the chunks are parsed on.
+	 * @param byName
+	 *            order the movies are sorted in.
+	 */
+	MappedInventoryLoader(ForkJoinPool pool, Comparator<Movie> byName) {
+		this.pool = pool;
+		this.byName = byName;
+	}
+
+	/**
+	 * Loads and sorts every movie in the file.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the file cannot be read, is empty, or has an invalid line.
+	 * @param fileName
+	 *            name of the file containing the movie information.
+	 * @return the movies in the file, sorted by title.
+	 */
+	List<Movie> load(String fileName) {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		} catch (IOException e) {
+			throw new IllegalArgumentException();
+		}
+		try {
+			long size = channel.size();
+			if (size == 0) {
+				throw new IllegalArgumentException();
+			}
+			List<ChunkTask> tasks = new ArrayList<ChunkTask>();
+			long start = 0;
+			while (start < size) {
+				long end = segmentEnd(channel, start, size);
+				MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				tasks.add(new ChunkTask(segment, 0, (int) (end - start)));
+				start = end;
+			}
+			for (ChunkTask task : tasks) {
+				pool.execute(task);
+			}
+			List<Movie> movies = new ArrayList<Movie>();
+			for (ChunkTask task : tasks) {
+				movies = merge(movies, task.join());
+			}
+			return movies;
+		} catch (IOException e) {
+			throw new IllegalArgumentException();
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Nothing more can be done with the file at this point.
+			}
+		}
+	}
+
+	/**
+	 * Finds the end of the segment starting at the given offset: just after
+	 * the last newline that keeps the segment within MAX_SEGMENT bytes, or the
+	 * end of the file.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 * @throws IllegalArgumentException
+	 *             if a single line is longer than MAX_SEGMENT bytes.
+	 * @param channel
+	 *            channel of the file.
+	 * @param start
+	 *            offset of the start of the segment.
+	 * @param size
+	 *            size of the file.
+	 * @return offset just past the end of the segment.
+	 */
+	private static long segmentEnd(FileChannel channel, long start, long size) throws IOException {
+		if (size - start <= MAX_SEGMENT) {
+			return size;
+		}
+		ByteBuffer probe = ByteBuffer.allocate(1 << 16);
+		long end = start + MAX_SEGMENT;
+		while (end > start) {
+			long probeStart = Math.max(start, end - probe.capacity());
+			probe.clear();
+			probe.limit((int) (end - probeStart));
+			channel.read(probe, probeStart);
+			for (int i = probe.position() - 1; i >= 0; i--) {
+				if (probe.get(i) == '\n') {
+					return probeStart + i + 1;
+				}
+			}
+			end = probeStart;
+		}
+		throw new IllegalArgumentException();
+	}
+
+	/**
+	 * Merges two sorted lists into a new sorted list. Movies from the first
+	 * list come before equal movies from the second.
+	 * 
+	 * @param first
+	 *            sorted movies that came earlier in the file.
+	 * @param second
+	 *            sorted movies that came later in the file.
+	 * @return merged, sorted list of movies.
+	 */
+	private List<Movie> merge(List<Movie> first, List<Movie> second) {
+		if (first.isEmpty()) {
+			return second;
+		}
+		if (second.isEmpty()) {
+			return first;
+		}
+		List<Movie> merged = new ArrayList<Movie>(first.size() + second.size());
+		int i = 0;
+		int j = 0;
+		while (i < first.size() && j < second.size()) {
+			if (byName.compare(second.get(j), first.get(i)) < 0) {
+				merged.add(second.get(j++));
+			} else {
+				merged.add(first.get(i++));
+			}
+		}
+		merged.addAll(first.subList(i, first.size()));
+		merged.addAll(second.subList(j, second.size()));
+		return merged;
+	}
+
+	/**
+	 * Parses a line-aligned range of a mapped segment, splitting it in half at
+	 * a line break until the pieces are no bigger than CHUNK_SIZE.
+	 * 
+	 * @author Nick Brust, Eric Matysek
+	 */
+	private class ChunkTask extends RecursiveTask<List<Movie>> {
+
+		/** ID for serialization */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Segment holding the chunk.
+		 */
+		private final transient ByteBuffer segment;
+
+		/**
+		 * Index of the first byte of the chunk.
+		 */
+		private final int start;
+
+		/**
+		 * Index after the last byte of the chunk.
+		 */
+		private final int end;
+
+		/**
+		 * Constructor, creates a task for the given range of a segment.
+		 * 
+		 * @param segment
+		 *            segment holding the chunk.
+		 * @param start
+		 *            index of the first byte of the chunk.
+		 * @param end
+		 *            index after the last byte of the chunk.
+		 */
+		ChunkTask(ByteBuffer segment, int start, int end) {
+			this.segment = segment;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Parses and sorts the chunk, forking the two halves if it is too big.
+		 * 
+		 * @return the movies in the chunk, sorted by title.
+		 */
+		protected List<Movie> compute() {
+			if (end - start > CHUNK_SIZE) {
+				int middle = start + (end - start) / 2;
+				while (middle < end && segment.get(middle - 1) != '\n') {
+					middle++;
+				}
+				if (middle < end) {
+					ChunkTask second = new ChunkTask(segment, middle, end);
+					second.fork();
+					List<Movie> first = new ChunkTask(segment, start, middle).compute();
+					return merge(first, second.join());
+				}
+			}
+			List<Movie> movies = new ArrayList<Movie>();
+			int lineStart = start;
+			for (int i = start; i < end; i++) {
+				if (segment.get(i) == '\n') {
+					movies.add(parseLine(lineStart, i));
+					lineStart = i + 1;
+				}
+			}
+			if (lineStart < end) {
+				movies.add(parseLine(lineStart, end));
+			}
+			Collections.sort(movies, byName);
+			return movies;
+		}
+
+		/**
+		 * Parses one line, dropping a carriage return before the newline.
+		 * 
+		 * @param lineStart
+		 *            index of the first byte of the line.
+		 * @param lineEnd
+		 *            index of the newline, or the end of the chunk.
+		 * @return Movie described by the line.
+		 */
+		private Movie parseLine(int lineStart, int lineEnd) {
+			int last = lineEnd;
+			if (last > lineStart && segment.get(last - 1) == '\r') {
+				last--;
+			}
+			return MovieLineParser.parse(segment, lineStart, last);
+		}
+	}
+}
@@ -1,9 +1,12 @@
 package edu.ncsu.csc216.flix_2.inventory;
 
-import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
- * Represents a movie in the system.
+ * Represents a movie in the system. The number of copies in the inventory is
+ * an atomic counter, so copies can be checked out and returned from many
+ * threads without locking, and threads working on different movies never
+ * contend with each other.
  * 
  * @author Nick Brust, Eric Matysek
  */
@@ -14,10 +17,26 @@ public class Movie {
 	 */
 	private String name;
 
+	/**
+	 * Updates the number of copies in the inventory atomically.
+	 */
+	private static final AtomicIntegerFieldUpdater<Movie> STOCK = AtomicIntegerFieldUpdater.newUpdater(Movie.class, "inStock");
+
 	/**
 	 * Number of movies in the inventory.
 	 */
-	private int inStock;
+	private volatile int inStock;
+
+	/**
+	 * Number of copies the store owns, in the inventory or not.
+	 */
+	private int copies;
+
+	/**
+	 * Told when the movie comes back into stock, or null if nobody is
+	 * listening.
+	 */
+	private volatile StockListener listener;
 
 	/**
 	 * Constructor, creating Movie objects from a string.
@@ -29,42 +48,25 @@ public class Movie {
 	 *            file.
 	 */
 	public Movie(String line) {
-		int numInStock;
-		String movieTitle;
-		Scanner console = new Scanner(line);
-
-		if (!console.hasNextInt()) {
-			console.close();
-			throw new IllegalArgumentException();
-		}
-
-		numInStock = console.nextInt();
-
-		if (!console.hasNext()) {
-			console.close();
-			throw new IllegalArgumentException();
-		}
-		movieTitle = console.next();
-
-		if (console.hasNextLine()) {
-			movieTitle += console.nextLine();
-			if (movieTitle.startsWith("A ") || movieTitle.startsWith("a ")) {
-				movieTitle = movieTitle.substring(2);
-			} else if (movieTitle.startsWith("An ") || movieTitle.startsWith("an ")){
-				movieTitle = movieTitle.substring(3);
-			} else if (movieTitle.startsWith("The ") || movieTitle.startsWith("the ")) {
-				movieTitle = movieTitle.substring(4);
-			}
-		}
+		Movie parsed = MovieLineParser.parse(line);
+		this.name = parsed.name;
+		this.inStock = parsed.inStock;
+		this.copies = parsed.inStock;
+	}
 
-		if (console.hasNext()) {
-			console.close();
-			throw new IllegalArgumentException();
-		} else {
-			console.close();
-			inStock = numInStock;
-			name = movieTitle;
-		}
+	/**
+	 * Constructor, creating a Movie from an already parsed title and quantity.
+	 * A subclass that returns the title itself passes a null title.
+	 * 
+	 * @param name
+	 *            title of the movie.
+	 * @param inStock
+	 *            number of copies in the inventory.
+	 */
+	Movie(String name, int inStock) {
+		this.name = name;
+		this.inStock = inStock;
+		this.copies = inStock;
 	}
 
 	/**
@@ -76,6 +78,16 @@ public class Movie {
 		return name;
 	}
 
+	/**
+	 * Returns the number of copies the store owns, which is the quantity the
+	 * movie was created with.
+	 * 
+	 * @return number of copies, in the inventory or checked out.
+	 */
+	public int getCopies() {
+		return copies;
+	}
+
 	/**
 	 * Returns the movie title and denotes whether it is out of stock.
 	 * 
@@ -83,9 +95,9 @@ public class Movie {
 	 */
 	public String getDisplayName() {
 		if (!isAvailable()) {
-			return name + " (currently unavailable)";
+			return getName() + " (currently unavailable)";
 		} else {
-			return name;
+			return getName();
 		}
 	}
 
@@ -100,6 +112,17 @@ public class Movie {
 		return this.getName().compareToIgnoreCase(movie.getName());
 	}
 
+	/**
+	 * Returns the position the movie was loaded at, for movies that know it
+	 * without searching.
+	 * 
+	 * @return position of the movie in the catalog it was loaded from, or -1
+	 *         if it does not know.
+	 */
+	int catalogPosition() {
+		return -1;
+	}
+
 	/**
 	 * Determines whether or not the movie is in inventory.
 	 * 
@@ -113,7 +136,52 @@ public class Movie {
 	 * Places a copy of a movie into inventory.
 	 */
 	public void backToInventory() {
-		inStock++;
+		if (STOCK.incrementAndGet(this) == 1) {
+			StockListener l = listener;
+			if (l != null) {
+				l.restocked(this);
+			}
+		}
+	}
+
+	/**
+	 * Sets the listener told when this movie comes back into stock.
+	 * 
+	 * @param listener
+	 *            listener to tell, or null to stop telling anyone.
+	 */
+	public void setStockListener(StockListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Removes a copy of a movie from inventory if there is one. Checking for
+	 * a copy and removing it happen as one atomic step, so two customers can
+	 * never both get the last copy.
+	 * 
+	 * @return true if a copy was removed, false if none were in inventory.
+	 */
+	public boolean tryRemoveOneCopy() {
+		int stock = inStock;
+		while (stock > 0) {
+			if (STOCK.compareAndSet(this, stock, stock - 1)) {
+				return true;
+			}
+			stock = inStock;
+		}
+		return false;
+	}
+
+	/**
+	 * Puts back a copy taken by {@link #tryRemoveOneCopy()} that was not
+	 * handed out after all. Like {@link #backToInventory()}, the stock
+	 * listener is told if the movie comes back into stock, since customers
+	 * may have started waiting while the copy was out. The listener may hand
+	 * the copy to a waiting customer, so the caller must not hold a
+	 * customer's lock.
+	 */
+	public void undoRemoveOneCopy() {
+		backToInventory();
 	}
 
 	/**
@@ -123,10 +191,8 @@ public class Movie {
 	 *             if attempting to remove a movie with no copies in inventory.
 	 */
 	public void removeOneCopyFromInventory() {
-		if (inStock <= 0) {
+		if (!tryRemoveOneCopy()) {
 			throw new IllegalStateException("No copy of this movie currently available.");
-		} else {
-			inStock--;
 		}
 	}
 }
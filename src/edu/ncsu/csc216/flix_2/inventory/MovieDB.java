@@ -1,10 +1,20 @@
 package edu.ncsu.csc216.flix_2.inventory;
 
-import java.io.File;
+import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
 
-import edu.ncsu.csc216.flix_2.list_util.MultiPurposeList;
+import edu.ncsu.csc216.flix_2.list_util.ArrayMultiPurposeList;
+import edu.ncsu.csc216.flix_2.list_util.GenericList;
 
 /**
  * Represents an internal database of movies.
@@ -13,61 +23,128 @@ import edu.ncsu.csc216.flix_2.list_util.MultiPurposeList;
  */
 public class MovieDB {
 
+	/**
+	 * Orders movies the same way as {@link Movie#compareToByName(Movie)}.
+	 */
+	private static final Comparator<Movie> BY_NAME = new Comparator<Movie>() {
+		public int compare(Movie first, Movie second) {
+			return first.compareToByName(second);
+		}
+	};
+
 	/**
 	 * List of movies in the inventory.
 	 */
-	private MultiPurposeList<Movie> movies;
+	private GenericList<Movie> movies;
 
 	/**
-	 * Constructor, creates a movie database from a file.
+	 * Search index over the titles in the inventory, built on the first search.
+	 */
+	private MovieSearchIndex searchIndex;
+
+	/**
+	 * Whether the movies come from a {@link BinaryCatalog}, whose titles are
+	 * decoded on every call, so exact titles are found without the index.
+	 */
+	private boolean mapped;
+
+	/**
+	 * Constructor, creates a movie database from a file, which is either a text
+	 * inventory file or a {@link BinaryCatalog}. The movies are held in an
+	 * array-backed list, so they can be found by position in constant time.
 	 * 
 	 * @throws IllegalArgumentException
 	 *             if the file cannot be read.
 	 * @param fileName
 	 *            name of the file containing the movie information.
 	 */
-
 	public MovieDB(String fileName) {
-		Scanner console;
+		this(fileName, new ArrayMultiPurposeList<Movie>());
+	}
+
+	/**
+	 * Constructor, creates a movie database from a file, holding the movies in
+	 * the given list. Every line of the file is parsed into a buffer first, the
+	 * buffer is sorted once by title, and the list is then filled in a single
+	 * pass. Movies with the same title stay in the order they appear in the
+	 * file. A {@link BinaryCatalog} is already sorted, so it is mapped and
+	 * added to the list as it is.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the file cannot be read or the list is not empty.
+	 * @param fileName
+	 *            name of the file containing the movie information.
+	 * @param movies
+	 *            empty list used to hold the movies in the inventory.
+	 */
+	public MovieDB(String fileName, GenericList<Movie> movies) {
+		if (movies == null || !movies.isEmpty()) {
+			throw new IllegalArgumentException();
+		}
+		if (BinaryCatalog.isBinaryCatalog(fileName)) {
+			movies.addAllToRear(BinaryCatalog.load(fileName));
+			this.movies = movies;
+			this.mapped = true;
+			return;
+		}
+		ArrayList<Movie> buffer = new ArrayList<Movie>();
+		BufferedReader reader;
 		try {
-			File file = new File(fileName);
-			console = new Scanner(file);
+			reader = new BufferedReader(new FileReader(fileName));
 		} catch (FileNotFoundException e) {
 			throw new IllegalArgumentException();
 		}
-		Movie movie;
-		this.movies = new MultiPurposeList<Movie>();
+		try {
+			String line = reader.readLine();
+			if (line == null) {
+				throw new IllegalArgumentException();
+			}
+			while (line != null) {
+				buffer.add(new Movie(line));
+				line = reader.readLine();
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException();
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				// Nothing more can be done with the file at this point.
+			}
+		}
+		Collections.sort(buffer, BY_NAME);
+		movies.addAllToRear(buffer);
+		this.movies = movies;
+	}
 
-		if (!console.hasNext()) {
-			console.close();
+	/**
+	 * Constructor, creates a movie database by memory-mapping the file and
+	 * parsing line-aligned chunks of it in parallel on the given pool. The
+	 * sorted chunks are merged, so the result is the same as with
+	 * {@link #MovieDB(String)} for files with newline or carriage return and
+	 * newline line endings and UTF-8 titles. A {@link BinaryCatalog} is
+	 * mapped and used as it is.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the file cannot be read, or the pool is null.
+	 * @param fileName
+	 *            name of the file containing the movie information.
+	 * @param pool
+	 *            pool the file is parsed on.
+	 */
+	public MovieDB(String fileName, ForkJoinPool pool) {
+		if (pool == null) {
 			throw new IllegalArgumentException();
+		}
+		List<Movie> sorted;
+		if (BinaryCatalog.isBinaryCatalog(fileName)) {
+			sorted = BinaryCatalog.load(fileName);
+			this.mapped = true;
 		} else {
-			while (console.hasNextLine()) {
-				String line = console.nextLine();
-				movie = new Movie(line);
-				if (movies.size() == 0) {
-					movies.addItem(0, movie);
-				} else {
-					int placeHolder = 0;
-					int size = movies.size();
-					movies.resetIterator();
-					while (movies.hasNext()) {
-						Movie next = movies.next();
-						int difference = movie.compareToByName(next);
-						if (difference < 0) {
-							movies.addItem(placeHolder, movie);
-							break;
-						} else {
-							placeHolder++;
-							if (placeHolder == size) {
-								movies.addToRear(movie);
-							}
-						}
-					}
-				}
-			}
-			console.close();
+			sorted = new MappedInventoryLoader(pool, BY_NAME).load(fileName);
 		}
+		this.movies = new ArrayMultiPurposeList<Movie>(sorted.size());
+		this.movies.addAllToRear(sorted);
 	}
 
 	/**
@@ -78,12 +155,52 @@ public class MovieDB {
 	 *         separated by new lines.
 	 */
 	public String traverse() {
-		String list = "";
-		movies.resetIterator();
-		while (movies.hasNext()) {
-			list += movies.next().getDisplayName() + "\n";
+		return traverse(0, movies.size());
+	}
+
+	/**
+	 * Creates a String containing one page of the movies using their display
+	 * name, separated by new lines. A page past the end of the inventory is
+	 * empty.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the offset or the limit is negative.
+	 * @param offset
+	 *            position of the first movie on the page.
+	 * @param limit
+	 *            largest number of movies on the page.
+	 * @return String containing the movies on the page using their display
+	 *         name, separated by new lines.
+	 */
+	public String traverse(int offset, int limit) {
+		if (offset < 0 || limit < 0) {
+			throw new IllegalArgumentException();
+		}
+		int end = (int) Math.min((long) offset + limit, movies.size());
+		StringBuilder list = new StringBuilder();
+		if (movies instanceof RandomAccess) {
+			for (int i = offset; i < end; i++) {
+				list.append(movies.lookAtItemN(i).getDisplayName()).append('\n');
+			}
+		} else {
+			Iterator<Movie> cursor = movies.iterator();
+			for (int i = 0; i < end; i++) {
+				Movie movie = cursor.next();
+				if (i >= offset) {
+					list.append(movie.getDisplayName()).append('\n');
+				}
+			}
 		}
-		return list;
+		return list.toString();
+	}
+
+	/**
+	 * Returns the number of movies in the inventory.
+	 * 
+	 * @return number of movies in the inventory.
+	 */
+	public int size() {
+		return movies.size();
 	}
 
 	/**
@@ -101,4 +218,216 @@ public class MovieDB {
 		}
 		return movies.lookAtItemN(index);
 	}
+
+	/**
+	 * Returns the movies at many positions. The positions are sorted once and
+	 * checked together, and a list without constant time lookup is walked
+	 * once from the lowest position to the highest.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if any position is out of range.
+	 * @param positions
+	 *            positions of the movies, in any order and possibly repeated.
+	 * @return Movies at the given positions, in the order of the positions.
+	 */
+	public List<Movie> findItemsAt(int[] positions) {
+		// Each position with its place in the request, sorted by position
+		long[] order = new long[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			order[i] = ((long) positions[i] << 32) | i;
+		}
+		Arrays.sort(order);
+		if (order.length > 0 && ((int) (order[0] >> 32) < 0 || (int) (order[order.length - 1] >> 32) >= movies.size())) {
+			throw new IllegalArgumentException();
+		}
+		Movie[] found = new Movie[positions.length];
+		if (movies instanceof RandomAccess) {
+			for (int i = 0; i < positions.length; i++) {
+				found[i] = movies.lookAtItemN(positions[i]);
+			}
+		} else {
+			Iterator<Movie> it = movies.iterator();
+			Movie current = null;
+			int at = -1;
+			for (long entry : order) {
+				int position = (int) (entry >> 32);
+				while (at < position) {
+					current = it.next();
+					at++;
+				}
+				found[(int) entry] = current;
+			}
+		}
+		return Arrays.asList(found);
+	}
+
+	/**
+	 * Returns the position of the given movie. A movie loaded from a
+	 * {@link BinaryCatalog} knows its position, which is checked by identity.
+	 * Otherwise movies are sorted by title, so the title is found by binary
+	 * search, and only movies with the same title are compared by identity.
+	 * 
+	 * @param movie
+	 *            movie to find.
+	 * @return position of the movie, or -1 if it is not in the inventory.
+	 */
+	public int indexOf(Movie movie) {
+		if (movie == null) {
+			return -1;
+		}
+		int known = movie.catalogPosition();
+		if (known >= 0 && known < movies.size() && movies.lookAtItemN(known) == movie) {
+			return known;
+		}
+		int low = 0;
+		int high = movies.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (movies.lookAtItemN(mid).compareToByName(movie) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		for (int i = low; i < movies.size() && movies.lookAtItemN(i).compareToByName(movie) == 0; i++) {
+			if (movies.lookAtItemN(i) == movie) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Sets the listener told when any movie in the inventory comes back into
+	 * stock.
+	 * 
+	 * @param listener
+	 *            listener to tell, or null to stop telling anyone.
+	 */
+	public void setStockListener(StockListener listener) {
+		for (Movie movie : movies) {
+			movie.setStockListener(listener);
+		}
+	}
+
+	/**
+	 * Returns the positions of the movies whose title is exactly the given
+	 * title. For a {@link BinaryCatalog} the title is found by binary search,
+	 * so the search index is not built and the titles stay off the heap.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the title is null.
+	 * @param title
+	 *            title to find.
+	 * @return positions of the matching movies, in inventory order.
+	 */
+	public int[] findTitle(String title) {
+		if (title == null) {
+			throw new IllegalArgumentException();
+		}
+		if (mapped) {
+			return findSortedTitle(title);
+		}
+		return searchIndex().findTitle(title);
+	}
+
+	/**
+	 * Finds the movies with exactly the given title by binary search over the
+	 * titles, which are sorted ignoring case.
+	 * 
+	 * @param title
+	 *            title to find.
+	 * @return positions of the matching movies, in inventory order.
+	 */
+	private int[] findSortedTitle(String title) {
+		int low = 0;
+		int high = movies.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (movies.lookAtItemN(mid).getName().compareToIgnoreCase(title) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		int[] found = new int[0];
+		for (int i = low; i < movies.size(); i++) {
+			String name = movies.lookAtItemN(i).getName();
+			if (name.compareToIgnoreCase(title) != 0) {
+				break;
+			}
+			if (name.equals(title)) {
+				found = Arrays.copyOf(found, found.length + 1);
+				found[found.length - 1] = i;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the positions of the movies whose title matches the given title,
+	 * ignoring case.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the title is null.
+	 * @param title
+	 *            title to find.
+	 * @return positions of the matching movies, in inventory order.
+	 */
+	public int[] findTitleIgnoreCase(String title) {
+		if (title == null) {
+			throw new IllegalArgumentException();
+		}
+		return searchIndex().findTitleIgnoreCase(title);
+	}
+
+	/**
+	 * Returns the positions of the first movies whose title starts with the
+	 * given prefix, ignoring case. Used for type-ahead.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the prefix is null or the limit is negative.
+	 * @param prefix
+	 *            start of the title.
+	 * @param limit
+	 *            largest number of positions to return.
+	 * @return positions of the matching movies, in inventory order.
+	 */
+	public int[] findTitlesStartingWith(String prefix, int limit) {
+		if (prefix == null || limit < 0) {
+			throw new IllegalArgumentException();
+		}
+		return searchIndex().findTitlesStartingWith(prefix, limit);
+	}
+
+	/**
+	 * Returns the positions of the first movies whose title contains every
+	 * word of the query, ignoring case and punctuation.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the query is null or the limit is negative.
+	 * @param query
+	 *            words to find.
+	 * @param limit
+	 *            largest number of positions to return.
+	 * @return positions of the matching movies, in inventory order.
+	 */
+	public int[] findTitlesWithWords(String query, int limit) {
+		if (query == null || limit < 0) {
+			throw new IllegalArgumentException();
+		}
+		return searchIndex().findTitlesWithWords(query, limit);
+	}
+
+	/**
+	 * Returns the search index, building it the first time it is needed.
+	 * 
+	 * @return search index over the titles in the inventory.
+	 */
+	private synchronized MovieSearchIndex searchIndex() {
+		if (searchIndex == null) {
+			searchIndex = new MovieSearchIndex(movies);
+		}
+		return searchIndex;
+	}
 }
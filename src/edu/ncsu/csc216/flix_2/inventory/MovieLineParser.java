@@ -0,0 +1,335 @@
+package edu.ncsu.csc216.flix_2.inventory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Parses inventory lines into Movie objects without a Scanner or regular
+ * expressions. A line holds a stock count, whitespace, and the title. The stock
+ * count is an optional sign followed by decimal digits. A leading "A", "An" or
+ * "The" (either case of the first letter) is removed from titles of more than
+ * one word, and any trailing whitespace is kept, exactly as the original
+ * Scanner-based parsing did.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public final class MovieLineParser {
+
+	/**
+	 * Charset used to decode titles held in byte ranges.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The parser only has static methods.
+	 */
+	private MovieLineParser() {
+	}
+
+	/**
+	 * Parses a whole line.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the line is not a valid inventory line.
+	 * @param line
+	 *            line to parse.
+	 * @return Movie described by the line.
+	 */
+	public static Movie parse(CharSequence line) {
+		return parse(line, 0, line.length());
+	}
+
+	/**
+	 * Parses the characters of a sequence from start, inclusive, to end,
+	 * exclusive.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the range is not a valid inventory line.
+	 * @param seq
+	 *            sequence holding the line.
+	 * @param start
+	 *            index of the first character of the line.
+	 * @param end
+	 *            index after the last character of the line.
+	 * @return Movie described by the range.
+	 */
+	public static Movie parse(CharSequence seq, int start, int end) {
+		int i = skipWhitespace(seq, start, end);
+		int numberStart = i;
+		while (i < end && !Character.isWhitespace(seq.charAt(i))) {
+			i++;
+		}
+		int inStock = parseStock(seq, numberStart, i);
+		i = skipWhitespace(seq, i, end);
+		if (i == end) {
+			throw new IllegalArgumentException();
+		}
+		int titleEnd = i;
+		while (titleEnd < end && !isLineSeparator(seq.charAt(titleEnd))) {
+			titleEnd++;
+		}
+		if (skipWhitespace(seq, titleEnd, end) != end) {
+			throw new IllegalArgumentException();
+		}
+		int titleStart = i + articleLength(seq, i, titleEnd);
+		return new Movie(seq.subSequence(titleStart, titleEnd).toString(), inStock);
+	}
+
+	/**
+	 * Parses the bytes of a buffer from start, inclusive, to end, exclusive,
+	 * using absolute gets so the buffer's position is left alone. Whitespace
+	 * and digits are recognized as ASCII, and the title is decoded as UTF-8.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the range is not a valid inventory line.
+	 * @param buffer
+	 *            buffer holding the line.
+	 * @param start
+	 *            index of the first byte of the line.
+	 * @param end
+	 *            index after the last byte of the line.
+	 * @return Movie described by the range.
+	 */
+	public static Movie parse(ByteBuffer buffer, int start, int end) {
+		int i = skipWhitespace(buffer, start, end);
+		int numberStart = i;
+		while (i < end && !isWhitespace(buffer.get(i))) {
+			i++;
+		}
+		int inStock = parseStock(buffer, numberStart, i);
+		i = skipWhitespace(buffer, i, end);
+		if (i == end) {
+			throw new IllegalArgumentException();
+		}
+		int titleEnd = i;
+		while (titleEnd < end && buffer.get(titleEnd) != '\n' && buffer.get(titleEnd) != '\r') {
+			titleEnd++;
+		}
+		if (skipWhitespace(buffer, titleEnd, end) != end) {
+			throw new IllegalArgumentException();
+		}
+		int titleStart = i + articleLength(buffer, i, titleEnd);
+		if (buffer.hasArray()) {
+			return new Movie(new String(buffer.array(), buffer.arrayOffset() + titleStart, titleEnd - titleStart, UTF_8), inStock);
+		}
+		byte[] title = new byte[titleEnd - titleStart];
+		ByteBuffer view = buffer.duplicate();
+		view.position(titleStart);
+		view.get(title);
+		return new Movie(new String(title, UTF_8), inStock);
+	}
+
+	/**
+	 * Parses a stock count made of an optional sign and decimal digits.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the characters are not a number that fits in an int.
+	 * @param seq
+	 *            sequence holding the number.
+	 * @param start
+	 *            index of the first character of the number.
+	 * @param end
+	 *            index after the last character of the number.
+	 * @return value of the number.
+	 */
+	private static int parseStock(CharSequence seq, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (seq.charAt(i) == '-' || seq.charAt(i) == '+')) {
+			negative = seq.charAt(i) == '-';
+			i++;
+		}
+		if (i == end) {
+			throw new IllegalArgumentException();
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = seq.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new IllegalArgumentException();
+			}
+			value = value * 10 + digit;
+			if (value > Integer.MAX_VALUE + 1L) {
+				throw new IllegalArgumentException();
+			}
+		}
+		return toStock(value, negative);
+	}
+
+	/**
+	 * Parses a stock count made of an optional sign and ASCII decimal digits.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the bytes are not a number that fits in an int.
+	 * @param buffer
+	 *            buffer holding the number.
+	 * @param start
+	 *            index of the first byte of the number.
+	 * @param end
+	 *            index after the last byte of the number.
+	 * @return value of the number.
+	 */
+	private static int parseStock(ByteBuffer buffer, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+		if (i == end) {
+			throw new IllegalArgumentException();
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new IllegalArgumentException();
+			}
+			value = value * 10 + digit;
+			if (value > Integer.MAX_VALUE + 1L) {
+				throw new IllegalArgumentException();
+			}
+		}
+		return toStock(value, negative);
+	}
+
+	/**
+	 * Applies the sign to a parsed value and checks that it fits in an int.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the signed value does not fit in an int.
+	 * @param value
+	 *            magnitude of the number.
+	 * @param negative
+	 *            whether the number had a minus sign.
+	 * @return the signed value.
+	 */
+	private static int toStock(long value, boolean negative) {
+		long signed = negative ? -value : value;
+		if (signed > Integer.MAX_VALUE || signed < Integer.MIN_VALUE) {
+			throw new IllegalArgumentException();
+		}
+		return (int) signed;
+	}
+
+	/**
+	 * Returns the number of characters taken up by a leading "A ", "An " or
+	 * "The " in the title, or 0 if the title does not start with one.
+	 * 
+	 * @param seq
+	 *            sequence holding the title.
+	 * @param start
+	 *            index of the first character of the title.
+	 * @param end
+	 *            index after the last character of the title.
+	 * @return length of the leading article and its space, or 0.
+	 */
+	private static int articleLength(CharSequence seq, int start, int end) {
+		int length = end - start;
+		char first = seq.charAt(start);
+		if ((first == 'A' || first == 'a') && length >= 2) {
+			if (seq.charAt(start + 1) == ' ') {
+				return 2;
+			}
+			if (length >= 3 && seq.charAt(start + 1) == 'n' && seq.charAt(start + 2) == ' ') {
+				return 3;
+			}
+		} else if ((first == 'T' || first == 't') && length >= 4 && seq.charAt(start + 1) == 'h' && seq.charAt(start + 2) == 'e'
+				&& seq.charAt(start + 3) == ' ') {
+			return 4;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the number of bytes taken up by a leading "A ", "An " or "The "
+	 * in the title, or 0 if the title does not start with one.
+	 * 
+	 * @param buffer
+	 *            buffer holding the title.
+	 * @param start
+	 *            index of the first byte of the title.
+	 * @param end
+	 *            index after the last byte of the title.
+	 * @return length of the leading article and its space, or 0.
+	 */
+	private static int articleLength(ByteBuffer buffer, int start, int end) {
+		int length = end - start;
+		byte first = buffer.get(start);
+		if ((first == 'A' || first == 'a') && length >= 2) {
+			if (buffer.get(start + 1) == ' ') {
+				return 2;
+			}
+			if (length >= 3 && buffer.get(start + 1) == 'n' && buffer.get(start + 2) == ' ') {
+				return 3;
+			}
+		} else if ((first == 'T' || first == 't') && length >= 4 && buffer.get(start + 1) == 'h' && buffer.get(start + 2) == 'e'
+				&& buffer.get(start + 3) == ' ') {
+			return 4;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the index of the first non-whitespace character at or after
+	 * start, or end if there is none.
+	 * 
+	 * @param seq
+	 *            sequence to search.
+	 * @param start
+	 *            index to start at.
+	 * @param end
+	 *            index to stop at.
+	 * @return index of the first non-whitespace character, or end.
+	 */
+	private static int skipWhitespace(CharSequence seq, int start, int end) {
+		int i = start;
+		while (i < end && Character.isWhitespace(seq.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the index of the first non-whitespace byte at or after start, or
+	 * end if there is none.
+	 * 
+	 * @param buffer
+	 *            buffer to search.
+	 * @param start
+	 *            index to start at.
+	 * @param end
+	 *            index to stop at.
+	 * @return index of the first non-whitespace byte, or end.
+	 */
+	private static int skipWhitespace(ByteBuffer buffer, int start, int end) {
+		int i = start;
+		while (i < end && isWhitespace(buffer.get(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Determines whether a byte is ASCII whitespace, as defined by
+	 * Character.isWhitespace.
+	 * 
+	 * @param b
+	 *            byte to check.
+	 * @return boolean value denoting whether the byte is whitespace.
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+	}
+
+	/**
+	 * Determines whether a character ends a line, as recognized by a Scanner.
+	 * 
+	 * @param c
+	 *            character to check.
+	 * @return boolean value denoting whether the character ends a line.
+	 */
+	private static boolean isLineSeparator(char c) {
+		return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029' || c == '\u0085';
+	}
+}
@@ -0,0 +1,270 @@
+package edu.ncsu.csc216.flix_2.inventory;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import edu.ncsu.csc216.flix_2.list_util.GenericList;
+
+/**
+ * Search structures over the titles of a sorted movie catalog. Every query
+ * answers with positions in the catalog, which can be passed straight to
+ * {@link MovieDB#findItemAt(int)} or used to reserve a movie.
+ * 
+ * Exact title and word lookups go through hash maps. Because the catalog is
+ * already sorted by title ignoring case, case-insensitive title and prefix
+ * lookups are binary searches over a copy of the titles, which gives the same
+ * answers as a trie without building one.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+class MovieSearchIndex {
+
+	/**
+	 * Returned by queries that match nothing.
+	 */
+	private static final int[] NONE = new int[0];
+
+	/**
+	 * Titles of the catalog, in catalog order.
+	 */
+	private final String[] titles;
+
+	/**
+	 * Positions of each exact title. Titles that appear once are stored as a
+	 * single position.
+	 */
+	private final HashMap<String, int[]> exact;
+
+	/**
+	 * Positions of the titles containing each lower case word. The first slot
+	 * of each array holds the number of positions that follow.
+	 */
+	private final HashMap<String, int[]> words;
+
+	/**
+	 * Constructor, builds the index over the movies of a sorted catalog.
+	 * 
+	 * @param movies
+	 *            movies of the catalog, sorted by title ignoring case.
+	 */
+	MovieSearchIndex(GenericList<Movie> movies) {
+		titles = new String[movies.size()];
+		exact = new HashMap<String, int[]>(titles.length * 2);
+		words = new HashMap<String, int[]>();
+		int position = 0;
+		for (Movie movie : movies) {
+			String title = movie.getName();
+			titles[position] = title;
+			int[] same = exact.get(title);
+			if (same == null) {
+				exact.put(title, new int[] { position });
+			} else {
+				int[] grown = Arrays.copyOf(same, same.length + 1);
+				grown[same.length] = position;
+				exact.put(title, grown);
+			}
+			indexWords(title, position);
+			position++;
+		}
+		for (Map.Entry<String, int[]> entry : words.entrySet()) {
+			int[] postings = entry.getValue();
+			entry.setValue(Arrays.copyOf(postings, postings[0] + 1));
+		}
+	}
+
+	/**
+	 * Returns the positions of the movies whose title is exactly the given
+	 * title.
+	 * 
+	 * @param title
+	 *            title to find.
+	 * @return positions of the matching movies, in catalog order.
+	 */
+	int[] findTitle(String title) {
+		int[] positions = exact.get(title);
+		return positions == null ? NONE : positions.clone();
+	}
+
+	/**
+	 * Returns the positions of the movies whose title matches the given title,
+	 * ignoring case.
+	 * 
+	 * @param title
+	 *            title to find.
+	 * @return positions of the matching movies, in catalog order.
+	 */
+	int[] findTitleIgnoreCase(String title) {
+		int first = firstNotBefore(title);
+		int last = first;
+		while (last < titles.length && titles[last].equalsIgnoreCase(title)) {
+			last++;
+		}
+		return range(first, last);
+	}
+
+	/**
+	 * Returns the positions of the first movies whose title starts with the
+	 * given prefix, ignoring case.
+	 * 
+	 * @param prefix
+	 *            prefix to find.
+	 * @param limit
+	 *            largest number of positions to return.
+	 * @return positions of the matching movies, in catalog order.
+	 */
+	int[] findTitlesStartingWith(String prefix, int limit) {
+		int first = firstNotBefore(prefix);
+		int last = first;
+		while (last < titles.length && last - first < limit && titles[last].regionMatches(true, 0, prefix, 0, prefix.length())) {
+			last++;
+		}
+		return range(first, last);
+	}
+
+	/**
+	 * Returns the positions of the first movies whose title contains every
+	 * word of the query, ignoring case. Words are runs of letters and digits.
+	 * 
+	 * @param query
+	 *            words to find.
+	 * @param limit
+	 *            largest number of positions to return.
+	 * @return positions of the matching movies, in catalog order.
+	 */
+	int[] findTitlesWithWords(String query, int limit) {
+		String[] queryWords = split(query);
+		if (queryWords.length == 0) {
+			return NONE;
+		}
+		int[][] lists = new int[queryWords.length][];
+		for (int i = 0; i < queryWords.length; i++) {
+			lists[i] = words.get(queryWords[i]);
+			if (lists[i] == null) {
+				return NONE;
+			}
+		}
+		Arrays.sort(lists, new Comparator<int[]>() {
+			public int compare(int[] first, int[] second) {
+				return first[0] - second[0];
+			}
+		});
+		int[] matches = new int[Math.min(limit, lists[0][0])];
+		int found = 0;
+		int[] cursors = new int[lists.length];
+		for (int i = 1; i <= lists[0][0] && found < matches.length; i++) {
+			int position = lists[0][i];
+			boolean inAll = true;
+			for (int j = 1; j < lists.length && inAll; j++) {
+				int[] postings = lists[j];
+				int k = cursors[j] == 0 ? 1 : cursors[j];
+				while (k <= postings[0] && postings[k] < position) {
+					k++;
+				}
+				cursors[j] = k;
+				inAll = k <= postings[0] && postings[k] == position;
+			}
+			if (inAll) {
+				matches[found++] = position;
+			}
+		}
+		return Arrays.copyOf(matches, found);
+	}
+
+	/**
+	 * Adds a position to the postings of every word in a title. A word that
+	 * appears more than once in the title is only recorded once.
+	 * 
+	 * @param title
+	 *            title to index.
+	 * @param position
+	 *            position of the movie in the catalog.
+	 */
+	private void indexWords(String title, int position) {
+		for (String word : split(title)) {
+			int[] postings = words.get(word);
+			if (postings == null) {
+				postings = new int[4];
+				words.put(word, postings);
+			} else if (postings[0] > 0 && postings[postings[0]] == position) {
+				continue;
+			} else if (postings[0] + 1 == postings.length) {
+				postings = Arrays.copyOf(postings, postings.length * 2);
+				words.put(word, postings);
+			}
+			postings[0]++;
+			postings[postings[0]] = position;
+		}
+	}
+
+	/**
+	 * Finds the first position whose title does not come before the given
+	 * text, ignoring case.
+	 * 
+	 * @param text
+	 *            text to search for.
+	 * @return first position whose title is not less than the text, or the
+	 *         number of titles if there is none.
+	 */
+	private int firstNotBefore(String text) {
+		int low = 0;
+		int high = titles.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (titles[middle].compareToIgnoreCase(text) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the positions from first, inclusive, to last, exclusive.
+	 * 
+	 * @param first
+	 *            first position.
+	 * @param last
+	 *            position after the last one.
+	 * @return array of the positions.
+	 */
+	private static int[] range(int first, int last) {
+		int[] positions = new int[last - first];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = first + i;
+		}
+		return positions;
+	}
+
+	/**
+	 * Splits text into lower case words made of letters and digits.
+	 * 
+	 * @param text
+	 *            text to split.
+	 * @return the words of the text, in order.
+	 */
+	private static String[] split(String text) {
+		String[] found = new String[4];
+		int count = 0;
+		int i = 0;
+		while (i < text.length()) {
+			while (i < text.length() && !Character.isLetterOrDigit(text.charAt(i))) {
+				i++;
+			}
+			int start = i;
+			while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+				i++;
+			}
+			if (i > start) {
+				if (count == found.length) {
+					found = Arrays.copyOf(found, count * 2);
+				}
+				found[count++] = text.substring(start, i).toLowerCase(Locale.ENGLISH);
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
+}
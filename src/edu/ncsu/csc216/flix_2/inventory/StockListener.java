@@ -0,0 +1,20 @@
+package edu.ncsu.csc216.flix_2.inventory;
+
+/**
+ * Listens for movies coming back into stock.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public interface StockListener {
+
+	/**
+	 * Called after a copy of a movie is returned to an inventory that had no
+	 * copies of it. Returns to a movie that still has copies are not
+	 * reported. It is called on the thread that returned the copy, while no
+	 * customer is locked by that thread.
+	 * 
+	 * @param movie
+	 *            movie that is back in stock.
+	 */
+	void restocked(Movie movie);
+}
@@ -0,0 +1,430 @@
+package edu.ncsu.csc216.flix_2.list_util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Generic list class backed by a growable array. Elements can be looked at by
+ * position in constant time, which makes this list the better choice for
+ * components that locate elements by index.
+ * 
+ * @param <T>
+ *            Object type that the list is made up of.
+ * @author Nick Brust, Eric Matysek
+ */
+public class ArrayMultiPurposeList<T> implements GenericList<T>, RandomAccess {
+
+	/**
+	 * Capacity used when no initial capacity is given.
+	 */
+	private static final int DEFAULT_CAPACITY = 10;
+
+	/**
+	 * Holds the elements of the list, front of the list at index 0.
+	 */
+	private Object[] elements;
+
+	/**
+	 * Number of elements in the list.
+	 */
+	private int size;
+
+	/**
+	 * Used as a cursor, to remember position.
+	 */
+	private int iterator;
+
+	/**
+	 * Number of structural changes made to the list, used by iterators to
+	 * detect changes made while they are traversing.
+	 */
+	private int modCount;
+
+	/**
+	 * Constructor, creates an empty list.
+	 */
+	public ArrayMultiPurposeList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor, creates an empty list with room for the given number of
+	 * elements before it has to grow.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 * @param capacity
+	 *            initial number of elements the list can hold.
+	 */
+	public ArrayMultiPurposeList(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException();
+		}
+		elements = new Object[capacity];
+		size = 0;
+		iterator = 0;
+	}
+
+	/**
+	 * Resets the iterator by making it point back to the beginning of the list.
+	 */
+	public void resetIterator() {
+		iterator = 0;
+	}
+
+	/**
+	 * Determines whether or not the list has another element.
+	 * 
+	 * @return boolean value denoting whether or not the list has another
+	 *         element.
+	 */
+	public boolean hasNext() {
+		return iterator < size;
+	}
+
+	/**
+	 * Returns the element the iterator is pointing to and moves the iterator to
+	 * point to the next element in the list.
+	 * 
+	 * @return element the iterator is pointing to, or null if there is none.
+	 */
+	public T next() {
+		if (!this.hasNext()) {
+			return null;
+		}
+		return elementAt(iterator++);
+	}
+
+	/**
+	 * Inserts an element at the given position. Positions before the front of
+	 * the list insert at the front, positions past the rear insert at the rear.
+	 * 
+	 * @param num
+	 *            position to insert the element.
+	 * @param t
+	 *            element to be added.
+	 */
+	public void addItem(int num, T t) {
+		this.resetIterator();
+		int position = num;
+		if (position < 0) {
+			position = 0;
+		} else if (position > size) {
+			position = size;
+		}
+		ensureCapacity(size + 1);
+		System.arraycopy(elements, position, elements, position + 1, size - position);
+		elements[position] = t;
+		size++;
+		modCount++;
+	}
+
+	/**
+	 * Determines whether or not the list is empty.
+	 * 
+	 * @return boolean value denoting whether or not the list is empty.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the element at the given position, or null is the position is out
+	 * of range.
+	 * 
+	 * @param num
+	 *            the position in the list.
+	 * @return element at the given position, or null is the position is out of
+	 *         range.
+	 */
+	public T lookAtItemN(int num) {
+		if (num < 0 || num >= size) {
+			return null;
+		}
+		return elementAt(num);
+	}
+
+	/**
+	 * Adds an element to the rear of the list.
+	 * 
+	 * @param t
+	 *            element to be added.
+	 */
+	public void addToRear(T t) {
+		ensureCapacity(size + 1);
+		elements[size++] = t;
+		modCount++;
+	}
+
+	/**
+	 * Adds all of the given elements to the rear of the list, growing the
+	 * backing array at most once.
+	 * 
+	 * @param items
+	 *            elements to be added.
+	 */
+	public void addAllToRear(Collection<? extends T> items) {
+		Object[] added = items.toArray();
+		ensureCapacity(size + added.length);
+		System.arraycopy(added, 0, elements, size, added.length);
+		size += added.length;
+		modCount++;
+	}
+
+	/**
+	 * Removes and returns the element in the given position or null if the
+	 * position is out of range.
+	 * 
+	 * @param num
+	 *            the position in the list.
+	 * @return element in the given position or null if the position is out of
+	 *         range.
+	 */
+	public T remove(int num) {
+		this.resetIterator();
+		if (num < 0 || num >= size) {
+			return null;
+		}
+		T removed = elementAt(num);
+		System.arraycopy(elements, num + 1, elements, num, size - num - 1);
+		elements[--size] = null;
+		modCount++;
+		return removed;
+	}
+
+	/**
+	 * Removes the elements at all of the given positions, shifting each
+	 * remaining element down at most once.
+	 * 
+	 * @param positions
+	 *            positions in the list, in strictly ascending order.
+	 * @return removed elements, in the order of their positions.
+	 * @throws IllegalArgumentException
+	 *             if the positions are not strictly ascending or any is out of
+	 *             range, in which case nothing is removed.
+	 */
+	public List<T> removeAll(int[] positions) {
+		for (int i = 0; i < positions.length; i++) {
+			if (positions[i] < (i == 0 ? 0 : positions[i - 1] + 1) || positions[i] >= size) {
+				throw new IllegalArgumentException("Positions must be ascending and in range.");
+			}
+		}
+		this.resetIterator();
+		List<T> removed = new ArrayList<T>(positions.length);
+		if (positions.length == 0) {
+			return removed;
+		}
+		int write = positions[0];
+		int next = 0;
+		for (int read = write; read < size; read++) {
+			if (next < positions.length && positions[next] == read) {
+				removed.add(elementAt(read));
+				next++;
+			} else {
+				elements[write++] = elements[read];
+			}
+		}
+		for (int i = write; i < size; i++) {
+			elements[i] = null;
+		}
+		size = write;
+		modCount++;
+		return removed;
+	}
+
+	/**
+	 * Moves the element at the given position ahead one position in the list.
+	 * Does nothing if the element is already at the front of the list or the
+	 * position is out of range.
+	 * 
+	 * @param num
+	 *            the position in the list.
+	 */
+	public void moveAheadOne(int num) {
+		this.resetIterator();
+		if (num <= 0 || num >= size) {
+			return;
+		}
+		Object holder = elements[num - 1];
+		elements[num - 1] = elements[num];
+		elements[num] = holder;
+		modCount++;
+	}
+
+	/**
+	 * Returns the number of elements in the list.
+	 * 
+	 * @return number of elements in the list.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a new iterator over the elements of the list. Each iterator keeps
+	 * its own position, so any number of them can traverse the list at the same
+	 * time without disturbing the list's cursor. An iterator fails with a
+	 * ConcurrentModificationException if the list is changed by anything other
+	 * than the iterator itself.
+	 * 
+	 * @return new iterator positioned at the front of the list.
+	 */
+	public Iterator<T> iterator() {
+		return new Cursor();
+	}
+
+	/**
+	 * Performs the given action on each element of the list, in list order,
+	 * without using the list's cursor.
+	 * 
+	 * @param action
+	 *            action to perform on each element.
+	 * @throws ConcurrentModificationException
+	 *             if the list is changed by the action.
+	 */
+	public void forEach(Consumer<? super T> action) {
+		int expectedModCount = modCount;
+		for (int i = 0; i < size && modCount == expectedModCount; i++) {
+			action.accept(elementAt(i));
+		}
+		if (modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * Returns a spliterator over the elements of the list, in list order. It
+	 * is built on {@link #iterator()}, so it fails fast the same way.
+	 * 
+	 * @return spliterator over the elements of the list.
+	 */
+	public Spliterator<T> spliterator() {
+		return Spliterators.spliterator(this.iterator(), size, Spliterator.ORDERED);
+	}
+
+	/**
+	 * Returns the element stored at the given index of the backing array.
+	 * 
+	 * @param index
+	 *            index of the element in the backing array.
+	 * @return element stored at the given index.
+	 */
+	@SuppressWarnings("unchecked")
+	private T elementAt(int index) {
+		return (T) elements[index];
+	}
+
+	/**
+	 * Grows the backing array, if needed, so it can hold at least the given
+	 * number of elements.
+	 * 
+	 * @param capacity
+	 *            number of elements the list must be able to hold.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > elements.length) {
+			int newCapacity = Math.max(capacity, elements.length + (elements.length >> 1) + 1);
+			Object[] grown = new Object[newCapacity];
+			System.arraycopy(elements, 0, grown, 0, size);
+			elements = grown;
+		}
+	}
+
+	/**
+	 * Independent, fail-fast iterator over the elements of the list.
+	 * 
+	 * @author Nick Brust, Eric Matysek
+	 */
+	private class Cursor implements Iterator<T> {
+
+		/**
+		 * Index of the element that will be returned next.
+		 */
+		private int nextIndex;
+
+		/**
+		 * Index of the element last returned, or -1 if there is none or it has
+		 * been removed.
+		 */
+		private int lastReturned;
+
+		/**
+		 * Number of structural changes the iterator expects the list to have.
+		 */
+		private int expectedModCount;
+
+		/**
+		 * Constructor, creates an iterator positioned at the front of the list.
+		 */
+		Cursor() {
+			nextIndex = 0;
+			lastReturned = -1;
+			expectedModCount = modCount;
+		}
+
+		/**
+		 * Determines whether or not there is another element to traverse.
+		 * 
+		 * @return boolean value denoting whether there is another element.
+		 */
+		public boolean hasNext() {
+			return nextIndex < size;
+		}
+
+		/**
+		 * Returns the next element in the list.
+		 * 
+		 * @throws NoSuchElementException
+		 *             if there are no more elements.
+		 * @throws ConcurrentModificationException
+		 *             if the list was changed outside of this iterator.
+		 * @return the next element in the list.
+		 */
+		public T next() {
+			checkForModification();
+			if (nextIndex >= size) {
+				throw new NoSuchElementException();
+			}
+			lastReturned = nextIndex++;
+			return elementAt(lastReturned);
+		}
+
+		/**
+		 * Removes the element last returned by next from the list.
+		 * 
+		 * @throws IllegalStateException
+		 *             if next has not been called, or the element was already
+		 *             removed.
+		 * @throws ConcurrentModificationException
+		 *             if the list was changed outside of this iterator.
+		 */
+		public void remove() {
+			checkForModification();
+			if (lastReturned < 0) {
+				throw new IllegalStateException();
+			}
+			ArrayMultiPurposeList.this.remove(lastReturned);
+			nextIndex = lastReturned;
+			lastReturned = -1;
+			expectedModCount = modCount;
+		}
+
+		/**
+		 * Throws a ConcurrentModificationException if the list was changed
+		 * outside of this iterator.
+		 */
+		private void checkForModification() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+}
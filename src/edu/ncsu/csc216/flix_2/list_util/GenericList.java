@@ -0,0 +1,126 @@
+package edu.ncsu.csc216.flix_2.list_util;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Describes behaviors of a generic list whose elements can be located by
+ * position and traversed with a cursor. Lists are also Iterable; each call to
+ * iterator() returns an independent, fail-fast iterator, so several readers can
+ * traverse a list at once without touching the shared cursor.
+ * 
+ * @param <T>
+ *            Object type that the list is made up of.
+ * @author Nick Brust, Eric Matysek
+ */
+public interface GenericList<T> extends Iterable<T> {
+
+	/**
+	 * Resets the cursor by making it point back to the beginning of the list.
+	 */
+	public void resetIterator();
+
+	/**
+	 * Determines whether or not the cursor is pointing to an element.
+	 * 
+	 * @return boolean value denoting whether or not the list has another
+	 *         element.
+	 */
+	public boolean hasNext();
+
+	/**
+	 * Returns the element the cursor is pointing to and moves the cursor to
+	 * the next element in the list.
+	 * 
+	 * @return element the cursor is pointing to, or null if there is none.
+	 */
+	public T next();
+
+	/**
+	 * Inserts an element at the given position.
+	 * 
+	 * @param num
+	 *            position to insert the element.
+	 * @param t
+	 *            element to be added.
+	 */
+	public void addItem(int num, T t);
+
+	/**
+	 * Determines whether or not the list is empty.
+	 * 
+	 * @return boolean value denoting whether or not the list is empty.
+	 */
+	public boolean isEmpty();
+
+	/**
+	 * Returns the element at the given position, or null is the position is out
+	 * of range.
+	 * 
+	 * @param num
+	 *            the position in the list.
+	 * @return element at the given position, or null is the position is out of
+	 *         range.
+	 */
+	public T lookAtItemN(int num);
+
+	/**
+	 * Adds an element to the rear of the list.
+	 * 
+	 * @param t
+	 *            element to be added.
+	 */
+	public void addToRear(T t);
+
+	/**
+	 * Adds all of the given elements to the rear of the list, in the order
+	 * they are returned by the collection's iterator.
+	 * 
+	 * @param items
+	 *            elements to be added.
+	 */
+	public void addAllToRear(Collection<? extends T> items);
+
+	/**
+	 * Removes and returns the element in the given position or null if the
+	 * position is out of range.
+	 * 
+	 * @param num
+	 *            the position in the list.
+	 * @return element in the given position or null if the position is out of
+	 *         range.
+	 */
+	public T remove(int num);
+
+	/**
+	 * Removes the elements at all of the given positions in one pass over the
+	 * list. The positions are those before anything is removed, so removing
+	 * positions 1 and 3 removes the same elements as removing position 3 and
+	 * then position 1.
+	 * 
+	 * @param positions
+	 *            positions in the list, in strictly ascending order.
+	 * @return removed elements, in the order of their positions.
+	 * @throws IllegalArgumentException
+	 *             if the positions are not strictly ascending or any is out of
+	 *             range, in which case nothing is removed.
+	 */
+	public List<T> removeAll(int[] positions);
+
+	/**
+	 * Moves the element at the given position ahead one position in the list.
+	 * Does nothing if the element is already at the front of the list or the
+	 * position is out of range.
+	 * 
+	 * @param num
+	 *            the position in the list.
+	 */
+	public void moveAheadOne(int num);
+
+	/**
+	 * Returns the number of elements in the list.
+	 * 
+	 * @return number of elements in the list.
+	 */
+	public int size();
+}
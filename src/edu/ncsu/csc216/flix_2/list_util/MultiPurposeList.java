@@ -1,5 +1,14 @@
 package edu.ncsu.csc216.flix_2.list_util;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
 /**
  * Generic list class.
  * 
@@ -7,30 +16,49 @@ package edu.ncsu.csc216.flix_2.list_util;
  *            Object type that the list is made up of.
  * @author Nick Brust, Eric Matysek
  */
-public class MultiPurposeList<T> {
+public class MultiPurposeList<T> implements GenericList<T> {
 
 	/**
 	 * Used as a cursor, to remember position.
 	 */
-	private Node iterator;
+	private Node cursor;
+
+	/**
+	 * Number of structural changes made to the list, used by iterators to
+	 * detect changes made while they are traversing.
+	 */
+	private int modCount;
 
 	/**
 	 * Beginning node of the list.
 	 */
 	private Node head;
 
+	/**
+	 * Last node of the list, kept so elements can be added to the rear without
+	 * walking the list.
+	 */
+	private Node tail;
+
+	/**
+	 * Number of elements in the list.
+	 */
+	private int size;
+
 	/**
 	 * Constructor, creates an empty list.
 	 */
 	public MultiPurposeList() {
-		iterator = head;
+		cursor = head;
+		size = 0;
+		modCount = 0;
 	}
 
 	/**
 	 * Resets the iterator by making it point back to the beginning of the list.
 	 */
 	public void resetIterator() {
-		iterator = head;
+		cursor = head;
 	}
 
 	/**
@@ -40,7 +68,7 @@ public class MultiPurposeList<T> {
 	 *         element.
 	 */
 	public boolean hasNext() {
-		return iterator != null;
+		return cursor != null;
 	}
 
 	/**
@@ -55,8 +83,8 @@ public class MultiPurposeList<T> {
 		if (!this.hasNext()) {
 			return null;
 		}
-		T element = iterator.data;
-		iterator = iterator.next;
+		T element = cursor.data;
+		cursor = cursor.next;
 		return element;
 	}
 
@@ -69,28 +97,21 @@ public class MultiPurposeList<T> {
 	 *            element to be added.
 	 */
 	public void addItem(int num, T t) {
-		Node holder = new Node(null, null);
 		this.resetIterator();
-		if (this.isEmpty()) {
-			head = new Node(t, null);
+		if (this.isEmpty() || num >= size) {
+			this.addToRear(t);
 			return;
 		}
 		if (num <= 0) {
 			head = new Node(t, head);
-		} else if (num >= this.size()) {
-			this.resetIterator();
-			while (this.hasNext()) {
-				holder = iterator;
-				this.next();
-			}
-			holder.next = new Node(t, null);
 		} else {
-			this.resetIterator();
 			for (int i = 0; i < num - 1; i++) {
 				this.next();
 			}
-			iterator.next = new Node(t, iterator.next);
+			cursor.next = new Node(t, cursor.next);
 		}
+		size++;
+		modCount++;
 	}
 
 	/**
@@ -99,7 +120,7 @@ public class MultiPurposeList<T> {
 	 * @return boolean value denoting whether or not the list is empty.
 	 */
 	public boolean isEmpty() {
-		return head == null;
+		return size == 0;
 	}
 
 	/**
@@ -112,16 +133,16 @@ public class MultiPurposeList<T> {
 	 *         range.
 	 */
 	public T lookAtItemN(int num) {
-		if (num < 0 || num >= this.size()) {
+		if (num < 0 || num >= size) {
 			return null;
+		} else if (num == size - 1) {
+			return tail.data;
 		} else {
-			this.resetIterator();
-			int i = 0;
-			while (this.hasNext() && i < num) {
-				this.next();
-				i++;
+			Node current = head;
+			for (int i = 0; i < num; i++) {
+				current = current.next;
 			}
-			return iterator.data;
+			return current.data;
 		}
 	}
 
@@ -132,16 +153,26 @@ public class MultiPurposeList<T> {
 	 *            element to be added.
 	 */
 	public void addToRear(T t) {
-		if (this.size() == 0) {
-			head = new Node(t, null);
+		Node node = new Node(t, null);
+		if (size == 0) {
+			head = node;
 		} else {
-			Node holder = new Node(null, null);
-			this.resetIterator();
-			while (this.hasNext()) {
-				holder = iterator;
-				this.next();
-			}
-			holder.next = new Node(t, null);
+			tail.next = node;
+		}
+		tail = node;
+		size++;
+		modCount++;
+	}
+
+	/**
+	 * Adds all of the given elements to the rear of the list.
+	 * 
+	 * @param items
+	 *            elements to be added.
+	 */
+	public void addAllToRear(Collection<? extends T> items) {
+		for (T t : items) {
+			this.addToRear(t);
 		}
 	}
 
@@ -157,22 +188,74 @@ public class MultiPurposeList<T> {
 	public T remove(int num) {
 		this.resetIterator();
 		Node holder;
-		if (num < 0 || num >= this.size()) {
+		if (num < 0 || num >= size) {
 			return null;
 		}
 		if (num == 0) {
 			holder = head;
 			head = head.next;
-			return holder.data;
+			if (head == null) {
+				tail = null;
+			}
 		} else {
-			this.resetIterator();
 			for (int i = 0; i < num - 1; i++) {
 				this.next();
 			}
-			holder = iterator.next;
-			iterator.next = iterator.next.next;
-			return holder.data;
+			holder = cursor.next;
+			cursor.next = holder.next;
+			if (holder == tail) {
+				tail = cursor;
+			}
+		}
+		size--;
+		modCount++;
+		return holder.data;
+	}
+
+	/**
+	 * Removes the elements at all of the given positions in one walk down the
+	 * list.
+	 * 
+	 * @param positions
+	 *            positions in the list, in strictly ascending order.
+	 * @return removed elements, in the order of their positions.
+	 * @throws IllegalArgumentException
+	 *             if the positions are not strictly ascending or any is out of
+	 *             range, in which case nothing is removed.
+	 */
+	public List<T> removeAll(int[] positions) {
+		for (int i = 0; i < positions.length; i++) {
+			if (positions[i] < (i == 0 ? 0 : positions[i - 1] + 1) || positions[i] >= size) {
+				throw new IllegalArgumentException("Positions must be ascending and in range.");
+			}
+		}
+		List<T> removed = new ArrayList<T>(positions.length);
+		Node previous = null;
+		Node node = head;
+		int next = 0;
+		for (int index = 0; next < positions.length; index++) {
+			if (index == positions[next]) {
+				removed.add(node.data);
+				if (previous == null) {
+					head = node.next;
+				} else {
+					previous.next = node.next;
+				}
+				if (node == tail) {
+					tail = previous;
+				}
+				next++;
+			} else {
+				previous = node;
+			}
+			node = node.next;
 		}
+		if (positions.length > 0) {
+			size -= positions.length;
+			modCount++;
+		}
+		this.resetIterator();
+		return removed;
 	}
 
 	/**
@@ -188,28 +271,35 @@ public class MultiPurposeList<T> {
 		Node holder1;
 		Node holder2;
 		Node holder3;
-		if (num <= 0 || num >= this.size()) {
+		if (num <= 0 || num >= size) {
 			return;
 		}
 		if (num == 1) {
 			holder1 = head.next;
 			head.next = holder1.next;
 			holder1.next = head;
+			if (tail == holder1) {
+				tail = head;
+			}
 			head = holder1;
 		} else {
 			this.resetIterator();
 			for (int i = 0; i < num - 2; i++) {
 				this.next();
 			}
-			holder1 = iterator;
+			holder1 = cursor;
 			this.next();
-			holder2 = iterator;
+			holder2 = cursor;
 			this.next();
-			holder3 = iterator;
+			holder3 = cursor;
 			holder2.next = holder3.next;
 			holder3.next = holder2;
 			holder1.next = holder3;
+			if (tail == holder3) {
+				tail = holder2;
+			}
 		}
+		modCount++;
 	}
 
 	/**
@@ -218,16 +308,136 @@ public class MultiPurposeList<T> {
 	 * @return number of elements in the list.
 	 */
 	public int size() {
-		this.resetIterator();
-		if (this.isEmpty()) {
-			return 0;
-		} else {
-			int size = 0;
-			while (this.hasNext()) {
-				this.next();
-				size++;
+		return size;
+	}
+
+	/**
+	 * Returns a new iterator over the elements of the list. Each iterator keeps
+	 * its own position, so any number of them can traverse the list at the same
+	 * time without disturbing the list's cursor. An iterator fails with a
+	 * ConcurrentModificationException if the list is changed by anything other
+	 * than the iterator itself.
+	 * 
+	 * @return new iterator positioned at the front of the list.
+	 */
+	public Iterator<T> iterator() {
+		return new Cursor();
+	}
+
+	/**
+	 * Returns a spliterator over the elements of the list, in list order.
+	 * 
+	 * @return spliterator over the elements of the list.
+	 */
+	public Spliterator<T> spliterator() {
+		return Spliterators.spliterator(this.iterator(), size, Spliterator.ORDERED);
+	}
+
+	/**
+	 * Independent, fail-fast iterator over the nodes of the list.
+	 * 
+	 * @author Nick Brust, Eric Matysek
+	 */
+	private class Cursor implements Iterator<T> {
+
+		/**
+		 * Node holding the element that will be returned next.
+		 */
+		private Node nextNode;
+
+		/**
+		 * Node holding the element last returned, or null if there is none or it
+		 * has been removed.
+		 */
+		private Node lastReturned;
+
+		/**
+		 * Node before the one last returned, or null if the last returned node
+		 * is the head.
+		 */
+		private Node beforeLast;
+
+		/**
+		 * Number of structural changes the iterator expects the list to have.
+		 */
+		private int expectedModCount;
+
+		/**
+		 * Constructor, creates an iterator positioned at the front of the list.
+		 */
+		Cursor() {
+			nextNode = head;
+			expectedModCount = modCount;
+		}
+
+		/**
+		 * Determines whether or not there is another element to traverse.
+		 * 
+		 * @return boolean value denoting whether there is another element.
+		 */
+		public boolean hasNext() {
+			return nextNode != null;
+		}
+
+		/**
+		 * Returns the next element in the list.
+		 * 
+		 * @throws NoSuchElementException
+		 *             if there are no more elements.
+		 * @throws ConcurrentModificationException
+		 *             if the list was changed outside of this iterator.
+		 * @return the next element in the list.
+		 */
+		public T next() {
+			checkForModification();
+			if (nextNode == null) {
+				throw new NoSuchElementException();
+			}
+			if (lastReturned != null) {
+				beforeLast = lastReturned;
+			}
+			lastReturned = nextNode;
+			nextNode = nextNode.next;
+			return lastReturned.data;
+		}
+
+		/**
+		 * Removes the element last returned by next from the list.
+		 * 
+		 * @throws IllegalStateException
+		 *             if next has not been called, or the element was already
+		 *             removed.
+		 * @throws ConcurrentModificationException
+		 *             if the list was changed outside of this iterator.
+		 */
+		public void remove() {
+			checkForModification();
+			if (lastReturned == null) {
+				throw new IllegalStateException();
+			}
+			if (beforeLast == null) {
+				head = nextNode;
+			} else {
+				beforeLast.next = nextNode;
+			}
+			if (tail == lastReturned) {
+				tail = beforeLast;
+			}
+			lastReturned = null;
+			size--;
+			modCount++;
+			expectedModCount = modCount;
+			cursor = head;
+		}
+
+		/**
+		 * Throws a ConcurrentModificationException if the list was changed
+		 * outside of this iterator.
+		 */
+		private void checkForModification() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
 			}
-			return size;
 		}
 	}
 
@@ -0,0 +1,505 @@
+package edu.ncsu.csc216.flix_2.list_util;
+
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Indexable skip list that keeps values sorted by a key. Each link records how
+ * many positions it skips, so elements can be found both by key and by
+ * position in expected logarithmic time. Keys are unique under the
+ * comparator.
+ * 
+ * @param <K>
+ *            type of the keys the list is sorted by.
+ * @param <V>
+ *            type of the values held in the list.
+ * @author Nick Brust, Eric Matysek
+ */
+public class SortedSkipList<K, V> implements Iterable<V> {
+
+	/**
+	 * Highest level a node can reach.
+	 */
+	private static final int MAX_LEVEL = 32;
+
+	/**
+	 * Order of the keys.
+	 */
+	private final Comparator<? super K> comparator;
+
+	/**
+	 * Sentinel node in front of the first element, present on every level.
+	 */
+	private final Node<K, V> head;
+
+	/**
+	 * Chooses the level of new nodes.
+	 */
+	private final Random random;
+
+	/**
+	 * Number of levels currently in use.
+	 */
+	private int levels;
+
+	/**
+	 * Number of elements in the list.
+	 */
+	private int size;
+
+	/**
+	 * Number of structural changes made to the list, used by iterators to
+	 * detect changes made while they are traversing.
+	 */
+	private int modCount;
+
+	/**
+	 * Constructor, creates an empty list sorted by the given comparator.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the comparator is null.
+	 * @param comparator
+	 *            order of the keys.
+	 */
+	public SortedSkipList(Comparator<? super K> comparator) {
+		if (comparator == null) {
+			throw new IllegalArgumentException();
+		}
+		this.comparator = comparator;
+		this.head = new Node<K, V>(null, null, MAX_LEVEL);
+		this.random = new Random();
+		this.levels = 1;
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the number of elements in the list.
+	 * 
+	 * @return number of elements in the list.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Determines whether or not the list is empty.
+	 * 
+	 * @return boolean value denoting whether or not the list is empty.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds a value under the given key, unless the key is already in the list.
+	 * 
+	 * @param key
+	 *            key of the value.
+	 * @param value
+	 *            value to add.
+	 * @return true if the value was added, false if the key was already in the
+	 *         list.
+	 */
+	public boolean add(K key, V value) {
+		Node<K, V>[] update = newNodes(MAX_LEVEL);
+		int[] rank = new int[MAX_LEVEL];
+		Node<K, V> node = head;
+		for (int level = levels - 1; level >= 0; level--) {
+			rank[level] = level == levels - 1 ? 0 : rank[level + 1];
+			while (node.next[level] != null && comparator.compare(node.next[level].key, key) < 0) {
+				rank[level] += node.width[level];
+				node = node.next[level];
+			}
+			update[level] = node;
+		}
+		if (node.next[0] != null && comparator.compare(node.next[0].key, key) == 0) {
+			return false;
+		}
+		link(key, value, update, rank);
+		return true;
+	}
+
+	/**
+	 * Adds values under keys given in strictly ascending order. Each search
+	 * starts from where the last one ended instead of from the head, so adding
+	 * a sorted batch walks the list about once rather than once per key.
+	 * Stops at the first key that is already in the list.
+	 * 
+	 * @param keys
+	 *            keys of the values, in strictly ascending order.
+	 * @param values
+	 *            values to add, one for each key.
+	 * @return number of values added: all of them, or the position of the
+	 *         first key that was already in the list.
+	 * @throws IllegalArgumentException
+	 *             if the lists differ in size or the keys are not strictly
+	 *             ascending, in which case nothing is added.
+	 */
+	public int addAll(List<? extends K> keys, List<? extends V> values) {
+		if (keys.size() != values.size()) {
+			throw new IllegalArgumentException();
+		}
+		for (int i = 1; i < keys.size(); i++) {
+			if (comparator.compare(keys.get(i - 1), keys.get(i)) >= 0) {
+				throw new IllegalArgumentException("Keys must be strictly ascending.");
+			}
+		}
+		Node<K, V>[] update = newNodes(MAX_LEVEL);
+		int[] rank = new int[MAX_LEVEL];
+		for (int level = 0; level < MAX_LEVEL; level++) {
+			update[level] = head;
+		}
+		for (int i = 0; i < keys.size(); i++) {
+			K key = keys.get(i);
+			Node<K, V> node = update[levels - 1];
+			int nodeRank = rank[levels - 1];
+			for (int level = levels - 1; level >= 0; level--) {
+				// Continue from the last search on this level if it got further
+				if (rank[level] > nodeRank) {
+					node = update[level];
+					nodeRank = rank[level];
+				}
+				while (node.next[level] != null && comparator.compare(node.next[level].key, key) < 0) {
+					nodeRank += node.width[level];
+					node = node.next[level];
+				}
+				update[level] = node;
+				rank[level] = nodeRank;
+			}
+			if (node.next[0] != null && comparator.compare(node.next[0].key, key) == 0) {
+				return i;
+			}
+			Node<K, V> added = link(key, values.get(i), update, rank);
+			int addedRank = rank[0] + 1;
+			for (int level = 0; level < added.next.length; level++) {
+				update[level] = added;
+				rank[level] = addedRank;
+			}
+		}
+		return keys.size();
+	}
+
+	/**
+	 * Links a new node in after the nodes found by a search.
+	 * 
+	 * @param key
+	 *            key of the value.
+	 * @param value
+	 *            value to add.
+	 * @param update
+	 *            last node before the key on each level in use.
+	 * @param rank
+	 *            position of each of those nodes, the head being 0.
+	 * @return the new node.
+	 */
+	private Node<K, V> link(K key, V value, Node<K, V>[] update, int[] rank) {
+		int nodeLevel = randomLevel();
+		if (nodeLevel > levels) {
+			for (int level = levels; level < nodeLevel; level++) {
+				rank[level] = 0;
+				update[level] = head;
+				head.width[level] = size;
+			}
+			levels = nodeLevel;
+		}
+		Node<K, V> added = new Node<K, V>(key, value, nodeLevel);
+		for (int level = 0; level < nodeLevel; level++) {
+			added.next[level] = update[level].next[level];
+			update[level].next[level] = added;
+			added.width[level] = update[level].width[level] - (rank[0] - rank[level]);
+			update[level].width[level] = rank[0] - rank[level] + 1;
+		}
+		for (int level = nodeLevel; level < levels; level++) {
+			update[level].width[level]++;
+		}
+		size++;
+		modCount++;
+		return added;
+	}
+
+	/**
+	 * Removes the value stored under the given key.
+	 * 
+	 * @param key
+	 *            key of the value to remove.
+	 * @return the removed value, or null if the key is not in the list.
+	 */
+	public V remove(K key) {
+		Node<K, V>[] update = newNodes(MAX_LEVEL);
+		Node<K, V> node = head;
+		for (int level = levels - 1; level >= 0; level--) {
+			while (node.next[level] != null && comparator.compare(node.next[level].key, key) < 0) {
+				node = node.next[level];
+			}
+			update[level] = node;
+		}
+		Node<K, V> removed = node.next[0];
+		if (removed == null || comparator.compare(removed.key, key) != 0) {
+			return null;
+		}
+		for (int level = 0; level < levels; level++) {
+			if (update[level].next[level] == removed) {
+				update[level].width[level] += removed.width[level] - 1;
+				update[level].next[level] = removed.next[level];
+			} else {
+				update[level].width[level]--;
+			}
+		}
+		while (levels > 1 && head.next[levels - 1] == null) {
+			levels--;
+		}
+		size--;
+		modCount++;
+		return removed.value;
+	}
+
+	/**
+	 * Returns the value stored under the given key.
+	 * 
+	 * @param key
+	 *            key of the value.
+	 * @return the value, or null if the key is not in the list.
+	 */
+	public V get(K key) {
+		Node<K, V> node = head;
+		for (int level = levels - 1; level >= 0; level--) {
+			while (node.next[level] != null && comparator.compare(node.next[level].key, key) < 0) {
+				node = node.next[level];
+			}
+		}
+		node = node.next[0];
+		if (node != null && comparator.compare(node.key, key) == 0) {
+			return node.value;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the value at the given position in sorted order.
+	 * 
+	 * @param position
+	 *            position of the value.
+	 * @return the value, or null if the position is out of range.
+	 */
+	public V getAt(int position) {
+		if (position < 0 || position >= size) {
+			return null;
+		}
+		return nodeBefore(position).next[0].value;
+	}
+
+	/**
+	 * Returns the position the given key has, or would have if it were added:
+	 * the number of keys in the list that come before it.
+	 * 
+	 * @param key
+	 *            key to find the position of.
+	 * @return number of keys in the list less than the given key.
+	 */
+	public int rankOf(K key) {
+		int rank = 0;
+		Node<K, V> node = head;
+		for (int level = levels - 1; level >= 0; level--) {
+			while (node.next[level] != null && comparator.compare(node.next[level].key, key) < 0) {
+				rank += node.width[level];
+				node = node.next[level];
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Returns a fail-fast iterator over the values in sorted order.
+	 * 
+	 * @return iterator positioned at the first value.
+	 */
+	public Iterator<V> iterator() {
+		return iterator(0);
+	}
+
+	/**
+	 * Returns a fail-fast iterator over the values in sorted order, starting at
+	 * the given position. Reaching the position takes logarithmic time.
+	 * 
+	 * @param position
+	 *            position of the first value returned.
+	 * @return iterator positioned at the given value.
+	 */
+	public Iterator<V> iterator(int position) {
+		if (position <= 0) {
+			return new Cursor(head.next[0]);
+		}
+		if (position >= size) {
+			return new Cursor(null);
+		}
+		return new Cursor(nodeBefore(position).next[0]);
+	}
+
+	/**
+	 * Finds the node just before the given position.
+	 * 
+	 * @param position
+	 *            position in the list, between 0 and size - 1.
+	 * @return node at position - 1, or the head for position 0.
+	 */
+	private Node<K, V> nodeBefore(int position) {
+		int remaining = position;
+		Node<K, V> node = head;
+		for (int level = levels - 1; level >= 0; level--) {
+			while (node.next[level] != null && node.width[level] <= remaining) {
+				remaining -= node.width[level];
+				node = node.next[level];
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Picks a level for a new node, each level half as likely as the one below.
+	 * 
+	 * @return level between 1 and MAX_LEVEL.
+	 */
+	private int randomLevel() {
+		int level = 1 + Integer.numberOfTrailingZeros(random.nextInt() | (1 << (MAX_LEVEL - 1)));
+		return Math.min(level, MAX_LEVEL);
+	}
+
+	/**
+	 * Allocates an array of links to nodes.
+	 * 
+	 * @param <K>
+	 *            type of the keys.
+	 * @param <V>
+	 *            type of the values.
+	 * @param length
+	 *            number of links.
+	 * @return array of null links.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> Node<K, V>[] newNodes(int length) {
+		return (Node<K, V>[]) new Node<?, ?>[length];
+	}
+
+	/**
+	 * Fail-fast iterator over the bottom level of the list.
+	 * 
+	 * @author Nick Brust, Eric Matysek
+	 */
+	private class Cursor implements Iterator<V> {
+
+		/**
+		 * Node holding the value that will be returned next.
+		 */
+		private Node<K, V> nextNode;
+
+		/**
+		 * Number of structural changes the iterator expects the list to have.
+		 */
+		private final int expectedModCount;
+
+		/**
+		 * Constructor, creates an iterator starting at the given node.
+		 * 
+		 * @param first
+		 *            node holding the first value returned, or null.
+		 */
+		Cursor(Node<K, V> first) {
+			nextNode = first;
+			expectedModCount = modCount;
+		}
+
+		/**
+		 * Determines whether or not there is another value to traverse.
+		 * 
+		 * @return boolean value denoting whether there is another value.
+		 */
+		public boolean hasNext() {
+			return nextNode != null;
+		}
+
+		/**
+		 * Returns the next value in sorted order.
+		 * 
+		 * @throws NoSuchElementException
+		 *             if there are no more values.
+		 * @throws ConcurrentModificationException
+		 *             if the list was changed since the iterator was created.
+		 * @return the next value.
+		 */
+		public V next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (nextNode == null) {
+				throw new NoSuchElementException();
+			}
+			V value = nextNode.value;
+			nextNode = nextNode.next[0];
+			return value;
+		}
+
+		/**
+		 * Values cannot be removed through the iterator.
+		 * 
+		 * @throws UnsupportedOperationException
+		 *             always.
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Holds a key, its value, and the links to the following nodes on each of
+	 * the node's levels along with the number of positions each link skips.
+	 * 
+	 * @param <K>
+	 *            type of the key.
+	 * @param <V>
+	 *            type of the value.
+	 * @author Nick Brust, Eric Matysek
+	 */
+	private static class Node<K, V> {
+
+		/**
+		 * Key the node is sorted by.
+		 */
+		private final K key;
+
+		/**
+		 * Value held by the node.
+		 */
+		private final V value;
+
+		/**
+		 * Next node on each level.
+		 */
+		private final Node<K, V>[] next;
+
+		/**
+		 * Number of positions skipped by the link on each level.
+		 */
+		private final int[] width;
+
+		/**
+		 * Constructor, creates a node with the given number of levels.
+		 * 
+		 * @param key
+		 *            key the node is sorted by.
+		 * @param value
+		 *            value held by the node.
+		 * @param levels
+		 *            number of levels the node is linked on.
+		 */
+		Node(K key, V value, int levels) {
+			this.key = key;
+			this.value = value;
+			this.next = newNodes(levels);
+			this.width = new int[levels];
+		}
+	}
+}
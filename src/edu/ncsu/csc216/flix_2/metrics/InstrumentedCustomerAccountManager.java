@@ -0,0 +1,481 @@
+package edu.ncsu.csc216.flix_2.metrics;
+
+import edu.ncsu.csc216.flix_2.customer.CustomerAccountManager;
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+
+/**
+ * Decorator over a CustomerAccountManager that records the call count, error
+ * count and latency of every operation in a {@link MetricsRegistry}. The
+ * rental contexts of sessions are returned as they are; to record them too,
+ * build the account system over an {@link InstrumentedRentalManager}.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class InstrumentedCustomerAccountManager implements CustomerAccountManager {
+
+	/**
+	 * Component name the operations are recorded under.
+	 */
+	public static final String COMPONENT = "CustomerAccountManager";
+
+	/**
+	 * Account manager the calls are passed to.
+	 */
+	private final CustomerAccountManager delegate;
+
+	// Metrics of each operation
+	private final OperationMetrics login;
+	private final OperationMetrics logout;
+	private final OperationMetrics isAdminLoggedIn;
+	private final OperationMetrics isCustomerLoggedIn;
+	private final OperationMetrics openSession;
+	private final OperationMetrics closeSession;
+	private final OperationMetrics isAdminSession;
+	private final OperationMetrics getRentalManager;
+	private final OperationMetrics addNewCustomerInSession;
+	private final OperationMetrics addNewCustomersInSession;
+	private final OperationMetrics cancelAccountInSession;
+	private final OperationMetrics addNewCustomer;
+	private final OperationMetrics addNewCustomers;
+	private final OperationMetrics cancelAccount;
+	private final OperationMetrics listAcounts;
+	private final OperationMetrics listAccounts;
+	private final OperationMetrics listAccountsWithPrefix;
+	private final OperationMetrics listAccountsInRange;
+
+	/**
+	 * Constructor, instruments an account manager.
+	 * 
+	 * @param delegate
+	 *            account manager the calls are passed to.
+	 * @param metrics
+	 *            registry the operations are recorded in.
+	 * @throws IllegalArgumentException
+	 *             if either argument is null.
+	 */
+	public InstrumentedCustomerAccountManager(CustomerAccountManager delegate, MetricsRegistry metrics) {
+		if (delegate == null || metrics == null) {
+			throw new IllegalArgumentException();
+		}
+		this.delegate = delegate;
+		this.login = metrics.operation(COMPONENT, "login");
+		this.logout = metrics.operation(COMPONENT, "logout");
+		this.isAdminLoggedIn = metrics.operation(COMPONENT, "isAdminLoggedIn");
+		this.isCustomerLoggedIn = metrics.operation(COMPONENT, "isCustomerLoggedIn");
+		this.openSession = metrics.operation(COMPONENT, "openSession");
+		this.closeSession = metrics.operation(COMPONENT, "closeSession");
+		this.isAdminSession = metrics.operation(COMPONENT, "isAdminSession");
+		this.getRentalManager = metrics.operation(COMPONENT, "getRentalManager");
+		this.addNewCustomerInSession = metrics.operation(COMPONENT, "addNewCustomerInSession");
+		this.addNewCustomersInSession = metrics.operation(COMPONENT, "addNewCustomersInSession");
+		this.cancelAccountInSession = metrics.operation(COMPONENT, "cancelAccountInSession");
+		this.addNewCustomer = metrics.operation(COMPONENT, "addNewCustomer");
+		this.addNewCustomers = metrics.operation(COMPONENT, "addNewCustomers");
+		this.cancelAccount = metrics.operation(COMPONENT, "cancelAccount");
+		this.listAcounts = metrics.operation(COMPONENT, "listAcounts");
+		this.listAccounts = metrics.operation(COMPONENT, "listAccounts");
+		this.listAccountsWithPrefix = metrics.operation(COMPONENT, "listAccountsWithPrefix");
+		this.listAccountsInRange = metrics.operation(COMPONENT, "listAccountsInRange");
+	}
+
+	/**
+	 * Logs a user into the system.
+	 * 
+	 * @param username
+	 *            id/username of the user
+	 * @param password
+	 *            user's password
+	 * @throws IllegalStateException
+	 *             if a customer or the administrator is already logged in
+	 * @throws IllegalArgumentException
+	 *             if the customer account does not exist
+	 */
+	public void login(String username, String password) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.login(username, password);
+			failed = false;
+		} finally {
+			login.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Logs the current customer or administrator out of the system.
+	 */
+	public void logout() {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.logout();
+			failed = false;
+		} finally {
+			logout.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Is an administrator logged into the system?
+	 * 
+	 * @return true if yes, false if no
+	 */
+	public boolean isAdminLoggedIn() {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			boolean result = delegate.isAdminLoggedIn();
+			failed = false;
+			return result;
+		} finally {
+			isAdminLoggedIn.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Is a customer logged into the system?
+	 * 
+	 * @return true if yes, false if no
+	 */
+	public boolean isCustomerLoggedIn() {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			boolean result = delegate.isCustomerLoggedIn();
+			failed = false;
+			return result;
+		} finally {
+			isCustomerLoggedIn.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Opens a session for a user, without changing who is logged in.
+	 * 
+	 * @param username
+	 *            id/username of the user
+	 * @param password
+	 *            user's password
+	 * @return token naming the new session
+	 * @throws IllegalArgumentException
+	 *             if the customer account does not exist
+	 */
+	public String openSession(String username, String password) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			String result = delegate.openSession(username, password);
+			failed = false;
+			return result;
+		} finally {
+			openSession.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Closes a session. Closing a session that is not open does nothing.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 */
+	public void closeSession(String token) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.closeSession(token);
+			failed = false;
+		} finally {
+			closeSession.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Is the session open for the administrator?
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @return true if yes, false if no
+	 */
+	public boolean isAdminSession(String token) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			boolean result = delegate.isAdminSession(token);
+			failed = false;
+			return result;
+		} finally {
+			isAdminSession.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Get the rental context of a customer session.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @return the rental context of the session's customer
+	 * @throws IllegalStateException
+	 *             if the token does not name an open customer session
+	 */
+	public RentalManager getRentalManager(String token) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			RentalManager result = delegate.getRentalManager(token);
+			failed = false;
+			return result;
+		} finally {
+			getRentalManager.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Add a new customer to the customer database from an administrator
+	 * session.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @param id
+	 *            id/email for new customer
+	 * @param password
+	 *            new customer's password
+	 * @param num
+	 *            number associated with this customer
+	 * @throws IllegalStateException
+	 *             if the token does not name an open administrator session
+	 * @throws IllegalArgumentException
+	 *             if customer with given id is already in the database
+	 */
+	public void addNewCustomer(String token, String id, String password, int num) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.addNewCustomer(token, id, password, num);
+			failed = false;
+		} finally {
+			addNewCustomerInSession.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Add many new customers to the customer database from an administrator
+	 * session. Either every customer is added or none is.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @param ids
+	 *            id/email for each new customer
+	 * @param passwords
+	 *            password of each new customer
+	 * @param nums
+	 *            number associated with each new customer
+	 * @throws IllegalStateException
+	 *             if the token does not name an open administrator session
+	 * @throws IllegalArgumentException
+	 *             if the arrays differ in length, an id or password is
+	 *             invalid, or an id is already in the database or repeated
+	 */
+	public void addNewCustomers(String token, String[] ids, String[] passwords, int[] nums) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.addNewCustomers(token, ids, passwords, nums);
+			failed = false;
+		} finally {
+			addNewCustomersInSession.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Cancel a customer account from an administrator session. Any sessions
+	 * of the customer are closed.
+	 * 
+	 * @param token
+	 *            token naming the session
+	 * @param id
+	 *            id/username of the customer to cancel
+	 * @throws IllegalStateException
+	 *             if the token does not name an open administrator session
+	 * @throws IllegalArgumentException
+	 *             if no matching account is found
+	 */
+	public void cancelAccount(String token, String id) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.cancelAccount(token, id);
+			failed = false;
+		} finally {
+			cancelAccountInSession.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Add a new customer to the customer database. The administrator must be
+	 * logged in.
+	 * 
+	 * @param id
+	 *            id/email for new customer
+	 * @param password
+	 *            new customer's password
+	 * @param num
+	 *            number associated with this customer
+	 * @throws IllegalStateException
+	 *             if the administrator is not logged in
+	 * @throws IllegalArgumentException
+	 *             if customer with given id is already in the database
+	 */
+	public void addNewCustomer(String id, String password, int num) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.addNewCustomer(id, password, num);
+			failed = false;
+		} finally {
+			addNewCustomer.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Add many new customers to the customer database. The administrator must
+	 * be logged in. Either every customer is added or none is.
+	 * 
+	 * @param ids
+	 *            id/email for each new customer
+	 * @param passwords
+	 *            password of each new customer
+	 * @param nums
+	 *            number associated with each new customer
+	 * @throws IllegalStateException
+	 *             if the administrator is not logged in
+	 * @throws IllegalArgumentException
+	 *             if the arrays differ in length, an id or password is
+	 *             invalid, or an id is already in the database or repeated
+	 */
+	public void addNewCustomers(String[] ids, String[] passwords, int[] nums) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.addNewCustomers(ids, passwords, nums);
+			failed = false;
+		} finally {
+			addNewCustomers.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Cancel a customer account.
+	 * 
+	 * @param id
+	 *            id/username of the customer to cancel
+	 * @throws IllegalStateException
+	 *             if the administrator is not logged in
+	 * @throws IllegalArgumentException
+	 *             if no matching account is found
+	 */
+	public void cancelAccount(String id) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.cancelAccount(id);
+			failed = false;
+		} finally {
+			cancelAccount.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * List all customer accounts.
+	 * 
+	 * @return string of customer usernames separated by newlines
+	 */
+	public String listAcounts() {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			String result = delegate.listAcounts();
+			failed = false;
+			return result;
+		} finally {
+			listAcounts.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * List one page of the customer accounts, in sorted order.
+	 * 
+	 * @param offset
+	 *            number of accounts to skip
+	 * @param limit
+	 *            largest number of accounts to list
+	 * @return string of customer usernames separated by newlines
+	 * @throws IllegalArgumentException
+	 *             if the offset or limit is negative
+	 */
+	public String listAccounts(int offset, int limit) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			String result = delegate.listAccounts(offset, limit);
+			failed = false;
+			return result;
+		} finally {
+			listAccounts.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * List one page of the customer accounts whose usernames start with the
+	 * given prefix, ignoring case, in sorted order.
+	 * 
+	 * @param prefix
+	 *            prefix of the usernames to list
+	 * @param offset
+	 *            number of matching accounts to skip
+	 * @param limit
+	 *            largest number of accounts to list
+	 * @return string of customer usernames separated by newlines
+	 * @throws IllegalArgumentException
+	 *             if the prefix is null, or the offset or limit is negative
+	 */
+	public String listAccountsWithPrefix(String prefix, int offset, int limit) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			String result = delegate.listAccountsWithPrefix(prefix, offset, limit);
+			failed = false;
+			return result;
+		} finally {
+			listAccountsWithPrefix.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * List one page of the customer accounts whose usernames are from the
+	 * lower bound, inclusive, to the upper bound, exclusive, ignoring case, in
+	 * sorted order.
+	 * 
+	 * @param from
+	 *            lowest username to list
+	 * @param to
+	 *            username just past the last one to list
+	 * @param offset
+	 *            number of matching accounts to skip
+	 * @param limit
+	 *            largest number of accounts to list
+	 * @return string of customer usernames separated by newlines
+	 * @throws IllegalArgumentException
+	 *             if either bound is null, or the offset or limit is negative
+	 */
+	public String listAccountsInRange(String from, String to, int offset, int limit) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			String result = delegate.listAccountsInRange(from, to, offset, limit);
+			failed = false;
+			return result;
+		} finally {
+			listAccountsInRange.record(System.nanoTime() - start, failed);
+		}
+	}
+}
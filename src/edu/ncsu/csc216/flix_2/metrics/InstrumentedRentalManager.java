@@ -0,0 +1,360 @@
+package edu.ncsu.csc216.flix_2.metrics;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+
+/**
+ * Decorator over a RentalManager that records the call count, error count and
+ * latency of every operation in a {@link MetricsRegistry}. Contexts opened
+ * through it are instrumented too, and share its metrics. Setting the
+ * customer is not recorded.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class InstrumentedRentalManager implements RentalManager {
+
+	/**
+	 * Component name the operations are recorded under.
+	 */
+	public static final String COMPONENT = "RentalManager";
+
+	/**
+	 * Rental manager the calls are passed to.
+	 */
+	private final RentalManager delegate;
+
+	// Metrics of each operation
+	private final OperationMetrics showInventory;
+	private final OperationMetrics showInventoryPage;
+	private final OperationMetrics inventorySize;
+	private final OperationMetrics addToCustomerQueue;
+	private final OperationMetrics addAllToCustomerQueue;
+	private final OperationMetrics reserveMoveAheadOne;
+	private final OperationMetrics removeSelectedFromReserves;
+	private final OperationMetrics removeAllFromReserves;
+	private final OperationMetrics traverseReserveQueue;
+	private final OperationMetrics traverseAtHomeQueue;
+	private final OperationMetrics returnItemToInventory;
+	private final OperationMetrics returnAllToInventory;
+
+	/**
+	 * Constructor, instruments a rental manager.
+	 * 
+	 * @param delegate
+	 *            rental manager the calls are passed to.
+	 * @param metrics
+	 *            registry the operations are recorded in.
+	 * @throws IllegalArgumentException
+	 *             if either argument is null.
+	 */
+	public InstrumentedRentalManager(RentalManager delegate, MetricsRegistry metrics) {
+		if (delegate == null || metrics == null) {
+			throw new IllegalArgumentException();
+		}
+		this.delegate = delegate;
+		this.showInventory = metrics.operation(COMPONENT, "showInventory");
+		this.showInventoryPage = metrics.operation(COMPONENT, "showInventoryPage");
+		this.inventorySize = metrics.operation(COMPONENT, "inventorySize");
+		this.addToCustomerQueue = metrics.operation(COMPONENT, "addToCustomerQueue");
+		this.addAllToCustomerQueue = metrics.operation(COMPONENT, "addAllToCustomerQueue");
+		this.reserveMoveAheadOne = metrics.operation(COMPONENT, "reserveMoveAheadOne");
+		this.removeSelectedFromReserves = metrics.operation(COMPONENT, "removeSelectedFromReserves");
+		this.removeAllFromReserves = metrics.operation(COMPONENT, "removeAllFromReserves");
+		this.traverseReserveQueue = metrics.operation(COMPONENT, "traverseReserveQueue");
+		this.traverseAtHomeQueue = metrics.operation(COMPONENT, "traverseAtHomeQueue");
+		this.returnItemToInventory = metrics.operation(COMPONENT, "returnItemToInventory");
+		this.returnAllToInventory = metrics.operation(COMPONENT, "returnAllToInventory");
+	}
+
+	/**
+	 * Constructor, instruments a context opened through another instrumented
+	 * rental manager, sharing its metrics.
+	 * 
+	 * @param delegate
+	 *            context the calls are passed to.
+	 * @param parent
+	 *            instrumented rental manager the context was opened through.
+	 */
+	private InstrumentedRentalManager(RentalManager delegate, InstrumentedRentalManager parent) {
+		this.delegate = delegate;
+		this.showInventory = parent.showInventory;
+		this.showInventoryPage = parent.showInventoryPage;
+		this.inventorySize = parent.inventorySize;
+		this.addToCustomerQueue = parent.addToCustomerQueue;
+		this.addAllToCustomerQueue = parent.addAllToCustomerQueue;
+		this.reserveMoveAheadOne = parent.reserveMoveAheadOne;
+		this.removeSelectedFromReserves = parent.removeSelectedFromReserves;
+		this.removeAllFromReserves = parent.removeAllFromReserves;
+		this.traverseReserveQueue = parent.traverseReserveQueue;
+		this.traverseAtHomeQueue = parent.traverseAtHomeQueue;
+		this.returnItemToInventory = parent.returnItemToInventory;
+		this.returnAllToInventory = parent.returnAllToInventory;
+	}
+
+	/**
+	 * Traverse all items in the inventory.
+	 * 
+	 * @return the string representing the items in the inventory
+	 */
+	public String showInventory() {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			String result = delegate.showInventory();
+			failed = false;
+			return result;
+		} finally {
+			showInventory.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Traverse one page of the items in the inventory. A page past the end of
+	 * the inventory is empty.
+	 * 
+	 * @param offset
+	 *            position of the first item on the page
+	 * @param limit
+	 *            largest number of items on the page
+	 * @return the string representing the items on the page
+	 * @throws IllegalArgumentException
+	 *             if offset or limit is negative
+	 */
+	public String showInventory(int offset, int limit) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			String result = delegate.showInventory(offset, limit);
+			failed = false;
+			return result;
+		} finally {
+			showInventoryPage.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Get the number of items in the inventory.
+	 * 
+	 * @return the number of items in the inventory
+	 */
+	public int inventorySize() {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			int result = delegate.inventorySize();
+			failed = false;
+			return result;
+		} finally {
+			inventorySize.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Set the customer for the current context to a given value.
+	 * 
+	 * @param c
+	 *            the new current customer
+	 */
+	public void setCustomer(Customer c) {
+		delegate.setCustomer(c);
+	}
+
+	/**
+	 * Open a new context for a given customer that shares this inventory.
+	 * Operations on the new context run against that customer and do not
+	 * change the customer of this context, so each session can have its own.
+	 * 
+	 * @param c
+	 *            the customer for the new context
+	 * @return the new context
+	 * @throws IllegalArgumentException
+	 *             if the customer is null
+	 */
+	public RentalManager openContext(Customer c) {
+		return new InstrumentedRentalManager(delegate.openContext(c), this);
+	}
+
+	/**
+	 * Reserve the selected item for the reserve queue.
+	 * 
+	 * @param position
+	 *            position of the selected item in the inventory
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 * @throws IllegalArgumentException
+	 *             if position is out of bounds
+	 */
+	public void addToCustomerQueue(int position) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.addToCustomerQueue(position);
+			failed = false;
+		} finally {
+			addToCustomerQueue.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Reserve many items for the reserve queue, in the given order.
+	 * 
+	 * @param positions
+	 *            positions of the selected items in the inventory
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 * @throws IllegalArgumentException
+	 *             if any position is out of bounds
+	 */
+	public void addAllToCustomerQueue(int[] positions) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.addAllToCustomerQueue(positions);
+			failed = false;
+		} finally {
+			addAllToCustomerQueue.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Move the item in the given position up 1 in the reserve queue.
+	 * 
+	 * @param position
+	 *            current position of item to move up one
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 */
+	public void reserveMoveAheadOne(int position) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.reserveMoveAheadOne(position);
+			failed = false;
+		} finally {
+			reserveMoveAheadOne.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Remove the item in the given position from the reserve queue.
+	 * 
+	 * @param position
+	 *            position of the item in the queue
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 * @throws IllegalArgumentException
+	 *             if position is out of bounds
+	 */
+	public void removeSelectedFromReserves(int position) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.removeSelectedFromReserves(position);
+			failed = false;
+		} finally {
+			removeSelectedFromReserves.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Remove the items in the given positions from the reserve queue.
+	 * 
+	 * @param positions
+	 *            positions of the items in the queue, in any order
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 * @throws IllegalArgumentException
+	 *             if any position is out of bounds or repeated
+	 */
+	public void removeAllFromReserves(int[] positions) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.removeAllFromReserves(positions);
+			failed = false;
+		} finally {
+			removeAllFromReserves.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Traverse all items in the reserve queue.
+	 * 
+	 * @return string representation of items in the queue
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 */
+	public String traverseReserveQueue() {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			String result = delegate.traverseReserveQueue();
+			failed = false;
+			return result;
+		} finally {
+			traverseReserveQueue.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Traverse all items in the reserve queue.
+	 * 
+	 * @return string representation of items at home
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 */
+	public String traverseAtHomeQueue() {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			String result = delegate.traverseAtHomeQueue();
+			failed = false;
+			return result;
+		} finally {
+			traverseAtHomeQueue.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Return the selected item to the inventory.
+	 * 
+	 * @param position
+	 *            location in the list of items at home of the item to return
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 * @throws IllegalArgumentException
+	 *             if position is out of bounds
+	 */
+	public void returnItemToInventory(int position) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.returnItemToInventory(position);
+			failed = false;
+		} finally {
+			returnItemToInventory.record(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * Return the selected items to the inventory.
+	 * 
+	 * @param positions
+	 *            locations in the list of items at home of the items to
+	 *            return, in any order
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 * @throws IllegalArgumentException
+	 *             if any position is out of bounds or repeated
+	 */
+	public void returnAllToInventory(int[] positions) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.returnAllToInventory(positions);
+			failed = false;
+		} finally {
+			returnAllToInventory.record(System.nanoTime() - start, failed);
+		}
+	}
+}
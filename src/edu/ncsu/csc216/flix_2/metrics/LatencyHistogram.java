@@ -0,0 +1,184 @@
+package edu.ncsu.csc216.flix_2.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds with log-linear buckets: every power
+ * of two is split into 16 equal buckets, so any recorded value is reported
+ * within about 6% of its true value. Any number of threads can record at the
+ * same time. Recording is a few arithmetic operations and atomic increments,
+ * with no locking and no allocation, so it can sit on the paths it measures.
+ * Reads while values are being recorded see a close, but not exact, view.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of bits of each value kept below its highest set bit.
+	 */
+	private static final int SUB_BITS = 4;
+
+	/**
+	 * Number of buckets each power of two is split into.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	/**
+	 * Number of buckets, enough for any non-negative long.
+	 */
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	/**
+	 * Number of values recorded in each bucket.
+	 */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Number of values recorded.
+	 */
+	private final AtomicLong total = new AtomicLong();
+
+	/**
+	 * Sum of the values recorded.
+	 */
+	private final AtomicLong sum = new AtomicLong();
+
+	/**
+	 * Largest value recorded.
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records one latency. Negative values are recorded as zero.
+	 * 
+	 * @param nanos
+	 *            latency in nanoseconds.
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucketOf(value));
+		total.incrementAndGet();
+		sum.addAndGet(value);
+		long seen = max.get();
+		while (value > seen && !max.compareAndSet(seen, value)) {
+			seen = max.get();
+		}
+	}
+
+	/**
+	 * Adds every value recorded in another histogram to this one.
+	 * 
+	 * @param other
+	 *            histogram to add.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			long count = other.counts.get(i);
+			if (count != 0) {
+				counts.addAndGet(i, count);
+			}
+		}
+		total.addAndGet(other.total.get());
+		sum.addAndGet(other.sum.get());
+		long value = other.max.get();
+		long seen = max.get();
+		while (value > seen && !max.compareAndSet(seen, value)) {
+			seen = max.get();
+		}
+	}
+
+	/**
+	 * Returns the number of values recorded.
+	 * 
+	 * @return number of values recorded.
+	 */
+	public long getCount() {
+		return total.get();
+	}
+
+	/**
+	 * Returns the largest value recorded.
+	 * 
+	 * @return largest value, or 0 if none were recorded.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the mean of the values recorded.
+	 * 
+	 * @return mean value, or 0 if none were recorded.
+	 */
+	public double getMean() {
+		long count = total.get();
+		return count == 0 ? 0 : (double) sum.get() / count;
+	}
+
+	/**
+	 * Returns the value at the given percentile: the upper bound of the
+	 * bucket holding it, capped at the largest value recorded.
+	 * 
+	 * @param percentile
+	 *            percentile from 0 to 100.
+	 * @return value at the percentile, or 0 if none were recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long largest = max.get();
+		long rank = (long) Math.ceil(percentile / 100.0 * count);
+		rank = Math.min(Math.max(rank, 1), count);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), largest);
+			}
+		}
+		return largest;
+	}
+
+	/**
+	 * Returns the bucket a value falls in.
+	 * 
+	 * @param value
+	 *            non-negative value.
+	 * @return index of the bucket.
+	 */
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Returns the largest value that falls in a bucket.
+	 * 
+	 * @param bucket
+	 *            index of the bucket.
+	 * @return largest value of the bucket.
+	 */
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BITS);
+		long lower = (1L << exponent) + sub * width;
+		return lower + width - 1;
+	}
+}
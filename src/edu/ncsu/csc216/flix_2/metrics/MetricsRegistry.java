@@ -0,0 +1,168 @@
+package edu.ncsu.csc216.flix_2.metrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Holds the metrics of the instrumented components of one store: the
+ * operation metrics created by the instrumented decorators, and optionally
+ * the store gauges. The metrics can be registered as JMX MBeans under the
+ * "edu.ncsu.csc216.flix_2" domain, and dumped as plain text.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class MetricsRegistry {
+
+	/**
+	 * JMX domain of the MBeans.
+	 */
+	public static final String DOMAIN = "edu.ncsu.csc216.flix_2";
+
+	/**
+	 * Metrics of every operation, in the order they were created.
+	 */
+	private final List<OperationMetrics> operations = new ArrayList<OperationMetrics>();
+
+	/**
+	 * Gauges of the store, or null if none were set.
+	 */
+	private volatile StoreGauges gauges;
+
+	/**
+	 * Returns the metrics of an operation, creating them the first time.
+	 * Decorators look their operations up once, when they are created, so
+	 * nothing is looked up while calls are recorded.
+	 * 
+	 * @param component
+	 *            interface the operation belongs to.
+	 * @param name
+	 *            name of the operation.
+	 * @return metrics of the operation.
+	 */
+	public synchronized OperationMetrics operation(String component, String name) {
+		for (OperationMetrics m : operations) {
+			if (m.getComponent().equals(component) && m.getName().equals(name)) {
+				return m;
+			}
+		}
+		OperationMetrics m = new OperationMetrics(component, name);
+		operations.add(m);
+		return m;
+	}
+
+	/**
+	 * Returns the metrics of every operation.
+	 * 
+	 * @return metrics of every operation, in the order they were created.
+	 */
+	public synchronized List<OperationMetrics> getOperations() {
+		return new ArrayList<OperationMetrics>(operations);
+	}
+
+	/**
+	 * Sets the gauges of the store.
+	 * 
+	 * @param gauges
+	 *            gauges of the store, or null for none.
+	 */
+	public void setGauges(StoreGauges gauges) {
+		this.gauges = gauges;
+	}
+
+	/**
+	 * Registers the gauges and the metrics of every operation as MBeans.
+	 * 
+	 * @param server
+	 *            server the MBeans are registered with.
+	 * @throws JMException
+	 *             if an MBean cannot be registered.
+	 */
+	public void registerMBeans(MBeanServer server) throws JMException {
+		for (OperationMetrics m : getOperations()) {
+			server.registerMBean(m, nameOf(m));
+		}
+		StoreGauges g = gauges;
+		if (g != null) {
+			server.registerMBean(g, new ObjectName(DOMAIN + ":type=StoreGauges"));
+		}
+	}
+
+	/**
+	 * Unregisters the MBeans registered by {@link #registerMBeans}.
+	 * 
+	 * @param server
+	 *            server the MBeans were registered with.
+	 * @throws JMException
+	 *             if an MBean cannot be unregistered.
+	 */
+	public void unregisterMBeans(MBeanServer server) throws JMException {
+		for (OperationMetrics m : getOperations()) {
+			ObjectName name = nameOf(m);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		}
+		ObjectName gaugesName = new ObjectName(DOMAIN + ":type=StoreGauges");
+		if (server.isRegistered(gaugesName)) {
+			server.unregisterMBean(gaugesName);
+		}
+	}
+
+	/**
+	 * Writes every metric as plain text, one operation or gauge per line.
+	 * 
+	 * @param out
+	 *            where the text is written.
+	 * @throws IOException
+	 *             if writing fails.
+	 */
+	public void dump(Appendable out) throws IOException {
+		out.append(String.format(Locale.ROOT, "%-50s %10s %8s %10s %10s %10s %10s %10s%n", "operation", "calls", "errors", "mean us",
+				"p50 us", "p99 us", "p99.9 us", "max us"));
+		for (OperationMetrics m : getOperations()) {
+			out.append(String.format(Locale.ROOT, "%-50s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+					m.getComponent() + "." + m.getName(), m.getCalls(), m.getErrors(), m.getMeanMicros(), m.getP50Micros(),
+					m.getP99Micros(), m.getP999Micros(), m.getMaxMicros()));
+		}
+		StoreGauges g = gauges;
+		if (g != null) {
+			out.append(String.format(Locale.ROOT, "catalog size %d, customers %d, sessions %d, copies out %d, reserved %d, waitlisted %d%n",
+					g.getCatalogSize(), g.getCustomerCount(), g.getSessionCount(), g.getCopiesOut(), g.getReserveQueueDepth(),
+					g.getWaitlistDepth()));
+		}
+	}
+
+	/**
+	 * Returns every metric as plain text.
+	 * 
+	 * @return the text written by {@link #dump(Appendable)}.
+	 */
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		try {
+			dump(text);
+		} catch (IOException e) {
+			// A StringBuilder does not throw
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Returns the MBean name of an operation.
+	 * 
+	 * @param m
+	 *            metrics of the operation.
+	 * @return name of its MBean.
+	 * @throws JMException
+	 *             if the name is malformed.
+	 */
+	private static ObjectName nameOf(OperationMetrics m) throws JMException {
+		return new ObjectName(DOMAIN + ":type=Operation,component=" + m.getComponent() + ",name=" + m.getName());
+	}
+}
@@ -0,0 +1,150 @@
+package edu.ncsu.csc216.flix_2.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Call count, error count and latency histogram of one operation, such as
+ * RentalManager.addToCustomerQueue. Recording a call allocates nothing.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+	/**
+	 * Interface the operation belongs to.
+	 */
+	private final String component;
+
+	/**
+	 * Name of the operation.
+	 */
+	private final String name;
+
+	/**
+	 * Number of calls that threw an exception.
+	 */
+	private final AtomicLong errors = new AtomicLong();
+
+	/**
+	 * Latency of every call, failed or not.
+	 */
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	/**
+	 * Constructor, creates the metrics of an operation with no calls yet.
+	 * 
+	 * @param component
+	 *            interface the operation belongs to.
+	 * @param name
+	 *            name of the operation.
+	 */
+	public OperationMetrics(String component, String name) {
+		this.component = component;
+		this.name = name;
+	}
+
+	/**
+	 * Records one call.
+	 * 
+	 * @param nanos
+	 *            time the call took, in nanoseconds.
+	 * @param failed
+	 *            true if the call threw an exception.
+	 */
+	public void record(long nanos, boolean failed) {
+		latency.record(nanos);
+		if (failed) {
+			errors.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the interface the operation belongs to.
+	 * 
+	 * @return interface the operation belongs to.
+	 */
+	public String getComponent() {
+		return component;
+	}
+
+	/**
+	 * Returns the name of the operation.
+	 * 
+	 * @return name of the operation.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the latency histogram of the operation.
+	 * 
+	 * @return latency histogram, in nanoseconds.
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Returns the number of calls, including the ones that failed.
+	 * 
+	 * @return number of calls.
+	 */
+	public long getCalls() {
+		return latency.getCount();
+	}
+
+	/**
+	 * Returns the number of calls that threw an exception.
+	 * 
+	 * @return number of failed calls.
+	 */
+	public long getErrors() {
+		return errors.get();
+	}
+
+	/**
+	 * Returns the mean latency.
+	 * 
+	 * @return mean latency in microseconds.
+	 */
+	public double getMeanMicros() {
+		return latency.getMean() / 1e3;
+	}
+
+	/**
+	 * Returns the median latency.
+	 * 
+	 * @return 50th percentile latency in microseconds.
+	 */
+	public double getP50Micros() {
+		return latency.getPercentile(50) / 1e3;
+	}
+
+	/**
+	 * Returns the 99th percentile latency.
+	 * 
+	 * @return 99th percentile latency in microseconds.
+	 */
+	public double getP99Micros() {
+		return latency.getPercentile(99) / 1e3;
+	}
+
+	/**
+	 * Returns the 99.9th percentile latency.
+	 * 
+	 * @return 99.9th percentile latency in microseconds.
+	 */
+	public double getP999Micros() {
+		return latency.getPercentile(99.9) / 1e3;
+	}
+
+	/**
+	 * Returns the largest latency.
+	 * 
+	 * @return largest latency in microseconds.
+	 */
+	public double getMaxMicros() {
+		return latency.getMax() / 1e3;
+	}
+}
@@ -0,0 +1,58 @@
+package edu.ncsu.csc216.flix_2.metrics;
+
+/**
+ * Management interface of the metrics of one operation.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public interface OperationMetricsMBean {
+
+	/**
+	 * Returns the number of calls, including the ones that failed.
+	 * 
+	 * @return number of calls.
+	 */
+	long getCalls();
+
+	/**
+	 * Returns the number of calls that threw an exception.
+	 * 
+	 * @return number of failed calls.
+	 */
+	long getErrors();
+
+	/**
+	 * Returns the mean latency.
+	 * 
+	 * @return mean latency in microseconds.
+	 */
+	double getMeanMicros();
+
+	/**
+	 * Returns the median latency.
+	 * 
+	 * @return 50th percentile latency in microseconds.
+	 */
+	double getP50Micros();
+
+	/**
+	 * Returns the 99th percentile latency.
+	 * 
+	 * @return 99th percentile latency in microseconds.
+	 */
+	double getP99Micros();
+
+	/**
+	 * Returns the 99.9th percentile latency.
+	 * 
+	 * @return 99.9th percentile latency in microseconds.
+	 */
+	double getP999Micros();
+
+	/**
+	 * Returns the largest latency.
+	 * 
+	 * @return largest latency in microseconds.
+	 */
+	double getMaxMicros();
+}
@@ -0,0 +1,97 @@
+package edu.ncsu.csc216.flix_2.metrics;
+
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+
+/**
+ * Gauges describing the state of a rental store, read from the rental and
+ * account systems each time they are asked for. The copies out and queue
+ * depths walk every customer, so they cost time in proportion to the number
+ * of customers and should be polled, not read on every request.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class StoreGauges implements StoreGaugesMBean {
+
+	/**
+	 * Rental system of the store.
+	 */
+	private final DVDRentalSystem rentals;
+
+	/**
+	 * Account system of the store.
+	 */
+	private final MovieCustomerAccountSystem accounts;
+
+	/**
+	 * Constructor, creates the gauges of a store.
+	 * 
+	 * @param rentals
+	 *            rental system of the store.
+	 * @param accounts
+	 *            account system of the store.
+	 * @throws IllegalArgumentException
+	 *             if either system is null.
+	 */
+	public StoreGauges(DVDRentalSystem rentals, MovieCustomerAccountSystem accounts) {
+		if (rentals == null || accounts == null) {
+			throw new IllegalArgumentException();
+		}
+		this.rentals = rentals;
+		this.accounts = accounts;
+	}
+
+	/**
+	 * Returns the number of titles in the catalog.
+	 * 
+	 * @return number of titles.
+	 */
+	public int getCatalogSize() {
+		return rentals.inventorySize();
+	}
+
+	/**
+	 * Returns the number of customer accounts.
+	 * 
+	 * @return number of customers.
+	 */
+	public int getCustomerCount() {
+		return accounts.getCustomerCount();
+	}
+
+	/**
+	 * Returns the number of open sessions.
+	 * 
+	 * @return number of sessions.
+	 */
+	public int getSessionCount() {
+		return accounts.getSessionCount();
+	}
+
+	/**
+	 * Returns the number of copies customers have at home.
+	 * 
+	 * @return number of copies out.
+	 */
+	public long getCopiesOut() {
+		return accounts.getQueueTotals()[1];
+	}
+
+	/**
+	 * Returns the number of movies in all reserve queues.
+	 * 
+	 * @return total reserve queue depth.
+	 */
+	public long getReserveQueueDepth() {
+		return accounts.getQueueTotals()[0];
+	}
+
+	/**
+	 * Returns the number of places in line on all waitlists.
+	 * 
+	 * @return total waitlist depth.
+	 */
+	public int getWaitlistDepth() {
+		return rentals.getWaitlistDepth();
+	}
+}
@@ -0,0 +1,51 @@
+package edu.ncsu.csc216.flix_2.metrics;
+
+/**
+ * Management interface of the gauges describing the state of a rental store.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public interface StoreGaugesMBean {
+
+	/**
+	 * Returns the number of titles in the catalog.
+	 * 
+	 * @return number of titles.
+	 */
+	int getCatalogSize();
+
+	/**
+	 * Returns the number of customer accounts.
+	 * 
+	 * @return number of customers.
+	 */
+	int getCustomerCount();
+
+	/**
+	 * Returns the number of open sessions.
+	 * 
+	 * @return number of sessions.
+	 */
+	int getSessionCount();
+
+	/**
+	 * Returns the number of copies customers have at home.
+	 * 
+	 * @return number of copies out.
+	 */
+	long getCopiesOut();
+
+	/**
+	 * Returns the number of movies in all reserve queues.
+	 * 
+	 * @return total reserve queue depth.
+	 */
+	long getReserveQueueDepth();
+
+	/**
+	 * Returns the number of places in line on all waitlists.
+	 * 
+	 * @return total waitlist depth.
+	 */
+	int getWaitlistDepth();
+}
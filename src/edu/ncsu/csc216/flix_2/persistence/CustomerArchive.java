@@ -0,0 +1,1228 @@
+package edu.ncsu.csc216.flix_2.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+import edu.ncsu.csc216.flix_2.customer.CustomerDescriber;
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+
+/**
+ * Streams complete customer records between a file and the account system,
+ * for moving accounts in from another store or another system. An archive is
+ * UTF-8 text with one customer per line and tabs between the fields: the
+ * username, the password, the limit on movies at home, the number of movies
+ * at home, the titles of the movies at home, and then the titles of the
+ * movies on reserve, each queue in order. Within a username, password or
+ * title, a backslash, tab, line feed and carriage return are written as
+ * {@code \\}, {@code \t}, {@code \n} and {@code \r}, so any account the
+ * store accepts can be archived; any other backslash stands for itself. A
+ * carriage return at the end of a line is ignored. Movies are named by title, so an archive can be imported
+ * against any catalog that has its titles; a title held by more than one
+ * movie names the first of them.
+ * 
+ * Both directions go through fixed-size buffers on file channels, so the
+ * memory they need beyond the accounts themselves does not grow with the
+ * archive. An import sorts the records by username before adding any: it
+ * reads runs of records that fit in {@link #RUN_BYTES}, sorts each run into a
+ * temporary file and merges the runs, so the customers reach the directory in
+ * its own order and each batch is merged into it in one pass. An archive
+ * written by {@link #exportTo(String, MovieCustomerAccountSystem)} is already
+ * in that order.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public final class CustomerArchive {
+
+	/**
+	 * Size of the buffers files are read and written through.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Longest line an archive may have, in bytes.
+	 */
+	private static final int MAX_LINE = 1 << 20;
+
+	/**
+	 * Approximate memory the records of one sorted run may take.
+	 */
+	static final long RUN_BYTES = 16L << 20;
+
+	/**
+	 * Largest number of runs merged at once.
+	 */
+	static final int FAN_IN = 64;
+
+	/**
+	 * Number of customers added to the account system at once.
+	 */
+	static final int BATCH_SIZE = 4096;
+
+	/**
+	 * Orders records the same way as the customer directory.
+	 */
+	private static final Comparator<Record> BY_USERNAME = new Comparator<Record>() {
+		public int compare(Record first, Record second) {
+			return first.id.compareToIgnoreCase(second.id);
+		}
+	};
+
+	/**
+	 * Not used; the class only has static methods.
+	 */
+	private CustomerArchive() {
+	}
+
+	/**
+	 * Writes every customer to an archive, in username order. Each customer
+	 * is copied while it is locked, so its queues are from one moment;
+	 * customers whose accounts are closed before they are reached are left
+	 * out.
+	 * 
+	 * @param fileName
+	 *            name of the archive, replaced if it exists.
+	 * @param accounts
+	 *            account system holding the customers.
+	 * @return number of customers written.
+	 * @throws IllegalArgumentException
+	 *             if an argument is null or the file cannot be written.
+	 */
+	public static int exportTo(String fileName, MovieCustomerAccountSystem accounts) {
+		if (fileName == null || accounts == null) {
+			throw new IllegalArgumentException();
+		}
+		try {
+			FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				Output out = new Output(channel);
+				Copier copier = new Copier();
+				int count = 0;
+				for (Customer customer : accounts.getCustomers()) {
+					copier.clear();
+					if (customer.describeTo(copier)) {
+						copier.writeTo(out);
+						count++;
+					}
+				}
+				out.flush();
+				return count;
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Archive cannot be written.", e);
+		}
+	}
+
+	/**
+	 * Adds every customer in an archive to the account system, with its
+	 * queues. The copies of the movies the customers have at home are taken
+	 * out of the inventory, and the customers then join the waitlists of
+	 * their reserves the same way as restored customers do.
+	 * 
+	 * The whole archive is checked before any customer is added: every line,
+	 * every title, that no username is repeated or already has an account,
+	 * and that the inventory has the copies the customers have at home. A
+	 * username or copy taken by someone else while the import runs stops it
+	 * at the batch of {@link #BATCH_SIZE} customers it is in, with the
+	 * batches before it added.
+	 * 
+	 * @param fileName
+	 *            name of the archive.
+	 * @param rentals
+	 *            rental system holding the catalog.
+	 * @param accounts
+	 *            account system using the rental system.
+	 * @return number of customers added.
+	 * @throws IllegalArgumentException
+	 *             if an argument is null, the file cannot be read, a line is
+	 *             not a customer record, a title is not in the catalog, a
+	 *             username is repeated or already has an account, or the
+	 *             customers have more copies of a movie at home than are in
+	 *             the inventory.
+	 * @throws IllegalStateException
+	 *             if the copies the customers have at home were checked out
+	 *             by someone else during the import.
+	 */
+	public static int importFrom(String fileName, DVDRentalSystem rentals, MovieCustomerAccountSystem accounts) {
+		return importFrom(fileName, rentals, accounts, RUN_BYTES);
+	}
+
+	/**
+	 * Imports an archive, sorting it in runs of the given size.
+	 * 
+	 * @param fileName
+	 *            name of the archive.
+	 * @param rentals
+	 *            rental system holding the catalog.
+	 * @param accounts
+	 *            account system using the rental system.
+	 * @param runBytes
+	 *            approximate memory the records of one run may take.
+	 * @return number of customers added.
+	 * @see #importFrom(String, DVDRentalSystem, MovieCustomerAccountSystem)
+	 */
+	static int importFrom(String fileName, DVDRentalSystem rentals, MovieCustomerAccountSystem accounts, long runBytes) {
+		if (fileName == null || rentals == null || accounts == null) {
+			throw new IllegalArgumentException();
+		}
+		Path work = null;
+		try {
+			work = Files.createTempDirectory("flix-import");
+			int[] demand = new int[rentals.inventorySize()];
+			List<Path> runs = new ArrayList<Path>();
+			int count = split(Paths.get(fileName), rentals, demand, runBytes, work, runs);
+			checkStock(rentals, accounts, demand);
+			while (runs.size() > FAN_IN) {
+				List<Path> merged = new ArrayList<Path>();
+				for (int i = 0; i < runs.size(); i += FAN_IN) {
+					List<Path> group = runs.subList(i, Math.min(i + FAN_IN, runs.size()));
+					Path run = Files.createTempFile(work, "run", ".bin");
+					FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE);
+					try {
+						merge(group, new RunWriter(channel));
+					} finally {
+						channel.close();
+					}
+					for (Path done : group) {
+						Files.delete(done);
+					}
+					merged.add(run);
+				}
+				runs = merged;
+			}
+			merge(runs, new DuplicateCheck(accounts));
+			merge(runs, new Loader(rentals, accounts));
+			return count;
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Archive cannot be read.", e);
+		} finally {
+			deleteQuietly(work);
+		}
+	}
+
+	/**
+	 * Reads the archive, checking every record, and writes it out in sorted
+	 * runs.
+	 * 
+	 * @param file
+	 *            the archive.
+	 * @param rentals
+	 *            rental system holding the catalog.
+	 * @param demand
+	 *            number of copies of each movie the customers have at home,
+	 *            added to as records are read.
+	 * @param runBytes
+	 *            approximate memory the records of one run may take.
+	 * @param work
+	 *            directory the runs are written to.
+	 * @param runs
+	 *            files the runs were written to, added to.
+	 * @return number of records read.
+	 * @throws IOException
+	 *             if a file cannot be read or written.
+	 */
+	private static int split(Path file, DVDRentalSystem rentals, int[] demand, long runBytes, Path work,
+			List<Path> runs) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			LineReader in = new LineReader(channel);
+			List<Record> run = new ArrayList<Record>();
+			long bytes = 0;
+			int count = 0;
+			for (String line = in.next(); line != null; line = in.next()) {
+				Record record = parse(line, in.getLineNumber(), rentals);
+				for (int i = 0; i < record.atHomeCount; i++) {
+					demand[record.movies[i]]++;
+				}
+				run.add(record);
+				bytes += record.size();
+				count++;
+				if (bytes >= runBytes) {
+					runs.add(writeRun(run, work));
+					run.clear();
+					bytes = 0;
+				}
+			}
+			if (!run.isEmpty()) {
+				runs.add(writeRun(run, work));
+			}
+			return count;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Parses one line of an archive.
+	 * 
+	 * @param line
+	 *            the line, without its line break.
+	 * @param number
+	 *            line number, counting from 1.
+	 * @param rentals
+	 *            rental system holding the catalog.
+	 * @return the record on the line.
+	 * @throws IllegalArgumentException
+	 *             if the line is not a customer record, has more movies at
+	 *             home than the customer may have, or names a title that is
+	 *             not in the catalog.
+	 */
+	private static Record parse(String line, long number, DVDRentalSystem rentals) {
+		String[] fields = line.split("\t", -1);
+		if (fields.length < 4) {
+			throw new IllegalArgumentException("Line " + number + " is not a customer record.");
+		}
+		String id = unescape(fields[0]);
+		String password = unescape(fields[1]);
+		if (id.trim().isEmpty() || password.trim().isEmpty() || id.contains(" ") || password.contains(" ")) {
+			throw new IllegalArgumentException("Line " + number + " has an invalid username or password.");
+		}
+		int maxAtHome;
+		int atHomeCount;
+		try {
+			maxAtHome = Integer.parseInt(fields[2]);
+			atHomeCount = Integer.parseInt(fields[3]);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Line " + number + " is not a customer record.");
+		}
+		if (atHomeCount < 0 || atHomeCount > fields.length - 4) {
+			throw new IllegalArgumentException("Line " + number + " is not a customer record.");
+		}
+		if (atHomeCount > Math.max(maxAtHome, 0)) {
+			throw new IllegalArgumentException("Line " + number + " has more movies at home than the customer may have.");
+		}
+		int[] movies = new int[fields.length - 4];
+		for (int i = 0; i < movies.length; i++) {
+			String title = unescape(fields[i + 4]);
+			int[] positions = rentals.findTitle(title);
+			if (positions.length == 0) {
+				throw new IllegalArgumentException("Line " + number + " names a movie not in the catalog: " + title);
+			}
+			movies[i] = positions[0];
+		}
+		return new Record(id, password, maxAtHome, atHomeCount, movies);
+	}
+
+	/**
+	 * Undoes the escapes of a field written by {@link Copier}.
+	 * 
+	 * @param field
+	 *            the field as it is in the archive.
+	 * @return the field it stands for.
+	 */
+	private static String unescape(String field) {
+		int i = field.indexOf('\\');
+		if (i < 0) {
+			return field;
+		}
+		StringBuilder s = new StringBuilder(field.length());
+		s.append(field, 0, i);
+		for (; i < field.length(); i++) {
+			char c = field.charAt(i);
+			char next = i + 1 < field.length() ? field.charAt(i + 1) : 0;
+			if (c != '\\' || (next != '\\' && next != 't' && next != 'n' && next != 'r')) {
+				s.append(c);
+				continue;
+			}
+			i++;
+			s.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : '\\');
+		}
+		return s.toString();
+	}
+
+	/**
+	 * Checks that the inventory has the copies the archive's customers have
+	 * at home. The stock of each movie is its number of copies less the
+	 * copies the account system's customers have at home.
+	 * 
+	 * @param rentals
+	 *            rental system holding the catalog.
+	 * @param accounts
+	 *            account system using the rental system.
+	 * @param demand
+	 *            number of copies of each movie the archive's customers have
+	 *            at home.
+	 * @throws IllegalArgumentException
+	 *             if a movie does not have enough copies.
+	 */
+	private static void checkStock(DVDRentalSystem rentals, MovieCustomerAccountSystem accounts, int[] demand) {
+		for (Customer customer : accounts.getCustomers()) {
+			for (Movie movie : customer.getAtHomeMovies()) {
+				int position = rentals.positionOf(movie);
+				if (position >= 0) {
+					demand[position]++;
+				}
+			}
+		}
+		for (int i = 0; i < demand.length; i++) {
+			Movie movie = rentals.getMovieAt(i);
+			if (demand[i] > movie.getCopies()) {
+				throw new IllegalArgumentException("Archive has more copies of " + movie.getName()
+						+ " at home than are in the inventory.");
+			}
+		}
+	}
+
+	/**
+	 * Sorts a run and writes it to a new file.
+	 * 
+	 * @param run
+	 *            records in the run.
+	 * @param work
+	 *            directory the file is created in.
+	 * @return the file.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	private static Path writeRun(List<Record> run, Path work) throws IOException {
+		Collections.sort(run, BY_USERNAME);
+		Path file = Files.createTempFile(work, "run", ".bin");
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+		try {
+			RunWriter out = new RunWriter(channel);
+			for (Record record : run) {
+				out.accept(record);
+			}
+			out.finish();
+		} finally {
+			channel.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Merges sorted runs into a sink, in username order.
+	 * 
+	 * @param runs
+	 *            files holding the runs.
+	 * @param sink
+	 *            where the records go.
+	 * @throws IOException
+	 *             if a file cannot be read or written.
+	 */
+	private static void merge(List<Path> runs, Sink sink) throws IOException {
+		PriorityQueue<RunReader> heads = new PriorityQueue<RunReader>(Math.max(1, runs.size()),
+				new Comparator<RunReader>() {
+					public int compare(RunReader first, RunReader second) {
+						return BY_USERNAME.compare(first.head, second.head);
+					}
+				});
+		List<RunReader> readers = new ArrayList<RunReader>(runs.size());
+		try {
+			for (Path run : runs) {
+				RunReader reader = new RunReader(FileChannel.open(run, StandardOpenOption.READ));
+				readers.add(reader);
+				if (reader.advance()) {
+					heads.add(reader);
+				}
+			}
+			while (!heads.isEmpty()) {
+				RunReader reader = heads.poll();
+				sink.accept(reader.head);
+				if (reader.advance()) {
+					heads.add(reader);
+				}
+			}
+			sink.finish();
+		} finally {
+			for (RunReader reader : readers) {
+				reader.channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Deletes a directory and the files in it, ignoring any failure.
+	 * 
+	 * @param directory
+	 *            directory to delete, or null.
+	 */
+	private static void deleteQuietly(Path directory) {
+		if (directory == null) {
+			return;
+		}
+		try {
+			DirectoryStream<Path> files = Files.newDirectoryStream(directory);
+			try {
+				for (Path file : files) {
+					Files.deleteIfExists(file);
+				}
+			} finally {
+				files.close();
+			}
+			Files.deleteIfExists(directory);
+		} catch (IOException e) {
+			// The files are temporary, so they are left for the system to
+			// clean up.
+		}
+	}
+
+	/**
+	 * One customer as it is sorted and merged: movies are held by catalog
+	 * position, the movies at home first.
+	 */
+	private static class Record {
+
+		/**
+		 * Username of the customer, trimmed as the account will hold it.
+		 */
+		private final String id;
+
+		/**
+		 * Password of the customer.
+		 */
+		private final String password;
+
+		/**
+		 * Limit on the customer's movies at home.
+		 */
+		private final int maxAtHome;
+
+		/**
+		 * Number of movies at home, at the start of the movies.
+		 */
+		private final int atHomeCount;
+
+		/**
+		 * Catalog positions of the movies at home and then on reserve.
+		 */
+		private final int[] movies;
+
+		/**
+		 * Constructor, creates a record.
+		 * 
+		 * @param id
+		 *            username of the customer; surrounding whitespace is
+		 *            dropped.
+		 * @param password
+		 *            password of the customer.
+		 * @param maxAtHome
+		 *            limit on the customer's movies at home.
+		 * @param atHomeCount
+		 *            number of movies at home.
+		 * @param movies
+		 *            catalog positions of the movies at home and then on
+		 *            reserve.
+		 */
+		Record(String id, String password, int maxAtHome, int atHomeCount, int[] movies) {
+			this.id = id.trim();
+			this.password = password;
+			this.maxAtHome = maxAtHome;
+			this.atHomeCount = atHomeCount;
+			this.movies = movies;
+		}
+
+		/**
+		 * Estimates the memory the record takes.
+		 * 
+		 * @return approximate number of bytes.
+		 */
+		long size() {
+			return 96 + 2L * (id.length() + password.length()) + 4L * movies.length;
+		}
+	}
+
+	/**
+	 * Takes merged records in username order.
+	 */
+	private interface Sink {
+
+		/**
+		 * Takes the next record.
+		 * 
+		 * @param record
+		 *            the record.
+		 * @throws IOException
+		 *             if a file cannot be written.
+		 */
+		void accept(Record record) throws IOException;
+
+		/**
+		 * Called after the last record.
+		 * 
+		 * @throws IOException
+		 *             if a file cannot be written.
+		 */
+		void finish() throws IOException;
+	}
+
+	/**
+	 * Finds usernames that appear more than once, or that already have an
+	 * account.
+	 */
+	private static class DuplicateCheck implements Sink {
+
+		/**
+		 * Account system the customers are going into.
+		 */
+		private final MovieCustomerAccountSystem accounts;
+
+		/**
+		 * Record taken before this one, or null.
+		 */
+		private Record last;
+
+		/**
+		 * Constructor, creates a check against an account system.
+		 * 
+		 * @param accounts
+		 *            account system the customers are going into.
+		 */
+		DuplicateCheck(MovieCustomerAccountSystem accounts) {
+			this.accounts = accounts;
+		}
+
+		/**
+		 * Checks the record against the one before it and the accounts.
+		 * 
+		 * @param record
+		 *            the record.
+		 * @throws IllegalArgumentException
+		 *             if it has the same username as the record before it or
+		 *             an existing account, ignoring case.
+		 */
+		public void accept(Record record) {
+			if (last != null && BY_USERNAME.compare(last, record) == 0) {
+				throw new IllegalArgumentException("Archive has the username " + record.id + " more than once.");
+			}
+			if (accounts.hasCustomer(record.id)) {
+				throw new IllegalArgumentException("Archive has the username " + record.id + ", which already has an account.");
+			}
+			last = record;
+		}
+
+		/**
+		 * Nothing to finish.
+		 */
+		public void finish() {
+		}
+	}
+
+	/**
+	 * Adds records to the account system in batches.
+	 */
+	private static class Loader implements Sink {
+
+		/**
+		 * Rental system holding the catalog.
+		 */
+		private final DVDRentalSystem rentals;
+
+		/**
+		 * Account system the customers are added to.
+		 */
+		private final MovieCustomerAccountSystem accounts;
+
+		/**
+		 * Records not yet added.
+		 */
+		private final List<Record> batch = new ArrayList<Record>(BATCH_SIZE);
+
+		/**
+		 * Constructor, creates a loader.
+		 * 
+		 * @param rentals
+		 *            rental system holding the catalog.
+		 * @param accounts
+		 *            account system the customers are added to.
+		 */
+		Loader(DVDRentalSystem rentals, MovieCustomerAccountSystem accounts) {
+			this.rentals = rentals;
+			this.accounts = accounts;
+		}
+
+		/**
+		 * Takes a record, adding the batch once it is full.
+		 * 
+		 * @param record
+		 *            the record.
+		 */
+		public void accept(Record record) {
+			batch.add(record);
+			if (batch.size() == BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		/**
+		 * Adds the last batch.
+		 */
+		public void finish() {
+			if (!batch.isEmpty()) {
+				flush();
+			}
+		}
+
+		/**
+		 * Takes the copies at home out of the inventory, adds the batch, and
+		 * puts its customers on the waitlists. If the batch cannot be added,
+		 * the copies are put back.
+		 * 
+		 * @throws IllegalStateException
+		 *             if a copy is no longer in the inventory.
+		 */
+		private void flush() {
+			int size = batch.size();
+			String[] ids = new String[size];
+			String[] passwords = new String[size];
+			int[] maxAtHome = new int[size];
+			Movie[][] atHome = new Movie[size][];
+			Movie[][] reserves = new Movie[size][];
+			List<Movie> taken = new ArrayList<Movie>();
+			List<Customer> added;
+			try {
+				for (int i = 0; i < size; i++) {
+					Record record = batch.get(i);
+					ids[i] = record.id;
+					passwords[i] = record.password;
+					maxAtHome[i] = record.maxAtHome;
+					atHome[i] = new Movie[record.atHomeCount];
+					reserves[i] = new Movie[record.movies.length - record.atHomeCount];
+					for (int j = 0; j < record.movies.length; j++) {
+						Movie movie = rentals.getMovieAt(record.movies[j]);
+						if (j < atHome[i].length) {
+							if (!movie.tryRemoveOneCopy()) {
+								throw new IllegalStateException("No copy of " + movie.getName()
+										+ " is left for the customers who have it at home.");
+							}
+							taken.add(movie);
+							atHome[i][j] = movie;
+						} else {
+							reserves[i][j - atHome[i].length] = movie;
+						}
+					}
+				}
+				added = accounts.addRestoredCustomers(ids, passwords, maxAtHome, atHome, reserves);
+			} catch (RuntimeException e) {
+				for (Movie movie : taken) {
+					movie.backToInventory();
+				}
+				throw e;
+			}
+			batch.clear();
+			for (Customer customer : added) {
+				rentals.rejoinWaitlists(customer);
+			}
+		}
+	}
+
+	/**
+	 * Collects one customer as {@link Customer#describeTo(CustomerDescriber)}
+	 * describes it, while the customer is locked.
+	 */
+	private static class Copier implements CustomerDescriber {
+
+		/**
+		 * Username of the customer.
+		 */
+		private String id;
+
+		/**
+		 * Password of the customer.
+		 */
+		private String password;
+
+		/**
+		 * Limit on the customer's movies at home.
+		 */
+		private int maxAtHome;
+
+		/**
+		 * Movies at home.
+		 */
+		private final List<Movie> atHome = new ArrayList<Movie>();
+
+		/**
+		 * Movies on reserve.
+		 */
+		private final List<Movie> reserves = new ArrayList<Movie>();
+
+		/**
+		 * Forgets the last customer copied.
+		 */
+		void clear() {
+			atHome.clear();
+			reserves.clear();
+		}
+
+		/**
+		 * Writes the customer copied as one line.
+		 * 
+		 * @param out
+		 *            where the line is written.
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		void writeTo(Output out) throws IOException {
+			StringBuilder line = new StringBuilder();
+			append(line, id).append('\t');
+			append(line, password).append('\t');
+			line.append(maxAtHome).append('\t').append(atHome.size());
+			for (Movie movie : atHome) {
+				append(line.append('\t'), movie.getName());
+			}
+			for (Movie movie : reserves) {
+				append(line.append('\t'), movie.getName());
+			}
+			out.put(line.append('\n').toString().getBytes(Journal.UTF_8));
+		}
+
+		/**
+		 * Appends a field to a line, escaping backslashes, tabs and line
+		 * breaks.
+		 * 
+		 * @param line
+		 *            line being built.
+		 * @param field
+		 *            the field.
+		 * @return the line.
+		 */
+		private StringBuilder append(StringBuilder line, String field) {
+			for (int i = 0; i < field.length(); i++) {
+				char c = field.charAt(i);
+				if (c == '\\') {
+					line.append("\\\\");
+				} else if (c == '\t') {
+					line.append("\\t");
+				} else if (c == '\n') {
+					line.append("\\n");
+				} else if (c == '\r') {
+					line.append("\\r");
+				} else {
+					line.append(c);
+				}
+			}
+			return line;
+		}
+
+		/**
+		 * Starts copying a customer.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param password
+		 *            password of the customer.
+		 * @param maxAtHome
+		 *            limit on the customer's movies at home.
+		 */
+		public void accountAdded(String id, String password, int maxAtHome) {
+			this.id = id;
+			this.password = password;
+			this.maxAtHome = maxAtHome;
+		}
+
+		/**
+		 * Adds a movie to the reserves.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie reserved.
+		 */
+		public void reserved(String id, Movie movie) {
+			reserves.add(movie);
+		}
+
+		/**
+		 * Moves the movie just reserved to the movies at home.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie checked out.
+		 */
+		public void checkedOut(String id, Movie movie) {
+			atHome.add(reserves.remove(reserves.size() - 1));
+		}
+	}
+
+	/**
+	 * Writes a file through a buffer.
+	 */
+	private static class Output {
+
+		/**
+		 * File written to.
+		 */
+		private final FileChannel channel;
+
+		/**
+		 * Bytes not yet written to the file.
+		 */
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		/**
+		 * Constructor, creates an output over a file.
+		 * 
+		 * @param channel
+		 *            file written to.
+		 */
+		Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Makes room in the buffer for the given number of bytes.
+		 * 
+		 * @param bytes
+		 *            number of bytes about to be put, at most the size of the
+		 *            buffer.
+		 * @return the buffer.
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		ByteBuffer ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+			return buffer;
+		}
+
+		/**
+		 * Puts bytes of any length.
+		 * 
+		 * @param bytes
+		 *            bytes to put.
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		void put(byte[] bytes) throws IOException {
+			if (bytes.length <= BUFFER_SIZE) {
+				ensure(bytes.length).put(bytes);
+			} else {
+				flush();
+				ByteBuffer large = ByteBuffer.wrap(bytes);
+				while (large.hasRemaining()) {
+					channel.write(large);
+				}
+			}
+		}
+
+		/**
+		 * Writes out the buffer.
+		 * 
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Writes records to a run file: each string after its length in bytes,
+	 * then the limit, the number of movies at home, the number of movies and
+	 * their catalog positions.
+	 */
+	private static class RunWriter implements Sink {
+
+		/**
+		 * Where the run is written.
+		 */
+		private final Output out;
+
+		/**
+		 * Constructor, creates a writer over a file.
+		 * 
+		 * @param channel
+		 *            file written to.
+		 */
+		RunWriter(FileChannel channel) {
+			this.out = new Output(channel);
+		}
+
+		/**
+		 * Writes a record.
+		 * 
+		 * @param record
+		 *            the record.
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		public void accept(Record record) throws IOException {
+			putString(record.id);
+			putString(record.password);
+			out.ensure(12).putInt(record.maxAtHome).putInt(record.atHomeCount).putInt(record.movies.length);
+			for (int movie : record.movies) {
+				out.ensure(4).putInt(movie);
+			}
+		}
+
+		/**
+		 * Writes out what is left in the buffer.
+		 * 
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		public void finish() throws IOException {
+			out.flush();
+		}
+
+		/**
+		 * Writes a string after its length.
+		 * 
+		 * @param s
+		 *            string to write.
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		private void putString(String s) throws IOException {
+			byte[] bytes = s.getBytes(Journal.UTF_8);
+			out.ensure(4).putInt(bytes.length);
+			out.put(bytes);
+		}
+	}
+
+	/**
+	 * Reads the records of a run file back, one at a time.
+	 */
+	private static class RunReader {
+
+		/**
+		 * File read from.
+		 */
+		private final FileChannel channel;
+
+		/**
+		 * Bytes read from the file and not yet used.
+		 */
+		private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		/**
+		 * Record read last.
+		 */
+		private Record head;
+
+		/**
+		 * Constructor, creates a reader over a file.
+		 * 
+		 * @param channel
+		 *            file read from.
+		 */
+		RunReader(FileChannel channel) {
+			this.channel = channel;
+			buffer.flip();
+		}
+
+		/**
+		 * Reads the next record into {@link #head}.
+		 * 
+		 * @return true if there was a record, false at the end of the run.
+		 * @throws IOException
+		 *             if the file cannot be read.
+		 */
+		boolean advance() throws IOException {
+			if (!fill(1)) {
+				head = null;
+				return false;
+			}
+			String id = getString();
+			String password = getString();
+			need(12);
+			int maxAtHome = buffer.getInt();
+			int atHomeCount = buffer.getInt();
+			int[] movies = new int[buffer.getInt()];
+			for (int i = 0; i < movies.length; i++) {
+				need(4);
+				movies[i] = buffer.getInt();
+			}
+			head = new Record(id, password, maxAtHome, atHomeCount, movies);
+			return true;
+		}
+
+		/**
+		 * Reads a string after its length.
+		 * 
+		 * @return the string.
+		 * @throws IOException
+		 *             if the file cannot be read.
+		 */
+		private String getString() throws IOException {
+			need(4);
+			int length = buffer.getInt();
+			need(length);
+			String s = new String(buffer.array(), buffer.position(), length, Journal.UTF_8);
+			buffer.position(buffer.position() + length);
+			return s;
+		}
+
+		/**
+		 * Makes sure the buffer holds the given number of bytes.
+		 * 
+		 * @param bytes
+		 *            number of bytes about to be read.
+		 * @throws IOException
+		 *             if the file cannot be read.
+		 * @throws IllegalStateException
+		 *             if the file ends first.
+		 */
+		private void need(int bytes) throws IOException {
+			if (!fill(bytes)) {
+				throw new IllegalStateException("Sorted run ends too soon.");
+			}
+		}
+
+		/**
+		 * Reads from the file until the buffer holds the given number of
+		 * bytes or the file ends, growing the buffer if it is too small.
+		 * 
+		 * @param bytes
+		 *            number of bytes wanted.
+		 * @return true if the buffer holds them.
+		 * @throws IOException
+		 *             if the file cannot be read.
+		 */
+		private boolean fill(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes) {
+				return true;
+			}
+			if (buffer.capacity() < bytes) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2));
+				larger.put(buffer);
+				buffer = larger;
+			} else {
+				buffer.compact();
+			}
+			while (buffer.position() < bytes) {
+				if (channel.read(buffer) < 0) {
+					break;
+				}
+			}
+			buffer.flip();
+			return buffer.remaining() >= bytes;
+		}
+	}
+
+	/**
+	 * Reads a file a line at a time through a buffer.
+	 */
+	private static class LineReader {
+
+		/**
+		 * File read from.
+		 */
+		private final FileChannel channel;
+
+		/**
+		 * Bytes read from the file and not yet used; the next line starts at
+		 * the position.
+		 */
+		private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		/**
+		 * Number of bytes after the position already searched for a line
+		 * break.
+		 */
+		private int searched;
+
+		/**
+		 * True once the file has ended.
+		 */
+		private boolean ended;
+
+		/**
+		 * Number of lines read.
+		 */
+		private long lineNumber;
+
+		/**
+		 * Constructor, creates a reader over a file.
+		 * 
+		 * @param channel
+		 *            file read from.
+		 */
+		LineReader(FileChannel channel) {
+			this.channel = channel;
+			buffer.flip();
+		}
+
+		/**
+		 * Returns the number of the line read last.
+		 * 
+		 * @return line number, counting from 1.
+		 */
+		long getLineNumber() {
+			return lineNumber;
+		}
+
+		/**
+		 * Reads the next line.
+		 * 
+		 * @return the line without its line break, or null at the end of the
+		 *         file.
+		 * @throws IOException
+		 *             if the file cannot be read.
+		 * @throws IllegalArgumentException
+		 *             if the line is longer than MAX_LINE.
+		 */
+		String next() throws IOException {
+			while (true) {
+				int start = buffer.position();
+				for (int i = start + searched; i < buffer.limit(); i++) {
+					if (buffer.get(i) == '\n') {
+						return take(i, i + 1);
+					}
+				}
+				searched = buffer.remaining();
+				if (ended) {
+					return buffer.hasRemaining() ? take(buffer.limit(), buffer.limit()) : null;
+				}
+				if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+					if (buffer.capacity() >= MAX_LINE) {
+						throw new IllegalArgumentException("Line " + (lineNumber + 1) + " is too long.");
+					}
+					ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+					larger.put(buffer);
+					buffer = larger;
+				} else {
+					buffer.compact();
+				}
+				if (channel.read(buffer) < 0) {
+					ended = true;
+				}
+				buffer.flip();
+			}
+		}
+
+		/**
+		 * Takes the line from the position to the given end.
+		 * 
+		 * @param end
+		 *            position just past the last byte of the line.
+		 * @param next
+		 *            position the next line starts at.
+		 * @return the line, without a carriage return at its end.
+		 */
+		private String take(int end, int next) {
+			int start = buffer.position();
+			if (end > start && buffer.get(end - 1) == '\r') {
+				end--;
+			}
+			String line = new String(buffer.array(), start, end - start, Journal.UTF_8);
+			buffer.position(next);
+			searched = 0;
+			lineNumber++;
+			return line;
+		}
+	}
+}
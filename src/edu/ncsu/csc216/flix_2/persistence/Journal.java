@@ -0,0 +1,1256 @@
+package edu.ncsu.csc216.flix_2.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+import edu.ncsu.csc216.flix_2.customer.CustomerListener;
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+
+/**
+ * Append-only journal of the changes to customer accounts, their queues and
+ * the inventory. Every new and cancelled account, reserve, unreserve,
+ * reorder, checkout and return is written as one record, and the operation
+ * that made the change does not return until the record is on disk. Since
+ * the stock of each movie is its number of copies less the copies checked
+ * out, replaying the records over the catalog rebuilds all of the state that
+ * otherwise only lives in memory.
+ *
+ * Records are written with group commit. A thread appends its records to a
+ * shared buffer as the changes are reported, and then waits in
+ * {@link #sync()} for them to be durable, before the change is made or, for
+ * new and cancelled accounts, before the operation returns. If no write is in
+ * progress, the thread writes everything in the buffer, its own record and
+ * those of every other thread, with one write and one force of the
+ * {@link FileChannel}; otherwise it waits for the write in progress and,
+ * if its record was not part of it, for the next. While one force runs, the
+ * records of every other thread collect in the buffer, so the number of
+ * forces per second stays about the same however many threads are working,
+ * instead of each operation paying for its own.
+ *
+ * The journal lives in a directory of segment files, each named after the
+ * sequence number of its first record, and {@link Snapshot snapshots}. A
+ * snapshot starts a new segment and then copies every customer while the
+ * store keeps running; once it is on disk, the older segments and snapshots
+ * are deleted. Opening the journal loads the newest snapshot and replays
+ * only the segments after it, so restarting costs the size of the state
+ * plus the changes since the last snapshot, however long the store has been
+ * running. Snapshots are taken with {@link #snapshot()}, or in the
+ * background every so many records with {@link #setSnapshotInterval(long)}.
+ *
+ * Each segment starts with a header holding {@link #MAGIC},
+ * {@link #VERSION}, the number of movies in the catalog and the sequence
+ * number of its first record. Each record is its length, a type byte, the
+ * fields of the change, and a CRC-32 of the type and fields. Customers are
+ * named by username and movies by position in the catalog. A record that is
+ * cut short by the end of the last segment, or is the last one in it and
+ * fails its check, is what is left when the process stops in the middle of a
+ * write: it marks the end of the journal, and the file is truncated there
+ * before new records are appended. A record anywhere else that has an
+ * impossible length or fails its check is damage, and opening the journal
+ * fails rather than drop it and the records after it.
+ *
+ * @author Nick Brust, Eric Matysek
+ */
+public class Journal implements CustomerListener, Closeable {
+
+	/**
+	 * First four bytes of a segment file, "FLXJ".
+	 */
+	public static final int MAGIC = 0x464C584A;
+
+	/**
+	 * Version of the segment format.
+	 */
+	public static final int VERSION = 2;
+
+	/**
+	 * Size of the segment header in bytes.
+	 */
+	private static final int HEADER_SIZE = 20;
+
+	/**
+	 * Largest length of a record: a new account with the longest username and
+	 * password {@link #encode(String)} allows. A longer length can only be
+	 * damage.
+	 */
+	private static final int MAX_RECORD = 1 + 2 * (2 + Short.MAX_VALUE) + 4;
+
+	/**
+	 * Initial size of the append buffers.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Start of the name of a segment file.
+	 */
+	private static final String SEGMENT_PREFIX = "journal-";
+
+	/**
+	 * End of the name of a segment file.
+	 */
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	/**
+	 * Start of the name of a snapshot file.
+	 */
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+	/**
+	 * End of the name of a snapshot file.
+	 */
+	private static final String SNAPSHOT_SUFFIX = ".bin";
+
+	/**
+	 * Type of the record of a new account.
+	 */
+	private static final byte ACCOUNT_ADDED = 1;
+
+	/**
+	 * Type of the record of a cancelled account.
+	 */
+	private static final byte ACCOUNT_CANCELLED = 2;
+
+	/**
+	 * Type of the record of a reserve.
+	 */
+	private static final byte RESERVED = 3;
+
+	/**
+	 * Type of the record of an unreserve.
+	 */
+	private static final byte UNRESERVED = 4;
+
+	/**
+	 * Type of the record of a reorder of the reserve queue.
+	 */
+	private static final byte MOVED_AHEAD_ONE = 5;
+
+	/**
+	 * Type of the record of a checkout.
+	 */
+	private static final byte CHECKED_OUT = 6;
+
+	/**
+	 * Type of the record of a return.
+	 */
+	private static final byte RETURNED = 7;
+
+	/**
+	 * Encoding of usernames, passwords and titles.
+	 */
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Rental system whose catalog positions name the movies.
+	 */
+	private final DVDRentalSystem rentals;
+
+	/**
+	 * Account system whose changes are recorded.
+	 */
+	private final MovieCustomerAccountSystem accounts;
+
+	/**
+	 * Directory holding the segments and snapshots.
+	 */
+	private final Path directory;
+
+	/**
+	 * Guards the fields below.
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * Held while a snapshot is taken, so only one is taken at a time.
+	 */
+	private final Object snapshotLock = new Object();
+
+	/**
+	 * Segment the records are appended to, positioned at its end. Only
+	 * replaced at the end of a write.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Records appended but not yet handed to a write.
+	 */
+	private ByteBuffer pending = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	/**
+	 * Buffer swapped in for pending when a write starts, or null while it is
+	 * being written.
+	 */
+	private ByteBuffer spare = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	/**
+	 * Sequence number of the last record appended.
+	 */
+	private long appended;
+
+	/**
+	 * Sequence number of the last record known to be on disk.
+	 */
+	private long durable;
+
+	/**
+	 * Sequence number of the last record before the journal was opened.
+	 */
+	private long opened;
+
+	/**
+	 * Number of writes to the file.
+	 */
+	private long commits;
+
+	/**
+	 * True while a thread is writing to the file.
+	 */
+	private boolean writing;
+
+	/**
+	 * True once the journal is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * First write failure. Once a write fails, every later change fails too.
+	 */
+	private IOException failure;
+
+	/**
+	 * Sequence number of the last record covered by the newest snapshot, or
+	 * zero if there is none.
+	 */
+	private long snapshotSeq;
+
+	/**
+	 * Number of records after which a snapshot is taken in the background, or
+	 * zero to only take them when asked.
+	 */
+	private long snapshotInterval;
+
+	/**
+	 * True while a background snapshot is running.
+	 */
+	private boolean snapshotting;
+
+	/**
+	 * Number of snapshots taken since the journal was opened.
+	 */
+	private long snapshots;
+
+	/**
+	 * Constructor, creates a journal over a directory.
+	 *
+	 * @param rentals
+	 *            rental system whose catalog positions name the movies.
+	 * @param accounts
+	 *            account system whose changes are recorded.
+	 * @param directory
+	 *            directory holding the segments and snapshots.
+	 */
+	private Journal(DVDRentalSystem rentals, MovieCustomerAccountSystem accounts, Path directory) {
+		this.rentals = rentals;
+		this.accounts = accounts;
+		this.directory = directory;
+	}
+
+	/**
+	 * Opens a journal, creating the directory if it does not exist. The
+	 * newest snapshot is loaded and the records after it are replayed into
+	 * the accounts, the copies the customers have at home are taken out of
+	 * the inventory, every restored customer rejoins the waitlists of their
+	 * reserved movies, and the journal then records every later change. The
+	 * account system must not have any customers yet.
+	 *
+	 * @param directoryName
+	 *            name of the directory holding the journal.
+	 * @param rentals
+	 *            rental system over the same catalog the journal was written
+	 *            against.
+	 * @param accounts
+	 *            account system using the rental system.
+	 * @return the open journal.
+	 * @throws IllegalArgumentException
+	 *             if the directory cannot be read or written, holds files
+	 *             that are not a journal, or was written against a different
+	 *             catalog, or if the account system already has customers.
+	 * @throws IllegalStateException
+	 *             if a record cannot be applied to the accounts, or records
+	 *             are missing.
+	 */
+	public static Journal open(String directoryName, DVDRentalSystem rentals, MovieCustomerAccountSystem accounts) {
+		if (directoryName == null || rentals == null || accounts == null) {
+			throw new IllegalArgumentException();
+		}
+		if (accounts.getCustomerCount() != 0) {
+			throw new IllegalArgumentException("Journal must be opened before any account is added.");
+		}
+		Journal journal = new Journal(rentals, accounts, Paths.get(directoryName));
+		try {
+			Files.createDirectories(journal.directory);
+			journal.recover();
+		} catch (IOException e) {
+			journal.closeQuietly();
+			throw new IllegalArgumentException("Journal cannot be read.", e);
+		} catch (RuntimeException e) {
+			journal.closeQuietly();
+			throw e;
+		}
+		List<Customer> customers = accounts.getCustomers();
+		for (Customer customer : customers) {
+			for (Movie movie : customer.getAtHomeMovies()) {
+				if (!movie.tryRemoveOneCopy()) {
+					journal.closeQuietly();
+					throw new IllegalStateException("Journal has more copies of " + movie.getName() + " checked out than there are.");
+				}
+			}
+		}
+		accounts.setCustomerListener(journal);
+		for (Customer customer : customers) {
+			rentals.rejoinWaitlists(customer);
+		}
+		return journal;
+	}
+
+	/**
+	 * Records a new account.
+	 *
+	 * @param id
+	 *            username of the new customer.
+	 * @param password
+	 *            password of the new customer.
+	 * @param maxAtHome
+	 *            maximum number of movies the customer is allowed at home.
+	 */
+	public void accountAdded(String id, String password, int maxAtHome) {
+		byte[] secret = encode(password);
+		ByteBuffer record = record(ACCOUNT_ADDED, id, 2 + secret.length + 4);
+		record.putShort((short) secret.length).put(secret).putInt(maxAtHome);
+		append(record);
+	}
+
+	/**
+	 * Records a cancelled account.
+	 *
+	 * @param id
+	 *            username of the customer.
+	 */
+	public void accountCancelled(String id) {
+		append(record(ACCOUNT_CANCELLED, id, 0));
+	}
+
+	/**
+	 * Records a reserve.
+	 *
+	 * @param id
+	 *            username of the customer.
+	 * @param movie
+	 *            movie reserved.
+	 */
+	public void reserved(String id, Movie movie) {
+		append(record(RESERVED, id, 4).putInt(position(movie)));
+	}
+
+	/**
+	 * Records an unreserve.
+	 *
+	 * @param id
+	 *            username of the customer.
+	 * @param index
+	 *            position the movie had in the reserve queue.
+	 */
+	public void unreserved(String id, int index) {
+		append(record(UNRESERVED, id, 4).putInt(index));
+	}
+
+	/**
+	 * Records a reorder of the reserve queue.
+	 *
+	 * @param id
+	 *            username of the customer.
+	 * @param index
+	 *            position the movie had in the reserve queue.
+	 */
+	public void movedAheadOne(String id, int index) {
+		append(record(MOVED_AHEAD_ONE, id, 4).putInt(index));
+	}
+
+	/**
+	 * Records a checkout.
+	 *
+	 * @param id
+	 *            username of the customer.
+	 * @param movie
+	 *            movie checked out.
+	 */
+	public void checkedOut(String id, Movie movie) {
+		append(record(CHECKED_OUT, id, 4).putInt(position(movie)));
+	}
+
+	/**
+	 * Records a return.
+	 *
+	 * @param id
+	 *            username of the customer.
+	 * @param index
+	 *            position the movie had in the at home queue.
+	 */
+	public void returned(String id, int index) {
+		append(record(RETURNED, id, 4).putInt(index));
+	}
+
+	/**
+	 * Waits until every record appended so far is on disk.
+	 *
+	 * @throws IllegalStateException
+	 *             if the file cannot be written.
+	 */
+	public void sync() {
+		commit(lastAppended());
+	}
+
+	/**
+	 * Returns the number of records written since the journal was opened.
+	 *
+	 * @return number of records on disk.
+	 */
+	public long getRecordCount() {
+		synchronized (lock) {
+			return durable - opened;
+		}
+	}
+
+	/**
+	 * Returns the number of writes, each followed by a force, since the
+	 * journal was opened. Compared with {@link #getRecordCount()}, it shows
+	 * how many records group commit puts in each write.
+	 *
+	 * @return number of writes to the file.
+	 */
+	public long getCommitCount() {
+		synchronized (lock) {
+			return commits;
+		}
+	}
+
+	/**
+	 * Returns the number of snapshots taken since the journal was opened.
+	 *
+	 * @return number of snapshots.
+	 */
+	public long getSnapshotCount() {
+		synchronized (lock) {
+			return snapshots;
+		}
+	}
+
+	/**
+	 * Has a snapshot taken in the background every time the given number of
+	 * records were written since the last one. The snapshot runs on its own
+	 * thread, and changes carry on while it is taken.
+	 *
+	 * @param records
+	 *            number of records between snapshots, or zero to only take
+	 *            them when asked.
+	 * @throws IllegalArgumentException
+	 *             if the number is negative.
+	 */
+	public void setSnapshotInterval(long records) {
+		if (records < 0) {
+			throw new IllegalArgumentException();
+		}
+		synchronized (lock) {
+			snapshotInterval = records;
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the accounts, their queues and the catalog, and
+	 * deletes the segments and snapshots it replaces. Records go to a new
+	 * segment from the start of the snapshot, and each customer is copied
+	 * while it is locked, along with the sequence number of the last record
+	 * appended at that moment; replay skips the records of a customer up to
+	 * that number. Changes carry on while the snapshot is written.
+	 *
+	 * @throws IOException
+	 *             if the snapshot cannot be written.
+	 * @throws IllegalStateException
+	 *             if the journal is closed or cannot be written.
+	 */
+	public void snapshot() throws IOException {
+		synchronized (snapshotLock) {
+			long base = rotate();
+			Path file = directory.resolve(fileName(SNAPSHOT_PREFIX, base, SNAPSHOT_SUFFIX));
+			Path temporary = directory.resolve(file.getFileName() + ".tmp");
+			Snapshot.write(temporary, rentals, base, accounts.getCustomers(), this);
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+			syncDirectory();
+			synchronized (lock) {
+				snapshotSeq = base;
+				snapshots++;
+			}
+			for (long first : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+				if (first <= base) {
+					Files.delete(directory.resolve(fileName(SEGMENT_PREFIX, first, SEGMENT_SUFFIX)));
+				}
+			}
+			for (long older : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+				if (older < base) {
+					Files.delete(directory.resolve(fileName(SNAPSHOT_PREFIX, older, SNAPSHOT_SUFFIX)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes any records still in the buffer and closes the file, once any
+	 * snapshot being taken is finished. Changes made after the journal is
+	 * closed fail with an IllegalStateException.
+	 *
+	 * @throws IOException
+	 *             if the last records cannot be written.
+	 */
+	public void close() throws IOException {
+		synchronized (snapshotLock) {
+			long last;
+			synchronized (lock) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				last = appended;
+			}
+			try {
+				commit(last);
+			} catch (IllegalStateException e) {
+				// The write failure is thrown below.
+			} finally {
+				channel.close();
+			}
+			synchronized (lock) {
+				if (failure != null) {
+					throw failure;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the sequence number of the last record appended. A snapshot
+	 * calls it while a customer is locked, so the customer's records up to
+	 * the number are already appended and any later ones are not.
+	 *
+	 * @return sequence number of the last record appended.
+	 */
+	long lastAppended() {
+		synchronized (lock) {
+			return appended;
+		}
+	}
+
+	/**
+	 * Loads the newest snapshot, replays the segments after it, and opens the
+	 * last segment for appending.
+	 *
+	 * @throws IOException
+	 *             if a file cannot be read or written.
+	 * @throws IllegalArgumentException
+	 *             if a file is not part of a journal for the catalog.
+	 * @throws IllegalStateException
+	 *             if a record cannot be applied, or records are missing.
+	 */
+	private void recover() throws IOException {
+		Replay replay = new Replay(accounts.getRestorer());
+		long base = 0;
+		List<Long> taken = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+		for (int i = taken.size() - 1; i >= 0 && replay.captured == null; i--) {
+			Path file = directory.resolve(fileName(SNAPSHOT_PREFIX, taken.get(i), SNAPSHOT_SUFFIX));
+			replay.captured = Snapshot.load(file, rentals, replay.target);
+			base = taken.get(i);
+		}
+		if (replay.captured == null) {
+			base = 0;
+		}
+		List<Long> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+		long last = base;
+		for (int i = 0; i < segments.size(); i++) {
+			long first = segments.get(i);
+			boolean newest = i == segments.size() - 1;
+			if (!newest && segments.get(i + 1) - 1 <= base) {
+				continue;
+			}
+			if (first > last + 1) {
+				throw new IllegalStateException("Journal is missing records " + (last + 1) + " to " + (first - 1) + ".");
+			}
+			Path file = directory.resolve(fileName(SEGMENT_PREFIX, first, SEGMENT_SUFFIX));
+			FileChannel segment = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			try {
+				long end = replay(segment, first, replay, newest);
+				last = Math.max(last, first + replay.count - 1);
+				if (newest) {
+					segment.truncate(end);
+					segment.position(end);
+					channel = segment;
+				}
+			} finally {
+				if (channel != segment) {
+					segment.close();
+				}
+			}
+		}
+		if (channel == null) {
+			channel = createSegment(last + 1);
+		}
+		appended = last;
+		durable = last;
+		opened = last;
+		snapshotSeq = base;
+	}
+
+	/**
+	 * Replays the records of one segment.
+	 *
+	 * @param segment
+	 *            the segment file.
+	 * @param first
+	 *            sequence number the file name gives its first record.
+	 * @param replay
+	 *            where the records are applied.
+	 * @param newest
+	 *            true if this is the last segment, which may end in a record
+	 *            that was cut short.
+	 * @return position just past the last whole record.
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 * @throws IllegalArgumentException
+	 *             if the file is not a segment for the catalog.
+	 * @throws IllegalStateException
+	 *             if a record cannot be applied or is damaged, or an older
+	 *             segment is cut short.
+	 */
+	private long replay(FileChannel segment, long first, Replay replay, boolean newest) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(segment), BUFFER_SIZE));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IllegalArgumentException("File is not a journal segment.");
+			}
+			if (in.readInt() != rentals.inventorySize()) {
+				throw new IllegalArgumentException("Journal was written against a different catalog.");
+			}
+			if (in.readLong() != first) {
+				throw new IllegalArgumentException("Journal segment is misnamed.");
+			}
+		} catch (EOFException e) {
+			throw new IllegalArgumentException("File is not a journal segment.");
+		}
+		long end = HEADER_SIZE;
+		long size = segment.size();
+		replay.count = 0;
+		CRC32 crc = new CRC32();
+		byte[] body = new byte[256];
+		while (end < size) {
+			long left = size - end;
+			long seq = first + replay.count;
+			if (left < 4) {
+				break;
+			}
+			int length = in.readInt();
+			if (length == 0 && zeros(in, left - 4)) {
+				break;
+			}
+			if (length <= 0 || length > MAX_RECORD) {
+				throw new IllegalStateException("Journal record " + seq + " is damaged.");
+			}
+			if (left < 4 + length + 4) {
+				break;
+			}
+			if (body.length < length) {
+				body = new byte[Math.max(length, body.length * 2)];
+			}
+			in.readFully(body, 0, length);
+			crc.reset();
+			crc.update(body, 0, length);
+			if (in.readInt() != (int) crc.getValue()) {
+				if (left == 4 + length + 4) {
+					break;
+				}
+				throw new IllegalStateException("Journal record " + seq + " is damaged.");
+			}
+			replay.count++;
+			try {
+				apply(replay, seq, ByteBuffer.wrap(body, 0, length));
+			} catch (RuntimeException e) {
+				throw new IllegalStateException("Journal record " + seq + " cannot be applied.", e);
+			}
+			end += 4 + length + 4;
+		}
+		if (!newest && end != size) {
+			throw new IllegalStateException("Journal segment starting at record " + first + " is damaged.");
+		}
+		return end;
+	}
+
+	/**
+	 * Reads the rest of a segment and checks that it is all zeros, as a file
+	 * can be when the process stops after it grew but before its new bytes
+	 * were written.
+	 *
+	 * @param in
+	 *            stream over the segment.
+	 * @param bytes
+	 *            number of bytes left in the segment.
+	 * @return true if every byte left is zero.
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	private static boolean zeros(DataInputStream in, long bytes) throws IOException {
+		for (long i = 0; i < bytes; i++) {
+			if (in.readByte() != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Applies one record, unless the snapshot already holds it.
+	 *
+	 * @param replay
+	 *            where the record is applied.
+	 * @param seq
+	 *            sequence number of the record.
+	 * @param record
+	 *            type and fields of the record.
+	 * @throws IllegalArgumentException
+	 *             if the record has an unknown type.
+	 */
+	private void apply(Replay replay, long seq, ByteBuffer record) {
+		byte type = record.get();
+		String id = decode(record);
+		if (!replay.wants(type, id, seq)) {
+			return;
+		}
+		CustomerListener target = replay.target;
+		switch (type) {
+		case ACCOUNT_ADDED:
+			String password = decode(record);
+			target.accountAdded(id, password, record.getInt());
+			break;
+		case ACCOUNT_CANCELLED:
+			target.accountCancelled(id);
+			break;
+		case RESERVED:
+			target.reserved(id, rentals.getMovieAt(record.getInt()));
+			break;
+		case UNRESERVED:
+			target.unreserved(id, record.getInt());
+			break;
+		case MOVED_AHEAD_ONE:
+			target.movedAheadOne(id, record.getInt());
+			break;
+		case CHECKED_OUT:
+			target.checkedOut(id, rentals.getMovieAt(record.getInt()));
+			break;
+		case RETURNED:
+			target.returned(id, record.getInt());
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown record type " + type);
+		}
+	}
+
+	/**
+	 * Starts a record about a customer. The length, type and username are
+	 * filled in, and the buffer has room for the rest of the fields and the
+	 * checksum.
+	 *
+	 * @param type
+	 *            type of the record.
+	 * @param id
+	 *            username of the customer.
+	 * @param fields
+	 *            size of the fields after the username, in bytes.
+	 * @return buffer positioned after the username.
+	 * @throws IllegalArgumentException
+	 *             if the record would be longer than MAX_RECORD.
+	 */
+	private static ByteBuffer record(byte type, String id, int fields) {
+		byte[] name = encode(id);
+		int length = 1 + 2 + name.length + fields;
+		if (length > MAX_RECORD) {
+			throw new IllegalArgumentException("Record is too long for the journal.");
+		}
+		ByteBuffer record = ByteBuffer.allocate(4 + length + 4);
+		record.putInt(length).put(type).putShort((short) name.length).put(name);
+		return record;
+	}
+
+	/**
+	 * Adds the checksum to a record and appends it to the buffer. Starts a
+	 * background snapshot if one is due.
+	 *
+	 * @param record
+	 *            record positioned after its fields.
+	 * @return sequence number of the record.
+	 * @throws IllegalStateException
+	 *             if the journal is closed or failed.
+	 */
+	private long append(ByteBuffer record) {
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 4, record.position() - 4);
+		record.putInt((int) crc.getValue());
+		record.flip();
+		long seq;
+		boolean due;
+		synchronized (lock) {
+			if (closed) {
+				throw new IllegalStateException("Journal is closed.");
+			}
+			if (failure != null) {
+				throw new IllegalStateException("Journal cannot be written.", failure);
+			}
+			if (pending.remaining() < record.remaining()) {
+				ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(pending.capacity() * 2, pending.position() + record.remaining()));
+				pending.flip();
+				larger.put(pending);
+				pending = larger;
+			}
+			pending.put(record);
+			seq = ++appended;
+			due = snapshotInterval > 0 && !snapshotting && seq - snapshotSeq >= snapshotInterval;
+			if (due) {
+				snapshotting = true;
+			}
+		}
+		if (due) {
+			Thread background = new Thread(new Runnable() {
+				public void run() {
+					try {
+						synchronized (snapshotLock) {
+							synchronized (lock) {
+								if (closed) {
+									// Closed before the snapshot started
+									return;
+								}
+							}
+							snapshot();
+						}
+					} catch (IOException e) {
+						throw new IllegalStateException("Snapshot failed.", e);
+					} finally {
+						synchronized (lock) {
+							snapshotting = false;
+						}
+					}
+				}
+			}, "journal-snapshot");
+			background.setDaemon(true);
+			background.start();
+		}
+		return seq;
+	}
+
+	/**
+	 * Waits until a record is on disk, writing the buffer if no other thread
+	 * is.
+	 *
+	 * @param record
+	 *            sequence number of the record.
+	 * @throws IllegalStateException
+	 *             if the file cannot be written.
+	 */
+	private void commit(long record) {
+		ByteBuffer batch;
+		long last;
+		FileChannel segment;
+		synchronized (lock) {
+			awaitWriter(record);
+			if (durable >= record) {
+				return;
+			}
+			writing = true;
+			batch = pending;
+			pending = spare;
+			spare = null;
+			last = appended;
+			segment = channel;
+		}
+		IOException error = null;
+		try {
+			write(segment, batch);
+		} catch (IOException e) {
+			error = e;
+		}
+		finishWrite(batch, last, error, segment);
+		if (error != null) {
+			throw new IllegalStateException("Journal cannot be written.", error);
+		}
+	}
+
+	/**
+	 * Ends the current segment and starts a new one. The records appended so
+	 * far are written to the current segment first.
+	 *
+	 * @return sequence number of the last record in the ended segment.
+	 * @throws IOException
+	 *             if the new segment cannot be created.
+	 * @throws IllegalStateException
+	 *             if the journal is closed or cannot be written.
+	 */
+	private long rotate() throws IOException {
+		ByteBuffer batch;
+		long last;
+		FileChannel segment;
+		synchronized (lock) {
+			awaitWriter(Long.MAX_VALUE);
+			if (closed) {
+				throw new IllegalStateException("Journal is closed.");
+			}
+			writing = true;
+			batch = pending;
+			pending = spare;
+			spare = null;
+			last = appended;
+			segment = channel;
+		}
+		try {
+			write(segment, batch);
+		} catch (IOException e) {
+			finishWrite(batch, last, e, segment);
+			throw new IllegalStateException("Journal cannot be written.", e);
+		}
+		FileChannel next;
+		try {
+			next = createSegment(last + 1);
+		} catch (IOException e) {
+			finishWrite(batch, last, null, segment);
+			throw e;
+		}
+		finishWrite(batch, last, null, next);
+		segment.close();
+		return last;
+	}
+
+	/**
+	 * Waits while another thread is writing, unless the given record is on
+	 * disk or the journal failed. Called with the lock held.
+	 *
+	 * @param record
+	 *            sequence number of the record waited for.
+	 * @throws IllegalStateException
+	 *             if the journal cannot be written.
+	 */
+	private void awaitWriter(long record) {
+		boolean interrupted = false;
+		while (durable < record && failure == null && writing) {
+			try {
+				lock.wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw new IllegalStateException("Journal cannot be written.", failure);
+		}
+	}
+
+	/**
+	 * Ends a write, waking the threads waiting for it.
+	 *
+	 * @param batch
+	 *            buffer that was written.
+	 * @param last
+	 *            sequence number of the last record in the buffer.
+	 * @param error
+	 *            why the write failed, or null if it did not.
+	 * @param segment
+	 *            segment to append to from now on.
+	 */
+	private void finishWrite(ByteBuffer batch, long last, IOException error, FileChannel segment) {
+		boolean written = batch.limit() > 0;
+		batch.clear();
+		synchronized (lock) {
+			spare = batch;
+			writing = false;
+			channel = segment;
+			if (error == null) {
+				durable = last;
+				if (written) {
+					commits++;
+				}
+			} else if (failure == null) {
+				failure = error;
+			}
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Writes a buffer of records to a segment and forces it to disk.
+	 *
+	 * @param segment
+	 *            the segment.
+	 * @param batch
+	 *            records to write, flipped by this method.
+	 * @throws IOException
+	 *             if the segment cannot be written.
+	 */
+	private static void write(FileChannel segment, ByteBuffer batch) throws IOException {
+		batch.flip();
+		if (!batch.hasRemaining()) {
+			return;
+		}
+		while (batch.hasRemaining()) {
+			segment.write(batch);
+		}
+		segment.force(false);
+	}
+
+	/**
+	 * Creates a segment file holding only its header.
+	 *
+	 * @param first
+	 *            sequence number of its first record.
+	 * @return the segment, positioned after the header.
+	 * @throws IOException
+	 *             if the segment cannot be created.
+	 */
+	private FileChannel createSegment(long first) throws IOException {
+		Path file = directory.resolve(fileName(SEGMENT_PREFIX, first, SEGMENT_SUFFIX));
+		FileChannel segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(rentals.inventorySize()).putLong(first);
+			header.flip();
+			while (header.hasRemaining()) {
+				segment.write(header);
+			}
+			segment.force(true);
+		} catch (IOException e) {
+			segment.close();
+			Files.deleteIfExists(file);
+			throw e;
+		}
+		syncDirectory();
+		return segment;
+	}
+
+	/**
+	 * Forces the directory entries of new and renamed files to disk, where
+	 * the platform allows a directory to be opened.
+	 */
+	private void syncDirectory() {
+		try {
+			FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ);
+			try {
+				dir.force(true);
+			} finally {
+				dir.close();
+			}
+		} catch (IOException e) {
+			// Directories cannot be opened on every platform.
+		}
+	}
+
+	/**
+	 * Lists the sequence numbers in the names of the files of one kind.
+	 *
+	 * @param prefix
+	 *            start of the file names.
+	 * @param suffix
+	 *            end of the file names.
+	 * @return sequence numbers, lowest first.
+	 * @throws IOException
+	 *             if the directory cannot be read.
+	 */
+	private List<Long> list(String prefix, String suffix) throws IOException {
+		List<Long> numbers = new ArrayList<Long>();
+		DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix);
+		try {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				try {
+					numbers.add(Long.valueOf(name.substring(prefix.length(), name.length() - suffix.length())));
+				} catch (NumberFormatException e) {
+					// Not a file of the journal.
+				}
+			}
+		} finally {
+			files.close();
+		}
+		Collections.sort(numbers);
+		return numbers;
+	}
+
+	/**
+	 * Returns the name of a segment or snapshot file.
+	 *
+	 * @param prefix
+	 *            start of the file name.
+	 * @param seq
+	 *            sequence number the file is named after.
+	 * @param suffix
+	 *            end of the file name.
+	 * @return the file name, with the number padded so names sort in order.
+	 */
+	private static String fileName(String prefix, long seq, String suffix) {
+		return prefix + String.format("%020d", seq) + suffix;
+	}
+
+	/**
+	 * Returns the catalog position of a movie.
+	 *
+	 * @param movie
+	 *            a movie in the catalog.
+	 * @return position of the movie.
+	 * @throws IllegalArgumentException
+	 *             if the movie is not in the catalog.
+	 */
+	private int position(Movie movie) {
+		int position = rentals.positionOf(movie);
+		if (position < 0) {
+			throw new IllegalArgumentException("Movie is not in the catalog.");
+		}
+		return position;
+	}
+
+	/**
+	 * Closes the segment after a failed open.
+	 */
+	private void closeQuietly() {
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+		} catch (IOException e) {
+			// The open already failed, which is what gets reported.
+		}
+	}
+
+	/**
+	 * Encodes a username, password or title.
+	 *
+	 * @param s
+	 *            string to encode.
+	 * @return UTF-8 bytes of the string.
+	 * @throws IllegalArgumentException
+	 *             if the string is too long for a record.
+	 */
+	static byte[] encode(String s) {
+		byte[] bytes = s.getBytes(UTF_8);
+		if (bytes.length > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("String is too long for the journal.");
+		}
+		return bytes;
+	}
+
+	/**
+	 * Decodes a username, password or title.
+	 *
+	 * @param buffer
+	 *            buffer positioned at the length of the string.
+	 * @return the string.
+	 */
+	static String decode(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort()];
+		buffer.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * State of a replay: where the records go, and which of them the
+	 * snapshot already holds.
+	 */
+	private static class Replay {
+
+		/**
+		 * Listener that applies the records.
+		 */
+		private final CustomerListener target;
+
+		/**
+		 * Sequence number each customer in the snapshot was copied at, or
+		 * null if no snapshot was loaded.
+		 */
+		private Map<String, Long> captured;
+
+		/**
+		 * Customers whose accounts were added by replayed records.
+		 */
+		private final Set<String> added = new HashSet<String>();
+
+		/**
+		 * Number of records read from the current segment.
+		 */
+		private long count;
+
+		/**
+		 * Constructor, creates the state of a replay.
+		 *
+		 * @param target
+		 *            listener that applies the records.
+		 */
+		Replay(CustomerListener target) {
+			this.target = target;
+		}
+
+		/**
+		 * Decides whether a record is applied. Without a snapshot, every
+		 * record is. With one, a customer's records up to the sequence number
+		 * the customer was copied at are already in the snapshot. Records of
+		 * a customer who is neither in the snapshot nor added by a replayed
+		 * record belong to an account that was cancelled before the snapshot
+		 * reached it, and are skipped too.
+		 *
+		 * @param type
+		 *            type of the record.
+		 * @param id
+		 *            username the record names.
+		 * @param seq
+		 *            sequence number of the record.
+		 * @return true if the record is applied.
+		 */
+		boolean wants(byte type, String id, long seq) {
+			if (captured == null) {
+				return true;
+			}
+			Long copied = captured.get(id);
+			if (copied != null && seq <= copied.longValue()) {
+				return false;
+			}
+			if (type == ACCOUNT_ADDED) {
+				added.add(id);
+				return true;
+			}
+			return copied != null || added.contains(id);
+		}
+	}
+}
@@ -0,0 +1,435 @@
+package edu.ncsu.csc216.flix_2.persistence;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+import edu.ncsu.csc216.flix_2.customer.CustomerDescriber;
+import edu.ncsu.csc216.flix_2.customer.CustomerListener;
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+
+/**
+ * Binary snapshot of the catalog, the customer directory and every
+ * customer's queues, written by {@link Journal#snapshot()}. Every field is
+ * fixed size or length-prefixed, so the file is read straight out of a
+ * memory-mapped buffer with no parsing beyond the fields themselves.
+ * 
+ * The file holds, in order: {@link #MAGIC}, {@link #VERSION}, the sequence
+ * number of the last record in the segments the snapshot replaces, and the
+ * number of movies in the catalog; the title and number of copies of each
+ * movie; one entry per customer, holding the sequence number the customer
+ * was copied at, the username, password and limit on movies at home, and the
+ * catalog positions of the movies at home and on reserve, each list after
+ * its length; a sequence number of -1 to end the entries; the number of
+ * customers; and a CRC-32 of everything before it. The stock of each movie is
+ * its number of copies less the copies the customers have at home, so it is
+ * not stored.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+class Snapshot {
+
+	/**
+	 * First four bytes of a snapshot file, "FLXS".
+	 */
+	static final int MAGIC = 0x464C5853;
+
+	/**
+	 * Version of the snapshot format.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Size of the buffer the file is written through.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Size of the header: magic, version, sequence number and catalog size.
+	 */
+	private static final int HEADER_SIZE = 20;
+
+	/**
+	 * Size of the end of the file: end marker, customer count and checksum.
+	 */
+	private static final int TRAILER_SIZE = 16;
+
+	/**
+	 * Not used; the class only has static methods.
+	 */
+	private Snapshot() {
+	}
+
+	/**
+	 * Writes a snapshot and forces it to disk. Customers whose accounts were
+	 * closed before they were reached are left out.
+	 * 
+	 * @param file
+	 *            file to write, replaced if it exists.
+	 * @param rentals
+	 *            rental system holding the catalog.
+	 * @param base
+	 *            sequence number of the last record the snapshot replaces.
+	 * @param customers
+	 *            customers to copy.
+	 * @param journal
+	 *            journal the customers' changes are recorded in.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	static void write(Path file, DVDRentalSystem rentals, long base, List<Customer> customers, Journal journal) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			Output out = new Output(channel);
+			int size = rentals.inventorySize();
+			out.ensure(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(base).putInt(size);
+			for (int i = 0; i < size; i++) {
+				Movie movie = rentals.getMovieAt(i);
+				out.putString(movie.getName());
+				out.ensure(4).putInt(movie.getCopies());
+			}
+			Copier copier = new Copier(rentals, journal);
+			int count = 0;
+			for (Customer customer : customers) {
+				copier.clear();
+				if (customer.describeTo(copier)) {
+					copier.writeTo(out);
+					count++;
+				}
+			}
+			out.ensure(12).putLong(-1).putInt(count);
+			out.finish();
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Loads a snapshot into a listener, after checking that the whole file is
+	 * intact. Each customer is described the same way as
+	 * {@link Customer#describeTo(CustomerDescriber)} does.
+	 * 
+	 * @param file
+	 *            file to load.
+	 * @param rentals
+	 *            rental system holding the catalog.
+	 * @param target
+	 *            listener that creates the customers.
+	 * @return the sequence number each customer was copied at, keyed by
+	 *         username, or null if the file is damaged and nothing was
+	 *         loaded.
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 * @throws IllegalArgumentException
+	 *             if the snapshot was taken against a different catalog.
+	 */
+	static Map<String, Long> load(Path file, DVDRentalSystem rentals, CustomerListener target) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		MappedByteBuffer in;
+		try {
+			long length = channel.size();
+			if (length < HEADER_SIZE + TRAILER_SIZE || length > Integer.MAX_VALUE) {
+				return null;
+			}
+			in = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+		} finally {
+			channel.close();
+		}
+		int end = in.limit() - 4;
+		CRC32 crc = new CRC32();
+		ByteBuffer checked = in.duplicate();
+		checked.limit(end);
+		crc.update(checked);
+		if (in.getInt(end) != (int) crc.getValue() || in.getInt(0) != MAGIC || in.getInt(4) != VERSION) {
+			return null;
+		}
+		try {
+			in.position(HEADER_SIZE - 4);
+			int size = in.getInt();
+			if (size != rentals.inventorySize()) {
+				throw new IllegalArgumentException("Snapshot was taken against a different catalog.");
+			}
+			for (int i = 0; i < size; i++) {
+				Movie movie = rentals.getMovieAt(i);
+				if (!Journal.decode(in).equals(movie.getName()) || in.getInt() != movie.getCopies()) {
+					throw new IllegalArgumentException("Snapshot was taken against a different catalog.");
+				}
+			}
+			Map<String, Long> captured = new HashMap<String, Long>();
+			for (long seq = in.getLong(); seq != -1; seq = in.getLong()) {
+				String id = Journal.decode(in);
+				String password = Journal.decode(in);
+				target.accountAdded(id, password, in.getInt());
+				for (int n = in.getInt(); n > 0; n--) {
+					Movie movie = rentals.getMovieAt(in.getInt());
+					target.reserved(id, movie);
+					target.checkedOut(id, movie);
+				}
+				for (int n = in.getInt(); n > 0; n--) {
+					target.reserved(id, rentals.getMovieAt(in.getInt()));
+				}
+				captured.put(id, seq);
+			}
+			if (in.getInt() != captured.size()) {
+				throw new IllegalStateException("Snapshot has the wrong number of customers.");
+			}
+			return captured;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalStateException("Snapshot ends too soon.");
+		}
+	}
+
+	/**
+	 * Writes a file through a buffer, keeping a checksum of everything
+	 * written.
+	 */
+	private static class Output {
+
+		/**
+		 * File written to.
+		 */
+		private final FileChannel channel;
+
+		/**
+		 * Bytes not yet written to the file.
+		 */
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		/**
+		 * Checksum of the bytes written so far.
+		 */
+		private final CRC32 crc = new CRC32();
+
+		/**
+		 * Constructor, creates an output over a file.
+		 * 
+		 * @param channel
+		 *            file written to.
+		 */
+		Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Makes room in the buffer for the given number of bytes.
+		 * 
+		 * @param bytes
+		 *            number of bytes about to be put, at most the size of the
+		 *            buffer.
+		 * @return the buffer.
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		ByteBuffer ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+			return buffer;
+		}
+
+		/**
+		 * Puts a string after its length.
+		 * 
+		 * @param s
+		 *            string to put.
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		void putString(String s) throws IOException {
+			byte[] bytes = Journal.encode(s);
+			ensure(2 + bytes.length).putShort((short) bytes.length).put(bytes);
+		}
+
+		/**
+		 * Writes the checksum after everything else.
+		 * 
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		void finish() throws IOException {
+			flush();
+			buffer.putInt((int) crc.getValue());
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+
+		/**
+		 * Writes out the buffer.
+		 * 
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		private void flush() throws IOException {
+			buffer.flip();
+			crc.update(buffer.array(), 0, buffer.limit());
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Collects one customer as {@link Customer#describeTo(CustomerDescriber)}
+	 * describes it, while the customer is locked.
+	 */
+	private static class Copier implements CustomerDescriber {
+
+		/**
+		 * Rental system whose catalog positions name the movies.
+		 */
+		private final DVDRentalSystem rentals;
+
+		/**
+		 * Journal the customer's changes are recorded in.
+		 */
+		private final Journal journal;
+
+		/**
+		 * Sequence number of the last record appended when the customer was
+		 * copied.
+		 */
+		private long seq;
+
+		/**
+		 * Username of the customer.
+		 */
+		private String id;
+
+		/**
+		 * Password of the customer.
+		 */
+		private String password;
+
+		/**
+		 * Limit on the customer's movies at home.
+		 */
+		private int maxAtHome;
+
+		/**
+		 * Catalog positions of the movies at home.
+		 */
+		private int[] atHome = new int[8];
+
+		/**
+		 * Number of movies at home.
+		 */
+		private int atHomeCount;
+
+		/**
+		 * Catalog positions of the movies on reserve.
+		 */
+		private int[] reserves = new int[8];
+
+		/**
+		 * Number of movies on reserve.
+		 */
+		private int reserveCount;
+
+		/**
+		 * Constructor, creates a copier.
+		 * 
+		 * @param rentals
+		 *            rental system whose catalog positions name the movies.
+		 * @param journal
+		 *            journal the customers' changes are recorded in.
+		 */
+		Copier(DVDRentalSystem rentals, Journal journal) {
+			this.rentals = rentals;
+			this.journal = journal;
+		}
+
+		/**
+		 * Forgets the last customer copied.
+		 */
+		void clear() {
+			atHomeCount = 0;
+			reserveCount = 0;
+		}
+
+		/**
+		 * Writes the customer copied as one entry.
+		 * 
+		 * @param out
+		 *            where the entry is written.
+		 * @throws IOException
+		 *             if the file cannot be written.
+		 */
+		void writeTo(Output out) throws IOException {
+			out.ensure(8).putLong(seq);
+			out.putString(id);
+			out.putString(password);
+			out.ensure(8).putInt(maxAtHome).putInt(atHomeCount);
+			for (int i = 0; i < atHomeCount; i++) {
+				out.ensure(4).putInt(atHome[i]);
+			}
+			out.ensure(4).putInt(reserveCount);
+			for (int i = 0; i < reserveCount; i++) {
+				out.ensure(4).putInt(reserves[i]);
+			}
+		}
+
+		/**
+		 * Starts copying a customer, noting the last record appended.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param password
+		 *            password of the customer.
+		 * @param maxAtHome
+		 *            limit on the customer's movies at home.
+		 */
+		public void accountAdded(String id, String password, int maxAtHome) {
+			this.seq = journal.lastAppended();
+			this.id = id;
+			this.password = password;
+			this.maxAtHome = maxAtHome;
+		}
+
+		/**
+		 * Adds a movie to the reserves.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie reserved.
+		 */
+		public void reserved(String id, Movie movie) {
+			if (reserveCount == reserves.length) {
+				reserves = Arrays.copyOf(reserves, reserveCount * 2);
+			}
+			reserves[reserveCount++] = rentals.positionOf(movie);
+		}
+
+		/**
+		 * Moves the movie just reserved to the movies at home.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie checked out.
+		 */
+		public void checkedOut(String id, Movie movie) {
+			reserveCount--;
+			if (atHomeCount == atHome.length) {
+				atHome = Arrays.copyOf(atHome, atHomeCount * 2);
+			}
+			atHome[atHomeCount++] = reserves[reserveCount];
+		}
+	}
+}
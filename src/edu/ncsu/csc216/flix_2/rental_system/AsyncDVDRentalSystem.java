@@ -0,0 +1,597 @@
+package edu.ncsu.csc216.flix_2.rental_system;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+
+/**
+ * Runs the operations of a {@link RentalManager}, usually a
+ * {@link DVDRentalSystem}, on an executor and hands back futures. The
+ * executor may be any kind: {@link #newVirtualThreadExecutor()},
+ * {@link #newFixedExecutor(int)} and {@link #newForkJoinExecutor(int)} make
+ * the usual ones.
+ * 
+ * Every customer has a lane, a queue of the customer's operations that hands
+ * the executor one operation at a time, so a customer's operations run in the
+ * order they were started while different customers' operations run side by
+ * side. A lane only lives while it has operations waiting, so idle customers
+ * cost nothing. Every context opened from the same system shares its lanes,
+ * so two sessions of one customer are ordered together too. The inventory
+ * operations of the context with no customer need no ordering and go straight
+ * to the executor.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class AsyncDVDRentalSystem implements AsyncRentalManager {
+
+	/**
+	 * Rental context the operations run on.
+	 */
+	private final RentalManager rentals;
+
+	/**
+	 * Customer of the context, or null for the context the system was created
+	 * with.
+	 */
+	private final Customer customer;
+
+	/**
+	 * Executor the operations run on.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Lanes with operations waiting, by customer; shared by every context.
+	 */
+	private final ConcurrentHashMap<Object, Lane> lanes;
+
+	/**
+	 * Constructor, creates a system that runs the operations of a rental
+	 * context on an executor. Operations on this context that need a customer
+	 * use the customer set on the rental context, and are kept in order
+	 * together.
+	 * 
+	 * @param rentals
+	 *            rental context the operations run on.
+	 * @param executor
+	 *            executor the operations run on.
+	 * @throws IllegalArgumentException
+	 *             if either is null.
+	 */
+	public AsyncDVDRentalSystem(RentalManager rentals, Executor executor) {
+		if (rentals == null || executor == null) {
+			throw new IllegalArgumentException();
+		}
+		this.rentals = rentals;
+		this.customer = null;
+		this.executor = executor;
+		this.lanes = new ConcurrentHashMap<Object, Lane>();
+	}
+
+	/**
+	 * Constructor, creates the context of a customer sharing the executor and
+	 * lanes of another context.
+	 * 
+	 * @param parent
+	 *            context to share with.
+	 * @param customer
+	 *            the customer for the context.
+	 */
+	private AsyncDVDRentalSystem(AsyncDVDRentalSystem parent, Customer customer) {
+		this.rentals = parent.rentals.openContext(customer);
+		this.customer = customer;
+		this.executor = parent.executor;
+		this.lanes = parent.lanes;
+	}
+
+	/**
+	 * Creates an executor that runs each operation on its own virtual thread,
+	 * on a JDK that has them, or on a pooled daemon thread otherwise. The
+	 * HTTP and binary protocol servers run their requests on one as well.
+	 * 
+	 * @return the executor.
+	 */
+	public static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(new DaemonThreads());
+		}
+	}
+
+	/**
+	 * Creates an executor with a fixed number of daemon threads.
+	 * 
+	 * @param threads
+	 *            number of threads.
+	 * @return the executor.
+	 * @throws IllegalArgumentException
+	 *             if threads is less than 1.
+	 */
+	public static ExecutorService newFixedExecutor(int threads) {
+		return Executors.newFixedThreadPool(threads, new DaemonThreads());
+	}
+
+	/**
+	 * Creates a work-stealing fork-join pool. The pool takes tasks in the
+	 * order they are submitted, which suits operations that are never joined.
+	 * 
+	 * @param parallelism
+	 *            number of threads.
+	 * @return the executor.
+	 * @throws IllegalArgumentException
+	 *             if parallelism is less than 1.
+	 */
+	public static ExecutorService newForkJoinExecutor(int parallelism) {
+		return new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+	}
+
+	/**
+	 * Creates an executor of a kind named by a string, for command line
+	 * options: "virtual", "fixed" or "forkjoin".
+	 * 
+	 * @param kind
+	 *            kind of executor.
+	 * @param threads
+	 *            number of threads for a fixed or fork-join executor.
+	 * @return the executor.
+	 * @throws IllegalArgumentException
+	 *             if the kind is unknown or threads is less than 1.
+	 */
+	public static ExecutorService newExecutor(String kind, int threads) {
+		if ("virtual".equals(kind)) {
+			return newVirtualThreadExecutor();
+		} else if ("fixed".equals(kind)) {
+			return newFixedExecutor(threads);
+		} else if ("forkjoin".equals(kind)) {
+			return newForkJoinExecutor(threads);
+		}
+		throw new IllegalArgumentException("Unknown executor " + kind);
+	}
+
+	/**
+	 * Opens a new context for a customer that shares this inventory, executor
+	 * and lanes.
+	 * 
+	 * @param c
+	 *            the customer for the new context.
+	 * @return the new context.
+	 * @throws IllegalArgumentException
+	 *             if the customer is null.
+	 */
+	public AsyncRentalManager openContext(Customer c) {
+		if (c == null) {
+			throw new IllegalArgumentException();
+		}
+		return new AsyncDVDRentalSystem(this, c);
+	}
+
+	/**
+	 * Traverses all movies in the inventory.
+	 * 
+	 * @return future of the string representing the movies in the inventory.
+	 */
+	public CompletableFuture<String> showInventory() {
+		return submit(customer != null, new Callable<String>() {
+			public String call() {
+				return rentals.showInventory();
+			}
+		});
+	}
+
+	/**
+	 * Traverses one page of the movies in the inventory.
+	 * 
+	 * @param offset
+	 *            position of the first movie on the page.
+	 * @param limit
+	 *            largest number of movies on the page.
+	 * @return future of the string representing the movies on the page.
+	 */
+	public CompletableFuture<String> showInventory(final int offset, final int limit) {
+		return submit(customer != null, new Callable<String>() {
+			public String call() {
+				return rentals.showInventory(offset, limit);
+			}
+		});
+	}
+
+	/**
+	 * Gets the number of movies in the inventory.
+	 * 
+	 * @return future of the number of movies in the inventory.
+	 */
+	public CompletableFuture<Integer> inventorySize() {
+		return submit(customer != null, new Callable<Integer>() {
+			public Integer call() {
+				return rentals.inventorySize();
+			}
+		});
+	}
+
+	/**
+	 * Reserves the selected movie for the reserve queue.
+	 * 
+	 * @param position
+	 *            position of the selected movie in the inventory.
+	 * @return future that completes once the movie is reserved.
+	 */
+	public CompletableFuture<Void> addToCustomerQueue(final int position) {
+		return submit(true, new Callable<Void>() {
+			public Void call() {
+				rentals.addToCustomerQueue(position);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Reserves many movies for the reserve queue, in the given order. The
+	 * positions are copied, so the array may be reused at once.
+	 * 
+	 * @param positions
+	 *            positions of the selected movies in the inventory.
+	 * @return future that completes once the movies are reserved.
+	 */
+	public CompletableFuture<Void> addAllToCustomerQueue(int[] positions) {
+		final int[] copy = positions.clone();
+		return submit(true, new Callable<Void>() {
+			public Void call() {
+				rentals.addAllToCustomerQueue(copy);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Moves the movie in the given position up 1 in the reserve queue.
+	 * 
+	 * @param position
+	 *            current position of the movie to move up one.
+	 * @return future that completes once the movie is moved.
+	 */
+	public CompletableFuture<Void> reserveMoveAheadOne(final int position) {
+		return submit(true, new Callable<Void>() {
+			public Void call() {
+				rentals.reserveMoveAheadOne(position);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Removes the movie in the given position from the reserve queue.
+	 * 
+	 * @param position
+	 *            position of the movie in the queue.
+	 * @return future that completes once the movie is removed.
+	 */
+	public CompletableFuture<Void> removeSelectedFromReserves(final int position) {
+		return submit(true, new Callable<Void>() {
+			public Void call() {
+				rentals.removeSelectedFromReserves(position);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Removes the movies in the given positions from the reserve queue. The
+	 * positions are copied, so the array may be reused at once.
+	 * 
+	 * @param positions
+	 *            positions of the movies in the queue, in any order.
+	 * @return future that completes once the movies are removed.
+	 */
+	public CompletableFuture<Void> removeAllFromReserves(int[] positions) {
+		final int[] copy = positions.clone();
+		return submit(true, new Callable<Void>() {
+			public Void call() {
+				rentals.removeAllFromReserves(copy);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Traverses all movies in the reserve queue.
+	 * 
+	 * @return future of the string representation of movies in the queue.
+	 */
+	public CompletableFuture<String> traverseReserveQueue() {
+		return submit(true, new Callable<String>() {
+			public String call() {
+				return rentals.traverseReserveQueue();
+			}
+		});
+	}
+
+	/**
+	 * Traverses all movies at home.
+	 * 
+	 * @return future of the string representation of movies at home.
+	 */
+	public CompletableFuture<String> traverseAtHomeQueue() {
+		return submit(true, new Callable<String>() {
+			public String call() {
+				return rentals.traverseAtHomeQueue();
+			}
+		});
+	}
+
+	/**
+	 * Returns the selected movie to the inventory.
+	 * 
+	 * @param position
+	 *            location in the list of movies at home of the movie to
+	 *            return.
+	 * @return future that completes once the movie is returned.
+	 */
+	public CompletableFuture<Void> returnItemToInventory(final int position) {
+		return submit(true, new Callable<Void>() {
+			public Void call() {
+				rentals.returnItemToInventory(position);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Returns the selected movies to the inventory. The positions are copied,
+	 * so the array may be reused at once.
+	 * 
+	 * @param positions
+	 *            locations in the list of movies at home of the movies to
+	 *            return, in any order.
+	 * @return future that completes once the movies are returned.
+	 */
+	public CompletableFuture<Void> returnAllToInventory(int[] positions) {
+		final int[] copy = positions.clone();
+		return submit(true, new Callable<Void>() {
+			public Void call() {
+				rentals.returnAllToInventory(copy);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Starts an operation, in this context's lane if it needs ordering.
+	 * 
+	 * @param ordered
+	 *            whether the operation runs in order with this context's
+	 *            other ordered operations.
+	 * @param call
+	 *            the operation.
+	 * @return future of the operation's result.
+	 */
+	private <T> CompletableFuture<T> submit(boolean ordered, Callable<T> call) {
+		Task<T> task = new Task<T>(call);
+		if (!ordered) {
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				task.future.completeExceptionally(e);
+			}
+			return task.future;
+		}
+		Object key = customer != null ? customer : rentals;
+		while (true) {
+			Lane lane = lanes.get(key);
+			if (lane == null) {
+				Lane created = new Lane(key);
+				lane = lanes.putIfAbsent(key, created);
+				if (lane == null) {
+					lane = created;
+				}
+			}
+			int added = lane.add(task);
+			if (added == Lane.STARTED) {
+				lane.schedule();
+			}
+			if (added != Lane.RETIRED) {
+				return task.future;
+			}
+		}
+	}
+
+	/**
+	 * Creates named daemon threads for the pooled executors.
+	 */
+	private static class DaemonThreads implements ThreadFactory {
+
+		/**
+		 * Number of threads created so far.
+		 */
+		private final AtomicInteger count = new AtomicInteger();
+
+		/**
+		 * Creates a daemon thread.
+		 * 
+		 * @param task
+		 *            what the thread runs.
+		 * @return the thread.
+		 */
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "rental-async-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * An operation and the future of its result.
+	 * 
+	 * @param <T>
+	 *            type of the result.
+	 */
+	private static class Task<T> implements Runnable {
+
+		/**
+		 * The operation.
+		 */
+		private final Callable<T> call;
+
+		/**
+		 * Future of its result.
+		 */
+		private final CompletableFuture<T> future = new CompletableFuture<T>();
+
+		/**
+		 * Constructor, creates a task.
+		 * 
+		 * @param call
+		 *            the operation.
+		 */
+		Task(Callable<T> call) {
+			this.call = call;
+		}
+
+		/**
+		 * Runs the operation and completes the future with its result or
+		 * failure.
+		 */
+		public void run() {
+			try {
+				future.complete(call.call());
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+			}
+		}
+	}
+
+	/**
+	 * The waiting operations of one customer. While it has operations, the
+	 * lane has exactly one run of itself on the executor, which runs the
+	 * oldest operation and schedules the lane again if more are waiting. A
+	 * lane that runs out is retired and leaves the map; operations started
+	 * after that get a new lane.
+	 */
+	private class Lane implements Runnable {
+
+		/**
+		 * Result of {@link #add(Task)} when the lane was idle and must be
+		 * scheduled.
+		 */
+		static final int STARTED = 0;
+
+		/**
+		 * Result of {@link #add(Task)} when the lane was already scheduled.
+		 */
+		static final int QUEUED = 1;
+
+		/**
+		 * Result of {@link #add(Task)} when the lane is retired and a new one
+		 * is needed.
+		 */
+		static final int RETIRED = 2;
+
+		/**
+		 * Key of the lane in the map.
+		 */
+		private final Object key;
+
+		/**
+		 * Operations waiting, oldest first.
+		 */
+		private final ArrayDeque<Task<?>> tasks = new ArrayDeque<Task<?>>();
+
+		/**
+		 * Whether a run of the lane is on the executor.
+		 */
+		private boolean scheduled;
+
+		/**
+		 * Whether the lane has run out and left the map.
+		 */
+		private boolean retired;
+
+		/**
+		 * Constructor, creates an empty lane.
+		 * 
+		 * @param key
+		 *            key of the lane in the map.
+		 */
+		Lane(Object key) {
+			this.key = key;
+		}
+
+		/**
+		 * Adds an operation.
+		 * 
+		 * @param task
+		 *            the operation.
+		 * @return STARTED, QUEUED or RETIRED.
+		 */
+		synchronized int add(Task<?> task) {
+			if (retired) {
+				return RETIRED;
+			}
+			tasks.add(task);
+			if (scheduled) {
+				return QUEUED;
+			}
+			scheduled = true;
+			return STARTED;
+		}
+
+		/**
+		 * Puts a run of the lane on the executor, failing every waiting
+		 * operation if the executor refuses it.
+		 */
+		void schedule() {
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				synchronized (this) {
+					for (Task<?> task = tasks.poll(); task != null; task = tasks.poll()) {
+						task.future.completeExceptionally(e);
+					}
+					retire();
+				}
+			}
+		}
+
+		/**
+		 * Runs the oldest operation, then schedules the lane again or retires
+		 * it.
+		 */
+		public void run() {
+			Task<?> task;
+			synchronized (this) {
+				task = tasks.poll();
+			}
+			task.run();
+			boolean more;
+			synchronized (this) {
+				more = !tasks.isEmpty();
+				if (!more) {
+					retire();
+				}
+			}
+			if (more) {
+				schedule();
+			}
+		}
+
+		/**
+		 * Marks the lane run out and takes it out of the map. Called with the
+		 * lane locked.
+		 */
+		private void retire() {
+			scheduled = false;
+			retired = true;
+			lanes.remove(key, this);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package edu.ncsu.csc216.flix_2.rental_system;
+
+import java.util.concurrent.CompletableFuture;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+
+/**
+ * Interface for a rental system whose operations run in the background. Each
+ * operation of {@link RentalManager} starts at once and returns a future that
+ * completes with its result, or completes exceptionally with the
+ * {@link IllegalArgumentException} or {@link IllegalStateException} the
+ * operation would have thrown. The operations of a customer run one at a time
+ * in the order they were started, so a reserve started before a listing is
+ * always in the listing; operations of different customers overlap.
+ * 
+ * A context is fixed to its customer when it is opened, since changing the
+ * customer of a context with operations still waiting would change whose
+ * operations they are.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public interface AsyncRentalManager {
+
+	/**
+	 * Traverse all items in the inventory.
+	 * 
+	 * @return future of the string representing the items in the inventory
+	 */
+	public CompletableFuture<String> showInventory();
+
+	/**
+	 * Traverse one page of the items in the inventory. A page past the end of
+	 * the inventory is empty.
+	 * 
+	 * @param offset
+	 *            position of the first item on the page
+	 * @param limit
+	 *            largest number of items on the page
+	 * @return future of the string representing the items on the page, failing
+	 *         with IllegalArgumentException if offset or limit is negative
+	 */
+	public CompletableFuture<String> showInventory(int offset, int limit);
+
+	/**
+	 * Get the number of items in the inventory.
+	 * 
+	 * @return future of the number of items in the inventory
+	 */
+	public CompletableFuture<Integer> inventorySize();
+
+	/**
+	 * Open a new context for a given customer that shares this inventory.
+	 * 
+	 * @param c
+	 *            the customer for the new context
+	 * @return the new context
+	 * @throws IllegalArgumentException
+	 *             if the customer is null
+	 */
+	public AsyncRentalManager openContext(Customer c);
+
+	/**
+	 * Reserve the selected item for the reserve queue.
+	 * 
+	 * @param position
+	 *            position of the selected item in the inventory
+	 * @return future that completes once the item is reserved, failing with
+	 *         IllegalStateException if no customer is logged in or
+	 *         IllegalArgumentException if position is out of bounds
+	 */
+	public CompletableFuture<Void> addToCustomerQueue(int position);
+
+	/**
+	 * Reserve many items for the reserve queue, in the given order.
+	 * 
+	 * @param positions
+	 *            positions of the selected items in the inventory
+	 * @return future that completes once the items are reserved, failing with
+	 *         IllegalStateException if no customer is logged in or
+	 *         IllegalArgumentException if any position is out of bounds
+	 */
+	public CompletableFuture<Void> addAllToCustomerQueue(int[] positions);
+
+	/**
+	 * Move the item in the given position up 1 in the reserve queue.
+	 * 
+	 * @param position
+	 *            current position of item to move up one
+	 * @return future that completes once the item is moved, failing with
+	 *         IllegalStateException if no customer is logged in
+	 */
+	public CompletableFuture<Void> reserveMoveAheadOne(int position);
+
+	/**
+	 * Remove the item in the given position from the reserve queue.
+	 * 
+	 * @param position
+	 *            position of the item in the queue
+	 * @return future that completes once the item is removed, failing with
+	 *         IllegalStateException if no customer is logged in or
+	 *         IllegalArgumentException if position is out of bounds
+	 */
+	public CompletableFuture<Void> removeSelectedFromReserves(int position);
+
+	/**
+	 * Remove the items in the given positions from the reserve queue.
+	 * 
+	 * @param positions
+	 *            positions of the items in the queue, in any order
+	 * @return future that completes once the items are removed, failing with
+	 *         IllegalStateException if no customer is logged in or
+	 *         IllegalArgumentException if any position is out of bounds or
+	 *         repeated
+	 */
+	public CompletableFuture<Void> removeAllFromReserves(int[] positions);
+
+	/**
+	 * Traverse all items in the reserve queue.
+	 * 
+	 * @return future of the string representation of items in the queue,
+	 *         failing with IllegalStateException if no customer is logged in
+	 */
+	public CompletableFuture<String> traverseReserveQueue();
+
+	/**
+	 * Traverse all items at home.
+	 * 
+	 * @return future of the string representation of items at home, failing
+	 *         with IllegalStateException if no customer is logged in
+	 */
+	public CompletableFuture<String> traverseAtHomeQueue();
+
+	/**
+	 * Return the selected item to the inventory.
+	 * 
+	 * @param position
+	 *            location in the list of items at home of the item to return
+	 * @return future that completes once the item is returned, failing with
+	 *         IllegalStateException if no customer is logged in or
+	 *         IllegalArgumentException if position is out of bounds
+	 */
+	public CompletableFuture<Void> returnItemToInventory(int position);
+
+	/**
+	 * Return the selected items to the inventory.
+	 * 
+	 * @param positions
+	 *            locations in the list of items at home of the items to
+	 *            return, in any order
+	 * @return future that completes once the items are returned, failing with
+	 *         IllegalStateException if no customer is logged in or
+	 *         IllegalArgumentException if any position is out of bounds or
+	 *         repeated
+	 */
+	public CompletableFuture<Void> returnAllToInventory(int[] positions);
+
+}
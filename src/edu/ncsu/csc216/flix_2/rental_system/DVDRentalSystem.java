@@ -1,13 +1,20 @@
 package edu.ncsu.csc216.flix_2.rental_system;
 
+import java.util.Arrays;
+import java.util.List;
+
 import edu.ncsu.csc216.flix_2.customer.Customer;
+import edu.ncsu.csc216.flix_2.inventory.Movie;
 import edu.ncsu.csc216.flix_2.inventory.MovieDB;
 
 /**
  * Represents the rental system where the movies for rent are stored in an
  * inventory and where there are different customers. Movies can be reserved,
  * checked out for home, and returned to the inventory. Movies in the the
- * inventory, reserves, and at home can be located by position.
+ * inventory, reserves, and at home can be located by position. Each session
+ * works in its own context from {@link #openContext(Customer)}, and every
+ * context shares the same inventory. Customers who reserve a movie with no
+ * copies join its waitlist, and get a copy as soon as one is returned.
  * 
  * @author Nick Brust, Eric Matysek
  */
@@ -15,7 +22,9 @@ public class DVDRentalSystem implements RentalManager {
 
 	private MovieDB inventory;
 
-	private Customer currentCustomer;
+	private Waitlist waitlist;
+
+	private volatile Customer currentCustomer;
 
 	/**
 	 * Constructor, creating the system by filing out the inventory from a file.
@@ -27,6 +36,25 @@ public class DVDRentalSystem implements RentalManager {
 	 */
 	public DVDRentalSystem(String file) {
 		inventory = new MovieDB(file);
+		waitlist = new Waitlist();
+		inventory.setStockListener(waitlist);
+	}
+
+	/**
+	 * Constructor, creating a context for a customer over an inventory that
+	 * is already loaded.
+	 * 
+	 * @param inventory
+	 *            the shared inventory.
+	 * @param waitlist
+	 *            the shared waitlist.
+	 * @param customer
+	 *            the customer for the context.
+	 */
+	private DVDRentalSystem(MovieDB inventory, Waitlist waitlist, Customer customer) {
+		this.inventory = inventory;
+		this.waitlist = waitlist;
+		this.currentCustomer = customer;
 	}
 
 	/**
@@ -39,6 +67,22 @@ public class DVDRentalSystem implements RentalManager {
 		currentCustomer = customer;
 	}
 
+	/**
+	 * Opens a new context for a customer that shares this inventory.
+	 * 
+	 * @param customer
+	 *            the customer for the new context.
+	 * @return the new context.
+	 * @throws IllegalArgumentException
+	 *             if the customer is null.
+	 */
+	public RentalManager openContext(Customer customer) {
+		if (customer == null) {
+			throw new IllegalArgumentException();
+		}
+		return new DVDRentalSystem(inventory, waitlist, customer);
+	}
+
 	/**
 	 * Traverses all movies in the inventory.
 	 * 
@@ -48,6 +92,92 @@ public class DVDRentalSystem implements RentalManager {
 		return inventory.traverse();
 	}
 
+	/**
+	 * Traverses one page of the movies in the inventory. A page past the end
+	 * of the inventory is empty.
+	 * 
+	 * @param offset
+	 *            position of the first movie on the page.
+	 * @param limit
+	 *            largest number of movies on the page.
+	 * @return the string representing the movies on the page.
+	 * @throws IllegalArgumentException
+	 *             if offset or limit is negative.
+	 */
+	public String showInventory(int offset, int limit) {
+		return inventory.traverse(offset, limit);
+	}
+
+	/**
+	 * Gets the number of movies in the inventory.
+	 * 
+	 * @return the number of movies in the inventory.
+	 */
+	public int inventorySize() {
+		return inventory.size();
+	}
+
+	/**
+	 * Gets the number of places in line on the waitlists of every movie.
+	 * 
+	 * @return the number of places in line.
+	 */
+	public int getWaitlistDepth() {
+		return waitlist.size();
+	}
+
+	/**
+	 * Gets the movie at a position in the inventory.
+	 * 
+	 * @param num
+	 *            position of the movie in the inventory.
+	 * @return the movie at that position.
+	 * @throws IllegalArgumentException
+	 *             if position is out of bounds.
+	 */
+	public Movie getMovieAt(int num) {
+		return inventory.findItemAt(num);
+	}
+
+	/**
+	 * Gets the position of a movie in the inventory.
+	 * 
+	 * @param movie
+	 *            the movie to find.
+	 * @return position of the movie, or -1 if it is not in the inventory.
+	 */
+	public int positionOf(Movie movie) {
+		return inventory.indexOf(movie);
+	}
+
+	/**
+	 * Gets the positions of the movies whose title is exactly the given title.
+	 * 
+	 * @param title
+	 *            the title to find.
+	 * @return positions of the matching movies, in inventory order.
+	 * @throws IllegalArgumentException
+	 *             if the title is null.
+	 */
+	public int[] findTitle(String title) {
+		return inventory.findTitle(title);
+	}
+
+	/**
+	 * Puts a customer back in line for every movie in the customer's reserve
+	 * queue, in queue order. Used after the customer's queues are restored,
+	 * since restoring them does not join any waitlist. Copies already in the
+	 * inventory are handed out as usual.
+	 * 
+	 * @param customer
+	 *            the restored customer.
+	 */
+	public void rejoinWaitlists(Customer customer) {
+		for (Movie movie : customer.getReservedMovies()) {
+			waitlist.add(movie, customer);
+		}
+	}
+
 	/**
 	 * Reserve the selected movie for the reserve queue.
 	 * 
@@ -59,10 +189,41 @@ public class DVDRentalSystem implements RentalManager {
 	 *             if position is out of bounds.
 	 */
 	public void addToCustomerQueue(int num) {
-		if (currentCustomer == null) {
+		Customer customer = currentCustomer;
+		if (customer == null) {
 			throw new IllegalStateException("No customer is logged in.");
 		}
-		currentCustomer.reserve(inventory.findItemAt(num));
+		Movie movie = inventory.findItemAt(num);
+		customer.reserve(movie);
+		if (customer.isWaitingFor(movie)) {
+			waitlist.add(movie, customer);
+		}
+	}
+
+	/**
+	 * Reserve many movies for the reserve queue, in the given order. The
+	 * movies are found in one pass over the inventory and reserved with the
+	 * customer locked once.
+	 * 
+	 * @param nums
+	 *            positions of the selected movies in the inventory.
+	 * @throws IllegalStateException
+	 *             if no customer is logged in.
+	 * @throws IllegalArgumentException
+	 *             if any position is out of bounds.
+	 */
+	public void addAllToCustomerQueue(int[] nums) {
+		Customer customer = currentCustomer;
+		if (customer == null) {
+			throw new IllegalStateException("No customer is logged in.");
+		}
+		List<Movie> movies = inventory.findItemsAt(nums);
+		customer.reserveAll(movies);
+		for (Movie movie : movies) {
+			if (customer.isWaitingFor(movie)) {
+				waitlist.add(movie, customer);
+			}
+		}
 	}
 
 	/**
@@ -74,10 +235,11 @@ public class DVDRentalSystem implements RentalManager {
 	 *             if no customer is logged in
 	 */
 	public void reserveMoveAheadOne(int num) {
-		if (currentCustomer == null) {
+		Customer customer = currentCustomer;
+		if (customer == null) {
 			throw new IllegalStateException("No customer is logged in.");
 		}
-		currentCustomer.moveAheadOneInReserves(num);
+		customer.moveAheadOneInReserves(num);
 	}
 
 	/**
@@ -91,10 +253,37 @@ public class DVDRentalSystem implements RentalManager {
 	 *             if position is out of bounds
 	 */
 	public void removeSelectedFromReserves(int num) {
-		if (currentCustomer == null) {
+		Customer customer = currentCustomer;
+		if (customer == null) {
 			throw new IllegalStateException("No customer is logged in.");
 		}
-		currentCustomer.unReserve(num);
+		Movie movie = customer.unReserve(num);
+		if (!customer.isWaitingFor(movie)) {
+			waitlist.remove(movie, customer);
+		}
+	}
+
+	/**
+	 * Remove the movies in the given positions from the reserve queue in one
+	 * pass.
+	 * 
+	 * @param nums
+	 *            positions of the movies in the queue, in any order.
+	 * @throws IllegalStateException
+	 *             if no customer is logged in.
+	 * @throws IllegalArgumentException
+	 *             if any position is out of bounds or repeated.
+	 */
+	public void removeAllFromReserves(int[] nums) {
+		Customer customer = currentCustomer;
+		if (customer == null) {
+			throw new IllegalStateException("No customer is logged in.");
+		}
+		for (Movie movie : customer.unReserveAll(sorted(nums))) {
+			if (!customer.isWaitingFor(movie)) {
+				waitlist.remove(movie, customer);
+			}
+		}
 	}
 
 	/**
@@ -105,10 +294,11 @@ public class DVDRentalSystem implements RentalManager {
 	 *             if no customer is logged in
 	 */
 	public String traverseReserveQueue() {
-		if (currentCustomer == null) {
+		Customer customer = currentCustomer;
+		if (customer == null) {
 			throw new IllegalStateException("No customer is logged in.");
 		}
-		return currentCustomer.traverseReserveQueue();
+		return customer.traverseReserveQueue();
 	}
 
 	/**
@@ -119,10 +309,11 @@ public class DVDRentalSystem implements RentalManager {
 	 *             if no customer is logged in
 	 */
 	public String traverseAtHomeQueue() {
-		if (currentCustomer == null) {
+		Customer customer = currentCustomer;
+		if (customer == null) {
 			throw new IllegalStateException("No customer is logged in.");
 		}
-		return currentCustomer.traverseAtHomeQueue();
+		return customer.traverseAtHomeQueue();
 	}
 
 	/**
@@ -136,9 +327,50 @@ public class DVDRentalSystem implements RentalManager {
 	 *             if position is out of bounds
 	 */
 	public void returnItemToInventory(int num) {
-		if (currentCustomer == null) {
+		Customer customer = currentCustomer;
+		if (customer == null) {
+			throw new IllegalStateException("No customer is logged in.");
+		}
+		Movie checkedOut = customer.returnDVD(num);
+		if (checkedOut != null && !customer.isWaitingFor(checkedOut)) {
+			waitlist.remove(checkedOut, customer);
+		}
+	}
+
+	/**
+	 * Return the selected movies to the inventory in one pass over the movies
+	 * at home.
+	 * 
+	 * @param nums
+	 *            locations in the list of movies at home of the movies to
+	 *            return, in any order.
+	 * @throws IllegalStateException
+	 *             if no customer is logged in.
+	 * @throws IllegalArgumentException
+	 *             if any position is out of bounds or repeated.
+	 */
+	public void returnAllToInventory(int[] nums) {
+		Customer customer = currentCustomer;
+		if (customer == null) {
 			throw new IllegalStateException("No customer is logged in.");
 		}
-		currentCustomer.returnDVD(num);
+		for (Movie checkedOut : customer.returnDVDs(sorted(nums))) {
+			if (!customer.isWaitingFor(checkedOut)) {
+				waitlist.remove(checkedOut, customer);
+			}
+		}
+	}
+
+	/**
+	 * Sorts a copy of some queue positions.
+	 * 
+	 * @param nums
+	 *            positions in any order.
+	 * @return the positions in ascending order.
+	 */
+	private static int[] sorted(int[] nums) {
+		int[] copy = nums.clone();
+		Arrays.sort(copy);
+		return copy;
 	}
 }
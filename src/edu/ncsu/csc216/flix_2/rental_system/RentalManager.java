@@ -19,6 +19,27 @@ public interface RentalManager {
 	 */
 	public String showInventory();
 
+	/**
+	 * Traverse one page of the items in the inventory. A page past the end of
+	 * the inventory is empty.
+	 * 
+	 * @param offset
+	 *            position of the first item on the page
+	 * @param limit
+	 *            largest number of items on the page
+	 * @return the string representing the items on the page
+	 * @throws IllegalArgumentException
+	 *             if offset or limit is negative
+	 */
+	public String showInventory(int offset, int limit);
+
+	/**
+	 * Get the number of items in the inventory.
+	 * 
+	 * @return the number of items in the inventory
+	 */
+	public int inventorySize();
+
 	/**
 	 * Set the customer for the current context to a given value.
 	 * 
@@ -27,6 +48,19 @@ public interface RentalManager {
 	 */
 	public void setCustomer(Customer c);
 
+	/**
+	 * Open a new context for a given customer that shares this inventory.
+	 * Operations on the new context run against that customer and do not
+	 * change the customer of this context, so each session can have its own.
+	 * 
+	 * @param c
+	 *            the customer for the new context
+	 * @return the new context
+	 * @throws IllegalArgumentException
+	 *             if the customer is null
+	 */
+	public RentalManager openContext(Customer c);
+
 	/**
 	 * Reserve the selected item for the reserve queue.
 	 * 
@@ -39,6 +73,19 @@ public interface RentalManager {
 	 */
 	public void addToCustomerQueue(int position);
 
+	/**
+	 * Reserve many items for the reserve queue, in the given order. The
+	 * positions are checked before anything is reserved.
+	 * 
+	 * @param positions
+	 *            positions of the selected items in the inventory
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 * @throws IllegalArgumentException
+	 *             if any position is out of bounds
+	 */
+	public void addAllToCustomerQueue(int[] positions);
+
 	/**
 	 * Move the item in the given position up 1 in the reserve queue.
 	 * 
@@ -61,6 +108,20 @@ public interface RentalManager {
 	 */
 	public void removeSelectedFromReserves(int position);
 
+	/**
+	 * Remove the items in the given positions from the reserve queue. The
+	 * positions are those before anything is removed, and are checked before
+	 * anything is removed.
+	 * 
+	 * @param positions
+	 *            positions of the items in the queue, in any order
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 * @throws IllegalArgumentException
+	 *             if any position is out of bounds or repeated
+	 */
+	public void removeAllFromReserves(int[] positions);
+
 	/**
 	 * Traverse all items in the reserve queue.
 	 * 
@@ -91,4 +152,19 @@ public interface RentalManager {
 	 */
 	public void returnItemToInventory(int position);
 
+	/**
+	 * Return the selected items to the inventory. The positions are those
+	 * before anything is returned, and are checked before anything is
+	 * returned.
+	 * 
+	 * @param positions
+	 *            locations in the list of items at home of the items to
+	 *            return, in any order
+	 * @throws IllegalStateException
+	 *             if no customer is logged in
+	 * @throws IllegalArgumentException
+	 *             if any position is out of bounds or repeated
+	 */
+	public void returnAllToInventory(int[] positions);
+
 }
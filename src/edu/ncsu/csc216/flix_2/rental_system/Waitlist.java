@@ -0,0 +1,174 @@
+package edu.ncsu.csc216.flix_2.rental_system;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+import edu.ncsu.csc216.flix_2.inventory.StockListener;
+
+/**
+ * Keeps, for each movie, the customers waiting for a copy of it in the order
+ * they reserved it. When a movie comes back into stock, its copies go to the
+ * first waiting customers who can take them, without looking at any other
+ * customer. Returns to a movie that still has copies need no work: everyone
+ * still in line was already offered those copies and had no room for them,
+ * and takes one through their own checkout when they make room.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+class Waitlist implements StockListener {
+
+	/**
+	 * Movie the current thread is handing out, so a refused copy put back
+	 * while it does is left to the handout already running.
+	 */
+	private static final ThreadLocal<Movie> ALLOCATING = new ThreadLocal<Movie>();
+
+	/**
+	 * Waiting customers of each movie, first in line at the front.
+	 */
+	private final ConcurrentHashMap<Movie, ConcurrentLinkedDeque<Customer>> waiting = new ConcurrentHashMap<Movie, ConcurrentLinkedDeque<Customer>>();
+
+	/**
+	 * Puts a customer at the back of the line for a movie. If a copy is in
+	 * the inventory already, it is handed out right away, so a copy returned
+	 * just before the customer joined the line is not left on the shelf.
+	 * Customers at the front of the line who no longer have the movie
+	 * reserved are dropped first, so lines of movies that rarely run out do
+	 * not collect them.
+	 * 
+	 * @param movie
+	 *            movie the customer is waiting for.
+	 * @param customer
+	 *            customer who reserved the movie.
+	 */
+	void add(Movie movie, Customer customer) {
+		ConcurrentLinkedDeque<Customer> line = waiting.get(movie);
+		if (line == null) {
+			ConcurrentLinkedDeque<Customer> created = new ConcurrentLinkedDeque<Customer>();
+			line = waiting.putIfAbsent(movie, created);
+			if (line == null) {
+				line = created;
+			}
+		}
+		Customer first = line.peekFirst();
+		while (first != null && !first.isWaitingFor(movie)) {
+			line.removeFirstOccurrence(first);
+			first = line.peekFirst();
+		}
+		line.addLast(customer);
+		if (movie.isAvailable()) {
+			allocate(movie, line);
+		}
+	}
+
+	/**
+	 * Takes a customer who no longer has a movie reserved out of its line. If
+	 * the customer reserved the movie again in the meantime, the customer
+	 * goes to the back of the line.
+	 * 
+	 * @param movie
+	 *            movie the customer gave up.
+	 * @param customer
+	 *            customer who gave it up.
+	 */
+	void remove(Movie movie, Customer customer) {
+		ConcurrentLinkedDeque<Customer> line = waiting.get(movie);
+		if (line == null) {
+			return;
+		}
+		while (line.removeFirstOccurrence(customer)) {
+			// Remove every place the customer held
+		}
+		if (customer.isWaitingFor(movie)) {
+			add(movie, customer);
+		}
+	}
+
+	/**
+	 * Hands the copies of a movie that is back in stock to the first waiting
+	 * customers who can take them.
+	 * 
+	 * @param movie
+	 *            movie that is back in stock.
+	 */
+	public void restocked(Movie movie) {
+		ConcurrentLinkedDeque<Customer> line = waiting.get(movie);
+		if (line != null && ALLOCATING.get() != movie) {
+			allocate(movie, line);
+		}
+	}
+
+	/**
+	 * Counts the places in line across every movie. Customers who got their
+	 * copy some other way are counted until their turn comes up.
+	 * 
+	 * @return number of places in line.
+	 */
+	int size() {
+		int size = 0;
+		for (ConcurrentLinkedDeque<Customer> line : waiting.values()) {
+			size += line.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Hands copies of a movie to waiting customers while there are copies.
+	 * Customers who no longer have the movie reserved leave the line.
+	 * Customers who still want it but already have as many movies at home as
+	 * they are allowed keep their place, and so does a customer whose checkout
+	 * fails. The copy a failed checkout puts back goes on to the next
+	 * customer, and the first failure is thrown once the copies are handed
+	 * out.
+	 * 
+	 * @param movie
+	 *            movie to hand out.
+	 * @param line
+	 *            customers waiting for the movie.
+	 */
+	private static void allocate(Movie movie, ConcurrentLinkedDeque<Customer> line) {
+		ArrayDeque<Customer> skipped = new ArrayDeque<Customer>();
+		RuntimeException failure = null;
+		Movie outer = ALLOCATING.get();
+		ALLOCATING.set(movie);
+		try {
+			while (movie.isAvailable()) {
+				Customer customer = line.pollFirst();
+				if (customer == null) {
+					break;
+				}
+				boolean claimed;
+				try {
+					claimed = customer.claim(movie);
+				} catch (RuntimeException e) {
+					skipped.addLast(customer);
+					if (failure == null) {
+						failure = e;
+					}
+					continue;
+				}
+				if (claimed) {
+					if (customer.isWaitingFor(movie)) {
+						// Reserved more than once, so offer the next copy too
+						line.addFirst(customer);
+					}
+				} else if (customer.isWaitingFor(movie)) {
+					skipped.addLast(customer);
+				}
+			}
+		} finally {
+			ALLOCATING.set(outer);
+			Iterator<Customer> back = skipped.descendingIterator();
+			while (back.hasNext()) {
+				line.addFirst(back.next());
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
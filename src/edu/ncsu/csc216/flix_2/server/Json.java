@@ -0,0 +1,265 @@
+package edu.ncsu.csc216.flix_2.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The small part of JSON the rental API needs: writing strings and lists of
+ * lines, and reading a request body that is a single flat object. Values in a
+ * request object are read as strings, whatever their JSON type, so they can
+ * be handled the same way as query parameters.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+final class Json {
+
+	/**
+	 * Hexadecimal digits for escapes.
+	 */
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Not used; the class only has static methods.
+	 */
+	private Json() {
+	}
+
+	/**
+	 * Appends a string as a quoted JSON string.
+	 * 
+	 * @param out
+	 *            builder to append to.
+	 * @param s
+	 *            string to append.
+	 * @return the builder.
+	 */
+	static StringBuilder string(StringBuilder out, String s) {
+		out.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.append('\\').append(c);
+			} else if (c < 0x20) {
+				out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+			} else {
+				out.append(c);
+			}
+		}
+		return out.append('"');
+	}
+
+	/**
+	 * Appends the lines of a newline-separated listing as a JSON array of
+	 * strings.
+	 * 
+	 * @param out
+	 *            builder to append to.
+	 * @param lines
+	 *            lines, each ending with a newline.
+	 * @return the builder.
+	 */
+	static StringBuilder lines(StringBuilder out, String lines) {
+		out.append('[');
+		int start = 0;
+		for (int end = lines.indexOf('\n'); end >= 0; end = lines.indexOf('\n', start)) {
+			if (start > 0) {
+				out.append(',');
+			}
+			string(out, lines.substring(start, end));
+			start = end + 1;
+		}
+		if (start < lines.length()) {
+			if (start > 0) {
+				out.append(',');
+			}
+			string(out, lines.substring(start));
+		}
+		return out.append(']');
+	}
+
+	/**
+	 * Reads a flat JSON object. Nested objects and arrays are not accepted.
+	 * 
+	 * @param text
+	 *            text of the object.
+	 * @return the members of the object, with every value as a string and
+	 *         null values left out.
+	 * @throws IllegalArgumentException
+	 *             if the text is not a flat JSON object.
+	 */
+	static Map<String, String> parseObject(String text) {
+		Reader in = new Reader(text);
+		Map<String, String> members = new HashMap<String, String>();
+		in.expect('{');
+		if (!in.skip('}')) {
+			do {
+				String name = in.string();
+				in.expect(':');
+				String value = in.value();
+				if (value != null) {
+					members.put(name, value);
+				}
+			} while (in.skip(','));
+			in.expect('}');
+		}
+		if (!in.atEnd()) {
+			throw new IllegalArgumentException("Unexpected text after the JSON object.");
+		}
+		return members;
+	}
+
+	/**
+	 * Reads JSON tokens from a string.
+	 */
+	private static class Reader {
+
+		/**
+		 * Text being read.
+		 */
+		private final String text;
+
+		/**
+		 * Position of the next character.
+		 */
+		private int position;
+
+		/**
+		 * Constructor, creates a reader at the start of the text.
+		 * 
+		 * @param text
+		 *            text to read.
+		 */
+		Reader(String text) {
+			this.text = text;
+		}
+
+		/**
+		 * Skips white space and tells whether the text is used up.
+		 * 
+		 * @return true if nothing but white space is left.
+		 */
+		boolean atEnd() {
+			skipWhitespace();
+			return position == text.length();
+		}
+
+		/**
+		 * Skips the given character if it comes next.
+		 * 
+		 * @param c
+		 *            character to skip.
+		 * @return true if it was skipped.
+		 */
+		boolean skip(char c) {
+			skipWhitespace();
+			if (position < text.length() && text.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Skips the given character, which must come next.
+		 * 
+		 * @param c
+		 *            character to skip.
+		 * @throws IllegalArgumentException
+		 *             if the character does not come next.
+		 */
+		void expect(char c) {
+			if (!skip(c)) {
+				throw new IllegalArgumentException("Expected '" + c + "' at " + position + " in the JSON body.");
+			}
+		}
+
+		/**
+		 * Reads a string, number, boolean or null.
+		 * 
+		 * @return the value as a string, or null for null.
+		 * @throws IllegalArgumentException
+		 *             if no such value comes next.
+		 */
+		String value() {
+			skipWhitespace();
+			if (position < text.length() && text.charAt(position) == '"') {
+				return string();
+			}
+			int start = position;
+			while (position < text.length() && "{}[],:\" \t\r\n".indexOf(text.charAt(position)) < 0) {
+				position++;
+			}
+			String literal = text.substring(start, position);
+			if (literal.equals("null")) {
+				return null;
+			}
+			if (literal.equals("true") || literal.equals("false") || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+				return literal;
+			}
+			throw new IllegalArgumentException("Expected a string, number, boolean or null at " + start + " in the JSON body.");
+		}
+
+		/**
+		 * Reads a quoted string.
+		 * 
+		 * @return the string, with its escapes decoded.
+		 * @throws IllegalArgumentException
+		 *             if no well-formed string comes next.
+		 */
+		String string() {
+			expect('"');
+			StringBuilder s = new StringBuilder();
+			while (position < text.length()) {
+				char c = text.charAt(position++);
+				if (c == '"') {
+					return s.toString();
+				}
+				if (c != '\\') {
+					s.append(c);
+				} else if (position < text.length()) {
+					char e = text.charAt(position++);
+					switch (e) {
+					case 'b':
+						s.append('\b');
+						break;
+					case 'f':
+						s.append('\f');
+						break;
+					case 'n':
+						s.append('\n');
+						break;
+					case 'r':
+						s.append('\r');
+						break;
+					case 't':
+						s.append('\t');
+						break;
+					case 'u':
+						if (position + 4 > text.length()) {
+							throw new IllegalArgumentException("Bad escape in the JSON body.");
+						}
+						try {
+							s.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+						} catch (NumberFormatException x) {
+							throw new IllegalArgumentException("Bad escape in the JSON body.");
+						}
+						position += 4;
+						break;
+					default:
+						s.append(e);
+					}
+				}
+			}
+			throw new IllegalArgumentException("Unterminated string in the JSON body.");
+		}
+
+		/**
+		 * Skips spaces, tabs and line endings.
+		 */
+		private void skipWhitespace() {
+			while (position < text.length() && " \t\r\n".indexOf(text.charAt(position)) >= 0) {
+				position++;
+			}
+		}
+	}
+}
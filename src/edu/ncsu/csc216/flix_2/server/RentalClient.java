@@ -0,0 +1,954 @@
+package edu.ncsu.csc216.flix_2.server;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+
+/**
+ * Client for a {@link RentalProtocolServer}. Every operation is queued and
+ * returns a {@link Reply} at once; the queued requests go out together when
+ * the client is flushed, when enough of them have piled up, or when a reply is
+ * asked for. Calling {@link Reply#get()} straight away makes an ordinary
+ * blocking call, while queueing many operations before asking for any reply
+ * sends them as one batch and keeps them all in flight at the same time. The
+ * client keeps reading responses while it writes, so a deep pipeline never
+ * stalls the connection.
+ * 
+ * A client is one connection and is not safe for use by several threads at
+ * once; give each thread its own. If the connection fails, every reply not
+ * yet received fails with an {@link IllegalStateException}, and so does
+ * everything queued afterwards.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class RentalClient implements Closeable {
+
+	/**
+	 * Bytes of queued requests that are sent without waiting for a flush.
+	 */
+	static final int AUTO_FLUSH = 64 * 1024;
+
+	/**
+	 * Starting size of the buffers.
+	 */
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	/**
+	 * Reply with no result.
+	 */
+	private static final byte VOID = 0;
+
+	/**
+	 * Reply whose result is a string.
+	 */
+	private static final byte STRING = 1;
+
+	/**
+	 * Reply whose result is a number.
+	 */
+	private static final byte INT = 2;
+
+	/**
+	 * Reply whose result is a boolean.
+	 */
+	private static final byte BOOLEAN = 3;
+
+	/**
+	 * The connection, in non-blocking mode.
+	 */
+	private final SocketChannel channel;
+
+	/**
+	 * Selector used to wait for the connection.
+	 */
+	private final Selector selector;
+
+	/**
+	 * Requests queued and not yet written.
+	 */
+	private final RentalProtocol.FrameWriter out = new RentalProtocol.FrameWriter(BUFFER_SIZE);
+
+	/**
+	 * Bytes read and not yet decoded, from the start of the buffer to its
+	 * position.
+	 */
+	private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/**
+	 * Replies not yet received, in the order their requests were queued.
+	 */
+	private final ArrayDeque<Reply<?>> pending = new ArrayDeque<Reply<?>>();
+
+	/**
+	 * Id of the next request.
+	 */
+	private int nextId;
+
+	/**
+	 * Size of the queued requests before the frame being written, or -1 if
+	 * no frame is being written.
+	 */
+	private int frameMark = -1;
+
+	/**
+	 * Why the connection failed, or null if it has not.
+	 */
+	private IOException failure;
+
+	/**
+	 * Constructor, creates a client over a connected channel.
+	 * 
+	 * @param channel
+	 *            the connection.
+	 * @throws IOException
+	 *             if the channel cannot be set up.
+	 */
+	private RentalClient(SocketChannel channel) throws IOException {
+		this.channel = channel;
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.configureBlocking(false);
+		this.selector = Selector.open();
+	}
+
+	/**
+	 * Connects to a server.
+	 * 
+	 * @param address
+	 *            address of the server.
+	 * @return a client over the new connection.
+	 * @throws IOException
+	 *             if the connection cannot be made.
+	 */
+	public static RentalClient connect(InetSocketAddress address) throws IOException {
+		SocketChannel channel = SocketChannel.open(address);
+		try {
+			return new RentalClient(channel);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens a session.
+	 * 
+	 * @param id
+	 *            id/username of the user.
+	 * @param password
+	 *            user's password.
+	 * @return reply carrying the token naming the new session.
+	 */
+	public Reply<String> openSession(String id, String password) {
+		RentalProtocol.FrameWriter frame = begin(RentalProtocol.OPEN_SESSION);
+		frame.putString(id).putString(password);
+		return queue(STRING);
+	}
+
+	/**
+	 * Closes a session.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @return reply with no result.
+	 */
+	public Reply<Void> closeSession(String token) {
+		begin(RentalProtocol.CLOSE_SESSION).putString(token);
+		return queue(VOID);
+	}
+
+	/**
+	 * Asks whether a session is open for the administrator.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @return reply carrying true if it is.
+	 */
+	public Reply<Boolean> isAdminSession(String token) {
+		begin(RentalProtocol.IS_ADMIN_SESSION).putString(token);
+		return queue(BOOLEAN);
+	}
+
+	/**
+	 * Adds a customer from an administrator session.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param id
+	 *            id/email for the new customer.
+	 * @param password
+	 *            new customer's password.
+	 * @param maxAtHome
+	 *            maximum number of movies the customer may have at home.
+	 * @return reply with no result.
+	 */
+	public Reply<Void> addNewCustomer(String token, String id, String password, int maxAtHome) {
+		begin(RentalProtocol.ADD_NEW_CUSTOMER).putString(token).putString(id).putString(password).putInt(maxAtHome);
+		return queue(VOID);
+	}
+
+	/**
+	 * Adds many customers from an administrator session; either all of them
+	 * are added or none is.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param ids
+	 *            id/email for each new customer.
+	 * @param passwords
+	 *            password of each new customer.
+	 * @param maxAtHome
+	 *            maximum number of movies each customer may have at home.
+	 * @return reply with no result.
+	 * @throws IllegalArgumentException
+	 *             if the arrays differ in length.
+	 */
+	public Reply<Void> addNewCustomers(String token, String[] ids, String[] passwords, int[] maxAtHome) {
+		if (ids.length != passwords.length || ids.length != maxAtHome.length) {
+			throw new IllegalArgumentException("Every customer needs an id, password and maximum.");
+		}
+		RentalProtocol.FrameWriter frame = begin(RentalProtocol.ADD_NEW_CUSTOMERS).putString(token).putInt(ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			frame.putString(ids[i]).putString(passwords[i]).putInt(maxAtHome[i]);
+		}
+		return queue(VOID);
+	}
+
+	/**
+	 * Cancels an account from an administrator session.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param id
+	 *            id/username of the customer to cancel.
+	 * @return reply with no result.
+	 */
+	public Reply<Void> cancelAccount(String token, String id) {
+		begin(RentalProtocol.CANCEL_ACCOUNT).putString(token).putString(id);
+		return queue(VOID);
+	}
+
+	/**
+	 * Lists one page of the accounts from an administrator session.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param offset
+	 *            number of accounts to skip.
+	 * @param limit
+	 *            largest number of accounts to list.
+	 * @return reply carrying the usernames separated by newlines.
+	 */
+	public Reply<String> listAccounts(String token, int offset, int limit) {
+		begin(RentalProtocol.LIST_ACCOUNTS).putString(token).putInt(offset).putInt(limit);
+		return queue(STRING);
+	}
+
+	/**
+	 * Lists one page of the accounts whose usernames start with a prefix,
+	 * from an administrator session.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param prefix
+	 *            prefix of the usernames to list.
+	 * @param offset
+	 *            number of matching accounts to skip.
+	 * @param limit
+	 *            largest number of accounts to list.
+	 * @return reply carrying the usernames separated by newlines.
+	 */
+	public Reply<String> listAccountsWithPrefix(String token, String prefix, int offset, int limit) {
+		begin(RentalProtocol.LIST_ACCOUNTS_WITH_PREFIX).putString(token).putString(prefix).putInt(offset).putInt(limit);
+		return queue(STRING);
+	}
+
+	/**
+	 * Lists one page of the accounts whose usernames are from the lower
+	 * bound, inclusive, to the upper bound, exclusive, from an administrator
+	 * session.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param from
+	 *            lowest username to list.
+	 * @param to
+	 *            username just past the last one to list.
+	 * @param offset
+	 *            number of matching accounts to skip.
+	 * @param limit
+	 *            largest number of accounts to list.
+	 * @return reply carrying the usernames separated by newlines.
+	 */
+	public Reply<String> listAccountsInRange(String token, String from, String to, int offset, int limit) {
+		begin(RentalProtocol.LIST_ACCOUNTS_IN_RANGE).putString(token).putString(from).putString(to).putInt(offset).putInt(limit);
+		return queue(STRING);
+	}
+
+	/**
+	 * Lists one page of the inventory.
+	 * 
+	 * @param offset
+	 *            position of the first movie on the page.
+	 * @param limit
+	 *            largest number of movies on the page.
+	 * @return reply carrying the display names separated by newlines.
+	 */
+	public Reply<String> showInventory(int offset, int limit) {
+		begin(RentalProtocol.SHOW_INVENTORY).putInt(offset).putInt(limit);
+		return queue(STRING);
+	}
+
+	/**
+	 * Counts the movies in the inventory.
+	 * 
+	 * @return reply carrying the number of movies.
+	 */
+	public Reply<Integer> inventorySize() {
+		begin(RentalProtocol.INVENTORY_SIZE);
+		return queue(INT);
+	}
+
+	/**
+	 * Reserves a movie for the customer of a session.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param position
+	 *            position of the movie in the inventory.
+	 * @return reply with no result.
+	 */
+	public Reply<Void> addToCustomerQueue(String token, int position) {
+		begin(RentalProtocol.ADD_TO_CUSTOMER_QUEUE).putString(token).putInt(position);
+		return queue(VOID);
+	}
+
+	/**
+	 * Reserves many movies for the customer of a session, in the given order.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param positions
+	 *            positions of the movies in the inventory.
+	 * @return reply with no result.
+	 */
+	public Reply<Void> addAllToCustomerQueue(String token, int[] positions) {
+		return batch(RentalProtocol.ADD_ALL_TO_CUSTOMER_QUEUE, token, positions);
+	}
+
+	/**
+	 * Moves a reserve of the customer of a session ahead one.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param position
+	 *            position of the movie in the reserve queue.
+	 * @return reply with no result.
+	 */
+	public Reply<Void> reserveMoveAheadOne(String token, int position) {
+		begin(RentalProtocol.RESERVE_MOVE_AHEAD_ONE).putString(token).putInt(position);
+		return queue(VOID);
+	}
+
+	/**
+	 * Removes a reserve of the customer of a session.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param position
+	 *            position of the movie in the reserve queue.
+	 * @return reply with no result.
+	 */
+	public Reply<Void> removeSelectedFromReserves(String token, int position) {
+		begin(RentalProtocol.REMOVE_SELECTED_FROM_RESERVES).putString(token).putInt(position);
+		return queue(VOID);
+	}
+
+	/**
+	 * Removes many reserves of the customer of a session.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param positions
+	 *            positions of the movies in the reserve queue, in any order.
+	 * @return reply with no result.
+	 */
+	public Reply<Void> removeAllFromReserves(String token, int[] positions) {
+		return batch(RentalProtocol.REMOVE_ALL_FROM_RESERVES, token, positions);
+	}
+
+	/**
+	 * Lists the reserves of the customer of a session.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @return reply carrying the titles separated by newlines.
+	 */
+	public Reply<String> traverseReserveQueue(String token) {
+		begin(RentalProtocol.TRAVERSE_RESERVE_QUEUE).putString(token);
+		return queue(STRING);
+	}
+
+	/**
+	 * Lists the movies the customer of a session has at home.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @return reply carrying the titles separated by newlines.
+	 */
+	public Reply<String> traverseAtHomeQueue(String token) {
+		begin(RentalProtocol.TRAVERSE_AT_HOME_QUEUE).putString(token);
+		return queue(STRING);
+	}
+
+	/**
+	 * Returns a movie the customer of a session has at home.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param position
+	 *            position of the movie in the at home queue.
+	 * @return reply with no result.
+	 */
+	public Reply<Void> returnItemToInventory(String token, int position) {
+		begin(RentalProtocol.RETURN_ITEM_TO_INVENTORY).putString(token).putInt(position);
+		return queue(VOID);
+	}
+
+	/**
+	 * Returns many movies the customer of a session has at home.
+	 * 
+	 * @param token
+	 *            token naming the session.
+	 * @param positions
+	 *            positions of the movies in the at home queue, in any order.
+	 * @return reply with no result.
+	 */
+	public Reply<Void> returnAllToInventory(String token, int[] positions) {
+		return batch(RentalProtocol.RETURN_ALL_TO_INVENTORY, token, positions);
+	}
+
+	/**
+	 * Returns a rental context that makes a blocking call over this client
+	 * for each operation, for code written against {@link RentalManager}.
+	 * 
+	 * @param token
+	 *            token naming a customer session.
+	 * @return rental context of the session's customer.
+	 */
+	public RentalManager getRentalManager(String token) {
+		return new RemoteRentals(token);
+	}
+
+	/**
+	 * Sends every queued request, reading responses meanwhile.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the connection fails.
+	 */
+	public void flush() {
+		try {
+			while (out.size() > 0) {
+				pump();
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Sends every queued request and waits for all the replies.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the connection fails.
+	 */
+	public void sync() {
+		Reply<?> last = pending.peekLast();
+		if (last != null) {
+			await(last);
+		}
+	}
+
+	/**
+	 * Returns the number of replies not yet received.
+	 * 
+	 * @return number of replies.
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Closes the connection. Replies not yet received fail.
+	 * 
+	 * @throws IOException
+	 *             if the connection cannot be closed.
+	 */
+	public void close() throws IOException {
+		if (failure == null) {
+			failure = new EOFException("Client is closed.");
+		}
+		try {
+			selector.close();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Starts a request frame, first dropping any frame left unfinished by an
+	 * argument that could not be written.
+	 * 
+	 * @param opcode
+	 *            opcode of the request.
+	 * @return the frame writer.
+	 * @throws IllegalStateException
+	 *             if the connection has failed.
+	 */
+	private RentalProtocol.FrameWriter begin(byte opcode) {
+		if (failure != null) {
+			throw new IllegalStateException("Connection failed.", failure);
+		}
+		if (frameMark >= 0) {
+			out.truncate(frameMark);
+		}
+		frameMark = out.size();
+		return out.begin(nextId, opcode);
+	}
+
+	/**
+	 * Queues a request that carries a token and a list of positions.
+	 * 
+	 * @param opcode
+	 *            opcode of the request.
+	 * @param token
+	 *            token naming the session.
+	 * @param positions
+	 *            the positions.
+	 * @return reply with no result.
+	 */
+	private Reply<Void> batch(byte opcode, String token, int[] positions) {
+		RentalProtocol.FrameWriter frame = begin(opcode).putString(token).putInt(positions.length);
+		for (int position : positions) {
+			frame.putInt(position);
+		}
+		return queue(VOID);
+	}
+
+	/**
+	 * Finishes the request frame and queues its reply, sending the queued
+	 * requests if enough have piled up.
+	 * 
+	 * @param kind
+	 *            kind of result the reply carries.
+	 * @return the reply.
+	 */
+	private <T> Reply<T> queue(byte kind) {
+		out.end();
+		frameMark = -1;
+		Reply<T> reply = new Reply<T>(this, nextId++, kind);
+		pending.add(reply);
+		if (out.size() >= AUTO_FLUSH) {
+			flush();
+		}
+		return reply;
+	}
+
+	/**
+	 * Sends and reads until the given reply arrives.
+	 * 
+	 * @param reply
+	 *            reply to wait for.
+	 * @throws IllegalStateException
+	 *             if the connection fails.
+	 */
+	private void await(Reply<?> reply) {
+		try {
+			while (!reply.done) {
+				if (failure != null) {
+					throw failure;
+				}
+				pump();
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Writes what the connection takes and reads what has arrived, waiting
+	 * for the connection if neither is possible.
+	 * 
+	 * @throws IOException
+	 *             if the connection fails or the server closes it.
+	 */
+	private void pump() throws IOException {
+		boolean progress = false;
+		if (out.size() > 0) {
+			ByteBuffer bytes = out.flip();
+			progress = channel.write(bytes) > 0;
+			out.compact();
+		}
+		int read = channel.read(in);
+		if (read < 0) {
+			throw new EOFException("Server closed the connection.");
+		}
+		if (read > 0) {
+			progress = true;
+			decode();
+		}
+		if (!progress) {
+			SelectionKey key = channel.register(selector, SelectionKey.OP_READ | (out.size() > 0 ? SelectionKey.OP_WRITE : 0));
+			selector.select();
+			selector.selectedKeys().clear();
+			key.interestOps(0);
+		}
+	}
+
+	/**
+	 * Decodes every complete response in the read buffer into its reply.
+	 * 
+	 * @throws IOException
+	 *             if a response is malformed or does not match the next
+	 *             reply.
+	 */
+	private void decode() throws IOException {
+		in.flip();
+		while (in.remaining() >= 4) {
+			int length = in.getInt(in.position());
+			if (length < RentalProtocol.FRAME_HEADER || length > RentalProtocol.MAX_FRAME) {
+				throw new IOException("Response has an impossible length.");
+			}
+			if (in.remaining() < 4 + length) {
+				break;
+			}
+			int end = in.position() + 4 + length;
+			ByteBuffer response = in.duplicate();
+			response.position(in.position() + 4).limit(end);
+			complete(response.slice());
+			in.position(end);
+		}
+		in.compact();
+		if (in.position() >= 4) {
+			int needed = 4 + in.getInt(0);
+			if (needed > in.capacity()) {
+				ByteBuffer larger = ByteBuffer.allocate(needed);
+				in.flip();
+				larger.put(in);
+				in = larger;
+			}
+		}
+	}
+
+	/**
+	 * Fills in the next reply from a response.
+	 * 
+	 * @param response
+	 *            buffer holding exactly the response, after its length.
+	 * @throws IOException
+	 *             if the response is malformed or does not match the next
+	 *             reply.
+	 */
+	private void complete(ByteBuffer response) throws IOException {
+		Reply<?> reply = pending.poll();
+		int id = response.getInt();
+		if (reply == null || reply.id != id) {
+			throw new IOException("Response " + id + " does not match the next request.");
+		}
+		try {
+			reply.status = response.get();
+			if (reply.status != RentalProtocol.OK) {
+				reply.value = RentalProtocol.getString(response);
+			} else if (reply.kind == STRING) {
+				reply.value = RentalProtocol.getString(response);
+			} else if (reply.kind == INT) {
+				reply.value = Integer.valueOf(response.getInt());
+			} else if (reply.kind == BOOLEAN) {
+				reply.value = Boolean.valueOf(response.get() != 0);
+			}
+		} catch (RuntimeException e) {
+			throw new IOException("Response " + id + " is malformed.", e);
+		}
+		reply.done = true;
+	}
+
+	/**
+	 * Marks the connection failed and throws.
+	 * 
+	 * @param e
+	 *            why it failed.
+	 * @throws IllegalStateException
+	 *             always.
+	 */
+	private void fail(IOException e) {
+		if (failure == null) {
+			failure = e;
+			try {
+				close();
+			} catch (IOException ignored) {
+				// The connection is already broken.
+			}
+		}
+		throw new IllegalStateException("Connection failed.", failure);
+	}
+
+	/**
+	 * Result of an operation, available once its response arrives.
+	 * 
+	 * @param <T>
+	 *            type of the result; Void for operations without one.
+	 */
+	public static final class Reply<T> {
+
+		/**
+		 * Client the request was queued on.
+		 */
+		private final RentalClient client;
+
+		/**
+		 * Id of the request.
+		 */
+		private final int id;
+
+		/**
+		 * Kind of result the reply carries.
+		 */
+		private final byte kind;
+
+		/**
+		 * Whether the response has arrived.
+		 */
+		private boolean done;
+
+		/**
+		 * Status of the response.
+		 */
+		private byte status;
+
+		/**
+		 * Result of the operation, or the message of the error.
+		 */
+		private Object value;
+
+		/**
+		 * Constructor, creates a reply waiting for its response.
+		 * 
+		 * @param client
+		 *            client the request was queued on.
+		 * @param id
+		 *            id of the request.
+		 * @param kind
+		 *            kind of result the reply carries.
+		 */
+		Reply(RentalClient client, int id, byte kind) {
+			this.client = client;
+			this.id = id;
+			this.kind = kind;
+		}
+
+		/**
+		 * Tells whether the response has arrived, without waiting.
+		 * 
+		 * @return true if it has.
+		 */
+		public boolean isDone() {
+			return done;
+		}
+
+		/**
+		 * Returns the result, sending the queued requests and waiting for
+		 * the response if it has not arrived. Fails the same way the
+		 * operation fails in process.
+		 * 
+		 * @return the result, or null for an operation without one.
+		 * @throws IllegalArgumentException
+		 *             if the operation threw it.
+		 * @throws IllegalStateException
+		 *             if the operation threw it, the request could not be
+		 *             decoded, or the connection failed.
+		 */
+		@SuppressWarnings("unchecked")
+		public T get() {
+			if (!done) {
+				client.await(this);
+			}
+			if (status == RentalProtocol.ILLEGAL_ARGUMENT) {
+				throw new IllegalArgumentException((String) value);
+			} else if (status != RentalProtocol.OK) {
+				throw new IllegalStateException((String) value);
+			}
+			return (T) value;
+		}
+	}
+
+	/**
+	 * Rental context of a session, making a blocking call for each
+	 * operation.
+	 */
+	private class RemoteRentals implements RentalManager {
+
+		/**
+		 * Token naming the session.
+		 */
+		private final String token;
+
+		/**
+		 * Constructor, creates the context of a session.
+		 * 
+		 * @param token
+		 *            token naming the session.
+		 */
+		RemoteRentals(String token) {
+			this.token = token;
+		}
+
+		/**
+		 * Lists the whole inventory.
+		 * 
+		 * @return display names separated by newlines.
+		 */
+		public String showInventory() {
+			return RentalClient.this.showInventory(0, Integer.MAX_VALUE).get();
+		}
+
+		/**
+		 * Lists one page of the inventory.
+		 * 
+		 * @param offset
+		 *            position of the first movie on the page.
+		 * @param limit
+		 *            largest number of movies on the page.
+		 * @return display names separated by newlines.
+		 */
+		public String showInventory(int offset, int limit) {
+			return RentalClient.this.showInventory(offset, limit).get();
+		}
+
+		/**
+		 * Counts the movies in the inventory.
+		 * 
+		 * @return number of movies.
+		 */
+		public int inventorySize() {
+			return RentalClient.this.inventorySize().get();
+		}
+
+		/**
+		 * Not supported; the session decides the customer.
+		 * 
+		 * @param c
+		 *            customer.
+		 */
+		public void setCustomer(Customer c) {
+			throw new UnsupportedOperationException("The session decides the customer.");
+		}
+
+		/**
+		 * Not supported; the session decides the customer.
+		 * 
+		 * @param c
+		 *            customer.
+		 * @return nothing.
+		 */
+		public RentalManager openContext(Customer c) {
+			throw new UnsupportedOperationException("The session decides the customer.");
+		}
+
+		/**
+		 * Reserves a movie.
+		 * 
+		 * @param position
+		 *            position of the movie in the inventory.
+		 */
+		public void addToCustomerQueue(int position) {
+			RentalClient.this.addToCustomerQueue(token, position).get();
+		}
+
+		/**
+		 * Reserves many movies, in the given order.
+		 * 
+		 * @param positions
+		 *            positions of the movies in the inventory.
+		 */
+		public void addAllToCustomerQueue(int[] positions) {
+			RentalClient.this.addAllToCustomerQueue(token, positions).get();
+		}
+
+		/**
+		 * Moves a reserve ahead one.
+		 * 
+		 * @param position
+		 *            position of the movie in the reserve queue.
+		 */
+		public void reserveMoveAheadOne(int position) {
+			RentalClient.this.reserveMoveAheadOne(token, position).get();
+		}
+
+		/**
+		 * Removes a reserve.
+		 * 
+		 * @param position
+		 *            position of the movie in the reserve queue.
+		 */
+		public void removeSelectedFromReserves(int position) {
+			RentalClient.this.removeSelectedFromReserves(token, position).get();
+		}
+
+		/**
+		 * Removes many reserves.
+		 * 
+		 * @param positions
+		 *            positions of the movies in the reserve queue.
+		 */
+		public void removeAllFromReserves(int[] positions) {
+			RentalClient.this.removeAllFromReserves(token, positions).get();
+		}
+
+		/**
+		 * Lists the reserves.
+		 * 
+		 * @return titles separated by newlines.
+		 */
+		public String traverseReserveQueue() {
+			return RentalClient.this.traverseReserveQueue(token).get();
+		}
+
+		/**
+		 * Lists the movies at home.
+		 * 
+		 * @return titles separated by newlines.
+		 */
+		public String traverseAtHomeQueue() {
+			return RentalClient.this.traverseAtHomeQueue(token).get();
+		}
+
+		/**
+		 * Returns a movie.
+		 * 
+		 * @param position
+		 *            position of the movie in the at home queue.
+		 */
+		public void returnItemToInventory(int position) {
+			RentalClient.this.returnItemToInventory(token, position).get();
+		}
+
+		/**
+		 * Returns many movies.
+		 * 
+		 * @param positions
+		 *            positions of the movies in the at home queue.
+		 */
+		public void returnAllToInventory(int[] positions) {
+			RentalClient.this.returnAllToInventory(token, positions).get();
+		}
+	}
+}
@@ -0,0 +1,655 @@
+package edu.ncsu.csc216.flix_2.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.ncsu.csc216.flix_2.customer.CustomerAccountManager;
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.persistence.Journal;
+import edu.ncsu.csc216.flix_2.rental_system.AsyncDVDRentalSystem;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+
+/**
+ * Headless HTTP/JSON front end to a rental store, served by the JDK's built-in
+ * HTTP server. Every request runs on its own thread from
+ * {@link AsyncDVDRentalSystem#newVirtualThreadExecutor()}: a virtual thread
+ * on a JDK that has them, and a pooled platform thread otherwise. Requests are stateless apart from the
+ * session token returned by login, which is sent back in an
+ * {@code Authorization: Bearer} header, so any number of kiosks and web
+ * front ends can share one store.
+ * 
+ * Parameters come from the query string, or from a body that is either a
+ * form or a flat JSON object. Responses are JSON objects; a failed request
+ * gets {@code {"error": message}} with status 400 for a bad parameter or
+ * position, 401 for a missing or closed session, 403 for an operation only
+ * the administrator may perform, 404 for an unknown path, 405 for the wrong
+ * method, 409 for an operation the store refuses, and 413 for a body longer
+ * than {@link #MAX_BODY} bytes. Any other failure gets status 500 and a
+ * message that gives nothing of the server away.
+ * 
+ * <ul>
+ * <li>{@code POST /login} with {@code id} and {@code password} opens a
+ * session: {@code {"token": ..., "admin": ...}}.</li>
+ * <li>{@code POST /logout} closes it.</li>
+ * <li>{@code GET /inventory} with optional {@code offset} and {@code limit}
+ * lists one page of the inventory: {@code {"size": ..., "offset": ...,
+ * "titles": [...]}}.</li>
+ * <li>{@code GET /queue} lists the customer's queues:
+ * {@code {"reserves": [...], "atHome": [...]}}.</li>
+ * <li>{@code POST /reserve}, {@code /reorder}, {@code /unreserve} and
+ * {@code /return}, each with a {@code position}, change the queues and list
+ * them.</li>
+ * <li>{@code GET /accounts} with optional {@code prefix}, {@code offset} and
+ * {@code limit}, {@code POST /accounts} with {@code id}, {@code password} and
+ * {@code maxAtHome}, and {@code DELETE /accounts/}<i>id</i> list, add and
+ * cancel accounts from an administrator session.</li>
+ * </ul>
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class RentalHttpServer implements HttpHandler {
+
+	/**
+	 * Number of titles or accounts on a page when no limit is given.
+	 */
+	static final int DEFAULT_LIMIT = 20;
+
+	/**
+	 * Largest number of titles or accounts on a page.
+	 */
+	static final int MAX_LIMIT = 1000;
+
+	/**
+	 * Largest request body read, in bytes.
+	 */
+	static final int MAX_BODY = 64 * 1024;
+
+	/**
+	 * Number of connections the operating system queues while the server is
+	 * busy accepting.
+	 */
+	private static final int BACKLOG = 1024;
+
+	/**
+	 * System property that turns off Nagle's algorithm on the JDK server's
+	 * connections. The server writes the headers and the body of a response
+	 * separately, so without it every response on a keep-alive connection
+	 * waits for the client's delayed acknowledgement, about 40 ms.
+	 */
+	private static final String NO_DELAY = "sun.net.httpserver.nodelay";
+
+	/**
+	 * Encoding of request and response bodies.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Accounts and sessions of the store.
+	 */
+	private final CustomerAccountManager accounts;
+
+	/**
+	 * Inventory of the store, browsed without a session.
+	 */
+	private final RentalManager inventory;
+
+	/**
+	 * Running server, or null if the server is not started.
+	 */
+	private HttpServer server;
+
+	/**
+	 * Executor created by {@link #start(InetSocketAddress)}, shut down when
+	 * the server stops, or null if the caller gave one.
+	 */
+	private ExecutorService ownExecutor;
+
+	/**
+	 * Constructor, creates a server for a store. The server does not listen
+	 * until it is started.
+	 * 
+	 * @param accounts
+	 *            accounts and sessions of the store.
+	 * @param inventory
+	 *            inventory of the store.
+	 * @throws IllegalArgumentException
+	 *             if either is null.
+	 */
+	public RentalHttpServer(CustomerAccountManager accounts, RentalManager inventory) {
+		if (accounts == null || inventory == null) {
+			throw new IllegalArgumentException();
+		}
+		this.accounts = accounts;
+		this.inventory = inventory;
+	}
+
+	/**
+	 * Runs a server for a store whose accounts are kept in a journal.
+	 * Options: {@code -inventory FILE} (required), {@code -port N} (8080 by
+	 * default, 0 for any free port), {@code -journal DIR} and
+	 * {@code -snapshotEvery N}.
+	 * 
+	 * @param args
+	 *            options.
+	 * @throws IOException
+	 *             if the server cannot listen on the port.
+	 * @throws IllegalArgumentException
+	 *             if an option is unknown or has no value, or the inventory
+	 *             file cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		String inventoryFile = null;
+		String journalDirectory = null;
+		int port = 8080;
+		long snapshotEvery = 0;
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + args[i]);
+			}
+			if (args[i].equals("-inventory")) {
+				inventoryFile = args[i + 1];
+			} else if (args[i].equals("-port")) {
+				port = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-journal")) {
+				journalDirectory = args[i + 1];
+			} else if (args[i].equals("-snapshotEvery")) {
+				snapshotEvery = Long.parseLong(args[i + 1]);
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		if (inventoryFile == null) {
+			throw new IllegalArgumentException("Usage: RentalHttpServer -inventory FILE [-port N] [-journal DIR] [-snapshotEvery N]");
+		}
+		DVDRentalSystem store = new DVDRentalSystem(inventoryFile);
+		MovieCustomerAccountSystem system = new MovieCustomerAccountSystem(store);
+		if (journalDirectory != null) {
+			Journal.open(journalDirectory, store, system).setSnapshotInterval(snapshotEvery);
+		}
+		RentalHttpServer server = new RentalHttpServer(system, store);
+		server.start(new InetSocketAddress(port));
+		System.out.println("Serving " + store.inventorySize() + " titles on port " + server.getPort());
+	}
+
+	/**
+	 * Starts listening, running requests on an executor from
+	 * {@link AsyncDVDRentalSystem#newVirtualThreadExecutor()}.
+	 * 
+	 * @param address
+	 *            address to listen on; port 0 picks any free port.
+	 * @throws IOException
+	 *             if the server cannot listen on the address.
+	 * @throws IllegalStateException
+	 *             if the server is already started.
+	 */
+	public synchronized void start(InetSocketAddress address) throws IOException {
+		ExecutorService executor = AsyncDVDRentalSystem.newVirtualThreadExecutor();
+		try {
+			start(address, executor);
+		} catch (IOException e) {
+			executor.shutdown();
+			throw e;
+		}
+		ownExecutor = executor;
+	}
+
+	/**
+	 * Starts listening, running requests on the given executor. The executor
+	 * is not shut down when the server stops. Unless it is already set,
+	 * {@code sun.net.httpserver.nodelay} is set first; it only takes effect
+	 * if this is the first JDK HTTP server in the JVM.
+	 * 
+	 * @param address
+	 *            address to listen on; port 0 picks any free port.
+	 * @param executor
+	 *            executor the requests run on.
+	 * @throws IOException
+	 *             if the server cannot listen on the address.
+	 * @throws IllegalStateException
+	 *             if the server is already started.
+	 * @throws IllegalArgumentException
+	 *             if the executor is null.
+	 */
+	public synchronized void start(InetSocketAddress address, ExecutorService executor) throws IOException {
+		if (executor == null) {
+			throw new IllegalArgumentException();
+		}
+		if (server != null) {
+			throw new IllegalStateException("Server is already started.");
+		}
+		if (System.getProperty(NO_DELAY) == null) {
+			System.setProperty(NO_DELAY, "true");
+		}
+		HttpServer created = HttpServer.create(address, BACKLOG);
+		created.createContext("/", this);
+		created.setExecutor(executor);
+		created.start();
+		server = created;
+	}
+
+	/**
+	 * Returns the port the server listens on.
+	 * 
+	 * @return port number.
+	 * @throws IllegalStateException
+	 *             if the server is not started.
+	 */
+	public synchronized int getPort() {
+		if (server == null) {
+			throw new IllegalStateException("Server is not started.");
+		}
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops listening and closes every connection. Stopping a server that is
+	 * not started does nothing.
+	 */
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(0);
+			server = null;
+		}
+		if (ownExecutor != null) {
+			ownExecutor.shutdown();
+			ownExecutor = null;
+		}
+	}
+
+	/**
+	 * Answers one request.
+	 * 
+	 * @param exchange
+	 *            request and its response.
+	 */
+	public void handle(HttpExchange exchange) {
+		int status;
+		StringBuilder body = new StringBuilder(256);
+		try {
+			Map<String, String> params = params(exchange);
+			status = dispatch(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), token(exchange), params, body);
+		} catch (Failure e) {
+			status = e.status;
+			error(body, e.getMessage());
+		} catch (IllegalArgumentException e) {
+			status = 400;
+			error(body, e.getMessage());
+		} catch (IllegalStateException e) {
+			status = 409;
+			error(body, e.getMessage());
+		} catch (IOException e) {
+			exchange.close();
+			return;
+		} catch (RuntimeException e) {
+			status = 500;
+			error(body, "Request failed on the server.");
+		}
+		try {
+			byte[] bytes = body.toString().getBytes(UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(status, bytes.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		} catch (IOException e) {
+			// The client went away; there is nobody to tell.
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Runs the operation a request names.
+	 * 
+	 * @param method
+	 *            HTTP method of the request.
+	 * @param path
+	 *            decoded path of the request.
+	 * @param token
+	 *            session token of the request, or null if it has none.
+	 * @param params
+	 *            parameters of the request.
+	 * @param body
+	 *            where the JSON response is written.
+	 * @return HTTP status of the response.
+	 */
+	private int dispatch(String method, String path, String token, Map<String, String> params, StringBuilder body) {
+		if (path.equals("/login")) {
+			requireMethod(method, "POST");
+			String session;
+			try {
+				session = accounts.openSession(required(params, "id"), required(params, "password"));
+			} catch (IllegalArgumentException e) {
+				throw new Failure(401, e.getMessage());
+			}
+			Json.string(body.append("{\"token\":"), session);
+			body.append(",\"admin\":").append(accounts.isAdminSession(session)).append('}');
+			return 200;
+		} else if (path.equals("/logout")) {
+			requireMethod(method, "POST");
+			accounts.closeSession(token);
+			body.append("{}");
+			return 200;
+		} else if (path.equals("/inventory")) {
+			requireMethod(method, "GET");
+			int offset = number(params, "offset", 0);
+			int limit = Math.min(number(params, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+			body.append("{\"size\":").append(inventory.inventorySize()).append(",\"offset\":").append(offset).append(",\"titles\":");
+			Json.lines(body, inventory.showInventory(offset, limit)).append('}');
+			return 200;
+		} else if (path.equals("/queue")) {
+			requireMethod(method, "GET");
+			queues(body, customer(token));
+			return 200;
+		} else if (path.equals("/reserve") || path.equals("/reorder") || path.equals("/unreserve") || path.equals("/return")) {
+			requireMethod(method, "POST");
+			RentalManager rentals = customer(token);
+			int position = Integer.parseInt(required(params, "position"));
+			if (path.equals("/reserve")) {
+				rentals.addToCustomerQueue(position);
+			} else if (path.equals("/reorder")) {
+				rentals.reserveMoveAheadOne(position);
+			} else if (path.equals("/unreserve")) {
+				rentals.removeSelectedFromReserves(position);
+			} else {
+				rentals.returnItemToInventory(position);
+			}
+			queues(body, rentals);
+			return 200;
+		} else if (path.equals("/accounts")) {
+			requireAdmin(token);
+			if (method.equals("GET")) {
+				int offset = number(params, "offset", 0);
+				int limit = Math.min(number(params, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+				String prefix = params.get("prefix");
+				String page = prefix == null ? accounts.listAccounts(offset, limit) : accounts.listAccountsWithPrefix(prefix, offset, limit);
+				Json.lines(body.append("{\"accounts\":"), page).append('}');
+				return 200;
+			}
+			requireMethod(method, "POST");
+			String id = required(params, "id");
+			accounts.addNewCustomer(token, id, required(params, "password"), Integer.parseInt(required(params, "maxAtHome")));
+			Json.string(body.append("{\"id\":"), id).append('}');
+			return 201;
+		} else if (path.startsWith("/accounts/") && path.length() > "/accounts/".length()) {
+			requireAdmin(token);
+			requireMethod(method, "DELETE");
+			accounts.cancelAccount(token, path.substring("/accounts/".length()));
+			body.append("{}");
+			return 200;
+		}
+		throw new Failure(404, "No such resource: " + path);
+	}
+
+	/**
+	 * Writes the queues of a customer.
+	 * 
+	 * @param body
+	 *            where the JSON response is written.
+	 * @param rentals
+	 *            rental context of the customer.
+	 */
+	private static void queues(StringBuilder body, RentalManager rentals) {
+		Json.lines(body.append("{\"reserves\":"), rentals.traverseReserveQueue());
+		Json.lines(body.append(",\"atHome\":"), rentals.traverseAtHomeQueue()).append('}');
+	}
+
+	/**
+	 * Returns the rental context of a customer session.
+	 * 
+	 * @param token
+	 *            session token of the request.
+	 * @return rental context of the session's customer.
+	 * @throws Failure
+	 *             with status 401 if the token does not name an open customer
+	 *             session.
+	 */
+	private RentalManager customer(String token) {
+		try {
+			return accounts.getRentalManager(token);
+		} catch (IllegalStateException e) {
+			throw new Failure(401, e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that a request comes from an administrator session.
+	 * 
+	 * @param token
+	 *            session token of the request.
+	 * @throws Failure
+	 *             with status 403 if it does not.
+	 */
+	private void requireAdmin(String token) {
+		if (!accounts.isAdminSession(token)) {
+			throw new Failure(403, "Access denied.");
+		}
+	}
+
+	/**
+	 * Checks the method of a request.
+	 * 
+	 * @param method
+	 *            method of the request.
+	 * @param expected
+	 *            method the resource takes.
+	 * @throws Failure
+	 *             with status 405 if they differ.
+	 */
+	private static void requireMethod(String method, String expected) {
+		if (!method.equals(expected)) {
+			throw new Failure(405, "Use " + expected + ".");
+		}
+	}
+
+	/**
+	 * Returns a parameter that must be present.
+	 * 
+	 * @param params
+	 *            parameters of the request.
+	 * @param name
+	 *            name of the parameter.
+	 * @return value of the parameter.
+	 * @throws IllegalArgumentException
+	 *             if the parameter is missing.
+	 */
+	private static String required(Map<String, String> params, String name) {
+		String value = params.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("Missing parameter " + name + ".");
+		}
+		return value;
+	}
+
+	/**
+	 * Returns a whole number parameter, or a default if it is missing.
+	 * 
+	 * @param params
+	 *            parameters of the request.
+	 * @param name
+	 *            name of the parameter.
+	 * @param missing
+	 *            value when the parameter is missing.
+	 * @return value of the parameter.
+	 * @throws IllegalArgumentException
+	 *             if the parameter is not a whole number.
+	 */
+	private static int number(Map<String, String> params, String name, int missing) {
+		String value = params.get(name);
+		return value == null ? missing : Integer.parseInt(value);
+	}
+
+	/**
+	 * Returns the session token of a request.
+	 * 
+	 * @param exchange
+	 *            request.
+	 * @return token from the Authorization header, or null if there is none.
+	 */
+	private static String token(HttpExchange exchange) {
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		if (authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+			return null;
+		}
+		return authorization.substring(7).trim();
+	}
+
+	/**
+	 * Reads the parameters of a request from its query string and body.
+	 * Body parameters win over query parameters of the same name.
+	 * 
+	 * @param exchange
+	 *            request.
+	 * @return parameters of the request.
+	 * @throws IOException
+	 *             if the body cannot be read.
+	 * @throws IllegalArgumentException
+	 *             if the body is JSON but not a flat object.
+	 * @throws Failure
+	 *             with status 413 if the body is longer than
+	 *             {@link #MAX_BODY} bytes.
+	 */
+	private static Map<String, String> params(HttpExchange exchange) throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			decodeForm(query, params);
+		}
+		String length = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (length != null && length.length() > 0) {
+			try {
+				if (Long.parseLong(length.trim()) > MAX_BODY) {
+					throw new Failure(413, "Body is longer than " + MAX_BODY + " bytes.");
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Bad Content-Length.");
+			}
+		}
+		String body = readBody(exchange.getRequestBody());
+		if (!body.isEmpty()) {
+			String type = exchange.getRequestHeaders().getFirst("Content-Type");
+			if (type != null && type.toLowerCase().startsWith("application/json")) {
+				params.putAll(Json.parseObject(body));
+			} else {
+				decodeForm(body, params);
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * Reads a request body to the end, counting the bytes as they come, as a
+	 * chunked body has no length to check up front.
+	 * 
+	 * @param in
+	 *            request body.
+	 * @return the body as text.
+	 * @throws IOException
+	 *             if the body cannot be read.
+	 * @throws Failure
+	 *             with status 413 if the body is longer than
+	 *             {@link #MAX_BODY} bytes.
+	 */
+	private static String readBody(InputStream in) throws IOException {
+		try {
+			byte[] buffer = new byte[1024];
+			int read = in.read(buffer);
+			if (read < 0) {
+				return "";
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			while (read >= 0) {
+				if (bytes.size() + read > MAX_BODY) {
+					throw new Failure(413, "Body is longer than " + MAX_BODY + " bytes.");
+				}
+				bytes.write(buffer, 0, read);
+				read = in.read(buffer);
+			}
+			return new String(bytes.toByteArray(), UTF_8);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Decodes form parameters such as "id=a%40b.com&amp;password=x".
+	 * 
+	 * @param form
+	 *            encoded parameters.
+	 * @param params
+	 *            where the parameters are put.
+	 * @throws IllegalArgumentException
+	 *             if an escape is malformed.
+	 */
+	private static void decodeForm(String form, Map<String, String> params) {
+		try {
+			for (String pair : form.split("&")) {
+				if (!pair.isEmpty()) {
+					int equals = pair.indexOf('=');
+					if (equals < 0) {
+						params.put(URLDecoder.decode(pair, "UTF-8"), "");
+					} else {
+						params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"), URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+					}
+				}
+			}
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes an error response.
+	 * 
+	 * @param body
+	 *            where the JSON response is written; anything already in it
+	 *            is dropped.
+	 * @param message
+	 *            message of the error, or null for none.
+	 */
+	private static void error(StringBuilder body, String message) {
+		body.setLength(0);
+		Json.string(body.append("{\"error\":"), message == null ? "Bad request." : message).append('}');
+	}
+
+	/**
+	 * A request that fails with a particular HTTP status.
+	 */
+	private static class Failure extends RuntimeException {
+
+		/** ID for serialization */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * HTTP status of the response.
+		 */
+		private final int status;
+
+		/**
+		 * Constructor, creates a failure.
+		 * 
+		 * @param status
+		 *            HTTP status of the response.
+		 * @param message
+		 *            message of the error.
+		 */
+		Failure(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+}
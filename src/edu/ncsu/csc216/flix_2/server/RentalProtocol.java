@@ -0,0 +1,387 @@
+package edu.ncsu.csc216.flix_2.server;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Binary request and response format spoken by {@link RentalProtocolServer}
+ * and {@link RentalClient}. Every message is a frame: a four-byte length of
+ * the rest of the frame, a four-byte request id chosen by the client, and a
+ * one-byte opcode in a request or status in a response, followed by the
+ * arguments or the result. Numbers are big-endian, and strings are a
+ * four-byte length followed by that many bytes of UTF-8.
+ * 
+ * There is one opcode for each operation of
+ * {@link edu.ncsu.csc216.flix_2.customer.CustomerAccountManager} and
+ * {@link edu.ncsu.csc216.flix_2.rental_system.RentalManager} that makes sense
+ * across a connection; the customer operations name their session by token,
+ * and the account listings, unlike their in-process counterparts, need an
+ * administrator token. A connection answers its requests in the order they
+ * arrive, so a client may send any number of requests before reading the
+ * responses. A response with status {@link #OK} carries the result of the
+ * operation, if it has one; any other status carries the message of the
+ * error.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public final class RentalProtocol {
+
+	/**
+	 * Opens a session. Arguments: id, password. Result: token.
+	 */
+	public static final byte OPEN_SESSION = 1;
+
+	/**
+	 * Closes a session. Arguments: token.
+	 */
+	public static final byte CLOSE_SESSION = 2;
+
+	/**
+	 * Tells whether a session is open for the administrator. Arguments: token.
+	 * Result: one byte, 1 for yes.
+	 */
+	public static final byte IS_ADMIN_SESSION = 3;
+
+	/**
+	 * Adds a customer. Arguments: administrator token, id, password, maximum
+	 * number of movies at home.
+	 */
+	public static final byte ADD_NEW_CUSTOMER = 4;
+
+	/**
+	 * Cancels an account. Arguments: administrator token, id.
+	 */
+	public static final byte CANCEL_ACCOUNT = 5;
+
+	/**
+	 * Lists a page of the accounts. Arguments: administrator token, offset,
+	 * limit. Result: usernames separated by newlines.
+	 */
+	public static final byte LIST_ACCOUNTS = 6;
+
+	/**
+	 * Lists a page of the accounts whose usernames start with a prefix.
+	 * Arguments: administrator token, prefix, offset, limit. Result: usernames
+	 * separated by newlines.
+	 */
+	public static final byte LIST_ACCOUNTS_WITH_PREFIX = 7;
+
+	/**
+	 * Lists a page of the accounts whose usernames are in a range.
+	 * Arguments: administrator token, lower bound, upper bound, offset, limit.
+	 * Result: usernames separated by newlines.
+	 */
+	public static final byte LIST_ACCOUNTS_IN_RANGE = 8;
+
+	/**
+	 * Adds many customers at once. Arguments: administrator token, number of
+	 * customers, then the id, password and maximum number of movies at home
+	 * of each.
+	 */
+	public static final byte ADD_NEW_CUSTOMERS = 9;
+
+	/**
+	 * Lists a page of the inventory. Arguments: offset, limit. Result: display
+	 * names separated by newlines.
+	 */
+	public static final byte SHOW_INVENTORY = 16;
+
+	/**
+	 * Counts the movies in the inventory. Result: number of movies.
+	 */
+	public static final byte INVENTORY_SIZE = 17;
+
+	/**
+	 * Reserves a movie. Arguments: customer token, inventory position.
+	 */
+	public static final byte ADD_TO_CUSTOMER_QUEUE = 18;
+
+	/**
+	 * Moves a reserve ahead one. Arguments: customer token, queue position.
+	 */
+	public static final byte RESERVE_MOVE_AHEAD_ONE = 19;
+
+	/**
+	 * Removes a reserve. Arguments: customer token, queue position.
+	 */
+	public static final byte REMOVE_SELECTED_FROM_RESERVES = 20;
+
+	/**
+	 * Lists the reserves. Arguments: customer token. Result: titles separated
+	 * by newlines.
+	 */
+	public static final byte TRAVERSE_RESERVE_QUEUE = 21;
+
+	/**
+	 * Lists the movies at home. Arguments: customer token. Result: titles
+	 * separated by newlines.
+	 */
+	public static final byte TRAVERSE_AT_HOME_QUEUE = 22;
+
+	/**
+	 * Returns a movie. Arguments: customer token, queue position.
+	 */
+	public static final byte RETURN_ITEM_TO_INVENTORY = 23;
+
+	/**
+	 * Reserves many movies. Arguments: customer token, number of positions,
+	 * then each inventory position.
+	 */
+	public static final byte ADD_ALL_TO_CUSTOMER_QUEUE = 24;
+
+	/**
+	 * Removes many reserves. Arguments: customer token, number of positions,
+	 * then each queue position.
+	 */
+	public static final byte REMOVE_ALL_FROM_RESERVES = 25;
+
+	/**
+	 * Returns many movies. Arguments: customer token, number of positions,
+	 * then each queue position.
+	 */
+	public static final byte RETURN_ALL_TO_INVENTORY = 26;
+
+	/**
+	 * Status of a response to an operation that succeeded.
+	 */
+	public static final byte OK = 0;
+
+	/**
+	 * Status of a response to an operation that threw
+	 * {@link IllegalArgumentException}.
+	 */
+	public static final byte ILLEGAL_ARGUMENT = 1;
+
+	/**
+	 * Status of a response to an operation that threw
+	 * {@link IllegalStateException}, or that needs a session the token does not
+	 * name.
+	 */
+	public static final byte ILLEGAL_STATE = 2;
+
+	/**
+	 * Status of a response to a request that could not be decoded.
+	 */
+	public static final byte BAD_REQUEST = 3;
+
+	/**
+	 * Largest frame either side accepts, not counting the length itself.
+	 */
+	public static final int MAX_FRAME = 16 << 20;
+
+	/**
+	 * Size of the part of a frame after the length that every frame has: the
+	 * request id and the opcode or status.
+	 */
+	static final int FRAME_HEADER = 5;
+
+	/**
+	 * Encoding of strings.
+	 */
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Not used; the class only has constants and static methods.
+	 */
+	private RentalProtocol() {
+	}
+
+	/**
+	 * Reads a string.
+	 * 
+	 * @param buffer
+	 *            buffer positioned at the length of the string.
+	 * @return the string.
+	 * @throws BufferUnderflowException
+	 *             if the buffer ends before the string does.
+	 * @throws IllegalArgumentException
+	 *             if the length is negative.
+	 */
+	static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			throw new IllegalArgumentException("Negative string length.");
+		}
+		if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+		buffer.position(buffer.position() + length);
+		return s;
+	}
+
+	/**
+	 * Frames written into a buffer that grows as needed.
+	 */
+	static class FrameWriter {
+
+		/**
+		 * Frames written so far, from the start of the buffer to its position.
+		 */
+		private ByteBuffer buffer;
+
+		/**
+		 * Position of the length of the frame being written.
+		 */
+		private int frameStart;
+
+		/**
+		 * Constructor, creates a writer.
+		 * 
+		 * @param capacity
+		 *            starting size of the buffer.
+		 */
+		FrameWriter(int capacity) {
+			buffer = ByteBuffer.allocate(capacity);
+		}
+
+		/**
+		 * Starts a frame.
+		 * 
+		 * @param id
+		 *            request id.
+		 * @param code
+		 *            opcode or status.
+		 * @return this writer.
+		 */
+		FrameWriter begin(int id, byte code) {
+			ensure(4 + FRAME_HEADER);
+			frameStart = buffer.position();
+			buffer.putInt(0).putInt(id).put(code);
+			return this;
+		}
+
+		/**
+		 * Writes a number.
+		 * 
+		 * @param value
+		 *            number to write.
+		 * @return this writer.
+		 */
+		FrameWriter putInt(int value) {
+			ensure(4);
+			buffer.putInt(value);
+			return this;
+		}
+
+		/**
+		 * Writes a byte.
+		 * 
+		 * @param value
+		 *            byte to write.
+		 * @return this writer.
+		 */
+		FrameWriter put(byte value) {
+			ensure(1);
+			buffer.put(value);
+			return this;
+		}
+
+		/**
+		 * Writes the remaining bytes of a buffer, such as whole frames taken
+		 * from another writer.
+		 * 
+		 * @param bytes
+		 *            buffer holding the bytes; its position moves to its
+		 *            limit.
+		 * @return this writer.
+		 */
+		FrameWriter put(ByteBuffer bytes) {
+			ensure(bytes.remaining());
+			buffer.put(bytes);
+			return this;
+		}
+
+		/**
+		 * Writes a string.
+		 * 
+		 * @param s
+		 *            string to write.
+		 * @return this writer.
+		 * @throws IllegalArgumentException
+		 *             if the string is null.
+		 */
+		FrameWriter putString(String s) {
+			if (s == null) {
+				throw new IllegalArgumentException();
+			}
+			byte[] bytes = s.getBytes(UTF_8);
+			ensure(4 + bytes.length);
+			buffer.putInt(bytes.length).put(bytes);
+			return this;
+		}
+
+		/**
+		 * Finishes the frame by filling in its length.
+		 * 
+		 * @throws IllegalArgumentException
+		 *             if the frame is larger than MAX_FRAME.
+		 */
+		void end() {
+			int length = buffer.position() - frameStart - 4;
+			if (length > MAX_FRAME) {
+				buffer.position(frameStart);
+				throw new IllegalArgumentException("Frame is too large.");
+			}
+			buffer.putInt(frameStart, length);
+		}
+
+		/**
+		 * Drops everything written after the given size.
+		 * 
+		 * @param size
+		 *            number of bytes to keep, from an earlier {@link #size()}.
+		 */
+		void truncate(int size) {
+			buffer.position(size);
+		}
+
+		/**
+		 * Returns the number of bytes written and not yet taken.
+		 * 
+		 * @return number of bytes.
+		 */
+		int size() {
+			return buffer.position();
+		}
+
+		/**
+		 * Returns the buffer, flipped for taking the bytes written. Call
+		 * {@link #compact()} once done taking.
+		 * 
+		 * @return the buffer.
+		 */
+		ByteBuffer flip() {
+			buffer.flip();
+			return buffer;
+		}
+
+		/**
+		 * Keeps the bytes not taken since {@link #flip()} and goes back to
+		 * writing after them.
+		 */
+		void compact() {
+			buffer.compact();
+		}
+
+		/**
+		 * Makes room for the given number of bytes.
+		 * 
+		 * @param bytes
+		 *            number of bytes about to be written.
+		 */
+		private void ensure(int bytes) {
+			if (buffer.remaining() < bytes) {
+				int capacity = buffer.capacity();
+				while (capacity - buffer.position() < bytes) {
+					capacity *= 2;
+				}
+				ByteBuffer larger = ByteBuffer.allocate(capacity);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+		}
+	}
+}
@@ -0,0 +1,936 @@
+package edu.ncsu.csc216.flix_2.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import edu.ncsu.csc216.flix_2.customer.CustomerAccountManager;
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.persistence.Journal;
+import edu.ncsu.csc216.flix_2.rental_system.AsyncDVDRentalSystem;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+
+/**
+ * Serves the {@link RentalProtocol} over NIO socket channels. A few event
+ * loops, each a single thread with its own selector, share the connections;
+ * the first loop also accepts them. A loop reads every complete request a
+ * connection has sent and hands them together to an executor, which runs
+ * them in order and gives the responses back to the loop to write, so a
+ * client that pipelines or batches its requests gets them answered with one
+ * read and one write. A connection has at most one such batch running, and
+ * is not read while it runs, so its requests are answered in the order they
+ * were sent. A connection whose responses pile up past {@link #HIGH_WATER}
+ * bytes is not read again until they drain.
+ * 
+ * Operations never run on the loop threads, so a change waiting for its
+ * journal record to be forced holds up only its own connection, and the
+ * forces of changes running side by side are shared by group commit.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class RentalProtocolServer {
+
+	/**
+	 * Bytes of responses a connection may have waiting before it is no
+	 * longer read.
+	 */
+	static final int HIGH_WATER = 1 << 20;
+
+	/**
+	 * Starting size of each connection's buffers.
+	 */
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	/**
+	 * Accounts and sessions of the store.
+	 */
+	private final CustomerAccountManager accounts;
+
+	/**
+	 * Inventory of the store.
+	 */
+	private final RentalManager inventory;
+
+	/**
+	 * Channel accepting connections, or null if the server is not started.
+	 */
+	private ServerSocketChannel listener;
+
+	/**
+	 * Event loops, or null if the server is not started.
+	 */
+	private EventLoop[] loops;
+
+	/**
+	 * Executor the requests run on, or null if the server is not started.
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * Executor created by {@link #start(InetSocketAddress, int)}, shut down
+	 * when the server stops, or null if the caller gave one.
+	 */
+	private ExecutorService ownExecutor;
+
+	/**
+	 * Constructor, creates a server for a store. The server does not listen
+	 * until it is started.
+	 * 
+	 * @param accounts
+	 *            accounts and sessions of the store.
+	 * @param inventory
+	 *            inventory of the store.
+	 * @throws IllegalArgumentException
+	 *             if either is null.
+	 */
+	public RentalProtocolServer(CustomerAccountManager accounts, RentalManager inventory) {
+		if (accounts == null || inventory == null) {
+			throw new IllegalArgumentException();
+		}
+		this.accounts = accounts;
+		this.inventory = inventory;
+	}
+
+	/**
+	 * Runs a server for a store whose accounts are kept in a journal.
+	 * Options: {@code -inventory FILE} (required), {@code -port N} (7070 by
+	 * default, 0 for any free port), {@code -loops N} (one per processor by
+	 * default), {@code -journal DIR} and {@code -snapshotEvery N}.
+	 * 
+	 * @param args
+	 *            options.
+	 * @throws IOException
+	 *             if the server cannot listen on the port.
+	 * @throws IllegalArgumentException
+	 *             if an option is unknown or has no value, or the inventory
+	 *             file cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		String inventoryFile = null;
+		String journalDirectory = null;
+		int port = 7070;
+		int loopCount = Runtime.getRuntime().availableProcessors();
+		long snapshotEvery = 0;
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + args[i]);
+			}
+			if (args[i].equals("-inventory")) {
+				inventoryFile = args[i + 1];
+			} else if (args[i].equals("-port")) {
+				port = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-loops")) {
+				loopCount = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-journal")) {
+				journalDirectory = args[i + 1];
+			} else if (args[i].equals("-snapshotEvery")) {
+				snapshotEvery = Long.parseLong(args[i + 1]);
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		if (inventoryFile == null) {
+			throw new IllegalArgumentException(
+					"Usage: RentalProtocolServer -inventory FILE [-port N] [-loops N] [-journal DIR] [-snapshotEvery N]");
+		}
+		DVDRentalSystem store = new DVDRentalSystem(inventoryFile);
+		MovieCustomerAccountSystem system = new MovieCustomerAccountSystem(store);
+		if (journalDirectory != null) {
+			Journal.open(journalDirectory, store, system).setSnapshotInterval(snapshotEvery);
+		}
+		RentalProtocolServer server = new RentalProtocolServer(system, store);
+		server.start(new InetSocketAddress(port), loopCount);
+		System.out.println("Serving " + store.inventorySize() + " titles on port " + server.getPort());
+	}
+
+	/**
+	 * Starts listening with one event loop per processor.
+	 * 
+	 * @param address
+	 *            address to listen on; port 0 picks any free port.
+	 * @throws IOException
+	 *             if the server cannot listen on the address.
+	 * @throws IllegalStateException
+	 *             if the server is already started.
+	 */
+	public void start(InetSocketAddress address) throws IOException {
+		start(address, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Starts listening, running requests on an executor from
+	 * {@link AsyncDVDRentalSystem#newVirtualThreadExecutor()}.
+	 * 
+	 * @param address
+	 *            address to listen on; port 0 picks any free port.
+	 * @param loopCount
+	 *            number of event loops.
+	 * @throws IOException
+	 *             if the server cannot listen on the address.
+	 * @throws IllegalStateException
+	 *             if the server is already started.
+	 * @throws IllegalArgumentException
+	 *             if the number of loops is not positive.
+	 */
+	public synchronized void start(InetSocketAddress address, int loopCount) throws IOException {
+		ExecutorService created = AsyncDVDRentalSystem.newVirtualThreadExecutor();
+		try {
+			start(address, loopCount, created);
+		} catch (IOException e) {
+			created.shutdown();
+			throw e;
+		} catch (RuntimeException e) {
+			created.shutdown();
+			throw e;
+		}
+		ownExecutor = created;
+	}
+
+	/**
+	 * Starts listening, running requests on the given executor. The executor
+	 * is not shut down when the server stops.
+	 * 
+	 * @param address
+	 *            address to listen on; port 0 picks any free port.
+	 * @param loopCount
+	 *            number of event loops.
+	 * @param requestExecutor
+	 *            executor the requests run on.
+	 * @throws IOException
+	 *             if the server cannot listen on the address.
+	 * @throws IllegalStateException
+	 *             if the server is already started.
+	 * @throws IllegalArgumentException
+	 *             if the number of loops is not positive or the executor is
+	 *             null.
+	 */
+	public synchronized void start(InetSocketAddress address, int loopCount, ExecutorService requestExecutor)
+			throws IOException {
+		if (loopCount <= 0 || requestExecutor == null) {
+			throw new IllegalArgumentException();
+		}
+		if (listener != null) {
+			throw new IllegalStateException("Server is already started.");
+		}
+		ServerSocketChannel channel = ServerSocketChannel.open();
+		EventLoop[] created = new EventLoop[loopCount];
+		try {
+			channel.bind(address, 1024);
+			channel.configureBlocking(false);
+			for (int i = 0; i < loopCount; i++) {
+				created[i] = new EventLoop(i);
+			}
+			channel.register(created[0].selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			for (EventLoop loop : created) {
+				if (loop != null) {
+					loop.selector.close();
+				}
+			}
+			channel.close();
+			throw e;
+		}
+		listener = channel;
+		loops = created;
+		executor = requestExecutor;
+		for (EventLoop loop : created) {
+			loop.thread.start();
+		}
+	}
+
+	/**
+	 * Returns the port the server listens on.
+	 * 
+	 * @return port number.
+	 * @throws IllegalStateException
+	 *             if the server is not started.
+	 */
+	public synchronized int getPort() {
+		if (listener == null) {
+			throw new IllegalStateException("Server is not started.");
+		}
+		return listener.socket().getLocalPort();
+	}
+
+	/**
+	 * Stops listening, closes every connection, and waits for the event
+	 * loops to finish. Requests already running finish, but their responses
+	 * are dropped. Stopping a server that is not started does nothing.
+	 */
+	public synchronized void stop() {
+		if (listener == null) {
+			return;
+		}
+		for (EventLoop loop : loops) {
+			loop.running = false;
+			loop.selector.wakeup();
+		}
+		boolean interrupted = false;
+		for (EventLoop loop : loops) {
+			while (loop.thread.isAlive()) {
+				try {
+					loop.thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		closeQuietly(listener);
+		listener = null;
+		loops = null;
+		executor = null;
+		if (ownExecutor != null) {
+			ownExecutor.shutdown();
+			ownExecutor = null;
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Runs one request and writes its response. A failure the operation does
+	 * not expect is answered as an illegal state, without its details, so it
+	 * fails only the request.
+	 * 
+	 * @param request
+	 *            buffer holding exactly the request, after its length.
+	 * @param out
+	 *            where the response is written.
+	 */
+	void execute(ByteBuffer request, RentalProtocol.FrameWriter out) {
+		int id = request.getInt();
+		byte opcode = request.get();
+		int mark = out.size();
+		try {
+			switch (opcode) {
+			case RentalProtocol.OPEN_SESSION: {
+				String user = RentalProtocol.getString(request);
+				String password = RentalProtocol.getString(request);
+				checkEnd(request);
+				out.begin(id, RentalProtocol.OK).putString(accounts.openSession(user, password));
+				break;
+			}
+			case RentalProtocol.CLOSE_SESSION: {
+				String token = RentalProtocol.getString(request);
+				checkEnd(request);
+				accounts.closeSession(token);
+				out.begin(id, RentalProtocol.OK);
+				break;
+			}
+			case RentalProtocol.IS_ADMIN_SESSION: {
+				String token = RentalProtocol.getString(request);
+				checkEnd(request);
+				out.begin(id, RentalProtocol.OK).put((byte) (accounts.isAdminSession(token) ? 1 : 0));
+				break;
+			}
+			case RentalProtocol.ADD_NEW_CUSTOMER: {
+				String token = RentalProtocol.getString(request);
+				String user = RentalProtocol.getString(request);
+				String password = RentalProtocol.getString(request);
+				int maxAtHome = request.getInt();
+				checkEnd(request);
+				accounts.addNewCustomer(token, user, password, maxAtHome);
+				out.begin(id, RentalProtocol.OK);
+				break;
+			}
+			case RentalProtocol.ADD_NEW_CUSTOMERS: {
+				String token = RentalProtocol.getString(request);
+				int count = getCount(request, 12);
+				String[] users = new String[count];
+				String[] passwords = new String[count];
+				int[] maxAtHome = new int[count];
+				for (int i = 0; i < count; i++) {
+					users[i] = RentalProtocol.getString(request);
+					passwords[i] = RentalProtocol.getString(request);
+					maxAtHome[i] = request.getInt();
+				}
+				checkEnd(request);
+				accounts.addNewCustomers(token, users, passwords, maxAtHome);
+				out.begin(id, RentalProtocol.OK);
+				break;
+			}
+			case RentalProtocol.CANCEL_ACCOUNT: {
+				String token = RentalProtocol.getString(request);
+				String user = RentalProtocol.getString(request);
+				checkEnd(request);
+				accounts.cancelAccount(token, user);
+				out.begin(id, RentalProtocol.OK);
+				break;
+			}
+			case RentalProtocol.LIST_ACCOUNTS: {
+				String token = RentalProtocol.getString(request);
+				int offset = request.getInt();
+				int limit = request.getInt();
+				checkEnd(request);
+				requireAdmin(token);
+				out.begin(id, RentalProtocol.OK).putString(accounts.listAccounts(offset, limit));
+				break;
+			}
+			case RentalProtocol.LIST_ACCOUNTS_WITH_PREFIX: {
+				String token = RentalProtocol.getString(request);
+				String prefix = RentalProtocol.getString(request);
+				int offset = request.getInt();
+				int limit = request.getInt();
+				checkEnd(request);
+				requireAdmin(token);
+				out.begin(id, RentalProtocol.OK).putString(accounts.listAccountsWithPrefix(prefix, offset, limit));
+				break;
+			}
+			case RentalProtocol.LIST_ACCOUNTS_IN_RANGE: {
+				String token = RentalProtocol.getString(request);
+				String from = RentalProtocol.getString(request);
+				String to = RentalProtocol.getString(request);
+				int offset = request.getInt();
+				int limit = request.getInt();
+				checkEnd(request);
+				requireAdmin(token);
+				out.begin(id, RentalProtocol.OK).putString(accounts.listAccountsInRange(from, to, offset, limit));
+				break;
+			}
+			case RentalProtocol.SHOW_INVENTORY: {
+				int offset = request.getInt();
+				int limit = request.getInt();
+				checkEnd(request);
+				out.begin(id, RentalProtocol.OK).putString(inventory.showInventory(offset, limit));
+				break;
+			}
+			case RentalProtocol.INVENTORY_SIZE: {
+				checkEnd(request);
+				out.begin(id, RentalProtocol.OK).putInt(inventory.inventorySize());
+				break;
+			}
+			case RentalProtocol.ADD_TO_CUSTOMER_QUEUE:
+			case RentalProtocol.RESERVE_MOVE_AHEAD_ONE:
+			case RentalProtocol.REMOVE_SELECTED_FROM_RESERVES:
+			case RentalProtocol.RETURN_ITEM_TO_INVENTORY: {
+				String token = RentalProtocol.getString(request);
+				int position = request.getInt();
+				checkEnd(request);
+				RentalManager rentals = accounts.getRentalManager(token);
+				if (opcode == RentalProtocol.ADD_TO_CUSTOMER_QUEUE) {
+					rentals.addToCustomerQueue(position);
+				} else if (opcode == RentalProtocol.RESERVE_MOVE_AHEAD_ONE) {
+					rentals.reserveMoveAheadOne(position);
+				} else if (opcode == RentalProtocol.REMOVE_SELECTED_FROM_RESERVES) {
+					rentals.removeSelectedFromReserves(position);
+				} else {
+					rentals.returnItemToInventory(position);
+				}
+				out.begin(id, RentalProtocol.OK);
+				break;
+			}
+			case RentalProtocol.ADD_ALL_TO_CUSTOMER_QUEUE:
+			case RentalProtocol.REMOVE_ALL_FROM_RESERVES:
+			case RentalProtocol.RETURN_ALL_TO_INVENTORY: {
+				String token = RentalProtocol.getString(request);
+				int[] positions = new int[getCount(request, 4)];
+				for (int i = 0; i < positions.length; i++) {
+					positions[i] = request.getInt();
+				}
+				checkEnd(request);
+				RentalManager rentals = accounts.getRentalManager(token);
+				if (opcode == RentalProtocol.ADD_ALL_TO_CUSTOMER_QUEUE) {
+					rentals.addAllToCustomerQueue(positions);
+				} else if (opcode == RentalProtocol.REMOVE_ALL_FROM_RESERVES) {
+					rentals.removeAllFromReserves(positions);
+				} else {
+					rentals.returnAllToInventory(positions);
+				}
+				out.begin(id, RentalProtocol.OK);
+				break;
+			}
+			case RentalProtocol.TRAVERSE_RESERVE_QUEUE:
+			case RentalProtocol.TRAVERSE_AT_HOME_QUEUE: {
+				String token = RentalProtocol.getString(request);
+				checkEnd(request);
+				RentalManager rentals = accounts.getRentalManager(token);
+				String queue = opcode == RentalProtocol.TRAVERSE_RESERVE_QUEUE ? rentals.traverseReserveQueue() : rentals.traverseAtHomeQueue();
+				out.begin(id, RentalProtocol.OK).putString(queue);
+				break;
+			}
+			default:
+				throw new BadRequest("Unknown opcode " + opcode + ".");
+			}
+			out.end();
+		} catch (BadRequest e) {
+			fail(out, mark, id, RentalProtocol.BAD_REQUEST, e.getMessage());
+		} catch (BufferUnderflowException e) {
+			fail(out, mark, id, RentalProtocol.BAD_REQUEST, "Request ends too soon.");
+		} catch (IllegalArgumentException e) {
+			fail(out, mark, id, RentalProtocol.ILLEGAL_ARGUMENT, e.getMessage());
+		} catch (IllegalStateException e) {
+			fail(out, mark, id, RentalProtocol.ILLEGAL_STATE, e.getMessage());
+		} catch (RuntimeException e) {
+			fail(out, mark, id, RentalProtocol.ILLEGAL_STATE, "Request failed on the server.");
+		}
+	}
+
+	/**
+	 * Writes an error response in place of anything written for the request.
+	 * 
+	 * @param out
+	 *            where the response is written.
+	 * @param mark
+	 *            size of the output before the request ran.
+	 * @param id
+	 *            request id.
+	 * @param status
+	 *            status of the response.
+	 * @param message
+	 *            message of the error, or null for none.
+	 */
+	private static void fail(RentalProtocol.FrameWriter out, int mark, int id, byte status, String message) {
+		out.truncate(mark);
+		out.begin(id, status).putString(message == null ? "" : message).end();
+	}
+
+	/**
+	 * Checks that a request has no bytes left after its arguments.
+	 * 
+	 * @param request
+	 *            request being decoded.
+	 * @throws BadRequest
+	 *             if it has.
+	 */
+	private static void checkEnd(ByteBuffer request) {
+		if (request.hasRemaining()) {
+			throw new BadRequest("Request has " + request.remaining() + " bytes too many.");
+		}
+	}
+
+	/**
+	 * Reads the number of items in a batch, checking it against the bytes
+	 * left so a bad count cannot allocate more than the request holds.
+	 * 
+	 * @param request
+	 *            request being decoded.
+	 * @param itemSize
+	 *            fewest bytes an item takes.
+	 * @return number of items.
+	 * @throws BadRequest
+	 *             if the count is negative or more than the request holds.
+	 */
+	private static int getCount(ByteBuffer request, int itemSize) {
+		int count = request.getInt();
+		if (count < 0 || count > request.remaining() / itemSize) {
+			throw new BadRequest("Batch of " + count + " does not fit the request.");
+		}
+		return count;
+	}
+
+	/**
+	 * Checks that a token names an administrator session.
+	 * 
+	 * @param token
+	 *            token of the request.
+	 * @throws IllegalStateException
+	 *             if it does not.
+	 */
+	private void requireAdmin(String token) {
+		if (!accounts.isAdminSession(token)) {
+			throw new IllegalStateException("Access denied.");
+		}
+	}
+
+	/**
+	 * Closes a channel, ignoring any failure.
+	 * 
+	 * @param channel
+	 *            channel to close.
+	 */
+	private static void closeQuietly(Channel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Nothing more can be done with the channel.
+		}
+	}
+
+	/**
+	 * One thread with its own selector, serving the connections given to it.
+	 */
+	private class EventLoop implements Runnable {
+
+		/**
+		 * Selector of the loop.
+		 */
+		private final Selector selector;
+
+		/**
+		 * Thread running the loop.
+		 */
+		private final Thread thread;
+
+		/**
+		 * Connections accepted by the first loop and not yet registered with
+		 * this one.
+		 */
+		private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<SocketChannel>();
+
+		/**
+		 * Connections whose batch of requests has finished running.
+		 */
+		private final Queue<Connection> finished = new ConcurrentLinkedQueue<Connection>();
+
+		/**
+		 * Set to false to stop the loop.
+		 */
+		private volatile boolean running = true;
+
+		/**
+		 * Number of connections accepted, used to spread them over the loops.
+		 */
+		private int acceptCount;
+
+		/**
+		 * Constructor, creates a loop.
+		 * 
+		 * @param number
+		 *            number of the loop, used in its thread name.
+		 * @throws IOException
+		 *             if the selector cannot be opened.
+		 */
+		EventLoop(int number) throws IOException {
+			selector = Selector.open();
+			thread = new Thread(this, "rental-protocol-" + number);
+			thread.setDaemon(true);
+		}
+
+		/**
+		 * Serves connections until the server stops, then closes them.
+		 */
+		public void run() {
+			try {
+				while (running) {
+					selector.select();
+					for (SocketChannel channel = accepted.poll(); channel != null; channel = accepted.poll()) {
+						register(channel);
+					}
+					for (Connection connection = finished.poll(); connection != null; connection = finished.poll()) {
+						connection.finish();
+					}
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						if (!key.isValid()) {
+							continue;
+						}
+						if (key.isAcceptable()) {
+							accept();
+						} else {
+							((Connection) key.attachment()).ready();
+						}
+					}
+				}
+			} catch (IOException e) {
+				// The selector failed; the loop cannot go on.
+			} finally {
+				for (SelectionKey key : selector.keys()) {
+					if (key.attachment() instanceof Connection) {
+						closeQuietly(key.channel());
+					}
+				}
+				for (SocketChannel channel = accepted.poll(); channel != null; channel = accepted.poll()) {
+					closeQuietly(channel);
+				}
+				try {
+					selector.close();
+				} catch (IOException e) {
+					// Nothing more can be done with the selector.
+				}
+			}
+		}
+
+		/**
+		 * Accepts every waiting connection and hands each to a loop in turn.
+		 */
+		private void accept() {
+			while (true) {
+				SocketChannel channel;
+				try {
+					channel = listener.accept();
+				} catch (IOException e) {
+					return;
+				}
+				if (channel == null) {
+					return;
+				}
+				EventLoop[] all = loops;
+				EventLoop loop = all[acceptCount++ % all.length];
+				if (loop == this) {
+					register(channel);
+				} else {
+					loop.accepted.add(channel);
+					loop.selector.wakeup();
+				}
+			}
+		}
+
+		/**
+		 * Starts serving a connection on this loop.
+		 * 
+		 * @param channel
+		 *            connection to serve.
+		 */
+		private void register(SocketChannel channel) {
+			try {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				Connection connection = new Connection(channel, this);
+				connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			} catch (IOException e) {
+				closeQuietly(channel);
+			}
+		}
+	}
+
+	/**
+	 * State of one connection: the bytes read and not yet run, the batch of
+	 * requests running, and the responses not yet written.
+	 */
+	private class Connection implements Runnable {
+
+		/**
+		 * The connection.
+		 */
+		private final SocketChannel channel;
+
+		/**
+		 * Loop serving the connection.
+		 */
+		private final EventLoop loop;
+
+		/**
+		 * Key of the connection in its loop's selector.
+		 */
+		private SelectionKey key;
+
+		/**
+		 * Bytes read and not yet run, from the start of the buffer to its
+		 * position. While a batch runs, the buffer is flipped and the batch
+		 * is its first {@link #batchEnd} bytes.
+		 */
+		private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+
+		/**
+		 * Responses not yet written.
+		 */
+		private final RentalProtocol.FrameWriter out = new RentalProtocol.FrameWriter(BUFFER_SIZE);
+
+		/**
+		 * Responses of the batch running, moved to {@link #out} when it
+		 * finishes.
+		 */
+		private final RentalProtocol.FrameWriter results = new RentalProtocol.FrameWriter(BUFFER_SIZE);
+
+		/**
+		 * Whether a batch of requests is on the executor.
+		 */
+		private boolean running;
+
+		/**
+		 * Number of bytes at the start of the read buffer taken by the batch
+		 * running.
+		 */
+		private int batchEnd;
+
+		/**
+		 * Constructor, creates the state of a new connection.
+		 * 
+		 * @param channel
+		 *            the connection.
+		 * @param loop
+		 *            loop serving the connection.
+		 */
+		Connection(SocketChannel channel, EventLoop loop) {
+			this.channel = channel;
+			this.loop = loop;
+		}
+
+		/**
+		 * Reads whatever requests have arrived and starts them running, and
+		 * writes whatever responses the connection can take. Closes the
+		 * connection if the client closed it, sent a frame with an
+		 * impossible length, or the connection fails in any other way, so
+		 * the loop goes on serving the rest.
+		 */
+		void ready() {
+			try {
+				if (key.isReadable() && !running) {
+					if (channel.read(in) < 0 || !dispatch()) {
+						close();
+						return;
+					}
+				}
+				flush();
+			} catch (IOException e) {
+				close();
+			} catch (RuntimeException e) {
+				close();
+			}
+		}
+
+		/**
+		 * Takes the responses of the batch that finished, and goes back to
+		 * reading. Called on the loop thread.
+		 */
+		void finish() {
+			running = false;
+			if (!key.isValid()) {
+				return;
+			}
+			ByteBuffer done = results.flip();
+			out.put(done);
+			results.compact();
+			in.position(batchEnd);
+			compactInput();
+			try {
+				flush();
+			} catch (IOException e) {
+				close();
+			} catch (RuntimeException e) {
+				close();
+			}
+		}
+
+		/**
+		 * Runs the batch of requests, in order, then hands the connection
+		 * back to its loop. Called on the executor.
+		 */
+		public void run() {
+			try {
+				int at = 0;
+				while (at < batchEnd) {
+					int next = at + 4 + in.getInt(at);
+					ByteBuffer request = in.duplicate();
+					request.position(at + 4).limit(next);
+					execute(request.slice(), results);
+					at = next;
+				}
+			} finally {
+				loop.finished.add(this);
+				loop.selector.wakeup();
+			}
+		}
+
+		/**
+		 * Starts every complete request in the read buffer running as one
+		 * batch, and grows the buffer if the next request does not fit.
+		 * 
+		 * @return false if a frame has an impossible length or the executor
+		 *         refuses the batch.
+		 */
+		private boolean dispatch() {
+			in.flip();
+			int end = 0;
+			while (in.limit() - end >= 4) {
+				int length = in.getInt(end);
+				if (length < RentalProtocol.FRAME_HEADER || length > RentalProtocol.MAX_FRAME) {
+					return false;
+				}
+				if (in.limit() - end < 4 + length) {
+					break;
+				}
+				end += 4 + length;
+			}
+			if (end == 0) {
+				compactInput();
+				return true;
+			}
+			batchEnd = end;
+			running = true;
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				running = false;
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Drops the bytes before the read buffer's position, goes back to
+		 * reading after the rest, and grows the buffer if the next request
+		 * does not fit.
+		 */
+		private void compactInput() {
+			in.compact();
+			if (in.position() >= 4) {
+				int needed = 4 + in.getInt(0);
+				if (needed > in.capacity()) {
+					ByteBuffer larger = ByteBuffer.allocate(needed);
+					in.flip();
+					larger.put(in);
+					in = larger;
+				}
+			}
+		}
+
+		/**
+		 * Writes whatever responses the connection can take, and chooses
+		 * what to wait for next: writing while responses are waiting, and
+		 * reading while no batch runs and the responses are below
+		 * {@link #HIGH_WATER}.
+		 * 
+		 * @throws IOException
+		 *             if the connection fails.
+		 */
+		private void flush() throws IOException {
+			if (out.size() > 0) {
+				ByteBuffer pending = out.flip();
+				channel.write(pending);
+				out.compact();
+			}
+			int interest = 0;
+			if (out.size() > 0) {
+				interest |= SelectionKey.OP_WRITE;
+			}
+			if (!running && out.size() < HIGH_WATER) {
+				interest |= SelectionKey.OP_READ;
+			}
+			key.interestOps(interest);
+		}
+
+		/**
+		 * Closes the connection.
+		 */
+		private void close() {
+			key.cancel();
+			closeQuietly(channel);
+		}
+	}
+
+	/**
+	 * A request that cannot be decoded.
+	 */
+	private static class BadRequest extends RuntimeException {
+
+		/** ID for serialization */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructor, creates a failure.
+		 * 
+		 * @param message
+		 *            what is wrong with the request.
+		 */
+		BadRequest(String message) {
+			super(message);
+		}
+	}
+}
@@ -3,6 +3,7 @@ package edu.ncsu.csc216.flix_2.ui;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Scanner;
 
 import javax.swing.*;
@@ -10,6 +11,7 @@ import javax.swing.border.*;
 
 import edu.ncsu.csc216.flix_2.customer.CustomerAccountManager;
 import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.persistence.Journal;
 import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
 import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
 
@@ -37,6 +39,10 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 	private static final int LEFT_PAD = 10;
 	private static final int RIGHT_PAD = 10;
 	private static final int BOTTOM_PAD = 10;
+	private static final int INVENTORY_PAGE_SIZE = 100;
+
+	// Journal records written between background snapshots
+	private static final long SNAPSHOT_INTERVAL = 10000;
 
 	// Panel and window titles
 	private static final String INVENTORY_TITLE = "Movie Inventory";
@@ -81,12 +87,19 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 	private JPasswordField pwdPassword = new JPasswordField(NAME_WIDTH);
 
 	// Default list models for the scrollable lists
-	private DefaultListModel dlmInventory = new DefaultListModel();
+	private InventoryListModel ilmInventory = new InventoryListModel();
 	private DefaultListModel dlmReserveQueue = new DefaultListModel();
 	private DefaultListModel dlmAtHome = new DefaultListModel();
 
 	// Scrollable lists
-	private JList lstInventory = new JList(dlmInventory);
+	private JList<String> lstInventory = new JList<String>(ilmInventory) {
+		private static final long serialVersionUID = 1L;
+
+		// Sized to the viewport, so the list never measures every title
+		public boolean getScrollableTracksViewportWidth() {
+			return true;
+		}
+	};
 	private JList lstReserveQueue = new JList(dlmReserveQueue);
 	private JList lstAtHome = new JList(dlmAtHome);
 	private JScrollPane scpInventory = new JScrollPane(lstInventory);
@@ -119,6 +132,7 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 	// Backend model
 	private transient CustomerAccountManager accountManager;
 	private transient RentalManager rentals;
+	private transient Journal journal;
 
 	/**
 	 * Constructor for FlixBUI. Creates the DVDRentalSystem model and
@@ -130,6 +144,24 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 	 *             if no file of the given filename exists
 	 */
 	public MovieSystemGUI(String filename) throws FileNotFoundException {
+		this(filename, null);
+	}
+
+	/**
+	 * Constructor for FlixBUI. Creates the DVDRentalSystem model and
+	 * administrative user, restoring the customer accounts from a journal if
+	 * one is given. The GUI is initialized and set visible.
+	 * 
+	 * @param filename
+	 *            name of file that initializes the inventory
+	 * @param journalDirectory
+	 *            directory of the journal that keeps the customer accounts,
+	 *            or null to keep them in memory only
+	 * @throws FileNotFoundException
+	 *             if no file of the given filename exists
+	 */
+	public MovieSystemGUI(String filename, String journalDirectory) throws FileNotFoundException {
+		DVDRentalSystem inventory;
 		if (filename == null) {
 			String userPickFilename = null;
 			JFileChooser fc = new JFileChooser();
@@ -138,12 +170,18 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 			if (returnVal == JFileChooser.APPROVE_OPTION) {
 				userPickFilename = fc.getSelectedFile().getName();
 			}
-			rentals = new DVDRentalSystem(userPickFilename);
+			inventory = new DVDRentalSystem(userPickFilename);
 		} else {
-			rentals = new DVDRentalSystem(filename);
+			inventory = new DVDRentalSystem(filename);
+		}
+		rentals = inventory;
+		MovieCustomerAccountSystem accounts = new MovieCustomerAccountSystem(rentals);
+		accountManager = accounts;
+		if (journalDirectory != null) {
+			journal = Journal.open(journalDirectory, inventory, accounts);
+			journal.setSnapshotInterval(SNAPSHOT_INTERVAL);
 		}
-		accountManager = new MovieCustomerAccountSystem(rentals);
-		if (filename != null)
+		if (filename != null && accounts.getCustomers().isEmpty())
 			populateCustomerAccounts();
 		initializeUI();
 		this.setVisible(true);
@@ -173,7 +211,7 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 			int k = lstInventory.getSelectedIndex();
 			if (k >= 0) {
 				rentals.addToCustomerQueue(k);
-				lblAddedToQueue.setText("Added: " + (String) dlmInventory.get(k));
+				lblAddedToQueue.setText("Added: " + ilmInventory.getElementAt(k));
 				refreshQueueAndAtHomeLists();
 				refreshInventoryList();
 			}
@@ -205,7 +243,7 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 		// Administrative functions
 		// Quit button
 		if (ae.getSource().equals(btnQuit)) {
-			stopExecution();
+			closeJournalAndStop();
 		}
 		// Logout
 		if (ae.getSource().equals(btnLogout)) {
@@ -272,7 +310,8 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 		setTitle(WINDOW_TITLE);
 
 		// Set the list contents and behaviors.
-		loadModel(lstInventory, dlmInventory, rentals.showInventory());
+		ilmInventory.refresh();
+		lstInventory.setPrototypeCellValue(INVENTORY_TITLE);
 		lstInventory.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 		lstReserveQueue.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 		lstAtHome.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -288,7 +327,7 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 		enableDisable();
 		addWindowListener(new WindowAdapter() {
 			public void windowClosing(WindowEvent e) {
-				stopExecution();
+				closeJournalAndStop();
 			}
 		});
 	}
@@ -543,8 +582,29 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 	 * Private Method - refreshes list on the BROWSE card.
 	 */
 	private void refreshInventoryList() {
-		dlmInventory.clear();
-		loadModel(lstInventory, dlmInventory, rentals.showInventory());
+		ilmInventory.refresh();
+		lstInventory.clearSelection();
+		lstInventory.ensureIndexIsVisible(0);
+	}
+
+	/**
+	 * Private Method - takes a snapshot of the journal, if there is one, so
+	 * the next start has little to replay, closes it, and exits the program.
+	 */
+	private void closeJournalAndStop() {
+		if (journal != null) {
+			try {
+				journal.snapshot();
+			} catch (IOException e) {
+				// Every change is still in the segments; the next start replays them.
+			}
+			try {
+				journal.close();
+			} catch (IOException e) {
+				JOptionPane.showMessageDialog(this, "The last changes could not be saved: " + e.getMessage());
+			}
+		}
+		stopExecution();
 	}
 
 	/**
@@ -554,6 +614,68 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 		System.exit(0);
 	}
 
+	// ------------------------------------------------
+	//
+	// Inventory List Model
+	//
+
+	/**
+	 * Private Class - list model for the inventory that fetches titles from
+	 * the rental system one page at a time, as the list asks for them.
+	 */
+	private class InventoryListModel extends AbstractListModel<String> {
+		/** ID for serialization */
+		private static final long serialVersionUID = 1L;
+
+		private int size;
+		private int pageStart;
+		private String[] page;
+
+		/**
+		 * Returns the number of titles in the inventory.
+		 * 
+		 * @return the number of titles
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * Returns the title at a given position, fetching its page from the
+		 * rental system if it is not the cached page.
+		 * 
+		 * @param index
+		 *            position of the title in the inventory
+		 * @return the title at that position
+		 */
+		public String getElementAt(int index) {
+			if (page == null || index < pageStart || index >= pageStart + page.length) {
+				pageStart = index - index % INVENTORY_PAGE_SIZE;
+				String info = rentals.showInventory(pageStart, INVENTORY_PAGE_SIZE);
+				page = info.isEmpty() ? new String[0] : info.split("\n");
+			}
+			int k = index - pageStart;
+			return k < page.length ? page[k] : "";
+		}
+
+		/**
+		 * Drops the cached page and tells the list to fetch the titles again.
+		 */
+		public void refresh() {
+			int oldSize = size;
+			size = rentals.inventorySize();
+			page = null;
+			if (oldSize > size) {
+				fireIntervalRemoved(this, size, oldSize - 1);
+			} else if (size > oldSize) {
+				fireIntervalAdded(this, oldSize, size - 1);
+			}
+			if (Math.min(oldSize, size) > 0) {
+				fireContentsChanged(this, 0, Math.min(oldSize, size) - 1);
+			}
+		}
+	}
+
 	// ------------------------------------------------
 	//
 	// Main Method
@@ -563,17 +685,23 @@ public class MovieSystemGUI extends JFrame implements ActionListener {
 	 * Starts the program.
 	 * 
 	 * @param args
-	 *            command line args
+	 *            command line args: the inventory file, then the journal
+	 *            directory
 	 */
 	public static void main(String[] args) {
 		try {
-			if (args.length > 0)
+			if (args.length > 1)
+				new MovieSystemGUI(args[0], args[1]);
+			else if (args.length > 0)
 				new MovieSystemGUI(args[0]);
 			else
 				new MovieSystemGUI(null);
 		} catch (FileNotFoundException e) {
 			JOptionPane.showMessageDialog(new JFrame(), "Incorrect Inventory File Specified");
 			stopExecution();
+		} catch (IllegalStateException e) {
+			JOptionPane.showMessageDialog(new JFrame(), e.getMessage());
+			stopExecution();
 		}
 	}
 
@@ -0,0 +1,198 @@
+package edu.ncsu.csc216.flix_2.customer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+
+/**
+ * Tests the batch operations of Customer and CustomerDB: reserving,
+ * unreserving and returning many movies at once, and adding many customers
+ * at once, including batches that are rejected without changing anything.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class CustomerTest {
+
+	/**
+	 * Movie with one copy.
+	 */
+	private Movie alpha;
+
+	/**
+	 * Movie with two copies.
+	 */
+	private Movie beta;
+
+	/**
+	 * Movie with no copies.
+	 */
+	private Movie gamma;
+
+	/**
+	 * Movie with one copy.
+	 */
+	private Movie delta;
+
+	/**
+	 * Creates the movies.
+	 */
+	@Before
+	public void setUp() {
+		alpha = new Movie("1 Alpha");
+		beta = new Movie("2 Beta");
+		gamma = new Movie("0 Gamma");
+		delta = new Movie("1 Delta");
+	}
+
+	/**
+	 * Tests that reserving many movies checks out the same ones as reserving
+	 * them one at a time, and that removing reserves from the head, the tail
+	 * and everywhere leaves the rest in order.
+	 */
+	@Test
+	public void testReserveAllAndUnreserveAll() {
+		Customer batch = new Customer("batch", "pw", 2);
+		batch.reserveAll(Arrays.asList(gamma, alpha, beta, delta, beta, gamma));
+		assertEquals(Arrays.asList(alpha, beta), batch.getAtHomeMovies());
+		assertEquals(Arrays.asList(gamma, delta, beta, gamma), batch.getReservedMovies());
+		assertEquals(0, inStock(alpha));
+		assertEquals(1, inStock(beta));
+
+		assertEquals(Arrays.asList(gamma), batch.unReserveAll(new int[] { 0 }));
+		assertEquals(Arrays.asList(delta, beta, gamma), batch.getReservedMovies());
+		assertEquals(Arrays.asList(gamma), batch.unReserveAll(new int[] { 2 }));
+		assertEquals(Arrays.asList(delta, beta), batch.getReservedMovies());
+		assertEquals(Arrays.asList(delta, beta), batch.unReserveAll(new int[] { 0, 1 }));
+		assertEquals(0, batch.getReserveCount());
+		assertEquals(1, inStock(delta));
+
+		try {
+			batch.reserveAll(Arrays.asList(delta, null));
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(0, batch.getReserveCount());
+		}
+	}
+
+	/**
+	 * Tests that repeated, unsorted and out of range indexes are rejected
+	 * without changing either queue or the inventory.
+	 */
+	@Test
+	public void testRejectsBadIndexes() {
+		Customer customer = new Customer("customer", "pw", 2);
+		customer.reserveAll(Arrays.asList(alpha, beta, gamma, delta, gamma));
+		int[][] bad = { { 1, 1 }, { 2, 0 }, { 0, 3 }, { -1 }, { 0, 2, 1 } };
+		for (int[] indexes : bad) {
+			try {
+				customer.unReserveAll(indexes);
+				fail(Arrays.toString(indexes));
+			} catch (IllegalArgumentException e) {
+				assertEquals(Arrays.asList(gamma, delta, gamma), customer.getReservedMovies());
+			}
+			try {
+				customer.returnDVDs(indexes);
+				fail(Arrays.toString(indexes));
+			} catch (IllegalArgumentException e) {
+				assertEquals(Arrays.asList(alpha, beta), customer.getAtHomeMovies());
+				assertEquals(0, inStock(alpha));
+				assertEquals(1, inStock(beta));
+			}
+		}
+	}
+
+	/**
+	 * Tests that returning many movies puts every copy back, then checks out
+	 * up to one reserve for each movie returned.
+	 */
+	@Test
+	public void testReturnDVDs() {
+		Customer customer = new Customer("customer", "pw", 3);
+		customer.reserveAll(Arrays.asList(alpha, beta, delta, gamma, alpha, delta, beta));
+		assertEquals(Arrays.asList(alpha, beta, delta), customer.getAtHomeMovies());
+		assertEquals(Arrays.asList(gamma, alpha, delta, beta), customer.getReservedMovies());
+
+		assertEquals(Arrays.asList(alpha), customer.returnDVDs(new int[] { 0 }));
+		assertEquals(Arrays.asList(beta, delta, alpha), customer.getAtHomeMovies());
+		assertEquals(Arrays.asList(gamma, delta, beta), customer.getReservedMovies());
+
+		assertEquals(Arrays.asList(delta, beta), customer.returnDVDs(new int[] { 1, 2 }));
+		assertEquals(Arrays.asList(beta, delta, beta), customer.getAtHomeMovies());
+		assertEquals(Arrays.asList(gamma), customer.getReservedMovies());
+		assertEquals(1, inStock(alpha));
+
+		assertEquals(new ArrayList<Movie>(), customer.returnDVDs(new int[] { 0, 1, 2 }));
+		assertEquals(0, customer.getAtHomeCount());
+		assertEquals(1, inStock(alpha));
+		assertEquals(2, inStock(beta));
+		assertEquals(1, inStock(delta));
+	}
+
+	/**
+	 * Tests that adding many customers sorts them in among the customers
+	 * already there, and that a batch with a repeated or existing username,
+	 * a bad row, or arrays of different lengths adds no one.
+	 */
+	@Test
+	public void testAddNewCustomers() {
+		CustomerDB customers = new CustomerDB();
+		customers.addNewCustomer("mike", "pw", 1);
+		customers.addNewCustomers(new String[] { "zed", "amy", "kim" }, new String[] { "a", "b", "c" }, new int[] { 1, 2, 3 });
+		assertEquals("amy\nkim\nmike\nzed\n", customers.listAccounts());
+		assertEquals("kim", customers.verifyCustomer("kim", "c").getId());
+
+		assertRejected(customers, new String[] { "bob", "BOB" }, new String[] { "a", "b" }, new int[] { 1, 1 });
+		assertRejected(customers, new String[] { "bob", "Mike" }, new String[] { "a", "b" }, new int[] { 1, 1 });
+		assertRejected(customers, new String[] { "bob", " " }, new String[] { "a", "b" }, new int[] { 1, 1 });
+		assertRejected(customers, new String[] { "bob", "sue" }, new String[] { "a", "" }, new int[] { 1, 1 });
+		assertRejected(customers, new String[] { "bob", "sue" }, new String[] { "a" }, new int[] { 1, 1 });
+		assertRejected(customers, new String[] { "bob" }, new String[] { "a" }, new int[] { 1, 1 });
+	}
+
+	/**
+	 * Asserts that adding a batch of customers fails and adds no one.
+	 * 
+	 * @param customers
+	 *            database to add to.
+	 * @param ids
+	 *            usernames of the batch.
+	 * @param passwords
+	 *            passwords of the batch.
+	 * @param maxAtHome
+	 *            limits of the batch.
+	 */
+	private static void assertRejected(CustomerDB customers, String[] ids, String[] passwords, int[] maxAtHome) {
+		String before = customers.listAccounts();
+		try {
+			customers.addNewCustomers(ids, passwords, maxAtHome);
+			fail(Arrays.toString(ids));
+		} catch (IllegalArgumentException e) {
+			assertEquals(before, customers.listAccounts());
+		}
+	}
+
+	/**
+	 * Counts the copies of a movie in the inventory, putting them back.
+	 * 
+	 * @param movie
+	 *            the movie.
+	 * @return number of copies in the inventory.
+	 */
+	private static int inStock(Movie movie) {
+		int count = 0;
+		while (movie.tryRemoveOneCopy()) {
+			count++;
+		}
+		for (int i = 0; i < count; i++) {
+			movie.backToInventory();
+		}
+		return count;
+	}
+}
@@ -0,0 +1,176 @@
+package edu.ncsu.csc216.flix_2.inventory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests converting text inventory files to binary catalogs and loading them
+ * back, and rejecting catalogs whose header or tables are damaged.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class BinaryCatalogTest {
+
+	/**
+	 * Directory holding the files.
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests that a converted catalog loads with the same titles, copies and
+	 * order as the text file, and finds the same movies.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be written.
+	 */
+	@Test
+	public void testConvertRoundTrip() throws IOException {
+		File text = folder.newFile("movies.txt");
+		Writer out = new FileWriter(text);
+		try {
+			out.write("3 The Foo\n1 foo\n2 Bar\n0 Cafe: Part 2\n4 An Foo\n1 FOO\n");
+		} finally {
+			out.close();
+		}
+		assertRoundTrip(text.getPath());
+		assertRoundTrip("movies-alt.txt");
+	}
+
+	/**
+	 * Tests that a catalog with no movies loads, and is written back the
+	 * same.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be written.
+	 */
+	@Test
+	public void testEmptyCatalog() throws IOException {
+		File empty = folder.newFile("empty.bin");
+		ByteBuffer header = ByteBuffer.allocate(20);
+		header.putInt(BinaryCatalog.MAGIC).putInt(BinaryCatalog.VERSION).putInt(0).putInt(0).putInt(0);
+		Files.write(empty.toPath(), header.array());
+		MovieDB movies = new MovieDB(empty.getPath());
+		assertEquals(0, movies.size());
+		assertEquals(0, movies.findTitle("Foo").length);
+
+		File again = new File(folder.getRoot(), "again.bin");
+		BinaryCatalog.write(movies, again.getPath());
+		assertArrayEquals(header.array(), Files.readAllBytes(again.toPath()));
+	}
+
+	/**
+	 * Tests that catalogs with a damaged header, offsets or copies are
+	 * rejected.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be written.
+	 */
+	@Test
+	public void testRejectsDamagedCatalog() throws IOException {
+		File text = folder.newFile("movies.txt");
+		Writer out = new FileWriter(text);
+		try {
+			out.write("1 Alpha\n2 Beta\n3 Gamma\n");
+		} finally {
+			out.close();
+		}
+		File catalog = new File(folder.getRoot(), "movies.bin");
+		assertEquals(3, BinaryCatalog.convert(text.getPath(), catalog.getPath()));
+		byte[] good = Files.readAllBytes(catalog.toPath());
+
+		assertRejected(catalog, good, 4, BinaryCatalog.VERSION + 1);
+		assertRejected(catalog, good, 8, 4);
+		assertRejected(catalog, good, 8, -1);
+		assertRejected(catalog, good, 12, 3);
+		assertRejected(catalog, good, 16, 1);
+		assertRejected(catalog, good, 20, 10);
+		assertRejected(catalog, good, 28, 11);
+		assertRejected(catalog, good, 32, -2);
+
+		Files.write(catalog.toPath(), good);
+		RandomAccessFile file = new RandomAccessFile(catalog, "rw");
+		try {
+			file.setLength(file.length() - 1);
+		} finally {
+			file.close();
+		}
+		try {
+			new MovieDB(catalog.getPath());
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(BinaryCatalog.isBinaryCatalog(catalog.getPath()));
+		}
+		assertFalse(BinaryCatalog.isBinaryCatalog(text.getPath()));
+	}
+
+	/**
+	 * Converts a text inventory file and checks the catalog against it.
+	 * 
+	 * @param textFile
+	 *            name of the text inventory file.
+	 * @throws IOException
+	 *             if the catalog cannot be written.
+	 */
+	private void assertRoundTrip(String textFile) throws IOException {
+		File catalog = new File(folder.getRoot(), "round.bin");
+		MovieDB expected = new MovieDB(textFile);
+		assertEquals(expected.size(), BinaryCatalog.convert(textFile, catalog.getPath()));
+		assertTrue(BinaryCatalog.isBinaryCatalog(catalog.getPath()));
+		MovieDB actual = new MovieDB(catalog.getPath());
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Movie movie = actual.findItemAt(i);
+			assertEquals(expected.findItemAt(i).getName(), movie.getName());
+			assertEquals(expected.findItemAt(i).getCopies(), movie.getCopies());
+			assertEquals(i, actual.indexOf(movie));
+			String title = movie.getName();
+			assertArrayEquals(title, expected.findTitle(title), actual.findTitle(title));
+			assertArrayEquals(title, expected.findTitle(title.toUpperCase()), actual.findTitle(title.toUpperCase()));
+		}
+		assertEquals(-1, actual.indexOf(expected.findItemAt(0)));
+		assertEquals(expected.traverse(), actual.traverse());
+	}
+
+	/**
+	 * Writes a catalog with one number changed and checks that it is
+	 * rejected.
+	 * 
+	 * @param catalog
+	 *            file to write.
+	 * @param good
+	 *            bytes of a valid catalog.
+	 * @param offset
+	 *            position of the number to change.
+	 * @param value
+	 *            value written in its place.
+	 * @throws IOException
+	 *             if the catalog cannot be written.
+	 */
+	private static void assertRejected(File catalog, byte[] good, int offset, int value) throws IOException {
+		byte[] bad = good.clone();
+		ByteBuffer.wrap(bad).putInt(offset, value);
+		Files.write(catalog.toPath(), bad);
+		try {
+			new MovieDB(catalog.getPath());
+			fail("offset " + offset);
+		} catch (IllegalArgumentException e) {
+			assertTrue(BinaryCatalog.isBinaryCatalog(catalog.getPath()));
+		}
+	}
+}
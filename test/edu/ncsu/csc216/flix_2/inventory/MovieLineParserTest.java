@@ -0,0 +1,188 @@
+package edu.ncsu.csc216.flix_2.inventory;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Scanner;
+
+import org.junit.Test;
+
+/**
+ * Tests MovieLineParser against the Scanner-based parsing it replaced, on
+ * both the CharSequence and the ByteBuffer paths.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class MovieLineParserTest {
+
+	/**
+	 * Charset of inventory files.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Pieces random lines are made of: numbers that do and do not fit, signs,
+	 * whitespace, line breaks, articles and words.
+	 */
+	private static final String[] PIECES = { "1", "-2", "+3", "x", "007", "99999999999", "2147483647", "-2147483648", " ", "  ",
+		"\t", "The", "the", "A", "a", "An", "an", "Them", "Foo", "Bar", "\n", "\r\n", "\u00e9", "The ", "A ", "An " };
+
+	/**
+	 * Tests lines whose result is known.
+	 */
+	@Test
+	public void testKnownLines() {
+		assertEquals("Matrix|3", parse("3 The Matrix"));
+		assertEquals("Them|2", parse("2 Them"));
+		assertEquals("A|1", parse("1 A"));
+		assertEquals("Lot of Nothing|4", parse("  +4\tAn Lot of Nothing"));
+		assertEquals("Foo |0", parse("0 a Foo "));
+		assertEquals("Foo|-1", parse("-1 Foo\r\n"));
+		assertEquals("IAE", parse("x Foo"));
+		assertEquals("IAE", parse("5"));
+		assertEquals("IAE", parse("5   "));
+		assertEquals("IAE", parse("99999999999 Foo"));
+		assertEquals("IAE", parse("1 Foo\nBar"));
+	}
+
+	/**
+	 * Tests random lines on every path against the Scanner-based parsing.
+	 */
+	@Test
+	public void testMatchesScanner() {
+		Random random = new Random(5);
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder line = new StringBuilder();
+			for (int pieces = random.nextInt(6); pieces > 0; pieces--) {
+				line.append(PIECES[random.nextInt(PIECES.length)]);
+			}
+			String text = line.toString();
+			String expected = scanner(text);
+			assertEquals(text, expected, parse(text));
+			assertEquals(text, expected, parse(line));
+
+			StringBuilder padded = new StringBuilder("9 Before\n").append(text).append("\n8 After");
+			assertEquals(text, expected, parse(padded, 9, 9 + text.length()));
+
+			byte[] bytes = text.getBytes(UTF_8);
+			byte[] framed = new byte[bytes.length + 7];
+			System.arraycopy(bytes, 0, framed, 3, bytes.length);
+			ByteBuffer heap = ByteBuffer.wrap(framed, 1, framed.length - 1).slice();
+			assertEquals(text, expected, parse(heap, 2, 2 + bytes.length));
+			ByteBuffer direct = ByteBuffer.allocateDirect(framed.length);
+			direct.put(framed);
+			direct.position(5);
+			assertEquals(text, expected, parse(direct, 3, 3 + bytes.length));
+			assertEquals(5, direct.position());
+		}
+	}
+
+	/**
+	 * Parses a line as the Movie constructor did before MovieLineParser.
+	 * 
+	 * @param line
+	 *            line to parse.
+	 * @return title and stock separated by "|", or "IAE" if the line is not
+	 *         valid.
+	 */
+	private static String scanner(String line) {
+		Scanner console = new Scanner(line);
+		console.useLocale(Locale.US);
+		try {
+			if (!console.hasNextInt()) {
+				return "IAE";
+			}
+			int inStock = console.nextInt();
+			if (!console.hasNext()) {
+				return "IAE";
+			}
+			String title = console.next();
+			if (console.hasNextLine()) {
+				title += console.nextLine();
+				if (title.startsWith("A ") || title.startsWith("a ")) {
+					title = title.substring(2);
+				} else if (title.startsWith("An ") || title.startsWith("an ")) {
+					title = title.substring(3);
+				} else if (title.startsWith("The ") || title.startsWith("the ")) {
+					title = title.substring(4);
+				}
+			}
+			if (console.hasNext()) {
+				return "IAE";
+			}
+			return title + "|" + inStock;
+		} finally {
+			console.close();
+		}
+	}
+
+	/**
+	 * Parses a whole character sequence.
+	 * 
+	 * @param line
+	 *            line to parse.
+	 * @return title and stock separated by "|", or "IAE" if the line is not
+	 *         valid.
+	 */
+	private static String parse(CharSequence line) {
+		try {
+			return describe(MovieLineParser.parse(line));
+		} catch (IllegalArgumentException e) {
+			return "IAE";
+		}
+	}
+
+	/**
+	 * Parses part of a character sequence.
+	 * 
+	 * @param seq
+	 *            sequence holding the line.
+	 * @param start
+	 *            index of the first character of the line.
+	 * @param end
+	 *            index after the last character of the line.
+	 * @return title and stock separated by "|", or "IAE" if the line is not
+	 *         valid.
+	 */
+	private static String parse(CharSequence seq, int start, int end) {
+		try {
+			return describe(MovieLineParser.parse(seq, start, end));
+		} catch (IllegalArgumentException e) {
+			return "IAE";
+		}
+	}
+
+	/**
+	 * Parses part of a buffer.
+	 * 
+	 * @param buffer
+	 *            buffer holding the line.
+	 * @param start
+	 *            index of the first byte of the line.
+	 * @param end
+	 *            index after the last byte of the line.
+	 * @return title and stock separated by "|", or "IAE" if the line is not
+	 *         valid.
+	 */
+	private static String parse(ByteBuffer buffer, int start, int end) {
+		try {
+			return describe(MovieLineParser.parse(buffer, start, end));
+		} catch (IllegalArgumentException e) {
+			return "IAE";
+		}
+	}
+
+	/**
+	 * Describes a parsed movie.
+	 * 
+	 * @param movie
+	 *            movie to describe.
+	 * @return title and stock separated by "|".
+	 */
+	private static String describe(Movie movie) {
+		return movie.getName() + "|" + movie.getCopies();
+	}
+}
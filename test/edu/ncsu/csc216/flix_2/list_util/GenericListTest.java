@@ -0,0 +1,176 @@
+package edu.ncsu.csc216.flix_2.list_util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests removeAll on both GenericList classes: removing the head, the tail,
+ * every element and random positions, and rejecting positions that are
+ * repeated, out of order or out of range.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class GenericListTest {
+
+	/**
+	 * Tests removing the first element, alone and with others.
+	 */
+	@Test
+	public void testRemoveHead() {
+		for (GenericList<Integer> list : lists(5)) {
+			assertEquals(Arrays.asList(0), list.removeAll(new int[] { 0 }));
+			assertContents(list, 1, 2, 3, 4);
+			assertEquals(Arrays.asList(1, 2), list.removeAll(new int[] { 0, 1 }));
+			assertContents(list, 3, 4);
+			list.addItem(0, Integer.valueOf(9));
+			assertContents(list, 9, 3, 4);
+		}
+	}
+
+	/**
+	 * Tests removing the last element, alone and with others, and adding to
+	 * the rear afterwards.
+	 */
+	@Test
+	public void testRemoveTail() {
+		for (GenericList<Integer> list : lists(5)) {
+			assertEquals(Arrays.asList(4), list.removeAll(new int[] { 4 }));
+			assertContents(list, 0, 1, 2, 3);
+			list.addToRear(Integer.valueOf(7));
+			assertContents(list, 0, 1, 2, 3, 7);
+			assertEquals(Arrays.asList(1, 3, 7), list.removeAll(new int[] { 1, 3, 4 }));
+			assertContents(list, 0, 2);
+			list.addToRear(Integer.valueOf(8));
+			assertContents(list, 0, 2, 8);
+		}
+	}
+
+	/**
+	 * Tests removing every element, then using the empty list.
+	 */
+	@Test
+	public void testRemoveEverything() {
+		for (GenericList<Integer> list : lists(4)) {
+			assertEquals(Arrays.asList(0, 1, 2, 3), list.removeAll(new int[] { 0, 1, 2, 3 }));
+			assertContents(list);
+			assertTrue(list.isEmpty());
+			assertEquals(0, list.removeAll(new int[0]).size());
+			list.addToRear(Integer.valueOf(5));
+			list.addToRear(Integer.valueOf(6));
+			assertContents(list, 5, 6);
+			assertEquals(Arrays.asList(5, 6), list.removeAll(new int[] { 0, 1 }));
+			assertContents(list);
+		}
+	}
+
+	/**
+	 * Tests that repeated, unsorted and out of range positions are rejected
+	 * and leave the list as it was.
+	 */
+	@Test
+	public void testRejectsBadPositions() {
+		int[][] bad = { { 1, 1 }, { 2, 1 }, { 0, 3, 2 }, { -1 }, { 0, 5 }, { 5 } };
+		for (GenericList<Integer> list : lists(5)) {
+			for (int[] positions : bad) {
+				try {
+					list.removeAll(positions);
+					fail(Arrays.toString(positions));
+				} catch (IllegalArgumentException e) {
+					assertContents(list, 0, 1, 2, 3, 4);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests random batches of positions against removing the same positions
+	 * one at a time from the back.
+	 */
+	@Test
+	public void testRandomBatches() {
+		Random random = new Random(24);
+		for (GenericList<Integer> list : lists(0)) {
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int round = 0; round < 500; round++) {
+				for (int i = random.nextInt(8); i > 0; i--) {
+					Integer value = Integer.valueOf(random.nextInt(1000));
+					list.addToRear(value);
+					expected.add(value);
+				}
+				List<Integer> positions = new ArrayList<Integer>();
+				for (int i = 0; i < expected.size(); i++) {
+					if (random.nextInt(3) == 0) {
+						positions.add(Integer.valueOf(i));
+					}
+				}
+				int[] batch = new int[positions.size()];
+				List<Integer> removed = new ArrayList<Integer>();
+				for (int i = 0; i < batch.length; i++) {
+					batch[i] = positions.get(i).intValue();
+					removed.add(expected.get(batch[i]));
+				}
+				for (int i = batch.length - 1; i >= 0; i--) {
+					expected.remove(batch[i]);
+				}
+				assertEquals(removed, list.removeAll(batch));
+				assertEquals(expected.size(), list.size());
+				List<Integer> actual = new ArrayList<Integer>();
+				for (Integer value : list) {
+					actual.add(value);
+				}
+				assertEquals(expected, actual);
+			}
+		}
+	}
+
+	/**
+	 * Creates one list of each class holding 0 up to a number.
+	 * 
+	 * @param size
+	 *            number of elements in each list.
+	 * @return the lists.
+	 */
+	private static List<GenericList<Integer>> lists(int size) {
+		List<GenericList<Integer>> lists = new ArrayList<GenericList<Integer>>();
+		lists.add(new MultiPurposeList<Integer>());
+		lists.add(new ArrayMultiPurposeList<Integer>(2));
+		for (GenericList<Integer> list : lists) {
+			for (int i = 0; i < size; i++) {
+				list.addToRear(Integer.valueOf(i));
+			}
+		}
+		return lists;
+	}
+
+	/**
+	 * Asserts that a list holds exactly the given values, looking at them by
+	 * position and by iterating.
+	 * 
+	 * @param list
+	 *            list to check.
+	 * @param values
+	 *            values expected, in order.
+	 */
+	private static void assertContents(GenericList<Integer> list, int... values) {
+		String name = list.getClass().getSimpleName();
+		assertEquals(name, values.length, list.size());
+		List<Integer> iterated = new ArrayList<Integer>();
+		for (Integer value : list) {
+			iterated.add(value);
+		}
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < values.length; i++) {
+			expected.add(Integer.valueOf(values[i]));
+			assertEquals(name, Integer.valueOf(values[i]), list.lookAtItemN(i));
+		}
+		assertEquals(name, expected, iterated);
+	}
+}
@@ -0,0 +1,217 @@
+package edu.ncsu.csc216.flix_2.list_util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Tests SortedSkipList against a TreeMap given the same random operations.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class SortedSkipListTest {
+
+	/**
+	 * Natural order of the keys.
+	 */
+	private static final Comparator<Integer> ORDER = new Comparator<Integer>() {
+		public int compare(Integer a, Integer b) {
+			return a.compareTo(b);
+		}
+	};
+
+	/**
+	 * Keys are drawn from 0 up to this, so adds and removes often hit keys
+	 * already in the list.
+	 */
+	private static final int KEYS = 2000;
+
+	/**
+	 * Tests add, remove, get, getAt and rankOf on random keys.
+	 */
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(216);
+		SortedSkipList<Integer, String> list = new SortedSkipList<Integer, String>(ORDER);
+		TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+		for (int i = 0; i < 50000; i++) {
+			Integer key = Integer.valueOf(random.nextInt(KEYS));
+			switch (random.nextInt(5)) {
+			case 0:
+			case 1:
+				String value = "v" + i;
+				boolean added = !expected.containsKey(key);
+				if (added) {
+					expected.put(key, value);
+				}
+				assertEquals(added, list.add(key, value));
+				break;
+			case 2:
+				assertEquals(expected.remove(key), list.remove(key));
+				break;
+			case 3:
+				assertEquals(expected.get(key), list.get(key));
+				assertEquals(expected.headMap(key).size(), list.rankOf(key));
+				break;
+			default:
+				int position = random.nextInt(KEYS + 2) - 1;
+				assertEquals(valueAt(expected, position), list.getAt(position));
+				break;
+			}
+			assertEquals(expected.size(), list.size());
+			if (i % 5000 == 0) {
+				assertSameValues(expected, list);
+			}
+		}
+		assertSameValues(expected, list);
+	}
+
+	/**
+	 * Tests iterating from every position of a list built from random keys.
+	 */
+	@Test
+	public void testIteratorFromPosition() {
+		Random random = new Random(8);
+		SortedSkipList<Integer, String> list = new SortedSkipList<Integer, String>(ORDER);
+		TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+		for (int i = 0; i < 500; i++) {
+			Integer key = Integer.valueOf(random.nextInt(KEYS));
+			list.add(key, "v" + key);
+			expected.put(key, "v" + key);
+		}
+		List<String> values = new ArrayList<String>(expected.values());
+		for (int position = -1; position <= values.size() + 1; position++) {
+			List<String> actual = new ArrayList<String>();
+			Iterator<String> iterator = list.iterator(position);
+			while (iterator.hasNext()) {
+				actual.add(iterator.next());
+			}
+			int from = Math.min(Math.max(position, 0), values.size());
+			assertEquals(values.subList(from, values.size()), actual);
+		}
+	}
+
+	/**
+	 * Tests adding sorted batches among keys already in the list.
+	 */
+	@Test
+	public void testAddAll() {
+		Random random = new Random(24);
+		SortedSkipList<Integer, String> list = new SortedSkipList<Integer, String>(ORDER);
+		TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+		for (int batch = 0; batch < 50; batch++) {
+			TreeMap<Integer, String> keys = new TreeMap<Integer, String>();
+			for (int i = random.nextInt(100); i > 0; i--) {
+				Integer key = Integer.valueOf(random.nextInt(100 * KEYS));
+				if (!expected.containsKey(key)) {
+					keys.put(key, "b" + key);
+				}
+			}
+			assertEquals(keys.size(), list.addAll(new ArrayList<Integer>(keys.keySet()), new ArrayList<String>(keys.values())));
+			expected.putAll(keys);
+			assertSameValues(expected, list);
+		}
+
+		List<Integer> keys = new ArrayList<Integer>();
+		List<String> values = new ArrayList<String>();
+		keys.add(Integer.valueOf(-2));
+		values.add("new");
+		keys.add(expected.firstKey());
+		values.add("duplicate");
+		keys.add(Integer.valueOf(Integer.MAX_VALUE));
+		values.add("after");
+		assertEquals(1, list.addAll(keys, values));
+		expected.put(Integer.valueOf(-2), "new");
+		assertSameValues(expected, list);
+
+		keys.clear();
+		values.clear();
+		keys.add(Integer.valueOf(-5));
+		values.add("b");
+		keys.add(Integer.valueOf(-6));
+		values.add("a");
+		try {
+			list.addAll(keys, values);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertSameValues(expected, list);
+		}
+	}
+
+	/**
+	 * Tests that iterators fail once the list changes.
+	 */
+	@Test
+	public void testIteratorFailsFast() {
+		SortedSkipList<Integer, String> list = new SortedSkipList<Integer, String>(ORDER);
+		list.add(Integer.valueOf(1), "a");
+		list.add(Integer.valueOf(2), "b");
+		Iterator<String> iterator = list.iterator();
+		assertEquals("a", iterator.next());
+		list.remove(Integer.valueOf(2));
+		try {
+			iterator.next();
+			fail();
+		} catch (ConcurrentModificationException e) {
+			assertEquals(1, list.size());
+		}
+		assertFalse(list.add(Integer.valueOf(1), "c"));
+		assertNull(list.remove(Integer.valueOf(3)));
+	}
+
+	/**
+	 * Asserts that the list holds the values of the map, in key order.
+	 * 
+	 * @param expected
+	 *            map holding the expected keys and values.
+	 * @param list
+	 *            list to check.
+	 */
+	private static void assertSameValues(TreeMap<Integer, String> expected, SortedSkipList<Integer, String> list) {
+		List<String> actual = new ArrayList<String>();
+		for (String value : list) {
+			actual.add(value);
+		}
+		assertEquals(new ArrayList<String>(expected.values()), actual);
+		int position = 0;
+		for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+			assertEquals(entry.getValue(), list.getAt(position));
+			assertEquals(position, list.rankOf(entry.getKey()));
+			position++;
+		}
+	}
+
+	/**
+	 * Returns the value at a position of a map in key order.
+	 * 
+	 * @param map
+	 *            map to look in.
+	 * @param position
+	 *            position of the value.
+	 * @return the value, or null if the position is out of range.
+	 */
+	private static String valueAt(TreeMap<Integer, String> map, int position) {
+		if (position < 0 || position >= map.size()) {
+			return null;
+		}
+		int i = 0;
+		for (String value : map.values()) {
+			if (i++ == position) {
+				return value;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,287 @@
+package edu.ncsu.csc216.flix_2.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+
+/**
+ * Tests exporting and importing CustomerArchive files: a round trip with
+ * escaped fields, imports sorted in many runs, and archives that are
+ * rejected without adding anyone.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class CustomerArchiveTest {
+
+	/**
+	 * Inventory file the rental systems are built over.
+	 */
+	private static final String INVENTORY = "movies-alt.txt";
+
+	/**
+	 * Charset of archives.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Directory holding the archives.
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Rental system imported into.
+	 */
+	private DVDRentalSystem rentals;
+
+	/**
+	 * Account system imported into.
+	 */
+	private MovieCustomerAccountSystem accounts;
+
+	/**
+	 * Creates empty rental and account systems.
+	 */
+	@Before
+	public void setUp() {
+		rentals = new DVDRentalSystem(INVENTORY);
+		accounts = new MovieCustomerAccountSystem(rentals);
+	}
+
+	/**
+	 * Tests that exporting and importing keeps every account, password, limit
+	 * and queue, including usernames and passwords with tabs, line breaks and
+	 * backslashes.
+	 * 
+	 * @throws IOException
+	 *             if an archive cannot be read.
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		DVDRentalSystem source = new DVDRentalSystem(INVENTORY);
+		MovieCustomerAccountSystem from = new MovieCustomerAccountSystem(source);
+		from.login(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN);
+		from.addNewCustomer("tab", "a\tb", 2);
+		from.addNewCustomer("back\\slash", "x\\ty\nz\r\\", 3);
+		Random random = new Random(25);
+		for (int i = 0; i < 200; i++) {
+			from.addNewCustomer("user" + i, "pw" + i, random.nextInt(4));
+		}
+		from.logout();
+		for (Customer customer : from.getCustomers()) {
+			RentalManager context = source.openContext(customer);
+			for (int k = random.nextInt(8); k > 0; k--) {
+				context.addToCustomerQueue(random.nextInt(source.inventorySize()));
+			}
+			if (customer.getAtHomeCount() > 0 && random.nextBoolean()) {
+				context.returnItemToInventory(0);
+			}
+		}
+
+		File archive = folder.newFile("archive.tsv");
+		assertEquals(202, CustomerArchive.exportTo(archive.getPath(), from));
+		assertEquals(202, CustomerArchive.importFrom(archive.getPath(), rentals, accounts));
+		List<Customer> expected = from.getCustomers();
+		List<Customer> actual = accounts.getCustomers();
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Customer customer = expected.get(i);
+			assertEquals(customer.getId(), actual.get(i).getId());
+			assertEquals(customer.getId(), customer.traverseAtHomeQueue(), actual.get(i).traverseAtHomeQueue());
+			assertEquals(customer.getId(), customer.traverseReserveQueue(), actual.get(i).traverseReserveQueue());
+		}
+		assertEquals(source.showInventory(), rentals.showInventory());
+		assertEquals(source.getWaitlistDepth(), rentals.getWaitlistDepth());
+		accounts.login("tab", "a\tb");
+		accounts.logout();
+		accounts.login("back\\slash", "x\\ty\nz\r\\");
+		accounts.logout();
+
+		File again = folder.newFile("again.tsv");
+		CustomerArchive.exportTo(again.getPath(), accounts);
+		assertEquals(read(archive), read(again));
+	}
+
+	/**
+	 * Tests that an archive sorted in more runs than are merged at once
+	 * imports the same customers as one sorted in a single run.
+	 * 
+	 * @throws IOException
+	 *             if the archive cannot be written.
+	 */
+	@Test
+	public void testManyRuns() throws IOException {
+		Random random = new Random(64);
+		List<String> lines = new ArrayList<String>();
+		TreeSet<String> ids = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		for (int i = 0; i < 5000; i++) {
+			String id = "m" + Integer.toString(random.nextInt(1 << 30), 36) + "_" + i;
+			ids.add(i % 2 == 0 ? id : id.toUpperCase());
+			StringBuilder line = new StringBuilder(i % 2 == 0 ? id : id.toUpperCase()).append("\tpw\t3\t0");
+			for (int k = random.nextInt(4); k > 0; k--) {
+				line.append('\t').append(rentals.getMovieAt(random.nextInt(rentals.inventorySize())).getName());
+			}
+			lines.add(line.toString());
+		}
+		Collections.shuffle(lines, random);
+		File archive = write("many.tsv", join(lines, "\n"));
+
+		assertEquals(5000, CustomerArchive.importFrom(archive.getPath(), rentals, accounts, 4000));
+		StringBuilder expected = new StringBuilder();
+		for (String id : ids) {
+			expected.append(id).append("\n");
+		}
+		assertEquals(expected.toString(), accounts.listAcounts());
+
+		DVDRentalSystem single = new DVDRentalSystem(INVENTORY);
+		MovieCustomerAccountSystem once = new MovieCustomerAccountSystem(single);
+		assertEquals(5000, CustomerArchive.importFrom(archive.getPath(), single, once));
+		List<Customer> sorted = once.getCustomers();
+		List<Customer> merged = accounts.getCustomers();
+		for (int i = 0; i < sorted.size(); i++) {
+			assertEquals(sorted.get(i).getId(), merged.get(i).getId());
+			assertEquals(sorted.get(i).getId(), sorted.get(i).traverseReserveQueue(), merged.get(i).traverseReserveQueue());
+		}
+	}
+
+	/**
+	 * Tests that archives with a bad line, an unknown title, a repeated or
+	 * existing username, or more copies at home than are in stock add no one
+	 * and take no copies.
+	 * 
+	 * @throws IOException
+	 *             if an archive cannot be written.
+	 */
+	@Test
+	public void testRejectedArchivesAddNothing() throws IOException {
+		accounts.login(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN);
+		accounts.addNewCustomer("existing", "pw", 1);
+		accounts.logout();
+		String title = rentals.getMovieAt(0).getName();
+		int copies = rentals.getMovieAt(0).getCopies();
+
+		assertRejected("a\tpw\t1\t0\nb\tpw\t1\t1\tNo Such Movie\n");
+		assertRejected("a\tpw\t1\t0\nb\tpw\tx\t0\n");
+		assertRejected("a\tpw\t1\t0\n\n");
+		assertRejected("a\tp w\t1\t0\n");
+		assertRejected("a\tpw\t1\t3\t" + title + "\n");
+		assertRejected("a\tpw\t1\t2\t" + title + "\t" + title + "\n");
+		assertRejected("a\tpw\t-1\t1\t" + title + "\n");
+		assertRejected("bob\\t\tpw\t1\t0\nbob\tpw\t1\t0\n");
+		assertRejected("dup\tpw\t1\t0\nDUP\tpw\t1\t0\n");
+		assertRejected("a\tpw\t1\t1\t" + title + "\nEXISTING\tpw\t1\t0\n");
+
+		StringBuilder greedy = new StringBuilder("greedy\tpw\t" + (copies + 1) + "\t" + (copies + 1));
+		for (int i = 0; i <= copies; i++) {
+			greedy.append('\t').append(title);
+		}
+		assertRejected(greedy.toString());
+
+		StringBuilder batches = new StringBuilder();
+		for (int i = 0; i < CustomerArchive.BATCH_SIZE + 10; i++) {
+			batches.append("a").append(i).append("\tpw\t1\t0\n");
+		}
+		batches.append("existing\\n\tpw\t1\t0\n");
+		assertRejected(batches.toString());
+
+		try {
+			CustomerArchive.importFrom(new File(folder.getRoot(), "missing.tsv").getPath(), rentals, accounts);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(1, accounts.getCustomerCount());
+		}
+	}
+
+	/**
+	 * Asserts that importing an archive fails and leaves the accounts and the
+	 * inventory as they were.
+	 * 
+	 * @param text
+	 *            contents of the archive.
+	 * @throws IOException
+	 *             if the archive cannot be written.
+	 */
+	private void assertRejected(String text) throws IOException {
+		String inventory = rentals.showInventory();
+		String before = accounts.listAcounts();
+		File archive = write("bad.tsv", text);
+		try {
+			CustomerArchive.importFrom(archive.getPath(), rentals, accounts, 2000);
+			fail(text);
+		} catch (IllegalArgumentException e) {
+			assertEquals(before, accounts.listAcounts());
+			assertEquals(inventory, rentals.showInventory());
+			assertTrue(rentals.getWaitlistDepth() == 0);
+		}
+	}
+
+	/**
+	 * Writes an archive, replacing any with the same name.
+	 * 
+	 * @param name
+	 *            file name of the archive.
+	 * @param text
+	 *            contents of the archive.
+	 * @return the archive.
+	 * @throws IOException
+	 *             if the archive cannot be written.
+	 */
+	private File write(String name, String text) throws IOException {
+		File archive = new File(folder.getRoot(), name);
+		Files.write(archive.toPath(), text.getBytes(UTF_8));
+		return archive;
+	}
+
+	/**
+	 * Reads a whole archive.
+	 * 
+	 * @param archive
+	 *            the archive.
+	 * @return contents of the archive.
+	 * @throws IOException
+	 *             if the archive cannot be read.
+	 */
+	private static String read(File archive) throws IOException {
+		return new String(Files.readAllBytes(archive.toPath()), UTF_8);
+	}
+
+	/**
+	 * Joins lines with a separator.
+	 * 
+	 * @param lines
+	 *            lines to join.
+	 * @param separator
+	 *            text between two lines.
+	 * @return the joined lines.
+	 */
+	private static String join(List<String> lines, String separator) {
+		StringBuilder text = new StringBuilder();
+		for (String line : lines) {
+			if (text.length() > 0) {
+				text.append(separator);
+			}
+			text.append(line);
+		}
+		return text.toString();
+	}
+}
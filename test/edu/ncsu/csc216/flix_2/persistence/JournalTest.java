@@ -0,0 +1,408 @@
+package edu.ncsu.csc216.flix_2.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+
+/**
+ * Tests replaying the Journal after a clean close, a truncated or torn last
+ * record, damage in the middle of a segment, and a snapshot that rotates the
+ * segments.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class JournalTest {
+
+	/**
+	 * Inventory file the rental systems are built over.
+	 */
+	private static final String INVENTORY = "movies-alt.txt";
+
+	/**
+	 * Number of customers the workload signs up.
+	 */
+	private static final int CUSTOMERS = 20;
+
+	/**
+	 * Directory holding the journal.
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Directory of the journal under test.
+	 */
+	private File directory;
+
+	/**
+	 * Rental system the journal writes for.
+	 */
+	private DVDRentalSystem rentals;
+
+	/**
+	 * Account system the journal writes for.
+	 */
+	private MovieCustomerAccountSystem accounts;
+
+	/**
+	 * Journal under test.
+	 */
+	private Journal journal;
+
+	/**
+	 * Opens an empty journal.
+	 * 
+	 * @throws IOException
+	 *             if the directory cannot be created.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		directory = folder.newFolder("journal");
+		rentals = new DVDRentalSystem(INVENTORY);
+		accounts = new MovieCustomerAccountSystem(rentals);
+		journal = Journal.open(directory.getPath(), rentals, accounts);
+	}
+
+	/**
+	 * Closes the journal.
+	 * 
+	 * @throws IOException
+	 *             if the journal cannot be closed.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		journal.close();
+	}
+
+	/**
+	 * Tests that reopening the journal restores every account, queue and
+	 * copy.
+	 * 
+	 * @throws IOException
+	 *             if the journal cannot be closed.
+	 */
+	@Test
+	public void testReplay() throws IOException {
+		work(new Random(1), 400);
+		String before = state(rentals, accounts);
+		journal.close();
+		assertEquals(before, reopen());
+	}
+
+	/**
+	 * Tests that a last record cut short is dropped, the segment is cut back
+	 * to the record before it, and new records follow on from there.
+	 * 
+	 * @throws IOException
+	 *             if the segment cannot be changed.
+	 */
+	@Test
+	public void testTruncatedRecord() throws IOException {
+		work(new Random(2), 300);
+		String before = state(rentals, accounts);
+		File segment = newest("journal-");
+		long boundary = segment.length();
+		moveAheadLast();
+		assertTrue(!before.equals(state(rentals, accounts)));
+		journal.close();
+		assertTrue(segment.length() > boundary);
+
+		RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		try {
+			file.setLength(file.length() - 3);
+		} finally {
+			file.close();
+		}
+		assertEquals(before, reopen());
+		assertEquals(boundary, segment.length());
+
+		moveAheadLast();
+		String after = state(rentals, accounts);
+		journal.close();
+		assertEquals(after, reopen());
+	}
+
+	/**
+	 * Tests that a last record that fails its check, and zeros left after
+	 * the last record, both mark the end of the journal.
+	 * 
+	 * @throws IOException
+	 *             if the segment cannot be changed.
+	 */
+	@Test
+	public void testTornTail() throws IOException {
+		work(new Random(3), 300);
+		String before = state(rentals, accounts);
+		File segment = newest("journal-");
+		moveAheadLast();
+		assertTrue(!before.equals(state(rentals, accounts)));
+		journal.close();
+
+		RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		try {
+			file.seek(file.length() - 1);
+			int last = file.read();
+			file.seek(file.length() - 1);
+			file.write(last ^ 0x40);
+		} finally {
+			file.close();
+		}
+		assertEquals(before, reopen());
+
+		journal.close();
+		file = new RandomAccessFile(segment, "rw");
+		try {
+			file.setLength(file.length() + 4096);
+		} finally {
+			file.close();
+		}
+		assertEquals(before, reopen());
+	}
+
+	/**
+	 * Tests that a damaged record followed by good ones stops the journal
+	 * from opening instead of losing the records after it.
+	 * 
+	 * @throws IOException
+	 *             if the segment cannot be changed.
+	 */
+	@Test
+	public void testDamagedRecord() throws IOException {
+		work(new Random(4), 100);
+		journal.close();
+		File segment = newest("journal-");
+		RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		try {
+			file.seek(30);
+			int b = file.read();
+			file.seek(30);
+			file.write(b ^ 0x01);
+		} finally {
+			file.close();
+		}
+		try {
+			reopen();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals(0, accounts.getCustomerCount());
+		}
+	}
+
+	/**
+	 * Tests that batches of new accounts, reserves, unreserves and returns
+	 * replay to the same accounts, queues and copies. A batch return is
+	 * journaled as one return per movie, each at its position once the
+	 * earlier ones are gone.
+	 * 
+	 * @throws IOException
+	 *             if the journal cannot be closed.
+	 */
+	@Test
+	public void testBatchReplay() throws IOException {
+		String admin = accounts.openSession(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN);
+		accounts.addNewCustomers(admin, new String[] { "zed", "amy", "kim" }, new String[] { "pw0", "pw1", "pw2" }, new int[] { 4, 1, 1 });
+		List<Integer> stocked = new ArrayList<Integer>();
+		for (int i = 0; i < rentals.inventorySize() && stocked.size() < 6; i++) {
+			if (rentals.getMovieAt(i).getCopies() == 1) {
+				stocked.add(Integer.valueOf(i));
+			}
+		}
+		assertEquals(6, stocked.size());
+		int[] six = new int[6];
+		for (int i = 0; i < six.length; i++) {
+			six[i] = stocked.get(i).intValue();
+		}
+
+		RentalManager zed = accounts.getRentalManager(accounts.openSession("zed", "pw0"));
+		zed.addAllToCustomerQueue(six);
+		zed.removeAllFromReserves(new int[] { 1 });
+		RentalManager amy = accounts.getRentalManager(accounts.openSession("amy", "pw1"));
+		amy.addAllToCustomerQueue(new int[] { six[2], six[0] });
+		RentalManager kim = accounts.getRentalManager(accounts.openSession("kim", "pw2"));
+		kim.addAllToCustomerQueue(new int[] { six[3] });
+		zed.addAllToCustomerQueue(new int[] { six[2], six[3], six[0] });
+
+		zed.returnAllToInventory(new int[] { 3, 0, 2 });
+		assertEquals(3, accounts.getCustomers().get(2).getAtHomeCount());
+		amy.returnAllToInventory(new int[] { 0 });
+		zed.returnAllToInventory(new int[] { 0, 1, 2, 3 });
+		zed.removeAllFromReserves(new int[] { 0 });
+		kim.returnAllToInventory(new int[] { 0 });
+
+		String before = state(rentals, accounts);
+		journal.close();
+		assertEquals(before, reopen());
+	}
+
+	/**
+	 * Tests that a snapshot replaces the older segments, and that opening
+	 * the journal loads it and replays the segment written after it.
+	 * 
+	 * @throws IOException
+	 *             if a snapshot cannot be written.
+	 */
+	@Test
+	public void testSnapshotRotation() throws IOException {
+		Random random = new Random(5);
+		work(random, 200);
+		File first = newest("journal-");
+		journal.snapshot();
+		work(random, 200);
+		String before = state(rentals, accounts);
+		journal.close();
+
+		assertEquals(2, directory.list().length);
+		File segment = newest("journal-");
+		assertTrue(!segment.equals(first) && !first.exists());
+		File snapshot = newest("snapshot-");
+		assertTrue(snapshot.exists());
+		assertEquals(before, reopen());
+
+		journal.snapshot();
+		work(random, 50);
+		String after = state(rentals, accounts);
+		journal.close();
+		assertEquals(2, directory.list().length);
+		assertTrue(!snapshot.exists() && !segment.exists());
+		assertEquals(after, reopen());
+	}
+
+	/**
+	 * Signs up the customers if there are none yet and makes random changes
+	 * to their accounts.
+	 * 
+	 * @param random
+	 *            source of the changes.
+	 * @param changes
+	 *            number of changes to make.
+	 */
+	private void work(Random random, int changes) {
+		String admin = accounts.openSession(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN);
+		if (accounts.getCustomerCount() == 0) {
+			for (int i = 0; i < CUSTOMERS; i++) {
+				accounts.addNewCustomer(admin, "c" + i, "pw" + i, 1 + i % 3);
+			}
+		}
+		for (int i = 0; i < changes; i++) {
+			int number = random.nextInt(CUSTOMERS);
+			if (random.nextInt(50) == 0) {
+				accounts.cancelAccount(admin, "c" + number);
+				accounts.addNewCustomer(admin, "c" + number, "pw" + number, 2);
+				continue;
+			}
+			RentalManager customer = accounts.getRentalManager(accounts.openSession("c" + number, "pw" + number));
+			try {
+				switch (random.nextInt(5)) {
+				case 0:
+				case 1:
+					customer.addToCustomerQueue(random.nextInt(rentals.inventorySize()));
+					break;
+				case 4:
+					if (random.nextBoolean()) {
+						customer.returnAllToInventory(new int[] { 0, 1 + random.nextInt(2) });
+					} else {
+						customer.removeAllFromReserves(new int[] { random.nextInt(2), 2 + random.nextInt(2) });
+					}
+					break;
+				case 2:
+					customer.reserveMoveAheadOne(random.nextInt(4));
+					break;
+				default:
+					if (random.nextBoolean()) {
+						customer.removeSelectedFromReserves(random.nextInt(4));
+					} else {
+						customer.returnItemToInventory(random.nextInt(3));
+					}
+					break;
+				}
+			} catch (IllegalArgumentException e) {
+				// No movie at that position; nothing changed
+			}
+		}
+	}
+
+	/**
+	 * Moves the last movie in a reserve queue ahead one, which writes exactly
+	 * one record.
+	 */
+	private void moveAheadLast() {
+		for (Customer customer : accounts.getCustomers()) {
+			if (customer.getReserveCount() > 1) {
+				String id = customer.getId();
+				String password = "pw" + id.substring(1);
+				accounts.getRentalManager(accounts.openSession(id, password)).reserveMoveAheadOne(customer.getReserveCount() - 1);
+				return;
+			}
+		}
+		fail("No customer has two reserves.");
+	}
+
+	/**
+	 * Opens the journal again over new rental and account systems, which
+	 * become the ones under test.
+	 * 
+	 * @return state of the reopened systems.
+	 */
+	private String reopen() {
+		rentals = new DVDRentalSystem(INVENTORY);
+		accounts = new MovieCustomerAccountSystem(rentals);
+		journal = Journal.open(directory.getPath(), rentals, accounts);
+		return state(rentals, accounts);
+	}
+
+	/**
+	 * Returns the newest file in the journal directory with the given start
+	 * of its name.
+	 * 
+	 * @param prefix
+	 *            start of the file name.
+	 * @return the file.
+	 */
+	private File newest(String prefix) {
+		List<String> names = new ArrayList<String>();
+		for (String name : directory.list()) {
+			if (name.startsWith(prefix)) {
+				names.add(name);
+			}
+		}
+		assertTrue(!names.isEmpty());
+		return new File(directory, Collections.max(names));
+	}
+
+	/**
+	 * Describes the inventory and every account, with its queues.
+	 * 
+	 * @param rentals
+	 *            rental system to describe.
+	 * @param accounts
+	 *            account system to describe.
+	 * @return description of the state.
+	 */
+	private static String state(DVDRentalSystem rentals, MovieCustomerAccountSystem accounts) {
+		StringBuilder state = new StringBuilder(rentals.showInventory());
+		for (Customer customer : accounts.getCustomers()) {
+			state.append(customer.getId()).append(" reserves:\n").append(customer.traverseReserveQueue());
+			state.append(" at home:\n").append(customer.traverseAtHomeQueue());
+		}
+		return state.toString();
+	}
+}
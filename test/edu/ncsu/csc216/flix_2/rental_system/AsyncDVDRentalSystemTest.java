@@ -0,0 +1,185 @@
+package edu.ncsu.csc216.flix_2.rental_system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+
+/**
+ * Tests that AsyncDVDRentalSystem runs each customer's operations in the
+ * order they were started on an executor with many threads, and fails the
+ * operations an executor that is shut down will not run.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class AsyncDVDRentalSystemTest {
+
+	/**
+	 * Inventory file the rental systems are built over.
+	 */
+	private static final String INVENTORY = "movies-alt.txt";
+
+	/**
+	 * Outcome of an operation that completed normally.
+	 */
+	private static final String OK = "ok";
+
+	/**
+	 * Tests that many operations started at once for each of several
+	 * customers end the same way as the same operations run one after another.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test(timeout = 60000)
+	public void testCustomerOperationsRunInOrder() throws InterruptedException {
+		DVDRentalSystem rentals = new DVDRentalSystem(INVENTORY);
+		DVDRentalSystem reference = new DVDRentalSystem(INVENTORY);
+		ExecutorService executor = AsyncDVDRentalSystem.newFixedExecutor(8);
+		final CountDownLatch gate = new CountDownLatch(1);
+		try {
+			AsyncDVDRentalSystem async = new AsyncDVDRentalSystem(rentals, executor);
+			for (int i = 0; i < 8; i++) {
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							gate.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				});
+			}
+			Random random = new Random(23);
+			List<List<CompletableFuture<?>>> futures = new ArrayList<List<CompletableFuture<?>>>();
+			List<List<String>> expected = new ArrayList<List<String>>();
+			for (int c = 0; c < 6; c++) {
+				AsyncRentalManager context = async.openContext(new Customer("c" + c, "pw", 0));
+				RentalManager direct = reference.openContext(new Customer("c" + c, "pw", 0));
+				List<CompletableFuture<?>> started = new ArrayList<CompletableFuture<?>>();
+				List<String> outcomes = new ArrayList<String>();
+				for (int i = 0; i < 400; i++) {
+					int kind = random.nextInt(5);
+					int position = random.nextInt(kind < 2 ? rentals.inventorySize() : 12) - (kind < 2 ? 0 : 1);
+					String outcome = OK;
+					try {
+						if (kind < 2) {
+							started.add(context.addToCustomerQueue(position));
+							direct.addToCustomerQueue(position);
+						} else if (kind == 2) {
+							started.add(context.reserveMoveAheadOne(position));
+							direct.reserveMoveAheadOne(position);
+						} else if (kind == 3) {
+							started.add(context.removeSelectedFromReserves(position));
+							direct.removeSelectedFromReserves(position);
+						} else {
+							started.add(context.traverseReserveQueue());
+							outcome = direct.traverseReserveQueue();
+						}
+					} catch (RuntimeException e) {
+						outcome = e.getClass().getSimpleName();
+					}
+					outcomes.add(outcome);
+				}
+				futures.add(started);
+				expected.add(outcomes);
+			}
+			gate.countDown();
+			for (int c = 0; c < futures.size(); c++) {
+				for (int i = 0; i < futures.get(c).size(); i++) {
+					assertEquals("customer " + c + ", operation " + i, expected.get(c).get(i), outcome(futures.get(c).get(i)));
+				}
+			}
+		} finally {
+			gate.countDown();
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that once the executor is shut down, operations waiting behind
+	 * one it already took fail rather than hang, and operations started
+	 * afterwards fail at once.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test(timeout = 60000)
+	public void testShutDownExecutorFailsPendingOperations() throws InterruptedException {
+		DVDRentalSystem rentals = new DVDRentalSystem(INVENTORY);
+		ExecutorService executor = AsyncDVDRentalSystem.newFixedExecutor(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					gate.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		AsyncDVDRentalSystem async = new AsyncDVDRentalSystem(rentals, executor);
+		List<AsyncRentalManager> contexts = new ArrayList<AsyncRentalManager>();
+		List<List<CompletableFuture<Void>>> pending = new ArrayList<List<CompletableFuture<Void>>>();
+		for (int c = 0; c < 3; c++) {
+			AsyncRentalManager context = async.openContext(new Customer("c" + c, "pw", 0));
+			List<CompletableFuture<Void>> started = new ArrayList<CompletableFuture<Void>>();
+			for (int i = 0; i < 20; i++) {
+				started.add(context.addToCustomerQueue(i));
+			}
+			contexts.add(context);
+			pending.add(started);
+		}
+		executor.shutdown();
+		gate.countDown();
+
+		for (List<CompletableFuture<Void>> started : pending) {
+			assertEquals(OK, outcome(started.get(0)));
+			for (int i = 1; i < started.size(); i++) {
+				assertEquals("operation " + i, "RejectedExecutionException", outcome(started.get(i)));
+			}
+		}
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		for (AsyncRentalManager context : contexts) {
+			assertEquals("RejectedExecutionException", outcome(context.addToCustomerQueue(0)));
+			assertEquals("RejectedExecutionException", outcome(context.showInventory()));
+		}
+		assertEquals("RejectedExecutionException", outcome(async.inventorySize()));
+		try {
+			async.traverseReserveQueue().join();
+			fail();
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+	}
+
+	/**
+	 * Waits for an operation and describes how it ended.
+	 * 
+	 * @param future
+	 *            future of the operation.
+	 * @return the result if it is a string, {@link #OK} for any other result,
+	 *         or the simple class name of the failure.
+	 */
+	private static String outcome(CompletableFuture<?> future) {
+		try {
+			Object result = future.join();
+			return result instanceof String ? (String) result : OK;
+		} catch (CompletionException e) {
+			return e.getCause().getClass().getSimpleName();
+		}
+	}
+}
@@ -0,0 +1,490 @@
+package edu.ncsu.csc216.flix_2.rental_system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.ncsu.csc216.flix_2.customer.Customer;
+import edu.ncsu.csc216.flix_2.customer.CustomerListener;
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+
+/**
+ * Tests that copies returned to the inventory go to the customers waiting
+ * for them, in the order they reserved.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class WaitlistTest {
+
+	/**
+	 * Position of Alpha, which has one copy.
+	 */
+	private static final int ALPHA = 0;
+
+	/**
+	 * Position of Beta, which has one copy.
+	 */
+	private static final int BETA = 1;
+
+	/**
+	 * Position of Gamma, which has two copies.
+	 */
+	private static final int GAMMA = 2;
+
+	/**
+	 * Directory holding the inventory file.
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Rental system under test.
+	 */
+	private DVDRentalSystem rentals;
+
+	/**
+	 * Creates the rental system over a small inventory.
+	 * 
+	 * @throws IOException
+	 *             if the inventory file cannot be written.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		File inventory = folder.newFile("movies.txt");
+		Writer out = new FileWriter(inventory);
+		try {
+			out.write("1 Alpha\n1 Beta\n2 Gamma\n");
+		} finally {
+			out.close();
+		}
+		rentals = new DVDRentalSystem(inventory.getPath());
+	}
+
+	/**
+	 * Tests that a returned copy goes to the first waiting customer, then the
+	 * next, and back to the shelf once nobody waits.
+	 */
+	@Test
+	public void testReturnGoesToFirstInLine() {
+		Customer holder = new Customer("holder", "pw", 2);
+		Customer first = new Customer("first", "pw", 2);
+		Customer second = new Customer("second", "pw", 2);
+		reserve(holder, ALPHA);
+		reserve(first, ALPHA);
+		reserve(second, ALPHA);
+		assertHome(holder, "Alpha");
+		assertWaiting(first, ALPHA);
+		assertWaiting(second, ALPHA);
+		assertEquals(2, rentals.getWaitlistDepth());
+
+		rentals.openContext(holder).returnItemToInventory(0);
+		assertHome(holder);
+		assertHome(first, "Alpha");
+		assertWaiting(second, ALPHA);
+		assertFalse(movie(ALPHA).isAvailable());
+
+		rentals.openContext(first).returnItemToInventory(0);
+		assertHome(second, "Alpha");
+		rentals.openContext(second).returnItemToInventory(0);
+		assertTrue(movie(ALPHA).isAvailable());
+		assertEquals(0, rentals.getWaitlistDepth());
+	}
+
+	/**
+	 * Tests that a customer with no room is passed over but keeps their place,
+	 * and takes the copy left on the shelf once they make room.
+	 */
+	@Test
+	public void testFullCustomerKeepsPlace() {
+		Customer holder = new Customer("holder", "pw", 2);
+		Customer full = new Customer("full", "pw", 1);
+		Customer next = new Customer("next", "pw", 1);
+		reserve(holder, ALPHA);
+		reserve(full, BETA);
+		reserve(full, ALPHA);
+		reserve(next, ALPHA);
+		assertHome(full, "Beta");
+
+		rentals.openContext(holder).returnItemToInventory(0);
+		assertHome(full, "Beta");
+		assertWaiting(full, ALPHA);
+		assertHome(next, "Alpha");
+
+		rentals.openContext(next).returnItemToInventory(0);
+		assertTrue(movie(ALPHA).isAvailable());
+		assertWaiting(full, ALPHA);
+
+		rentals.openContext(full).returnItemToInventory(0);
+		assertHome(full, "Alpha");
+		assertFalse(movie(ALPHA).isAvailable());
+	}
+
+	/**
+	 * Tests that a customer who unreserves leaves the line, so the copy goes
+	 * to the next customer.
+	 */
+	@Test
+	public void testUnreserveLeavesLine() {
+		Customer holder = new Customer("holder", "pw", 2);
+		Customer quitter = new Customer("quitter", "pw", 2);
+		Customer next = new Customer("next", "pw", 2);
+		reserve(holder, ALPHA);
+		reserve(quitter, ALPHA);
+		reserve(next, ALPHA);
+		rentals.openContext(quitter).removeSelectedFromReserves(0);
+
+		rentals.openContext(holder).returnItemToInventory(0);
+		assertHome(quitter);
+		assertEquals(0, quitter.getReserveCount());
+		assertHome(next, "Alpha");
+	}
+
+	/**
+	 * Tests that copies returned while many customers wait reach every one of
+	 * them, with each customer returning their copy as soon as it arrives.
+	 * 
+	 * @throws Exception
+	 *             if a customer fails.
+	 */
+	@Test(timeout = 60000)
+	public void testCopiesReturnedWhileCustomersWait() throws Exception {
+		final Customer[] holders = { new Customer("holder0", "pw", 1), new Customer("holder1", "pw", 1) };
+		for (Customer holder : holders) {
+			reserve(holder, GAMMA);
+			assertHome(holder, "Gamma");
+		}
+		final List<Customer> waiting = new ArrayList<Customer>();
+		for (int i = 0; i < 30; i++) {
+			Customer customer = new Customer("c" + i, "pw", 1);
+			reserve(customer, GAMMA);
+			assertWaiting(customer, GAMMA);
+			waiting.add(customer);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(waiting.size() + holders.length);
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (final Customer customer : waiting) {
+				results.add(pool.submit(new Callable<Void>() {
+					public Void call() {
+						while (customer.getAtHomeCount() == 0) {
+							Thread.yield();
+						}
+						rentals.openContext(customer).returnItemToInventory(0);
+						return null;
+					}
+				}));
+			}
+			for (final Customer holder : holders) {
+				results.add(pool.submit(new Callable<Void>() {
+					public Void call() {
+						rentals.openContext(holder).returnItemToInventory(0);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		for (Customer customer : waiting) {
+			assertHome(customer);
+			assertEquals(0, customer.getReserveCount());
+		}
+		assertTrue(movie(GAMMA).isAvailable());
+		assertTrue(movie(GAMMA).tryRemoveOneCopy());
+		assertTrue(movie(GAMMA).tryRemoveOneCopy());
+		assertFalse(movie(GAMMA).tryRemoveOneCopy());
+	}
+
+	/**
+	 * Tests that when a waiting customer's checkout is refused, the copy goes
+	 * on to the next customer in line, and the refused customer keeps their
+	 * place.
+	 */
+	@Test
+	public void testRefusedCheckoutGoesToNext() {
+		MovieCustomerAccountSystem accounts = accounts("holder", "refused", "next");
+		reserve(customer(accounts, "holder"), ALPHA);
+		reserve(customer(accounts, "refused"), ALPHA);
+		reserve(customer(accounts, "next"), ALPHA);
+		accounts.setCustomerListener(new RefusingListener("refused", null));
+		try {
+			rentals.openContext(customer(accounts, "holder")).returnItemToInventory(0);
+			fail();
+		} catch (IllegalStateException e) {
+			assertHome(customer(accounts, "holder"));
+		}
+		assertHome(customer(accounts, "refused"));
+		assertWaiting(customer(accounts, "refused"), ALPHA);
+		assertHome(customer(accounts, "next"), "Alpha");
+		assertFalse(movie(ALPHA).isAvailable());
+	}
+
+	/**
+	 * Tests that a customer who joins the line while another customer's
+	 * refused checkout holds the last copy gets the copy once it is put back.
+	 */
+	@Test
+	public void testRefusedCopyGoesToCustomerWhoJoinedMeanwhile() {
+		final MovieCustomerAccountSystem accounts = accounts("refused", "joiner");
+		accounts.setCustomerListener(new RefusingListener("refused", new Runnable() {
+			public void run() {
+				reserve(customer(accounts, "joiner"), ALPHA);
+			}
+		}));
+		try {
+			reserve(customer(accounts, "refused"), ALPHA);
+			fail();
+		} catch (IllegalStateException e) {
+			assertHome(customer(accounts, "refused"));
+		}
+		assertHome(customer(accounts, "joiner"), "Alpha");
+		assertFalse(movie(ALPHA).isAvailable());
+	}
+
+	/**
+	 * Creates an account system over the rental system with customers who
+	 * may each have two movies at home.
+	 * 
+	 * @param ids
+	 *            usernames of the customers.
+	 * @return the account system.
+	 */
+	private MovieCustomerAccountSystem accounts(String... ids) {
+		MovieCustomerAccountSystem accounts = new MovieCustomerAccountSystem(rentals);
+		accounts.login(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN);
+		for (String id : ids) {
+			accounts.addNewCustomer(id, "pw", 2);
+		}
+		accounts.logout();
+		return accounts;
+	}
+
+	/**
+	 * Finds a customer of an account system.
+	 * 
+	 * @param accounts
+	 *            account system to look in.
+	 * @param id
+	 *            username of the customer.
+	 * @return the customer.
+	 */
+	private static Customer customer(MovieCustomerAccountSystem accounts, String id) {
+		for (Customer customer : accounts.getCustomers()) {
+			if (customer.getId().equals(id)) {
+				return customer;
+			}
+		}
+		throw new IllegalArgumentException(id);
+	}
+
+	/**
+	 * Reserves a movie for a customer.
+	 * 
+	 * @param customer
+	 *            customer reserving.
+	 * @param position
+	 *            position of the movie in the inventory.
+	 */
+	private void reserve(Customer customer, int position) {
+		rentals.openContext(customer).addToCustomerQueue(position);
+	}
+
+	/**
+	 * Returns the movie at a position of the inventory.
+	 * 
+	 * @param position
+	 *            position of the movie.
+	 * @return the movie.
+	 */
+	private Movie movie(int position) {
+		return rentals.getMovieAt(position);
+	}
+
+	/**
+	 * Asserts that a customer has exactly the given movies at home.
+	 * 
+	 * @param customer
+	 *            customer to check.
+	 * @param titles
+	 *            titles of the movies expected at home, in order.
+	 */
+	private static void assertHome(Customer customer, String... titles) {
+		List<String> home = new ArrayList<String>();
+		for (Movie movie : customer.getAtHomeMovies()) {
+			home.add(movie.getName());
+		}
+		List<String> expected = new ArrayList<String>();
+		for (String title : titles) {
+			expected.add(title);
+		}
+		assertEquals(customer.getId(), expected, home);
+	}
+
+	/**
+	 * Asserts that a customer is waiting for the movie at a position.
+	 * 
+	 * @param customer
+	 *            customer to check.
+	 * @param position
+	 *            position of the movie.
+	 */
+	private void assertWaiting(Customer customer, int position) {
+		assertTrue(customer.getId(), customer.isWaitingFor(movie(position)));
+	}
+
+	/**
+	 * Listener that refuses one customer's first checkout, after running an
+	 * action while the copy is out.
+	 */
+	private static class RefusingListener implements CustomerListener {
+
+		/**
+		 * Username of the customer whose checkout is refused.
+		 */
+		private final String refused;
+
+		/**
+		 * Action run before refusing, or null for none.
+		 */
+		private final Runnable meanwhile;
+
+		/**
+		 * Whether a checkout was refused already.
+		 */
+		private boolean done;
+
+		/**
+		 * Constructor, creates a listener.
+		 * 
+		 * @param refused
+		 *            username of the customer whose checkout is refused.
+		 * @param meanwhile
+		 *            action run before refusing, or null for none.
+		 */
+		RefusingListener(String refused, Runnable meanwhile) {
+			this.refused = refused;
+			this.meanwhile = meanwhile;
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param password
+		 *            password of the customer.
+		 * @param maxAtHome
+		 *            limit on the customer's movies at home.
+		 */
+		public void accountAdded(String id, String password, int maxAtHome) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 */
+		public void accountCancelled(String id) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie reserved.
+		 */
+		public void reserved(String id, Movie movie) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position in the reserve queue.
+		 */
+		public void unreserved(String id, int index) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position in the reserve queue.
+		 */
+		public void movedAheadOne(String id, int index) {
+			// Nothing to note
+		}
+
+		/**
+		 * Refuses the first checkout of the refused customer.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie checked out.
+		 * @throws IllegalStateException
+		 *             for the first checkout of the refused customer.
+		 */
+		public void checkedOut(String id, Movie movie) {
+			if (!done && id.equals(refused)) {
+				done = true;
+				if (meanwhile != null) {
+					meanwhile.run();
+				}
+				throw new IllegalStateException("Checkout refused.");
+			}
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position in the at home queue.
+		 */
+		public void returned(String id, int index) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 */
+		public void sync() {
+			// Nothing to wait for
+		}
+	}
+}
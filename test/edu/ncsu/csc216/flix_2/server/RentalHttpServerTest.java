@@ -0,0 +1,421 @@
+package edu.ncsu.csc216.flix_2.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc216.flix_2.customer.CustomerListener;
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+
+/**
+ * Tests a RentalHttpServer over a loopback connection: sessions, queues,
+ * refused requests, oversized bodies and unexpected failures.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class RentalHttpServerTest {
+
+	/**
+	 * Encoding of request and response bodies.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Rental system behind the server.
+	 */
+	private DVDRentalSystem rentals;
+
+	/**
+	 * Account system behind the server.
+	 */
+	private MovieCustomerAccountSystem accounts;
+
+	/**
+	 * Server under test.
+	 */
+	private RentalHttpServer server;
+
+	/**
+	 * Starts a server on a free loopback port with one customer.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot start.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		rentals = new DVDRentalSystem("movies-alt.txt");
+		accounts = new MovieCustomerAccountSystem(rentals);
+		accounts.login(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN);
+		accounts.addNewCustomer("amy", "pw", 1);
+		accounts.logout();
+		server = new RentalHttpServer(accounts, rentals);
+		server.start(new InetSocketAddress("127.0.0.1", 0));
+	}
+
+	/**
+	 * Stops the server.
+	 */
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	/**
+	 * Tests logging in, reserving two movies and listing the queues, which
+	 * match the customer's queues in the store.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be reached.
+	 */
+	@Test
+	public void testLoginReserveQueue() throws IOException {
+		Response login = request("POST", "/login", null, "id=amy&password=pw");
+		assertEquals(200, login.status);
+		Map<String, String> session = Json.parseObject(login.body);
+		assertEquals("false", session.get("admin"));
+		String token = session.get("token");
+
+		assertEquals(200, request("POST", "/reserve", token, "position=0").status);
+		Response reserved = request("POST", "/reserve", token, "{\"position\": 1}");
+		assertEquals(200, reserved.status);
+		Response queue = request("GET", "/queue", token, null);
+		assertEquals(200, queue.status);
+		assertEquals(reserved.body, queue.body);
+
+		RentalManager context = accounts.getRentalManager(token);
+		StringBuilder expected = new StringBuilder();
+		Json.lines(expected.append("{\"reserves\":"), context.traverseReserveQueue());
+		Json.lines(expected.append(",\"atHome\":"), context.traverseAtHomeQueue()).append('}');
+		assertEquals(expected.toString(), queue.body);
+		assertTrue(queue.body.contains(rentals.getMovieAt(0).getName()));
+		assertTrue(queue.body.contains(rentals.getMovieAt(1).getName()));
+
+		assertEquals(200, request("POST", "/logout", token, null).status);
+		assertEquals(401, request("GET", "/queue", token, null).status);
+	}
+
+	/**
+	 * Tests that requests without a session, without the administrator's
+	 * rights or with the wrong method are refused with their statuses.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be reached.
+	 */
+	@Test
+	public void testRefusedRequests() throws IOException {
+		assertEquals(401, request("POST", "/login", null, "id=amy&password=wrong").status);
+		assertEquals(401, request("GET", "/queue", null, null).status);
+		assertEquals(401, request("POST", "/reserve", "no-such-token", "position=0").status);
+
+		String token = Json.parseObject(request("POST", "/login", null, "id=amy&password=pw").body).get("token");
+		assertEquals(403, request("GET", "/accounts", token, null).status);
+		assertEquals(403, request("DELETE", "/accounts/amy", token, null).status);
+		assertEquals(405, request("GET", "/login", null, null).status);
+		assertEquals(405, request("GET", "/reserve", token, null).status);
+		assertEquals(405, request("POST", "/inventory", null, null).status);
+		assertEquals(404, request("GET", "/nowhere", token, null).status);
+		assertEquals(400, request("POST", "/reserve", token, "position=x").status);
+
+		String admin = Json.parseObject(request("POST", "/login", null, "id=admin&password=admin").body).get("token");
+		assertEquals(405, request("PUT", "/accounts", admin, null).status);
+		assertEquals(200, request("DELETE", "/accounts/amy", admin, null).status);
+		assertFalse(accounts.hasCustomer("amy"));
+	}
+
+	/**
+	 * Tests that a body longer than the limit is refused with status 413,
+	 * whether its length is declared or counted, and that the server keeps
+	 * answering.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be reached.
+	 */
+	@Test
+	public void testOversizedBody() throws IOException {
+		Socket socket = new Socket("127.0.0.1", server.getPort());
+		try {
+			OutputStream out = socket.getOutputStream();
+			out.write(("POST /login HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + (RentalHttpServer.MAX_BODY + 1)
+					+ "\r\nConnection: close\r\n\r\n").getBytes(UTF_8));
+			out.flush();
+			socket.shutdownOutput();
+			String response = new String(readAll(socket.getInputStream()), UTF_8);
+			assertTrue(response, response.startsWith("HTTP/1.1 413"));
+		} finally {
+			socket.close();
+		}
+
+		StringBuilder padding = new StringBuilder("id=amy&password=pw&pad=");
+		while (padding.length() <= RentalHttpServer.MAX_BODY) {
+			padding.append("xxxxxxxxxxxxxxxx");
+		}
+		assertEquals(413, request("POST", "/login", null, padding.toString(), true).status);
+		assertEquals(200, request("POST", "/login", null, "id=amy&password=pw").status);
+	}
+
+	/**
+	 * Tests that a request failing in an unexpected way gets status 500
+	 * without the details of the failure, and that the server keeps
+	 * answering.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be reached.
+	 */
+	@Test
+	public void testUnexpectedFailure() throws IOException {
+		String token = Json.parseObject(request("POST", "/login", null, "id=amy&password=pw").body).get("token");
+		accounts.setCustomerListener(new IgnoringListener() {
+			public void reserved(String id, Movie movie) {
+				throw new UnsupportedOperationException("secret");
+			}
+		});
+		Response failed = request("POST", "/reserve", token, "position=0");
+		assertEquals(500, failed.status);
+		assertFalse(failed.body, failed.body.contains("secret"));
+		assertFalse(failed.body, failed.body.contains("UnsupportedOperationException"));
+
+		accounts.setCustomerListener(null);
+		assertEquals(200, request("POST", "/reserve", token, "position=0").status);
+	}
+
+	/**
+	 * Sends a request with a fixed length body.
+	 * 
+	 * @param method
+	 *            HTTP method.
+	 * @param path
+	 *            path of the resource.
+	 * @param token
+	 *            session token, or null for none.
+	 * @param body
+	 *            form or JSON body, or null for none.
+	 * @return the response.
+	 * @throws IOException
+	 *             if the server cannot be reached.
+	 */
+	private Response request(String method, String path, String token, String body) throws IOException {
+		return request(method, path, token, body, false);
+	}
+
+	/**
+	 * Sends a request.
+	 * 
+	 * @param method
+	 *            HTTP method.
+	 * @param path
+	 *            path of the resource.
+	 * @param token
+	 *            session token, or null for none.
+	 * @param body
+	 *            form or JSON body, or null for none.
+	 * @param chunked
+	 *            true to send the body in chunks, without its length.
+	 * @return the response.
+	 * @throws IOException
+	 *             if the server cannot be reached.
+	 */
+	private Response request(String method, String path, String token, String body, boolean chunked) throws IOException {
+		URL url = new URL("http", "127.0.0.1", server.getPort(), path);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		try {
+			connection.setRequestMethod(method);
+			if (token != null) {
+				connection.setRequestProperty("Authorization", "Bearer " + token);
+			}
+			if (body != null) {
+				byte[] bytes = body.getBytes(UTF_8);
+				connection.setDoOutput(true);
+				connection.setRequestProperty("Content-Type", body.startsWith("{") ? "application/json" : "application/x-www-form-urlencoded");
+				if (chunked) {
+					connection.setChunkedStreamingMode(1024);
+				} else {
+					connection.setFixedLengthStreamingMode(bytes.length);
+				}
+				OutputStream out = connection.getOutputStream();
+				try {
+					out.write(bytes);
+				} catch (IOException e) {
+					// The server answered before reading the whole body.
+				} finally {
+					try {
+						out.close();
+					} catch (IOException e) {
+						// As above.
+					}
+				}
+			}
+			int status = connection.getResponseCode();
+			InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			String text = in == null ? "" : new String(readAll(in), UTF_8);
+			return new Response(status, text);
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Reads a stream to the end and closes it.
+	 * 
+	 * @param in
+	 *            stream to read.
+	 * @return the bytes read.
+	 * @throws IOException
+	 *             if the stream cannot be read.
+	 */
+	private static byte[] readAll(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				bytes.write(buffer, 0, read);
+			}
+			return bytes.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Status and body of a response.
+	 */
+	private static class Response {
+
+		/**
+		 * HTTP status.
+		 */
+		private final int status;
+
+		/**
+		 * JSON body.
+		 */
+		private final String body;
+
+		/**
+		 * Constructor, creates a response.
+		 * 
+		 * @param status
+		 *            HTTP status.
+		 * @param body
+		 *            JSON body.
+		 */
+		Response(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+
+	/**
+	 * Listener that takes no note of anything.
+	 */
+	private static class IgnoringListener implements CustomerListener {
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param password
+		 *            password of the customer.
+		 * @param maxAtHome
+		 *            limit on the customer's movies at home.
+		 */
+		public void accountAdded(String id, String password, int maxAtHome) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 */
+		public void accountCancelled(String id) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie reserved.
+		 */
+		public void reserved(String id, Movie movie) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position in the reserve queue.
+		 */
+		public void unreserved(String id, int index) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position in the reserve queue.
+		 */
+		public void movedAheadOne(String id, int index) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie checked out.
+		 */
+		public void checkedOut(String id, Movie movie) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position in the at home queue.
+		 */
+		public void returned(String id, int index) {
+			// Nothing to note
+		}
+
+		/**
+		 * Does nothing.
+		 */
+		public void sync() {
+			// Nothing to wait for
+		}
+	}
+}
@@ -0,0 +1,417 @@
+package edu.ncsu.csc216.flix_2.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc216.flix_2.customer.CustomerListener;
+import edu.ncsu.csc216.flix_2.customer.MovieCustomerAccountSystem;
+import edu.ncsu.csc216.flix_2.inventory.Movie;
+import edu.ncsu.csc216.flix_2.rental_system.DVDRentalSystem;
+import edu.ncsu.csc216.flix_2.rental_system.RentalManager;
+
+/**
+ * Tests the RentalProtocol frames on their own, and a RentalClient talking to
+ * a RentalProtocolServer over a real connection.
+ * 
+ * @author Nick Brust, Eric Matysek
+ */
+public class RentalProtocolTest {
+
+	/**
+	 * Rental system behind the server.
+	 */
+	private DVDRentalSystem rentals;
+
+	/**
+	 * Account system behind the server.
+	 */
+	private MovieCustomerAccountSystem accounts;
+
+	/**
+	 * Server under test.
+	 */
+	private RentalProtocolServer server;
+
+	/**
+	 * Client connected to the server.
+	 */
+	private RentalClient client;
+
+	/**
+	 * Starts a server on a free port and connects a client.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot start or the client cannot connect.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		rentals = new DVDRentalSystem("movies-alt.txt");
+		accounts = new MovieCustomerAccountSystem(rentals);
+		server = new RentalProtocolServer(accounts, rentals);
+		server.start(new InetSocketAddress("127.0.0.1", 0), 2);
+		client = RentalClient.connect(new InetSocketAddress("127.0.0.1", server.getPort()));
+	}
+
+	/**
+	 * Closes the client and stops the server.
+	 * 
+	 * @throws IOException
+	 *             if the client cannot be closed.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		client.close();
+		server.stop();
+	}
+
+	/**
+	 * Tests that frames read back as they were written, including when the
+	 * buffer has to grow and after part of a frame is dropped.
+	 */
+	@Test
+	public void testFrameRoundTrip() {
+		RentalProtocol.FrameWriter writer = new RentalProtocol.FrameWriter(8);
+		StringBuilder longTitle = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			longTitle.append("Caf\u00e9 \u65e5\u672c ");
+		}
+		writer.begin(7, RentalProtocol.ADD_NEW_CUSTOMER).putString("a@b.com").putString("").putInt(-3).end();
+		int kept = writer.size();
+		writer.begin(8, RentalProtocol.INVENTORY_SIZE).putString("dropped");
+		writer.truncate(kept);
+		writer.begin(9, RentalProtocol.OK).put((byte) 5).putString(longTitle.toString()).end();
+
+		ByteBuffer buffer = writer.flip();
+		int length = buffer.getInt();
+		int start = buffer.position();
+		assertEquals(7, buffer.getInt());
+		assertEquals(RentalProtocol.ADD_NEW_CUSTOMER, buffer.get());
+		assertEquals("a@b.com", RentalProtocol.getString(buffer));
+		assertEquals("", RentalProtocol.getString(buffer));
+		assertEquals(-3, buffer.getInt());
+		assertEquals(length, buffer.position() - start);
+
+		length = buffer.getInt();
+		start = buffer.position();
+		assertEquals(9, buffer.getInt());
+		assertEquals(RentalProtocol.OK, buffer.get());
+		assertEquals(5, buffer.get());
+		assertEquals(longTitle.toString(), RentalProtocol.getString(buffer));
+		assertEquals(length, buffer.position() - start);
+		assertFalse(buffer.hasRemaining());
+		writer.compact();
+		assertEquals(0, writer.size());
+	}
+
+	/**
+	 * Tests that strings with an impossible length are rejected.
+	 */
+	@Test
+	public void testBadStringLength() {
+		ByteBuffer negative = ByteBuffer.allocate(8);
+		negative.putInt(-1).flip();
+		try {
+			RentalProtocol.getString(negative);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(4, negative.position());
+		}
+		ByteBuffer shortString = ByteBuffer.allocate(8);
+		shortString.putInt(5).put((byte) 'a').flip();
+		try {
+			RentalProtocol.getString(shortString);
+			fail();
+		} catch (BufferUnderflowException e) {
+			assertEquals(1, shortString.remaining());
+		}
+	}
+
+	/**
+	 * Tests account and rental operations across the connection, pipelined,
+	 * against the same operations in process.
+	 */
+	@Test
+	public void testClientRoundTrip() {
+		String admin = client.openSession(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN).get();
+		assertTrue(client.isAdminSession(admin).get());
+		client.addNewCustomer(admin, "caf\u00e9@ncsu.edu", "pw", 2).get();
+		try {
+			client.addNewCustomer(admin, "CAF\u00c9@ncsu.edu", "pw", 2).get();
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(1, accounts.getCustomerCount());
+		}
+		assertEquals(accounts.listAcounts(), client.listAccounts(admin, 0, 10).get());
+
+		String token = client.openSession("caf\u00e9@ncsu.edu", "pw").get();
+		assertFalse(client.isAdminSession(token).get());
+		try {
+			client.listAccounts(token, 0, 10).get();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals(1, accounts.getCustomerCount());
+		}
+		assertEquals(rentals.inventorySize(), client.inventorySize().get().intValue());
+		assertEquals(rentals.showInventory(0, 5), client.showInventory(0, 5).get());
+
+		List<RentalClient.Reply<Void>> reserves = new ArrayList<RentalClient.Reply<Void>>();
+		for (int i = 0; i < 4; i++) {
+			reserves.add(client.addToCustomerQueue(token, i));
+		}
+		RentalClient.Reply<Void> bad = client.removeSelectedFromReserves(token, 99);
+		RentalClient.Reply<String> reserved = client.traverseReserveQueue(token);
+		RentalClient.Reply<String> home = client.traverseAtHomeQueue(token);
+		assertEquals(7, client.getPendingCount());
+		client.sync();
+		assertEquals(0, client.getPendingCount());
+		for (RentalClient.Reply<Void> reply : reserves) {
+			assertTrue(reply.isDone());
+			reply.get();
+		}
+		try {
+			bad.get();
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(home.isDone());
+		}
+		RentalManager local = accounts.getRentalManager(accounts.openSession("caf\u00e9@ncsu.edu", "pw"));
+		assertEquals(local.traverseReserveQueue(), reserved.get());
+		assertEquals(local.traverseAtHomeQueue(), home.get());
+
+		RentalManager remote = client.getRentalManager(token);
+		remote.returnItemToInventory(0);
+		assertEquals(local.traverseAtHomeQueue(), remote.traverseAtHomeQueue());
+		assertEquals(local.traverseReserveQueue(), remote.traverseReserveQueue());
+
+		client.cancelAccount(admin, "caf\u00e9@ncsu.edu").get();
+		assertEquals(0, accounts.getCustomerCount());
+		try {
+			client.traverseAtHomeQueue(token).get();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("", client.listAccounts(admin, 0, 10).get());
+		}
+		client.closeSession(admin).get();
+		assertFalse(client.isAdminSession(admin).get());
+	}
+
+	/**
+	 * Tests that a request with an unknown opcode is answered as a bad
+	 * request without breaking the connection.
+	 * 
+	 * @throws IOException
+	 *             if the connection fails.
+	 */
+	@Test
+	public void testUnknownOpcode() throws IOException {
+		Socket socket = new Socket("127.0.0.1", server.getPort());
+		try {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			out.writeInt(5);
+			out.writeInt(41);
+			out.writeByte(99);
+			out.writeInt(5);
+			out.writeInt(42);
+			out.writeByte(RentalProtocol.INVENTORY_SIZE);
+			out.flush();
+
+			int length = in.readInt();
+			assertEquals(41, in.readInt());
+			assertEquals(RentalProtocol.BAD_REQUEST, in.readByte());
+			in.readFully(new byte[length - RentalProtocol.FRAME_HEADER]);
+
+			assertEquals(RentalProtocol.FRAME_HEADER + 4, in.readInt());
+			assertEquals(42, in.readInt());
+			assertEquals(RentalProtocol.OK, in.readByte());
+			assertEquals(rentals.inventorySize(), in.readInt());
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Tests that a change waiting to be made durable holds up only its own
+	 * connection, even when another connection shares its event loop.
+	 * 
+	 * @throws Exception
+	 *             if the server cannot restart or the wait is interrupted.
+	 */
+	@Test(timeout = 30000)
+	public void testSlowChangeHoldsOnlyItsConnection() throws Exception {
+		client.close();
+		server.stop();
+		server = new RentalProtocolServer(accounts, rentals);
+		server.start(new InetSocketAddress("127.0.0.1", 0), 1);
+		client = RentalClient.connect(new InetSocketAddress("127.0.0.1", server.getPort()));
+		RentalClient other = RentalClient.connect(new InetSocketAddress("127.0.0.1", server.getPort()));
+		final CountDownLatch syncing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		try {
+			String admin = client.openSession(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN).get();
+			client.addNewCustomer(admin, "slow", "pw", 2).get();
+			String token = client.openSession("slow", "pw").get();
+			accounts.setCustomerListener(new IgnoringListener() {
+				public void sync() {
+					syncing.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			RentalClient.Reply<Void> reserve = client.addToCustomerQueue(token, 0);
+			RentalClient.Reply<String> home = client.traverseAtHomeQueue(token);
+			client.flush();
+			syncing.await();
+
+			assertEquals(rentals.inventorySize(), other.inventorySize().get().intValue());
+			assertFalse(reserve.isDone());
+			assertFalse(home.isDone());
+			release.countDown();
+			reserve.get();
+			RentalManager local = accounts.getRentalManager(accounts.openSession("slow", "pw"));
+			assertEquals(local.traverseAtHomeQueue(), home.get());
+		} finally {
+			release.countDown();
+			other.close();
+		}
+	}
+
+	/**
+	 * Tests that an operation failing in a way it does not expect answers
+	 * that request with an illegal state and leaves the server serving.
+	 */
+	@Test(timeout = 30000)
+	public void testUnexpectedFailure() {
+		String admin = client.openSession(MovieCustomerAccountSystem.ADMIN, MovieCustomerAccountSystem.ADMIN).get();
+		client.addNewCustomer(admin, "broken", "pw", 2).get();
+		String token = client.openSession("broken", "pw").get();
+		accounts.setCustomerListener(new IgnoringListener() {
+			public void reserved(String id, Movie movie) {
+				throw new UnsupportedOperationException("secret detail");
+			}
+		});
+		RentalClient.Reply<Void> reserve = client.addToCustomerQueue(token, 0);
+		RentalClient.Reply<Integer> size = client.inventorySize();
+		try {
+			reserve.get();
+			fail();
+		} catch (IllegalStateException e) {
+			assertFalse(e.getMessage().contains("secret"));
+		}
+		assertEquals(rentals.inventorySize(), size.get().intValue());
+		accounts.setCustomerListener(null);
+		client.addToCustomerQueue(token, 0).get();
+		RentalManager local = accounts.getRentalManager(accounts.openSession("broken", "pw"));
+		assertEquals(local.traverseAtHomeQueue(), client.traverseAtHomeQueue(token).get());
+		assertEquals(1, local.traverseAtHomeQueue().split("\n").length);
+	}
+
+	/**
+	 * Listener that ignores every change, for tests to override.
+	 */
+	private static class IgnoringListener implements CustomerListener {
+
+		/**
+		 * Ignores a new account.
+		 * 
+		 * @param id
+		 *            username of the new customer.
+		 * @param password
+		 *            password of the new customer.
+		 * @param maxAtHome
+		 *            maximum number of movies the customer is allowed at home.
+		 */
+		public void accountAdded(String id, String password, int maxAtHome) {
+		}
+
+		/**
+		 * Ignores a cancelled account.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 */
+		public void accountCancelled(String id) {
+		}
+
+		/**
+		 * Ignores a reserve.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie reserved.
+		 */
+		public void reserved(String id, Movie movie) {
+		}
+
+		/**
+		 * Ignores an unreserve.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position in the reserve queue.
+		 */
+		public void unreserved(String id, int index) {
+		}
+
+		/**
+		 * Ignores a move.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position in the reserve queue.
+		 */
+		public void movedAheadOne(String id, int index) {
+		}
+
+		/**
+		 * Ignores a checkout.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param movie
+		 *            movie checked out.
+		 */
+		public void checkedOut(String id, Movie movie) {
+		}
+
+		/**
+		 * Ignores a return.
+		 * 
+		 * @param id
+		 *            username of the customer.
+		 * @param index
+		 *            position in the list of movies at home.
+		 */
+		public void returned(String id, int index) {
+		}
+
+		/**
+		 * Has nothing to make durable.
+		 */
+		public void sync() {
+		}
+	}
+}